@@ -30,12 +30,12 @@ public class ConsoleMain {
         System.out.println("----------------------------");
         
         try {
-            bookService = new BookService();
-            userService = new UserService();
+            bookService = BookService.getInstance();
+            userService = UserService.getInstance();
             cartService = CartService.getInstance();
-            orderService = new OrderService();
-            reviewService = new ReviewService();
-            discountService = new DiscountService();
+            orderService = OrderService.getInstance();
+            reviewService = ReviewService.getInstance();
+            discountService = DiscountService.getInstance();
             
             runDatabaseTests();
             
@@ -55,15 +55,14 @@ public class ConsoleMain {
     private static void runDatabaseTests() throws SQLException {
         System.out.println("Testing database connection...");
         
-        List<Book> books = bookService.getAllBooks();
-        System.out.println("Found " + books.size() + " books in the database.");
+        System.out.println("Found " + bookService.countBookSummaries(null, null) + " books in the database.");
+        
+        List<Book> books = bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, 3);
+        for (Book book : books) {
+            System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
+        }
         
         if (!books.isEmpty()) {
-            for (int i = 0; i < Math.min(3, books.size()); i++) {
-                Book book = books.get(i);
-                System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
-            }
-            
             Book firstBook = books.get(0);
             Book bookById = bookService.getBookById(firstBook.getId());
             if (bookById != null) {
@@ -80,15 +79,7 @@ public class ConsoleMain {
             System.out.println("Admin user not found. Database may not be properly initialized.");
         }
         
-        List<User> users = userService.getAllUsers();
-        System.out.println("Found " + users.size() + " users in the database.");
-        
-        if (!users.isEmpty()) {
-            for (int i = 0; i < Math.min(3, users.size()); i++) {
-                User user = users.get(i);
-                System.out.println("User: " + user.getUsername() + " (Role: " + user.getRole() + ")");
-            }
-        }
+        System.out.println("Found " + userService.countUsers() + " users in the database.");
     }
     
     private static void runInteractiveMode() {
@@ -288,15 +279,9 @@ public class ConsoleMain {
     }
      
     private static void displayAllBooks() throws SQLException {
-        List<Book> books = bookService.getAllBooks();
         System.out.println("\n=== All Books ===");
         
-        if (books.isEmpty()) {
-            System.out.println("No books found!");
-            return;
-        }
-        
-        for (Book book : books) {
+        long shown = bookService.forEachBook(book -> {
             System.out.println("ID: " + book.getId());
             System.out.println("Title: " + book.getTitle());
             System.out.println("Author: " + book.getAuthor());
@@ -304,6 +289,10 @@ public class ConsoleMain {
             System.out.println("Price: €" + book.getPrice());
             System.out.println("Stock: " + book.getStockQuantity());
             System.out.println("--------------------");
+        });
+        
+        if (shown == 0) {
+            System.out.println("No books found!");
         }
     }
      
@@ -454,21 +443,20 @@ public class ConsoleMain {
         System.out.print("Enter search term: ");
         String searchTerm = scanner.nextLine();
         
-        List<Book> books = bookService.searchBooks(searchTerm);
         System.out.println("\n=== Search Results ===");
         
-        if (books.isEmpty()) {
-            System.out.println("No books found matching '" + searchTerm + "'");
-            return;
-        }
-        
-        for (Book book : books) {
+        long shown = bookService.forEachSearchResult(searchTerm, book -> {
             System.out.println("ID: " + book.getId());
             System.out.println("Title: " + book.getTitle());
             System.out.println("Author: " + book.getAuthor());
             System.out.println("Category: " + book.getCategory());
             System.out.println("Price: €" + book.getPrice());
             System.out.println("--------------------");
+        });
+        
+        if (shown == 0) {
+            System.out.println("No books found matching '" + searchTerm + "'");
+            return;
         }
         
         if (currentUser != null && !currentUser.getRole().equals("ADMIN")) {
@@ -5,20 +5,49 @@ import com.bookshop.services.UserService;
 import com.bookshop.services.CartService;
 import com.bookshop.services.DiscountService;
 import com.bookshop.models.Book;
+import com.bookshop.models.BookSortOrder;
 import com.bookshop.models.User;
 import com.bookshop.models.CartItem;
+import com.bookshop.models.Money;
+import com.bookshop.models.Promotion;
 import com.bookshop.models.Order;
 import com.bookshop.models.OrderItem;
+import com.bookshop.models.DailySales;
+import com.bookshop.models.SalesBreakdown;
+import com.bookshop.models.CatalogFacets;
+import com.bookshop.services.CatalogImportService;
+import com.bookshop.services.CoverImportService;
+import com.bookshop.services.ExportService;
+import com.bookshop.services.FacetService;
 import com.bookshop.services.OrderService;
+import com.bookshop.services.PromotionService;
+import com.bookshop.services.RecommendationService;
+import com.bookshop.services.SalesAnalyticsService;
+import com.bookshop.utils.BookFactory;
+import com.bookshop.utils.CoverPack;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.LoadTest;
+import com.bookshop.utils.MetricsExporter;
+import com.bookshop.utils.QueryTracer;
+import com.bookshop.utils.RowMapper;
 
+import com.sun.management.ThreadMXBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 
 public class HeadlessMain {
@@ -29,33 +58,93 @@ public class HeadlessMain {
             System.out.println("- check_users: Check if users exist");
             System.out.println("- check_books: Check if books exist");
             System.out.println("- check_orders: Check if orders exist and create a test order if none exist");
+            System.out.println("- bench_pricing [lines]: Compare BigDecimal and Money cart pricing (default 1000 lines)");
+            System.out.println("- bench_promotions [rules]: Time promotion evaluation with many active rules (default 10000)");
+            System.out.println("- bench_mappers [passes]: Compare by-name and index-resolved book row mapping (default 200 passes over the catalog)");
+            System.out.println("- import_covers: Copy book covers into the local cover pack");
+            System.out.println("- import_catalog <file>: Add or update books from a .csv or .jsonl catalog feed");
+            System.out.println("- export <books|orders|reviews> <file>: Write a table to .csv or .jsonl, gzipped if the name ends in .gz");
+            System.out.println("- build_recommendations: Rebuild the co-purchase index behind \"Customers also bought\"");
+            System.out.println("- sales_backfill: Rebuild the daily sales rollups from the order history");
+            System.out.println("- sales_report [days]: Print daily revenue, top sellers and category totals (default 30 days)");
+            System.out.println("- facets [recount]: Print book counts per category, price range and rating, recounting them first if asked");
+            System.out.println("- loadtest [shoppers] [seconds] [mix]: Simulate concurrent customers (default 20 for 30 s, mix " + LoadTest.DEFAULT_MIX + ")");
+            System.out.println("- trace_queries <slow_ms> [explain] <command> [args]: Run a command and list the statements it ran");
             System.exit(0);
         }
         
-        String command = args[0];
-        
         try {
-            switch (command) {
-                case "check_db":
-                    checkDatabaseConnection();
-                    break;
-                case "check_users":
-                    checkUsers();
-                    break;
-                case "check_books":
-                    checkBooks();
-                    break;
-                case "check_orders":
-                    checkOrders();
-                    break;
-                default:
-                    System.out.println("Unknown command: " + command);
-                    break;
-            }
+            runCommand(args);
         } catch (Exception e) {
             System.err.println("Error running command: " + e.getMessage());
             e.printStackTrace();
         }
+        
+        try {
+            System.out.println("Metrics snapshot written to " + MetricsExporter.getInstance().writeSnapshot());
+        } catch (IOException e) {
+            System.err.println("Could not write metrics snapshot: " + e.getMessage());
+        }
+    }
+    
+    private static void runCommand(String[] args) throws Exception {
+        String command = args[0];
+        
+        switch (command) {
+            case "check_db":
+                checkDatabaseConnection();
+                break;
+            case "check_users":
+                checkUsers();
+                break;
+            case "check_books":
+                checkBooks();
+                break;
+            case "check_orders":
+                checkOrders();
+                break;
+            case "bench_pricing":
+                benchmarkPricing(args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+                break;
+            case "bench_promotions":
+                benchmarkPromotions(args.length > 1 ? Integer.parseInt(args[1]) : 10_000);
+                break;
+            case "bench_mappers":
+                benchmarkMappers(args.length > 1 ? Integer.parseInt(args[1]) : 200);
+                break;
+            case "import_covers":
+                importCovers();
+                break;
+            case "import_catalog":
+                importCatalog(args);
+                break;
+            case "export":
+                export(args);
+                break;
+            case "build_recommendations":
+                RecommendationService.getInstance().rebuild();
+                break;
+            case "sales_backfill":
+                System.out.println("Rebuilt sales rollups for " + SalesAnalyticsService.getInstance().backfill() + " days");
+                break;
+            case "sales_report":
+                salesReport(args.length > 1 ? Integer.parseInt(args[1]) : 30);
+                break;
+            case "facets":
+                printFacets(args.length > 1 && "recount".equals(args[1]));
+                break;
+            case "loadtest":
+                new LoadTest().run(args.length > 1 ? Integer.parseInt(args[1]) : 20,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 30,
+                    args.length > 3 ? args[3] : LoadTest.DEFAULT_MIX);
+                break;
+            case "trace_queries":
+                traceQueries(args);
+                break;
+            default:
+                System.out.println("Unknown command: " + command);
+                break;
+        }
     }
     
     private static void runDatabaseTests() throws Exception {
@@ -70,16 +159,15 @@ public class HeadlessMain {
     private static void testBookService() throws SQLException {
         System.out.println("Testing BookService...");
         
-        BookService bookService = new BookService();
-        List<Book> books = bookService.getAllBooks();
-        System.out.println("Found " + books.size() + " books in the database.");
+        BookService bookService = BookService.getInstance();
+        System.out.println("Found " + bookService.countBookSummaries(null, null) + " books in the database.");
+        
+        List<Book> books = bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, 3);
+        for (Book book : books) {
+            System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
+        }
         
         if (!books.isEmpty()) {
-            for (int i = 0; i < Math.min(3, books.size()); i++) {
-                Book book = books.get(i);
-                System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
-            }
-            
             Book firstBook = books.get(0);
             Book bookById = bookService.getBookById(firstBook.getId());
             if (bookById != null) {
@@ -91,7 +179,7 @@ public class HeadlessMain {
     private static void testUserService() throws SQLException {
         System.out.println("Testing UserService...");
         
-        UserService userService = new UserService();
+        UserService userService = UserService.getInstance();
         User adminUser = userService.authenticateUser("admin", "admin123");
         
         if (adminUser != null) {
@@ -100,15 +188,7 @@ public class HeadlessMain {
             System.out.println("Admin user not found. Database may not be properly initialized.");
         }
         
-        List<User> users = userService.getAllUsers();
-        System.out.println("Found " + users.size() + " users in the database.");
-        
-        if (!users.isEmpty()) {
-            for (int i = 0; i < Math.min(3, users.size()); i++) {
-                User user = users.get(i);
-                System.out.println("User: " + user.getUsername() + " (Role: " + user.getRole() + ")");
-            }
-        }
+        System.out.println("Found " + userService.countUsers() + " users in the database.");
     }
     
     private static void testCartService() throws SQLException {
@@ -125,7 +205,7 @@ public class HeadlessMain {
     private static void testDiscountService() {
         System.out.println("Testing DiscountService...");
         
-        DiscountService discountService = new DiscountService();
+        DiscountService discountService = DiscountService.getInstance();
         
         User standardUser = new User();
         standardUser.setOrderCount(2); 
@@ -170,6 +250,125 @@ public class HeadlessMain {
         }
     }
     
+    private static void importCovers() throws SQLException {
+        int imported = CoverImportService.getInstance().importAll();
+        System.out.println("Imported " + imported + " covers; the pack now holds " + CoverPack.getInstance().size());
+    }
+    
+    private static void importCatalog(String[] args) throws IOException, SQLException {
+        if (args.length < 2) {
+            System.out.println("Usage: import_catalog <file>");
+            return;
+        }
+        CatalogImportService.ImportResult result = CatalogImportService.getInstance().importFeed(Paths.get(args[1]));
+        System.out.println(result);
+        for (String error : result.getErrors()) {
+            System.out.println("  " + error);
+        }
+        if (result.getRejected() > result.getErrors().size()) {
+            System.out.println("  ... and " + (result.getRejected() - result.getErrors().size()) + " more rejected rows");
+        }
+    }
+    
+    private static void export(String[] args) throws IOException, SQLException {
+        if (args.length < 3) {
+            System.out.println("Usage: export <books|orders|reviews> <file>");
+            return;
+        }
+        ExportService exportService = ExportService.getInstance();
+        Path file = Paths.get(args[2]);
+        long rows;
+        switch (args[1]) {
+            case "books":
+                rows = exportService.exportBooks(file);
+                break;
+            case "orders":
+                rows = exportService.exportOrders(file);
+                break;
+            case "reviews":
+                rows = exportService.exportReviews(file);
+                break;
+            default:
+                System.out.println("Unknown export: " + args[1] + ", expected books, orders or reviews");
+                return;
+        }
+        System.out.println("Exported " + rows + " rows to " + file);
+    }
+    
+    private static void printFacets(boolean recount) throws SQLException {
+        FacetService facetService = FacetService.getInstance();
+        if (recount) {
+            System.out.println("Recounted " + facetService.backfill() + " facet values");
+        }
+        
+        CatalogFacets facets = facetService.getFacets();
+        System.out.println("Categories:");
+        facets.getCategories().forEach(count -> System.out.println("  " + count));
+        System.out.println("Price ranges:");
+        facets.getPriceRanges().forEach(count -> System.out.println("  " + count));
+        System.out.println("Ratings:");
+        facets.getRatings().forEach(count -> System.out.println("  " + count));
+        System.out.println("Largest publishers:");
+        facets.getPublishers().stream().limit(10).forEach(count -> System.out.println("  " + count));
+        System.out.println("Largest authors:");
+        facets.getAuthors().stream().limit(10).forEach(count -> System.out.println("  " + count));
+    }
+    
+    private static void salesReport(int days) throws SQLException {
+        SalesAnalyticsService analytics = SalesAnalyticsService.getInstance();
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(days - 1);
+        
+        System.out.println("Daily sales from " + from + " to " + to + ":");
+        for (DailySales day : analytics.getDailySales(from, to)) {
+            System.out.println("  " + day);
+        }
+        System.out.println("Top sellers:");
+        for (SalesBreakdown book : analytics.getTopSellers(from, to, 10)) {
+            System.out.println("  " + book);
+        }
+        System.out.println("By category:");
+        for (SalesBreakdown category : analytics.getCategorySales(from, to)) {
+            System.out.println("  " + category);
+        }
+    }
+    
+    private static void traceQueries(String[] args) throws Exception {
+        boolean explain = args.length > 2 && args[2].equals("explain");
+        int commandIndex = explain ? 3 : 2;
+        if (args.length <= commandIndex) {
+            System.out.println("Usage: trace_queries <slow_ms> [explain] <command> [args]");
+            return;
+        }
+        
+        QueryTracer tracer = QueryTracer.getInstance();
+        long previousThreshold = tracer.getSlowThresholdMillis();
+        boolean previousExplain = tracer.isExplainSlowQueries();
+        tracer.setSlowThresholdMillis(Long.parseLong(args[1]));
+        tracer.setExplainSlowQueries(explain);
+        tracer.clear();
+        
+        try {
+            runCommand(Arrays.copyOfRange(args, commandIndex, args.length));
+        } finally {
+            tracer.setSlowThresholdMillis(previousThreshold);
+            tracer.setExplainSlowQueries(previousExplain);
+        }
+        
+        List<QueryTracer.Trace> statements = tracer.getRecentStatements();
+        System.out.println();
+        System.out.println(statements.size() + " statements (most recent last):");
+        for (QueryTracer.Trace trace : statements) {
+            System.out.println("  [" + trace.getOperation() + "] " + trace.toString().split("\n")[0]);
+        }
+        
+        List<QueryTracer.Trace> slow = tracer.getSlowStatements();
+        System.out.println(slow.size() + " statements at or over " + args[1] + " ms");
+        for (QueryTracer.Trace trace : slow) {
+            System.out.println("  [" + trace.getOperation() + "] " + trace);
+        }
+    }
+    
     private static void checkDatabaseConnection() throws SQLException {
         System.out.println("Checking database connection...");
         
@@ -187,7 +386,7 @@ public class HeadlessMain {
     private static void checkUsers() throws SQLException {
         System.out.println("Checking users...");
         
-        UserService userService = new UserService();
+        UserService userService = UserService.getInstance();
         List<User> users = userService.getAllUsers();
         
         System.out.println("Found " + users.size() + " users in the database");
@@ -204,15 +403,13 @@ public class HeadlessMain {
     private static void checkBooks() throws SQLException {
         System.out.println("Checking books...");
         
-        BookService bookService = new BookService();
-        List<Book> books = bookService.getAllBooks();
-        
-        System.out.println("Found " + books.size() + " books in the database");
+        BookService bookService = BookService.getInstance();
+        System.out.println("Found " + bookService.countBookSummaries(null, null) + " books in the database");
         
+        List<Book> books = bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, 5);
         if (!books.isEmpty()) {
             System.out.println("Sample books:");
-            for (int i = 0; i < Math.min(5, books.size()); i++) {
-                Book book = books.get(i);
+            for (Book book : books) {
                 System.out.println("- ID: " + book.getId() + ", Title: " + book.getTitle() + ", Author: " + book.getAuthor() + ", Price: €" + book.getPrice());
             }
         }
@@ -221,7 +418,7 @@ public class HeadlessMain {
     private static void checkOrders() throws SQLException {
         System.out.println("Checking orders...");
         
-        OrderService orderService = new OrderService();
+        OrderService orderService = OrderService.getInstance();
         List<Order> orders = orderService.getAllOrders();
         
         System.out.println("Found " + orders.size() + " orders in the database");
@@ -257,8 +454,8 @@ public class HeadlessMain {
             
             System.out.println("Creating a test order...");
             
-            UserService userService = new UserService();
-            BookService bookService = new BookService();
+            UserService userService = UserService.getInstance();
+            BookService bookService = BookService.getInstance();
             
             List<User> users = userService.getAllUsers();
             if (users.isEmpty()) {
@@ -266,7 +463,7 @@ public class HeadlessMain {
                 return;
             }
             
-            List<Book> books = bookService.getAllBooks();
+            List<Book> books = bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, 1);
             if (books.isEmpty()) {
                 System.out.println("No books found. Cannot create test order.");
                 return;
@@ -304,4 +501,231 @@ public class HeadlessMain {
             }
         }
     }
+    
+    private static final int BENCH_WARMUP_ROUNDS = 2_000;
+    private static final int BENCH_MEASURED_ROUNDS = 5_000;
+    
+    // The old BigDecimal chain, kept here only as the baseline for bench_pricing
+    private static BigDecimal priceCartWithBigDecimal(List<CartItem> items) {
+        BigDecimal discountRate = new BigDecimal("0.15");
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem item : items) {
+            BigDecimal subtotal = item.getPrice().multiply(new BigDecimal(item.getQuantity()));
+            total = total.add(subtotal.subtract(subtotal.multiply(discountRate)));
+        }
+        return total;
+    }
+    
+    private static long priceCartWithMoney(List<CartItem> items) {
+        long total = 0;
+        for (CartItem item : items) {
+            long subtotal = item.getSubtotalMinorUnits();
+            total += subtotal - Money.percentOf(subtotal, 1500);
+        }
+        return total;
+    }
+    
+    private static void benchmarkPricing(int lines) {
+        System.out.println("Pricing a " + lines + "-line cart, " + BENCH_MEASURED_ROUNDS + " rounds per variant");
+        
+        List<CartItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            CartItem item = new CartItem();
+            item.setBookId(i + 1);
+            item.setQuantity(1 + i % 5);
+            item.setPrice(BigDecimal.valueOf(499 + (i * 37) % 5000, 2));
+            items.add(item);
+        }
+        
+        ThreadMXBean allocationBean = allocationCounter();
+        long threadId = Thread.currentThread().getId();
+        
+        BigDecimal bigDecimalTotal = BigDecimal.ZERO;
+        long moneyTotal = 0;
+        for (int i = 0; i < BENCH_WARMUP_ROUNDS; i++) {
+            bigDecimalTotal = priceCartWithBigDecimal(items);
+            moneyTotal = priceCartWithMoney(items);
+        }
+        
+        long allocatedBefore = allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) : -1;
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCH_MEASURED_ROUNDS; i++) {
+            bigDecimalTotal = priceCartWithBigDecimal(items);
+        }
+        long bigDecimalNanos = System.nanoTime() - start;
+        long bigDecimalBytes = allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+        
+        allocatedBefore = allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) : -1;
+        start = System.nanoTime();
+        for (int i = 0; i < BENCH_MEASURED_ROUNDS; i++) {
+            moneyTotal = priceCartWithMoney(items);
+        }
+        long moneyNanos = System.nanoTime() - start;
+        long moneyBytes = allocationBean != null ? allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+        
+        System.out.println("BigDecimal: " + (bigDecimalNanos / BENCH_MEASURED_ROUNDS) + " ns/cart, "
+            + bytesPerCart(bigDecimalBytes) + " (total " + bigDecimalTotal.setScale(2, RoundingMode.HALF_UP) + ")");
+        System.out.println("Money:      " + (moneyNanos / BENCH_MEASURED_ROUNDS) + " ns/cart, "
+            + bytesPerCart(moneyBytes) + " (total " + Money.toBigDecimal(moneyTotal) + ")");
+    }
+    
+    // Per-thread allocation counts are a HotSpot extension; other JVMs get the timings only
+    private static ThreadMXBean allocationCounter() {
+        try {
+            Object threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof ThreadMXBean) {
+                ThreadMXBean allocationBean = (ThreadMXBean) threadBean;
+                if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                    return allocationBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // com.sun.management is not present on this JVM
+        }
+        return null;
+    }
+    
+    private static String bytesPerCart(long bytes) {
+        return bytes < 0 ? "allocation not measured on this JVM" : (bytes / BENCH_MEASURED_ROUNDS) + " bytes/cart";
+    }
+    
+    private static List<Promotion> generatePromotions(int count) {
+        List<Promotion> promotions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Promotion promotion;
+            switch (i % 4) {
+                case 0:
+                    promotion = new Promotion(Promotion.Type.BOOK, String.valueOf(i + 1), BigDecimal.valueOf(5 + i % 20));
+                    break;
+                case 1:
+                    promotion = new Promotion(Promotion.Type.CATEGORY, "Category " + (i % 200), BigDecimal.valueOf(5 + i % 10));
+                    break;
+                case 2:
+                    promotion = new Promotion(Promotion.Type.AUTHOR, "Author " + (i % 1000), BigDecimal.valueOf(5 + i % 15));
+                    break;
+                default:
+                    promotion = new Promotion(Promotion.Type.BUY_X_GET_Y, String.valueOf(i + 1), BigDecimal.ZERO);
+                    promotion.setBuyQuantity(2);
+                    promotion.setFreeQuantity(1);
+                    break;
+            }
+            promotion.setId(i + 1);
+            promotions.add(promotion);
+        }
+        return promotions;
+    }
+    
+    private static long timePromotionEvaluation(PromotionService promotionService, List<CartItem> items) {
+        long discount = 0;
+        for (int i = 0; i < BENCH_WARMUP_ROUNDS; i++) {
+            discount += promotionService.calculateDiscountMinorUnits(items);
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCH_MEASURED_ROUNDS; i++) {
+            discount += promotionService.calculateDiscountMinorUnits(items);
+        }
+        long nanosPerCart = (System.nanoTime() - start) / BENCH_MEASURED_ROUNDS;
+        
+        if (discount < 0) {
+            System.out.println("Unexpected negative discount");
+        }
+        return nanosPerCart;
+    }
+    
+    /**
+     * Maps the same in-memory result set over and over, so only the mapping is
+     * timed. The by-name variant is the lookup-per-column mapping the repositories
+     * used before the mappers resolved column positions once per result set.
+     */
+    private static void benchmarkMappers(int passes) throws SQLException {
+        // A plain connection, so the timing does not include the tracing wrappers
+        try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = stmt.executeQuery("SELECT * FROM books")) {
+            
+            long rows = 0;
+            long checksum = 0;
+            for (int i = 0; i < passes / 4 + 1; i++) {
+                checksum += mapBooksByName(rs) + mapBooksByIndex(rs);
+            }
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < passes; i++) {
+                rows += mapBooksByName(rs);
+            }
+            long byNameNanos = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            for (int i = 0; i < passes; i++) {
+                mapBooksByIndex(rs);
+            }
+            long byIndexNanos = System.nanoTime() - start;
+            
+            if (rows == 0) {
+                System.out.println("No books to map (checksum " + checksum + ")");
+                return;
+            }
+            System.out.println("Mapped " + rows + " rows per variant");
+            System.out.println("By name:  " + (byNameNanos / rows) + " ns/row");
+            System.out.println("By index: " + (byIndexNanos / rows) + " ns/row");
+        }
+    }
+    
+    private static int mapBooksByName(ResultSet rs) throws SQLException {
+        int mapped = 0;
+        rs.beforeFirst();
+        while (rs.next()) {
+            Book book = new Book();
+            book.setId(rs.getInt("id"));
+            book.setTitle(rs.getString("title"));
+            book.setAuthor(rs.getString("author"));
+            book.setPublisher(rs.getString("publisher"));
+            book.setPrice(rs.getBigDecimal("price"));
+            book.setCategory(rs.getString("category"));
+            book.setIsbn(rs.getString("isbn"));
+            book.setImageUrl(rs.getString("image_url"));
+            book.setDescription(rs.getString("description"));
+            book.setStockQuantity(rs.getInt("stock_quantity"));
+            book.setAverageRating(rs.getDouble("average_rating"));
+            book.setReviewCount(rs.getInt("review_count"));
+            mapped += book.getId() != 0 ? 1 : 0;
+        }
+        return mapped;
+    }
+    
+    private static int mapBooksByIndex(ResultSet rs) throws SQLException {
+        int mapped = 0;
+        rs.beforeFirst();
+        RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+        while (rs.next()) {
+            mapped += mapper.map(rs).getId() != 0 ? 1 : 0;
+        }
+        return mapped;
+    }
+    
+    private static void benchmarkPromotions(int ruleCount) {
+        List<CartItem> items = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            CartItem item = new CartItem();
+            item.setBookId(i * 7 + 1);
+            item.setQuantity(1 + i % 4);
+            item.setPrice(BigDecimal.valueOf(499 + (i * 37) % 5000, 2));
+            item.setCategory("Category " + (i % 300));
+            item.setAuthor("Author " + (i % 1500));
+            items.add(item);
+        }
+        
+        PromotionService promotionService = PromotionService.getInstance();
+        for (int rules : new int[] { 100, ruleCount }) {
+            List<Promotion> promotions = generatePromotions(rules);
+            long start = System.nanoTime();
+            promotionService.loadRules(promotions);
+            long compileMicros = (System.nanoTime() - start) / 1000;
+            
+            long nanosPerCart = timePromotionEvaluation(promotionService, items);
+            System.out.println(rules + " active rules: compiled in " + compileMicros + " us, "
+                + nanosPerCart + " ns per 1000-line cart (discount " + promotionService.calculateDiscount(items) + ")");
+        }
+    }
 }
\ No newline at end of file
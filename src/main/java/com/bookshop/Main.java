@@ -2,6 +2,7 @@ package com.bookshop;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.scene.Parent;
 import javafx.stage.Stage;
 
 import java.awt.GraphicsEnvironment;
@@ -9,15 +10,32 @@ import java.util.Arrays;
 
 import com.bookshop.services.BookService;
 import com.bookshop.services.UserService;
+import com.bookshop.services.TopSellersService;
+import com.bookshop.services.PromotionService;
+import com.bookshop.services.RecommendationService;
 import com.bookshop.models.Book;
+import com.bookshop.models.BookSortOrder;
 import com.bookshop.models.User;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.MetricsExporter;
+import com.bookshop.utils.PagedBookList;
+import com.bookshop.utils.StartupTimer;
 import com.bookshop.utils.ViewNavigator;
 import com.bookshop.utils.SceneManager;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main extends Application {
     
+    private static final Log LOG = Log.get(Main.class);
+    
     private static boolean isHeadless = false;
     
     @Override
@@ -40,26 +58,104 @@ public class Main extends Application {
         ViewNavigator.getInstance().setStage(primaryStage);
         SceneManager.getInstance().setStage(primaryStage);
         
-        // Use the ViewNavigator to navigate to the login screen
-        ViewNavigator.getInstance().navigateTo("login.fxml");
-        
         primaryStage.setTitle("BookShop Application");
         primaryStage.setResizable(true);
+        
+        bootstrap();
+        ChangeFeed.getInstance().start();
+        TopSellersService.getInstance().start();
+        RecommendationService.getInstance().start();
+    }
+    
+    /**
+     * Connects to the database and parses the login screen at the same time, and
+     * shows the login screen as soon as it is parsed. It needs nothing from the
+     * database until the user signs in, by which time the connection is usually up.
+     * The first page of the catalog is read once the connection is ready so the
+     * customer dashboard opens against a warm database.
+     */
+    private void bootstrap() {
+        StartupTimer timer = StartupTimer.getInstance();
+        timer.mark("fx-toolkit-ready");
+        MetricsExporter.getInstance().start();
+        
+        ExecutorService startup = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        CompletableFuture<Void> database = CompletableFuture.runAsync(() -> {
+            try {
+                timer.time("database-and-schema", DatabaseConnection::getInstance);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, startup);
+        
+        CompletableFuture<Parent> loginView = CompletableFuture.supplyAsync(() -> {
+            try {
+                return timer.time("parse-login-fxml", () -> ViewNavigator.getInstance().loadView("login.fxml"));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, startup);
+        
+        CompletableFuture<Void> shown = loginView.handle((root, error) -> {
+            Platform.runLater(() -> {
+                if (root != null) {
+                    ViewNavigator.getInstance().showView("login.fxml", root);
+                } else {
+                    LOG.warn("Could not parse the login screen up front: {}", error.getMessage());
+                    ViewNavigator.getInstance().navigateTo("login.fxml");
+                }
+                timer.mark("login-screen-shown");
+            });
+            return null;
+        });
+        
+        // Queued on the service worker like any other call, behind whatever the user starts first
+        CompletableFuture<Void> warmUp = database.thenCompose(ignored ->
+            AsyncTaskRunner.getInstance().submit(Main::warmUpCatalog).thenAccept(count ->
+                LOG.info("Catalog warmed up, {} books", count)));
+        
+        // Compiled before the first cart is priced, so checkout never waits on the promotions table
+        CompletableFuture<Void> promotions = database.thenRunAsync(() -> {
+            long started = System.nanoTime();
+            PromotionService.getInstance().reload();
+            timer.record("load-promotions", started);
+        }, startup);
+        
+        CompletableFuture.allOf(shown, warmUp, promotions).whenComplete((ignored, error) -> {
+            if (error != null) {
+                LOG.warn("Startup finished with errors: {}", error.getMessage());
+            }
+            startup.shutdown();
+            Platform.runLater(timer::report);
+        });
+    }
+    
+    private static int warmUpCatalog() throws SQLException {
+        long started = System.nanoTime();
+        BookService bookService = BookService.getInstance();
+        int count = bookService.countBookSummaries(null, null);
+        bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, PagedBookList.PAGE_SIZE);
+        bookService.getCategories();
+        StartupTimer.getInstance().record("catalog-warm-up", started);
+        return count;
     }
     
     private void runHeadlessTests() throws Exception {
         System.out.println("Running basic database tests in headless mode...");
         
         try {
-            BookService bookService = new BookService();
-            List<Book> books = bookService.getAllBooks();
-            System.out.println("Found " + books.size() + " books in the database.");
+            BookService bookService = BookService.getInstance();
+            int bookCount = bookService.countBookSummaries(null, null);
+            System.out.println("Found " + bookCount + " books in the database.");
             
-            if (!books.isEmpty()) {
-                for (int i = 0; i < Math.min(3, books.size()); i++) {
-                    Book book = books.get(i);
-                    System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
-                }
+            List<Book> books = bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, 3);
+            for (Book book : books) {
+                System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor() + " (€" + book.getPrice() + ")");
             }
             
             if (!books.isEmpty()) {
@@ -75,7 +171,7 @@ public class Main extends Application {
         }
         
         try {
-            UserService userService = new UserService();
+            UserService userService = UserService.getInstance();
             User adminUser = userService.authenticateUser("admin", "admin123");
             
             if (adminUser != null) {
@@ -84,15 +180,7 @@ public class Main extends Application {
                 System.out.println("Admin user not found. Database may not be properly initialized.");
             }
             
-            List<User> users = userService.getAllUsers();
-            System.out.println("Found " + users.size() + " users in the database.");
-            
-            if (!users.isEmpty()) {
-                for (int i = 0; i < Math.min(3, users.size()); i++) {
-                    User user = users.get(i);
-                    System.out.println("User: " + user.getUsername() + " (Role: " + user.getRole() + ")");
-                }
-            }
+            System.out.println("Found " + userService.countUsers() + " users in the database.");
         } catch (SQLException e) {
             System.err.println("Error testing UserService: " + e.getMessage());
             e.printStackTrace();
@@ -1,20 +1,30 @@
 package com.bookshop.controllers;
 
 import com.bookshop.models.Book;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
+import com.bookshop.models.DailySales;
 import com.bookshop.models.Order;
 import com.bookshop.models.OrderItem;
+import com.bookshop.models.SalesBreakdown;
 import com.bookshop.models.User;
 import com.bookshop.services.BookService;
+import com.bookshop.services.FacetService;
 import com.bookshop.services.UserService;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 import com.bookshop.services.OrderService;
+import com.bookshop.services.SalesAnalyticsService;
 import com.bookshop.utils.DatabaseInitializer;
+import com.bookshop.utils.PagedBookList;
+import com.bookshop.utils.Log;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
@@ -35,12 +45,17 @@ import javafx.scene.layout.HBox;
 import javafx.beans.property.SimpleStringProperty;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.Comparator;
 import java.math.BigDecimal;
 
-public class AdminDashboardController {
+public class AdminDashboardController implements ChangeFeed.Listener {
+    
+    private static final Log LOG = Log.get(AdminDashboardController.class);
     
     @FXML
     private Label welcomeLabel;
@@ -105,6 +120,9 @@ public class AdminDashboardController {
     @FXML
     private TextField orderSearchField;
     
+    @FXML
+    private Button moreOrdersButton;
+    
     @FXML
     private TableView<Order> ordersTableView;
     
@@ -126,17 +144,40 @@ public class AdminDashboardController {
     @FXML
     private TableColumn<Order, Void> orderActionColumn;
     
+    @FXML
+    private ComboBox<String> salesPeriodComboBox;
+    
+    @FXML
+    private Label salesSummaryLabel;
+    
+    @FXML
+    private LineChart<String, Number> revenueChart;
+    
+    @FXML
+    private ListView<SalesBreakdown> topSellersListView;
+    
+    @FXML
+    private ListView<SalesBreakdown> categorySalesListView;
+    
     private BookService bookService;
     private User currentUser;
-    private ObservableList<Book> allBooks = FXCollections.observableArrayList();
+    private PagedBookList pagedBooks;
     private String currentCategory = "All Categories";
     private String currentSortBy = "Title (A-Z)";
+    private String orderSearchText = "";
+    private int orderSearchOffset;
+    
+    private static final int ORDER_SEARCH_PAGE_SIZE = 50;
+    private static final DateTimeFormatter SALES_DAY_FORMAT = DateTimeFormatter.ofPattern("MM-dd");
+    private static final int TOP_SELLERS_LIMIT = 10;
+    private static final String[] SALES_PERIODS = {"Last 7 days", "Last 30 days", "Last 90 days", "Last 365 days"};
+    private static final int[] SALES_PERIOD_DAYS = {7, 30, 90, 365};
     
     @SuppressWarnings("unused")
     @FXML
     public void initialize() {
-        bookService = new BookService();
-        UserService userService = new UserService();
+        bookService = BookService.getInstance();
+        UserService userService = UserService.getInstance();
         currentUser = SessionManager.getInstance().getCurrentUser();
         
         if (currentUser == null || !currentUser.isAdmin()) {
@@ -146,12 +187,11 @@ public class AdminDashboardController {
         
         welcomeLabel.setText("Welcome, " + currentUser.getFullName());
         
-        try {
+        // Queued ahead of the order loads below, which the single worker runs after it
+        AsyncTaskRunner.getInstance().submit(() -> {
             DatabaseInitializer.createTestOrders();
-        } catch (SQLException e) {
-            System.err.println("Error creating test orders: " + e.getMessage());
-            e.printStackTrace();
-        }
+            return null;
+        }, ignored -> { }, error -> LOG.error("Error creating test orders", error));
 
         configureListViews();
         
@@ -170,9 +210,16 @@ public class AdminDashboardController {
         loadBooks();
         
         loadOrders();
+        ChangeFeed.getInstance().addListener(this);
         
         loadCompletedOrders();
         
+        if (salesPeriodComboBox != null) {
+            salesPeriodComboBox.getItems().setAll(SALES_PERIODS);
+            salesPeriodComboBox.getSelectionModel().select(1);
+        }
+        loadSales();
+        
         // Force layout and refresh when returning from other screens
         if (mainTabPane != null) {
             mainTabPane.requestLayout();
@@ -265,14 +312,13 @@ public class AdminDashboardController {
     }
     
     private void handleBookSelection(Book selectedBook) {
-        if (selectedBook != null) {
+        if (selectedBook != null && selectedBook != PagedBookList.LOADING_PLACEHOLDER) {
             try {
-                SessionManager.getInstance().setCurrentBook(selectedBook);
                 ViewNavigator navigator = ViewNavigator.getInstance();
                 if (navigator.getStage() != null) {
-                    navigator.navigateTo("book_details.fxml");
+                    openFullBook(selectedBook, "book_details.fxml");
                 } else {
-                    System.err.println("Warning: ViewNavigator stage is not set. Cannot navigate to book details.");
+                    LOG.warn("ViewNavigator stage is not set. Cannot navigate to book details.");
                     Alert alert = new Alert(AlertType.WARNING);
                     alert.setTitle("Navigation Error");
                     alert.setHeaderText("Cannot navigate to book details");
@@ -280,12 +326,30 @@ public class AdminDashboardController {
                     alert.showAndWait();
                 }
             } catch (Exception e) {
-                System.err.println("Error navigating to book details: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Error navigating to book details", e);
             }
         }
     }
     
+    // Table rows are summaries without the description or cover, so the full record
+    // is read before a book is shown or edited; saving a summary would blank them
+    private void openFullBook(Book selectedBook, String view) {
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-open-book",
+            () -> bookService.getBookById(selectedBook.getId()),
+            book -> {
+                if (book == null) {
+                    statusLabel.setText("The book \"" + selectedBook.getTitle() + "\" no longer exists.");
+                    return;
+                }
+                SessionManager.getInstance().setCurrentBook(book);
+                ViewNavigator.getInstance().navigateTo(view);
+            },
+            error -> {
+                statusLabel.setText("Error loading book: " + error.getMessage());
+                LOG.error("Error loading book", error);
+            });
+    }
+    
     private void setupTableColumns() {
         titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
         authorColumn.setCellValueFactory(new PropertyValueFactory<>("author"));
@@ -320,13 +384,16 @@ public class AdminDashboardController {
                         
                         editButton.setOnAction(event -> {
                             Book book = getTableView().getItems().get(getIndex());
-                            SessionManager.getInstance().setCurrentBook(book);
-                            ViewNavigator.getInstance().navigateTo("edit_book.fxml");
+                            if (book != PagedBookList.LOADING_PLACEHOLDER) {
+                                openFullBook(book, "edit_book.fxml");
+                            }
                         });
                         
                         deleteButton.setOnAction(event -> {
                             Book book = getTableView().getItems().get(getIndex());
-                            handleBookDeletion(book);
+                            if (book != PagedBookList.LOADING_PLACEHOLDER) {
+                                handleBookDeletion(book);
+                            }
                         });
                     }
                     
@@ -352,14 +419,15 @@ public class AdminDashboardController {
         
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    bookService.deleteBook(book.getId());
-                    loadBooks();
-                    statusLabel.setText("Book deleted successfully.");
-                } catch (SQLException e) {
-                    statusLabel.setText("Error deleting book: " + e.getMessage());
-                    e.printStackTrace();
-                }
+                AsyncTaskRunner.getInstance().submit(() -> bookService.deleteBook(book.getId()),
+                    deleted -> {
+                        loadBooks();
+                        statusLabel.setText("Book deleted successfully.");
+                    },
+                    error -> {
+                        statusLabel.setText("Error deleting book: " + error.getMessage());
+                        LOG.error("Error deleting book", error);
+                    });
             }
         });
     }
@@ -367,18 +435,13 @@ public class AdminDashboardController {
     private void initializeComboBoxes() {
         categoryComboBox.getItems().add("All Categories");
         
-        try {
-            List<String> categories = bookService.getAllBooks().stream()
-                .map(Book::getCategory)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
-            
-            categoryComboBox.getItems().addAll(categories);
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading categories: " + e.getMessage());
-            e.printStackTrace();
-        }
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-categories",
+            () -> FacetService.getInstance().getFacets().getCategories(),
+            categories -> categories.forEach(category -> categoryComboBox.getItems().add(category.getValue())),
+            error -> {
+                statusLabel.setText("Error loading categories: " + error.getMessage());
+                LOG.error("Error loading categories", error);
+            });
         
         categoryComboBox.setValue("All Categories");
         
@@ -387,57 +450,56 @@ public class AdminDashboardController {
             applyFiltersAndSort();
         });
         
-        sortByComboBox.getItems().addAll(
-            "Title (A-Z)", 
-            "Title (Z-A)",
-            "Author (A-Z)", 
-            "Author (Z-A)",
-            "Publisher (A-Z)",
-            "Publisher (Z-A)",
-            "Category (A-Z)",
-            "Category (Z-A)",
-            "Price (Low to High)", 
-            "Price (High to Low)",
-            "Stock (Low to High)",
-            "Stock (High to Low)",
-            "Rating (Low to High)",
-            "Rating (High to Low)"
-        );
-        
-        sortByComboBox.setValue("Title (A-Z)");
+        for (BookSortOrder order : BookSortOrder.values()) {
+            sortByComboBox.getItems().add(order.getLabel());
+        }
+        
+        sortByComboBox.setValue(BookSortOrder.TITLE_ASC.getLabel());
         
         sortByComboBox.setOnAction(e -> {
             currentSortBy = sortByComboBox.getValue();
-            applyFiltersAndSort();
+            applySortOrder();
         });
     }
     
     private void loadBooks() {
-        try {
-            System.out.println("AdminDashboardController: loadBooks() called");
-            List<Book> books = bookService.getAllBooks();
-
-            allBooks.clear();
-            allBooks.addAll(books);
-
-            updateBooksDisplay(books);
-
-            statusLabel.setText("Books loaded successfully");
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading books: " + e.getMessage());
-            e.printStackTrace();
+        LOG.debug("loadBooks() called");
+        String category = "All Categories".equals(currentCategory) ? null : currentCategory;
+        BookFilter filter = BookFilter.of(bookSearchField != null ? bookSearchField.getText() : null, category);
+        
+        // Filtering, sorting and paging all happen in the query; only the count is read up front
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-books",
+            () -> bookService.countBookSummaries(filter),
+            count -> {
+                showBooks(new PagedBookList(bookService, filter, BookSortOrder.fromLabel(currentSortBy), count));
+                statusLabel.setText("Found " + count + " books");
+            },
+            error -> {
+                statusLabel.setText("Error loading books: " + error.getMessage());
+                LOG.error("Error loading books", error);
+            });
+    }
+    
+    private void applySortOrder() {
+        if (pagedBooks == null) {
+            loadBooks();
+            return;
         }
+        showBooks(pagedBooks.withSortOrder(BookSortOrder.fromLabel(currentSortBy)));
     }
     
-    private void updateBooksDisplay(List<Book> books) {
+    private void showBooks(PagedBookList books) {
+        if (pagedBooks != null) {
+            pagedBooks.dispose();
+        }
+        pagedBooks = books;
+        
         if (booksTableView != null) {
-            booksTableView.getItems().clear();
-            booksTableView.getItems().addAll(books);
+            booksTableView.setItems(pagedBooks);
         }
 
         if (bookListView != null) {
-            bookListView.getItems().clear();
-            bookListView.getItems().addAll(books);
+            bookListView.setItems(pagedBooks);
         }
     }
     
@@ -447,224 +509,189 @@ public class AdminDashboardController {
     }
     
     private void applyFiltersAndSort() {
-        String searchText = bookSearchField.getText().trim().toLowerCase();
-        
-        List<Book> filteredBooks = allBooks.stream()
-            .filter(book -> {
-                boolean categoryMatch = currentCategory.equals("All Categories") || 
-                                       book.getCategory().equals(currentCategory);
+        loadBooks();
+    }
+    
+    private void loadOrders() {
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-orders", () -> OrderService.getInstance().getAllOrders(),
+            orders -> {
+                // Filter out delivered orders
+                List<Order> pendingOrders = orders.stream()
+                    .filter(order -> order.getStatus() != Order.Status.DELIVERED)
+                    .collect(Collectors.toList());
                 
-                boolean searchMatch = searchText.isEmpty() || 
-                                    book.getTitle().toLowerCase().contains(searchText) || 
-                                    book.getAuthor().toLowerCase().contains(searchText) ||
-                                    book.getPublisher().toLowerCase().contains(searchText) ||
-                                    book.getCategory().toLowerCase().contains(searchText) ||
-                                    (book.getDescription() != null && book.getDescription().toLowerCase().contains(searchText));
+                if (orderListView != null) {
+                    orderListView.getItems().clear();
+                    orderListView.getItems().addAll(pendingOrders);
+                }
                 
-                return categoryMatch && searchMatch;
-            })
-            .collect(Collectors.toList());
-        
-        applySort(filteredBooks);
-        
-        updateBooksDisplay(filteredBooks);
-        
-        statusLabel.setText("Found " + filteredBooks.size() + " books");
+                if (ordersTableView != null) {
+                    ordersTableView.getItems().clear();
+                    ordersTableView.getItems().addAll(orders);
+                }
+                
+                LOG.debug("Loaded {} orders", orders.size());
+            },
+            error -> {
+                statusLabel.setText("Error loading orders: " + error.getMessage());
+                LOG.error("Error loading orders", error);
+            });
     }
     
-    private void applySort(List<Book> books) {
-        switch (currentSortBy) {
-            case "Title (A-Z)":
-                books.sort(Comparator.comparing(Book::getTitle));
-                break;
-            case "Title (Z-A)":
-                books.sort(Comparator.comparing(Book::getTitle).reversed());
-                break;
-            case "Author (A-Z)":
-                books.sort(Comparator.comparing(Book::getAuthor));
-                break;
-            case "Author (Z-A)":
-                books.sort(Comparator.comparing(Book::getAuthor).reversed());
-                break;
-            case "Publisher (A-Z)":
-                books.sort(Comparator.comparing(Book::getPublisher));
-                break;
-            case "Publisher (Z-A)":
-                books.sort(Comparator.comparing(Book::getPublisher).reversed());
-                break;
-            case "Category (A-Z)":
-                books.sort(Comparator.comparing(Book::getCategory));
-                break;
-            case "Category (Z-A)":
-                books.sort(Comparator.comparing(Book::getCategory).reversed());
-                break;
-            case "Price (Low to High)":
-                books.sort(Comparator.comparing(Book::getPrice));
-                break;
-            case "Price (High to Low)":
-                books.sort(Comparator.comparing(Book::getPrice).reversed());
-                break;
-            case "Stock (Low to High)":
-                books.sort(Comparator.comparing(Book::getStockQuantity));
-                break;
-            case "Stock (High to Low)":
-                books.sort(Comparator.comparing(Book::getStockQuantity).reversed());
-                break;
-            case "Rating (Low to High)":
-                books.sort(Comparator.comparing(Book::getAverageRating));
-                break;
-            case "Rating (High to Low)":
-                books.sort(Comparator.comparing(Book::getAverageRating).reversed());
-                break;
-            default:
-                books.sort(Comparator.comparing(Book::getTitle));
-                break;
-        }
+    private void loadCompletedOrders() {
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-completed-orders", () -> OrderService.getInstance().getAllOrders(),
+            allOrders -> {
+                List<Order> completedOrders = allOrders.stream()
+                    .filter(order -> order.getStatus() == Order.Status.DELIVERED)
+                    .collect(Collectors.toList());
+                
+                completedOrdersListView.getItems().clear();
+                completedOrdersListView.getItems().addAll(completedOrders);
+                LOG.debug("Loaded {} completed orders", completedOrders.size());
+            },
+            error -> {
+                statusLabel.setText("Error loading completed orders: " + error.getMessage());
+                LOG.error("Error loading completed orders", error);
+            });
     }
     
-    private void loadOrders() {
-        try {
-            OrderService orderService = new OrderService();
-            List<Order> orders = orderService.getAllOrders();
-            
-            // Filter out delivered orders
-            List<Order> pendingOrders = orders.stream()
-                .filter(order -> order.getStatus() != Order.Status.DELIVERED)
-                .collect(Collectors.toList());
-            
-            if (orderListView != null) {
-                orderListView.getItems().clear();
-                orderListView.getItems().addAll(pendingOrders);
-            }
-            
-            if (ordersTableView != null) {
-                ordersTableView.getItems().clear();
-                ordersTableView.getItems().addAll(orders);
-            }
-            
-            System.out.println("Loaded " + orders.size() + " orders");
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading orders: " + e.getMessage());
-            e.printStackTrace();
+    private void loadSales() {
+        if (revenueChart == null) {
+            return;
         }
+        int selected = Math.max(salesPeriodComboBox.getSelectionModel().getSelectedIndex(), 0);
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(SALES_PERIOD_DAYS[selected] - 1);
+        SalesAnalyticsService analytics = SalesAnalyticsService.getInstance();
+        
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-daily-sales", () -> analytics.getDailySales(from, to),
+            days -> {
+                XYChart.Series<String, Number> series = new XYChart.Series<>();
+                int orders = 0;
+                BigDecimal revenue = BigDecimal.ZERO;
+                for (DailySales day : days) {
+                    series.getData().add(new XYChart.Data<>(day.getDay().format(SALES_DAY_FORMAT), day.getRevenue()));
+                    orders += day.getOrders();
+                    revenue = revenue.add(day.getRevenue());
+                }
+                revenueChart.getData().setAll(List.of(series));
+                salesSummaryLabel.setText(orders + " orders, €" + revenue + " revenue");
+            },
+            error -> {
+                statusLabel.setText("Error loading sales: " + error.getMessage());
+                LOG.error("Error loading daily sales", error);
+            });
+        
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-top-sellers",
+            () -> analytics.getTopSellers(from, to, TOP_SELLERS_LIMIT),
+            books -> topSellersListView.getItems().setAll(books),
+            error -> LOG.error("Error loading top sellers", error));
+        
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-category-sales", () -> analytics.getCategorySales(from, to),
+            categories -> categorySalesListView.getItems().setAll(categories),
+            error -> LOG.error("Error loading category sales", error));
     }
     
-    private void loadCompletedOrders() {
-        try {
-            OrderService orderService = new OrderService();
-            List<Order> allOrders = orderService.getAllOrders();
-            
-            List<Order> completedOrders = allOrders.stream()
-                .filter(order -> order.getStatus() == Order.Status.DELIVERED)
-                .collect(Collectors.toList());
-            
-            completedOrdersListView.getItems().clear();
-            completedOrdersListView.getItems().addAll(completedOrders);
-            System.out.println("Loaded " + completedOrders.size() + " completed orders");
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading completed orders: " + e.getMessage());
-            e.printStackTrace();
-        }
+    @FXML
+    public void handleSalesPeriodChange(ActionEvent event) {
+        loadSales();
     }
     
     private void displayCompletedOrderDetails(Order order) {
-        try {
-            StringBuilder details = new StringBuilder();
-            details.append("Order #").append(order.getId()).append("\n");
-            details.append("Date: ").append(order.getOrderDate()).append("\n");
-            details.append("Customer ID: ").append(order.getUserId()).append("\n");
-            details.append("Total Amount: €").append(order.getTotalAmount()).append("\n");
-            details.append("Payment Method: ").append(order.getPaymentMethod()).append("\n\n");
-            
-            OrderService orderService = new OrderService();
-            List<OrderItem> items = orderService.getOrderItems(order.getId());
-            
-            details.append("Items:").append("\n");
-            for (OrderItem item : items) {
-                Book book = bookService.getBookById(item.getBookId());
-                if (book != null) {
-                    details.append(" - ").append(book.getTitle())
-                           .append(" (").append(item.getQuantity()).append(" x €")
-                           .append(item.getPrice()).append(") = €")
-                           .append(item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                           .append("\n");
-                } else {
-                    details.append(" - Unknown Book (ID: ").append(item.getBookId())
-                           .append(") - ").append(item.getQuantity()).append(" x €")
-                           .append(item.getPrice()).append("\n");
-                }
-            }
-            
-            completedOrderDetailsTextArea.setText(details.toString());
-        } catch (Exception e) {
-            completedOrderDetailsTextArea.setText("Error loading order details: " + e.getMessage());
-            e.printStackTrace();
-        }
+        StringBuilder details = new StringBuilder();
+        details.append("Order #").append(order.getId()).append("\n");
+        details.append("Date: ").append(order.getOrderDate()).append("\n");
+        details.append("Customer ID: ").append(order.getUserId()).append("\n");
+        details.append("Total Amount: €").append(order.getTotalAmount()).append("\n");
+        details.append("Payment Method: ").append(order.getPaymentMethod()).append("\n\n");
+        
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-order-details", () -> describeOrderItems(order),
+            items -> completedOrderDetailsTextArea.setText(details + items),
+            error -> {
+                completedOrderDetailsTextArea.setText("Error loading order details: " + error.getMessage());
+                LOG.error("Error loading order details", error);
+            });
     }
     
     private void showOrderDetailsDialog(Order order) {
-        try {
-            // Create dialog
-            Alert dialog = new Alert(AlertType.INFORMATION);
-            dialog.setTitle("Order Details");
-            dialog.setHeaderText("Order #" + order.getId() + " Details");
-            
-            StringBuilder details = new StringBuilder();
-            details.append("Date: ").append(order.getOrderDate()).append("\n");
-            details.append("Customer ID: ").append(order.getUserId()).append("\n");
-            details.append("Status: ").append(order.getStatus()).append("\n");
-            details.append("Total Amount: €").append(order.getTotalAmount()).append("\n");
-            details.append("Payment Method: ").append(order.getPaymentMethod()).append("\n\n");
-            
-            OrderService orderService = new OrderService();
-            List<OrderItem> items = orderService.getOrderItems(order.getId());
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-order-dialog", () -> describeOrderItems(order),
+            items -> showOrderDetailsDialog(order, items),
+            error -> {
+                statusLabel.setText("Error showing order details: " + error.getMessage());
+                LOG.error("Error showing order details", error);
+            });
+    }
+    
+    private void showOrderDetailsDialog(Order order, String items) {
+        Alert dialog = new Alert(AlertType.INFORMATION);
+        dialog.setTitle("Order Details");
+        dialog.setHeaderText("Order #" + order.getId() + " Details");
+        
+        StringBuilder details = new StringBuilder();
+        details.append("Date: ").append(order.getOrderDate()).append("\n");
+        details.append("Customer ID: ").append(order.getUserId()).append("\n");
+        details.append("Status: ").append(order.getStatus()).append("\n");
+        details.append("Total Amount: €").append(order.getTotalAmount()).append("\n");
+        details.append("Payment Method: ").append(order.getPaymentMethod()).append("\n\n");
+        details.append(items);
+        
+        dialog.setContentText(details.toString());
+        
+        if (order.getStatus() != Order.Status.DELIVERED) {
+            dialog.getButtonTypes().clear();
+            dialog.getButtonTypes().addAll(
+                ButtonType.OK, 
+                new ButtonType("Mark as Completed", ButtonBar.ButtonData.APPLY)
+            );
             
-            details.append("Items:").append("\n");
-            for (OrderItem item : items) {
-                Book book = bookService.getBookById(item.getBookId());
-                if (book != null) {
-                    details.append(" - ").append(book.getTitle())
-                           .append(" (").append(item.getQuantity()).append(" x €")
-                           .append(item.getPrice()).append(") = €")
-                           .append(item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                           .append("\n");
-                } else {
-                    details.append(" - Unknown Book (ID: ").append(item.getBookId())
-                           .append(") - ").append(item.getQuantity()).append(" x €")
-                           .append(item.getPrice()).append("\n");
+            dialog.showAndWait().ifPresent(response -> {
+                if (response.getButtonData() == ButtonBar.ButtonData.APPLY) {
+                    markOrderCompleted(order);
                 }
-            }
-            
-            dialog.setContentText(details.toString());
-            
-            if (order.getStatus() != Order.Status.DELIVERED) {
-                dialog.getButtonTypes().clear();
-                dialog.getButtonTypes().addAll(
-                    ButtonType.OK, 
-                    new ButtonType("Mark as Completed", ButtonBar.ButtonData.APPLY)
-                );
-
-                dialog.showAndWait().ifPresent(response -> {
-                    if (response.getButtonData() == ButtonBar.ButtonData.APPLY) {
-                        try {
-                            orderService.updateOrderStatus(order.getId(), "DELIVERED");
-                            statusLabel.setText("Order #" + order.getId() + " marked as completed");
-                            
-                            loadOrders();
-                            loadCompletedOrders();
-                        } catch (SQLException e) {
-                            statusLabel.setText("Error updating order status: " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-                });
+            });
+        } else {
+            dialog.showAndWait();
+        }
+    }
+    
+    // Runs on the worker; the titles of all items are read in one query
+    private String describeOrderItems(Order order) throws SQLException {
+        List<OrderItem> items = OrderService.getInstance().getOrderItems(order.getId());
+        List<Integer> bookIds = items.stream().map(OrderItem::getBookId).collect(Collectors.toList());
+        Map<Integer, Book> books = new HashMap<>();
+        for (Book book : bookService.getBookSummariesByIds(bookIds)) {
+            books.put(book.getId(), book);
+        }
+        
+        StringBuilder details = new StringBuilder("Items:\n");
+        for (OrderItem item : items) {
+            Book book = books.get(item.getBookId());
+            if (book != null) {
+                details.append(" - ").append(book.getTitle())
+                       .append(" (").append(item.getQuantity()).append(" x €")
+                       .append(item.getPrice()).append(") = €")
+                       .append(item.getPrice().multiply(new BigDecimal(item.getQuantity())))
+                       .append("\n");
             } else {
-                dialog.showAndWait();
+                details.append(" - Unknown Book (ID: ").append(item.getBookId())
+                       .append(") - ").append(item.getQuantity()).append(" x €")
+                       .append(item.getPrice()).append("\n");
             }
-        } catch (Exception e) {
-            statusLabel.setText("Error showing order details: " + e.getMessage());
-            e.printStackTrace();
         }
+        return details.toString();
+    }
+    
+    private void markOrderCompleted(Order order) {
+        AsyncTaskRunner.getInstance().submit(() -> OrderService.getInstance().updateOrderStatus(order.getId(), "DELIVERED"),
+            updated -> {
+                statusLabel.setText("Order #" + order.getId() + " marked as completed");
+                loadOrders();
+                loadCompletedOrders();
+            },
+            error -> {
+                statusLabel.setText("Error updating order status: " + error.getMessage());
+                LOG.error("Error updating order status", error);
+            });
     }
     
     @FXML
@@ -675,20 +702,19 @@ public class AdminDashboardController {
             return;
         }
         
-        try {
-            UserService userService = new UserService();
-            List<User> allUsers = userService.getAllUsers();
-            @SuppressWarnings("unused")
-            List<User> filteredUsers = allUsers.stream()
-                .filter(user -> 
-                    user.getUsername().toLowerCase().contains(searchText) || 
-                    (user.getFullName() != null && user.getFullName().toLowerCase().contains(searchText)))
-                .collect(java.util.stream.Collectors.toList());
-       
-        } catch (SQLException e) {
-            statusLabel.setText("Error searching customers: " + e.getMessage());
-            e.printStackTrace();
-        }
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-customers", () -> UserService.getInstance().getAllUsers(),
+            allUsers -> {
+                @SuppressWarnings("unused")
+                List<User> filteredUsers = allUsers.stream()
+                    .filter(user -> 
+                        user.getUsername().toLowerCase().contains(searchText) || 
+                        (user.getFullName() != null && user.getFullName().toLowerCase().contains(searchText)))
+                    .collect(java.util.stream.Collectors.toList());
+            },
+            error -> {
+                statusLabel.setText("Error searching customers: " + error.getMessage());
+                LOG.error("Error searching customers", error);
+            });
     }
     @FXML
     public void handleAddNewBook(ActionEvent event) {
@@ -696,8 +722,7 @@ public class AdminDashboardController {
         try {
             ViewNavigator.getInstance().navigateTo("edit_book.fxml");
         } catch (Exception e) {
-            System.err.println("Error navigating to edit book view: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error navigating to edit book view", e);
             
             Alert alert = new Alert(AlertType.ERROR);
             alert.setTitle("Navigation Error");
@@ -718,7 +743,7 @@ public class AdminDashboardController {
             selectedBook = bookListView.getSelectionModel().getSelectedItem();
         }
         
-        if (selectedBook == null) {
+        if (selectedBook == null || selectedBook == PagedBookList.LOADING_PLACEHOLDER) {
             Alert alert = new Alert(AlertType.WARNING);
             alert.setTitle("No Selection");
             alert.setHeaderText("No Book Selected");
@@ -727,19 +752,7 @@ public class AdminDashboardController {
             return;
         }
         
-        SessionManager.getInstance().setCurrentBook(selectedBook);
-        try {
-            ViewNavigator.getInstance().navigateTo("edit_book.fxml");
-        } catch (Exception e) {
-            System.err.println("Error navigating to edit book view: " + e.getMessage());
-            e.printStackTrace();
-            
-            Alert alert = new Alert(AlertType.ERROR);
-            alert.setTitle("Navigation Error");
-            alert.setHeaderText("Cannot navigate to edit book view");
-            alert.setContentText("Error: " + e.getMessage());
-            alert.showAndWait();
-        }
+        openFullBook(selectedBook, "edit_book.fxml");
     }
     
     @FXML
@@ -759,7 +772,7 @@ public class AdminDashboardController {
             selectedBook = bookListView.getSelectionModel().getSelectedItem();
         }
         
-        if (selectedBook == null) {
+        if (selectedBook == null || selectedBook == PagedBookList.LOADING_PLACEHOLDER) {
             Alert alert = new Alert(AlertType.WARNING);
             alert.setTitle("No Selection");
             alert.setHeaderText("No Book Selected");
@@ -773,44 +786,46 @@ public class AdminDashboardController {
     
     @FXML
     public void handleOrderSearch(ActionEvent event) {
-        String searchText = orderSearchField.getText().trim().toLowerCase();
-        try {
-            OrderService orderService = new OrderService();
-            List<Order> allOrders = orderService.getAllOrders();
-            
-            List<Order> filteredOrders = allOrders.stream()
-                .filter(order -> {
-                    // Check for matching order ID
-                    boolean idMatch = String.valueOf(order.getId()).contains(searchText);
-                    
-                    // Try to get customer name if we have searchText
-                    boolean customerMatch = false;
-                    if (!searchText.isEmpty()) {
-                        try {
-                            UserService userService = new UserService();
-                            User user = userService.getUserById(order.getUserId());
-                            if (user != null && user.getFullName() != null) {
-                                customerMatch = user.getFullName().toLowerCase().contains(searchText);
-                            }
-                        } catch (SQLException e) {
-                            // Ignore errors in getting user info for matching
-                            e.printStackTrace();
-                        }
+        orderSearchText = orderSearchField.getText().trim();
+        orderSearchOffset = 0;
+        searchOrdersPage();
+    }
+    
+    @FXML
+    public void handleMoreOrders(ActionEvent event) {
+        searchOrdersPage();
+    }
+    
+    // Reads one row past the page to learn whether another page follows
+    private void searchOrdersPage() {
+        String searchText = orderSearchText;
+        int offset = orderSearchOffset;
+        
+        AsyncTaskRunner.getInstance().submitLatest("admin-dashboard-order-search",
+            () -> OrderService.getInstance().searchOrders(searchText, ORDER_SEARCH_PAGE_SIZE + 1, offset),
+            rows -> {
+                boolean hasMore = rows.size() > ORDER_SEARCH_PAGE_SIZE;
+                List<Order> page = hasMore ? rows.subList(0, ORDER_SEARCH_PAGE_SIZE) : rows;
+                
+                if (ordersTableView != null) {
+                    if (offset == 0) {
+                        ordersTableView.getItems().clear();
                     }
-                    
-                    return idMatch || customerMatch;
-                })
-                .collect(Collectors.toList());
-            
-            if (ordersTableView != null) {
-                ordersTableView.getItems().clear();
-                ordersTableView.getItems().addAll(filteredOrders);
-                statusLabel.setText("Found " + filteredOrders.size() + " matching orders");
-            }
-        } catch (SQLException e) {
-            statusLabel.setText("Error searching orders: " + e.getMessage());
-            e.printStackTrace();
-        }
+                    ordersTableView.getItems().addAll(page);
+                    orderSearchOffset = offset + page.size();
+                    statusLabel.setText("Showing " + orderSearchOffset + " matching orders" +
+                        (hasMore ? "; press More for the next " + ORDER_SEARCH_PAGE_SIZE : ""));
+                }
+                
+                if (moreOrdersButton != null) {
+                    moreOrdersButton.setVisible(hasMore);
+                    moreOrdersButton.setManaged(hasMore);
+                }
+            },
+            error -> {
+                statusLabel.setText("Error searching orders: " + error.getMessage());
+                LOG.error("Error searching orders", error);
+            });
     }
     
     private void setupOrdersTableColumns() {
@@ -819,15 +834,10 @@ public class AdminDashboardController {
         }
         
         if (customerNameColumn != null) {
+            // Both order queries join users, so the name is already on the row
             customerNameColumn.setCellValueFactory(cellData -> {
-                try {
-                    UserService userService = new UserService();
-                    User user = userService.getUserById(cellData.getValue().getUserId());
-                    return new SimpleStringProperty(user != null ? user.getFullName() : "Unknown");
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return new SimpleStringProperty("Error");
-                }
+                String customerName = cellData.getValue().getCustomerName();
+                return new SimpleStringProperty(customerName != null ? customerName : "Unknown");
             });
         }
         
@@ -863,16 +873,7 @@ public class AdminDashboardController {
                         completeButton.setOnAction(event -> {
                             Order order = getTableView().getItems().get(getIndex());
                             if (order.getStatus() != Order.Status.DELIVERED) {
-                                try {
-                                    OrderService orderService = new OrderService();
-                                    orderService.updateOrderStatus(order.getId(), "DELIVERED");
-                                    loadOrders();
-                                    loadCompletedOrders();
-                                    statusLabel.setText("Order #" + order.getId() + " marked as completed");
-                                } catch (SQLException e) {
-                                    statusLabel.setText("Error updating order status: " + e.getMessage());
-                                    e.printStackTrace();
-                                }
+                                markOrderCompleted(order);
                             }
                         });
                     }
@@ -892,4 +893,21 @@ public class AdminDashboardController {
             });
         }
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        boolean booksChanged = changes.stream().anyMatch(change -> change.isOn("books"));
+        boolean ordersChanged = changes.stream().anyMatch(change -> change.isOn("orders"));
+        
+        javafx.application.Platform.runLater(() -> {
+            if (booksChanged) {
+                loadBooks();
+            }
+            if (ordersChanged) {
+                loadOrders();
+                loadCompletedOrders();
+                loadSales();
+            }
+        });
+    }
+}
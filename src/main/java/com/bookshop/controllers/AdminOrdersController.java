@@ -7,6 +7,9 @@ import com.bookshop.models.User;
 import com.bookshop.services.BookService;
 import com.bookshop.services.OrderService;
 import com.bookshop.services.UserService;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SceneManager;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -24,7 +27,9 @@ import java.util.List;
 import java.util.Map;
 import java.math.BigDecimal;
 
-public class AdminOrdersController {
+public class AdminOrdersController implements ChangeFeed.Listener {
+    
+    private static final Log LOG = Log.get(AdminOrdersController.class);
 
     @FXML private Button backButton;
     @FXML private Label titleLabel;
@@ -66,13 +71,14 @@ public class AdminOrdersController {
     
     @FXML
     public void initialize() {
-        orderService = new OrderService();
-        userService = new UserService();
-        bookService = new BookService();
+        orderService = OrderService.getInstance();
+        userService = UserService.getInstance();
+        bookService = BookService.getInstance();
         
         setupTables();
         setupStatusFilters();
         loadOrders(null);
+        ChangeFeed.getInstance().addListener(this);
         
         ordersTableView.getSelectionModel().selectedItemProperty().addListener((obs, oldOrder, newOrder) -> {
             if (newOrder != null) {
@@ -155,38 +161,39 @@ public class AdminOrdersController {
     }
     
     private void loadOrders(String statusFilter) {
-        try {
-            System.out.println("AdminOrdersController: Loading orders with filter: " + statusFilter);
-            List<Order> allOrders = orderService.getAllOrders();
-            System.out.println("AdminOrdersController: Found " + allOrders.size() + " orders");
-            
-            orders.clear();
-            
-            if (statusFilter == null || statusFilter.isEmpty()) {
-                orders.addAll(allOrders);
-            } else {
-                for (Order order : allOrders) {
-                    if (statusFilter.equalsIgnoreCase(order.getStatus().toString())) {
-                        orders.add(order);
+        LOG.debug("Loading orders with filter: {}", statusFilter);
+        
+        // A newer filter selection supersedes a load that is still running
+        AsyncTaskRunner.getInstance().submitLatest("admin-orders", orderService::getAllOrders,
+            allOrders -> {
+                LOG.debug("Found {} orders", allOrders.size());
+                
+                orders.clear();
+                
+                if (statusFilter == null || statusFilter.isEmpty()) {
+                    orders.addAll(allOrders);
+                } else {
+                    for (Order order : allOrders) {
+                        if (statusFilter.equalsIgnoreCase(order.getStatus().toString())) {
+                            orders.add(order);
+                        }
                     }
                 }
-            }
-            
-            ordersTableView.setItems(orders);
-            
-            if (!orders.isEmpty()) {
-                ordersTableView.getSelectionModel().select(0);
-            } else {
-                clearOrderDetails();
-            }
-            
-            statusLabel.setText("Loaded " + orders.size() + " orders");
-        } catch (Exception e) {
-            e.printStackTrace();
-            statusLabel.setText("Error loading orders: " + e.getMessage());
-            System.err.println("AdminOrdersController: Error loading orders: " + e.getMessage());
-            e.printStackTrace();
-        }
+                
+                ordersTableView.setItems(orders);
+                
+                if (!orders.isEmpty()) {
+                    ordersTableView.getSelectionModel().select(0);
+                } else {
+                    clearOrderDetails();
+                }
+                
+                statusLabel.setText("Loaded " + orders.size() + " orders");
+            },
+            error -> {
+                statusLabel.setText("Error loading orders: " + error.getMessage());
+                LOG.error("Error loading orders", error);
+            });
     }
     
     private void displayOrderDetails(Order order) {
@@ -207,7 +214,7 @@ public class AdminOrdersController {
             List<OrderItem> items = orderService.getOrderItems(order.getId());
             orderItemsTableView.setItems(FXCollections.observableArrayList(items));
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error loading items of order {}", order.getId(), e);
             statusLabel.setText("Error loading order items: " + e.getMessage());
             orderItemsTableView.setItems(FXCollections.observableArrayList());
         }
@@ -233,7 +240,7 @@ public class AdminOrdersController {
             }
             return user;
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error loading user {}", userId, e);
             return null;
         }
     }
@@ -250,7 +257,7 @@ public class AdminOrdersController {
             }
             return book;
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error loading book {}", bookId, e);
             return null;
         }
     }
@@ -285,7 +292,7 @@ public class AdminOrdersController {
                 statusLabel.setText("Failed to update order status");
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error updating order status", e);
             statusLabel.setText("Error updating order status: " + e.getMessage());
         }
     }
@@ -294,4 +301,14 @@ public class AdminOrdersController {
     private void handleBack() {
         SceneManager.getInstance().loadScene("admin_dashboard.fxml");
     }
-} 
\ No newline at end of file
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        for (ChangeFeed.Change change : changes) {
+            if (change.isOn("orders")) {
+                javafx.application.Platform.runLater(this::handleRefresh);
+                return;
+            }
+        }
+    }
+}
@@ -5,8 +5,15 @@ import com.bookshop.models.Review;
 import com.bookshop.models.User;
 import com.bookshop.services.BookService;
 import com.bookshop.services.CartService;
+import com.bookshop.services.RecommendationService;
 import com.bookshop.services.ReviewService;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.CoverPack;
+import com.bookshop.utils.ImageCache;
+import com.bookshop.utils.ReusableView;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 
@@ -16,7 +23,6 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 
@@ -31,7 +37,12 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 
 
-public class BookDetailsController {
+public class BookDetailsController implements ChangeFeed.Listener, ReusableView {
+    
+    private static final Log LOG = Log.get(BookDetailsController.class);
+    
+    private static final int BOOK_IMAGE_SIZE = 200;
+    private static final int ALSO_BOUGHT_LIMIT = 5;
     
     @FXML private Label titleLabel;
     @FXML private Label authorLabel;
@@ -68,6 +79,8 @@ public class BookDetailsController {
     @FXML private ImageView bookImageView;
     @FXML private Label imageErrorLabel;
     
+    @FXML private ListView<Book> alsoBoughtListView;
+    
     private Book currentBook;
     private User currentUser;
     private BookService bookService;
@@ -76,28 +89,9 @@ public class BookDetailsController {
     
     @FXML
     public void initialize() {
-        bookService = new BookService();
+        bookService = BookService.getInstance();
         cartService = CartService.getInstance();
-        reviewService = new ReviewService();
-        
-        currentUser = SessionManager.getInstance().getCurrentUser();
-        currentBook = SessionManager.getInstance().getCurrentBook();
-        
-        if (currentUser == null) {
-            ViewNavigator.getInstance().navigateTo("login.fxml");
-            return;
-        }
-        
-        if (currentBook == null) {
-            if (currentUser.isAdmin()) {
-                ViewNavigator.getInstance().navigateTo("admin_dashboard.fxml");
-            } else {
-                ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
-            }
-            return;
-        }
-        
-        setupRoleBasedUI();
+        reviewService = ReviewService.getInstance();
         
         reviewUserColumn.setCellValueFactory(cellData -> 
             new SimpleStringProperty(cellData.getValue().getUsername()));
@@ -120,9 +114,59 @@ public class BookDetailsController {
         reviewContentColumn.setCellValueFactory(cellData -> 
             new SimpleStringProperty(cellData.getValue().getContent()));
         
+        if (alsoBoughtListView != null) {
+            alsoBoughtListView.setCellFactory(lv -> new ListCell<Book>() {
+                @Override
+                protected void updateItem(Book book, boolean empty) {
+                    super.updateItem(book, empty);
+                    setText(empty || book == null ? null : book.getTitle() + " by " + book.getAuthor() + " - €" + book.getPrice());
+                }
+            });
+            alsoBoughtListView.setOnMouseClicked(event -> {
+                Book selected = alsoBoughtListView.getSelectionModel().getSelectedItem();
+                if (event.getClickCount() == 2 && selected != null) {
+                    openBook(selected.getId());
+                }
+            });
+        }
+    }
+    
+    @Override
+    public void onShow() {
+        currentUser = SessionManager.getInstance().getCurrentUser();
+        currentBook = SessionManager.getInstance().getCurrentBook();
+        
+        if (currentUser == null) {
+            ViewNavigator.getInstance().navigateTo("login.fxml");
+            return;
+        }
+        
+        if (currentBook == null) {
+            if (currentUser.isAdmin()) {
+                ViewNavigator.getInstance().navigateTo("admin_dashboard.fxml");
+            } else {
+                ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
+            }
+            return;
+        }
+        
+        // The view is kept between books, so nothing from the last one may linger
+        statusLabel.setText("");
+        reviewTextField.clear();
+        reviewsTableView.getItems().clear();
+        
+        setupRoleBasedUI();
+        
         displayBookDetails();
         
         loadReviews();
+        loadAlsoBought();
+        ChangeFeed.getInstance().addListener(this);
+    }
+    
+    @Override
+    public void onHide() {
+        ChangeFeed.getInstance().removeListener(this);
     }
     
     private void setupRoleBasedUI() {
@@ -144,7 +188,7 @@ public class BookDetailsController {
                 addReviewBox.setVisible(!hasReviewed);
             } catch (SQLException e) {
                 addReviewBox.setVisible(true);
-                e.printStackTrace();
+                LOG.error("Error checking whether the user reviewed book {}", currentBook.getId(), e);
             }
             
             SpinnerValueFactory.IntegerSpinnerValueFactory valueFactory = 
@@ -173,78 +217,93 @@ public class BookDetailsController {
             stockLabel.setStyle("-fx-text-fill: red;");
         }
         
-        try {
-            List<Review> reviews = reviewService.getBookReviews(currentBook.getId());
-            double averageRating = 0;
-            if (!reviews.isEmpty()) {
-                int totalRating = 0;
-                for (Review review : reviews) {
-                    totalRating += review.getRating();
+        int bookId = currentBook.getId();
+        AsyncTaskRunner.getInstance().submitLatest("book-details-rating", () -> reviewService.getBookReviews(bookId),
+            reviews -> {
+                double averageRating = 0;
+                if (!reviews.isEmpty()) {
+                    int totalRating = 0;
+                    for (Review review : reviews) {
+                        totalRating += review.getRating();
+                    }
+                    averageRating = (double) totalRating / reviews.size();
                 }
-                averageRating = (double) totalRating / reviews.size();
-            }
-            
-            DecimalFormat decimalFormat = new DecimalFormat("#.##");
-            ratingLabel.setText(decimalFormat.format(averageRating) + 
-                               " ★ (" + reviews.size() + " reviews)");
-        } catch (SQLException e) {
-            ratingLabel.setText("No ratings yet");
-            e.printStackTrace();
-        }
+                
+                DecimalFormat decimalFormat = new DecimalFormat("#.##");
+                ratingLabel.setText(decimalFormat.format(averageRating) + 
+                                   " ★ (" + reviews.size() + " reviews)");
+            },
+            error -> {
+                ratingLabel.setText("No ratings yet");
+                LOG.error("Error loading ratings for book {}", currentBook.getId(), error);
+            });
         
         descriptionTextArea.setText(currentBook.getDescription());
         
-        // Handle book image
-        try {
-            if (currentBook.getImageUrl() != null && !currentBook.getImageUrl().isEmpty()) {
-                // Load image from URL
-                Image bookImage = new Image(currentBook.getImageUrl(), 200, 200, true, true, true);
-                bookImageView.setImage(bookImage);
-                
-                // Add error handling in case the image fails to load
-                bookImage.errorProperty().addListener((observable, oldValue, newValue) -> {
-                    if (newValue) {
-                        // Load default image if the URL image fails
-                        Image defaultImage = new Image(getClass().getResourceAsStream("/images/default-book.jpg"));
-                        bookImageView.setImage(defaultImage);
-                        imageErrorLabel.setVisible(true);
-                    }
-                });
-            } else {
-                // Load default image if no URL is provided
-                Image defaultImage = new Image(getClass().getResourceAsStream("/images/default-book.jpg"));
-                bookImageView.setImage(defaultImage);
-                imageErrorLabel.setVisible(true);
-            }
-        } catch (Exception e) {
-            // Fallback to default image if any error occurs
-            Image defaultImage = new Image(getClass().getResourceAsStream("/images/default-book.jpg"));
-            bookImageView.setImage(defaultImage);
+        // Covers are cached, so reopening a book does not fetch or decode it again
+        imageErrorLabel.setVisible(false);
+        String imageUrl = currentBook.getImageUrl();
+        String isbn = currentBook.getIsbn();
+        if ((imageUrl == null || imageUrl.isEmpty()) && !CoverPack.getInstance().contains(isbn)) {
+            bookImageView.setImage(ImageCache.getInstance().getPlaceholder());
             imageErrorLabel.setVisible(true);
-            e.printStackTrace();
+        } else {
+            ImageCache.getInstance().loadCoverInto(bookImageView, isbn, imageUrl, BOOK_IMAGE_SIZE,
+                () -> imageErrorLabel.setVisible(true));
         }
     }
     
-    private void loadReviews() {
-        try {
-            List<Review> reviews = reviewService.getBookReviews(currentBook.getId());
-            System.out.println("Loaded " + reviews.size() + " reviews for book ID " + currentBook.getId());
-            
-            for (Review review : reviews) {
-                System.out.println("Review #" + review.getId() + 
-                                 " by User:" + review.getUserId() + "/" + review.getUsername() + 
-                                 " Rating:" + review.getRating() + 
-                                 " Content: " + (review.getContent() != null ? review.getContent().substring(0, Math.min(20, review.getContent().length())) + "..." : "null"));
-            }
-            
-            reviewsTableView.setItems(FXCollections.observableArrayList(reviews));
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading reviews: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            statusLabel.setText("Unexpected error: " + e.getMessage());
-            e.printStackTrace();
+    private void loadAlsoBought() {
+        if (alsoBoughtListView == null) {
+            return;
         }
+        alsoBoughtListView.getItems().clear();
+        int bookId = currentBook.getId();
+        AsyncTaskRunner.getInstance().submitLatest("book-details-also-bought",
+            () -> RecommendationService.getInstance().getRecommendations(bookId, ALSO_BOUGHT_LIMIT),
+            books -> alsoBoughtListView.getItems().setAll(books),
+            error -> LOG.error("Error loading recommendations for book {}", bookId, error));
+    }
+    
+    private void openBook(int bookId) {
+        AsyncTaskRunner.getInstance().submitLatest("book-details-open-book", () -> bookService.getBookById(bookId),
+            book -> {
+                if (book != null) {
+                    SessionManager.getInstance().setCurrentBook(book);
+                    ViewNavigator.getInstance().navigateTo("book_details.fxml");
+                }
+            },
+            error -> {
+                statusLabel.setText("Error loading book: " + error.getMessage());
+                LOG.error("Error loading book {}", bookId, error);
+            });
+    }
+    
+    private void loadReviews() {
+        int bookId = currentBook.getId();
+        AsyncTaskRunner.getInstance().submitLatest("book-details-reviews", () -> reviewService.getBookReviews(bookId),
+            reviews -> {
+                LOG.debug("Loaded {} reviews for book ID {}", reviews.size(), bookId);
+                
+                if (LOG.isDebugEnabled()) {
+                    for (Review review : reviews) {
+                        String content = review.getContent();
+                        LOG.debug("Review #{} by User:{}/{} Rating:{} Content: {}", review.getId(), review.getUserId(),
+                            review.getUsername(), review.getRating(),
+                            content != null ? content.substring(0, Math.min(20, content.length())) + "..." : "null");
+                    }
+                }
+                
+                reviewsTableView.setItems(FXCollections.observableArrayList(reviews));
+            },
+            error -> {
+                if (error instanceof SQLException) {
+                    statusLabel.setText("Error loading reviews: " + error.getMessage());
+                } else {
+                    statusLabel.setText("Unexpected error: " + error.getMessage());
+                }
+                LOG.error("Error loading reviews for book {}", bookId, error);
+            });
     }
     
     @FXML
@@ -271,7 +330,7 @@ public class BookDetailsController {
                          "ON CONFLICT (username) DO NOTHING")) {
                     stmt.executeUpdate();
                 } catch (Exception e) {
-                    System.out.println("Note: Customer user already exists or couldn't be created: " + e.getMessage());
+                    LOG.debug("Note: Customer user already exists or couldn't be created: {}", e.getMessage());
                 }
             }
             
@@ -299,7 +358,7 @@ public class BookDetailsController {
             }
         } catch (SQLException e) {
             statusLabel.setText("Error adding to cart: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error adding to cart", e);
             
             Alert alert = new Alert(AlertType.ERROR);
             alert.setTitle("Database Error");
@@ -373,11 +432,11 @@ public class BookDetailsController {
         } catch (SQLException e) {
             statusLabel.setText("Error adding review: " + e.getMessage());
             statusLabel.setStyle("-fx-text-fill: red;");
-            e.printStackTrace();
+            LOG.error("Error adding review", e);
         } catch (Exception e) {
             statusLabel.setText("Unexpected error: " + e.getMessage());
             statusLabel.setStyle("-fx-text-fill: red;");
-            e.printStackTrace();
+            LOG.error("Unexpected error", e);
         }
     }
     
@@ -413,7 +472,7 @@ public class BookDetailsController {
                     }
                 } catch (SQLException e) {
                     statusLabel.setText("Error deleting book: " + e.getMessage());
-                    e.printStackTrace();
+                    LOG.error("Error deleting book", e);
                 }
             }
         });
@@ -427,4 +486,30 @@ public class BookDetailsController {
             ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
         }
     }
-}
\ No newline at end of file
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        int bookId = currentBook.getId();
+        boolean bookChanged = changes.stream().anyMatch(change -> change.isOn("books") && change.isUpdate() && change.getId() == bookId);
+        boolean reviewsChanged = changes.stream().anyMatch(change -> change.isOn("reviews") && change.getRelatedId() == bookId);
+        
+        if (bookChanged) {
+            // Price, stock and rating may all have moved, so the whole record is re-read
+            AsyncTaskRunner.getInstance().submitLatest("book-details-refresh", () -> bookService.getBookById(bookId),
+                book -> {
+                    if (book != null && currentBook.getId() == bookId) {
+                        currentBook = book;
+                        SessionManager.getInstance().setCurrentBook(book);
+                        displayBookDetails();
+                        setupRoleBasedUI();
+                    }
+                },
+                error -> LOG.error("Error refreshing book {}", bookId, error));
+        } else if (reviewsChanged) {
+            javafx.application.Platform.runLater(() -> {
+                displayBookDetails();
+                loadReviews();
+            });
+        }
+    }
+}
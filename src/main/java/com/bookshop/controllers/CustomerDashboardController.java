@@ -1,20 +1,32 @@
 package com.bookshop.controllers;
 
 import com.bookshop.models.Book;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
+import com.bookshop.models.CatalogFacets;
+import com.bookshop.models.FacetCount;
 import com.bookshop.models.Order;
 import com.bookshop.models.User;
+import com.bookshop.observers.CartEvent;
+import com.bookshop.observers.CartEventBus;
+import com.bookshop.observers.CartObserver;
 import com.bookshop.services.BookService;
 import com.bookshop.services.CartService;
-import com.bookshop.services.CartService.CartUpdateListener;
+import com.bookshop.services.FacetService;
 import com.bookshop.services.PurchaseService;
+import com.bookshop.services.TopSellersService;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.PagedBookList;
+import com.bookshop.utils.ReusableView;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
@@ -23,13 +35,14 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.util.StringConverter;
 
 import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
-public class CustomerDashboardController implements CartUpdateListener {
+public class CustomerDashboardController implements CartObserver, ChangeFeed.Listener, ReusableView {
+    
+    private static final Log LOG = Log.get(CustomerDashboardController.class);
     
     @FXML
     private Label welcomeLabel;
@@ -91,34 +104,40 @@ public class CustomerDashboardController implements CartUpdateListener {
     @FXML
     private ComboBox<String> categoryComboBox;
     
+    @FXML
+    private ComboBox<Integer> priceComboBox;
+    
+    @FXML
+    private ComboBox<Integer> ratingComboBox;
+    
+    @FXML
+    private CheckBox inStockCheckBox;
+    
     @FXML
     private ComboBox<String> sortByComboBox;
     
+    @FXML
+    private ListView<Book> topSellersListView;
+    
     private BookService bookService;
     private CartService cartService;
+    private FacetService facetService;
+    private CatalogFacets facets;
     private User currentUser;
-    private ObservableList<Book> allBooks = FXCollections.observableArrayList();
+    private PagedBookList pagedBooks;
+    private int cartItemCount;
     private String currentCategory = "All Categories";
     private String currentSortBy = "Title";
     
+    private static final int TOP_SELLERS_SHOWN = 10;
+    private static final int ANY_PRICE = -1;
+    private static final int ANY_RATING = 0;
+    
     @FXML
     public void initialize() {
-        bookService = new BookService();
+        bookService = BookService.getInstance();
         cartService = CartService.getInstance();
-        currentUser = SessionManager.getInstance().getCurrentUser();
-        
-        if (currentUser == null) {
-            ViewNavigator.getInstance().navigateTo("login.fxml");
-            return;
-        }
-        
-        cartService.addCartUpdateListener(this);
-        
-        welcomeLabel.setText("Welcome, " + currentUser.getFullName());
-        
-        loyaltyStatusLabel.setText("Status: " + currentUser.getLoyaltyStatus());
-        
-        updateCartItemCount();
+        facetService = FacetService.getInstance();
         
         if (bookListView != null) {
             bookListView.setCellFactory(lv -> new javafx.scene.control.ListCell<Book>() {
@@ -150,6 +169,25 @@ public class CustomerDashboardController implements CartUpdateListener {
             });
         }
         
+        if (topSellersListView != null) {
+            topSellersListView.setCellFactory(lv -> new javafx.scene.control.ListCell<Book>() {
+                @Override
+                protected void updateItem(Book book, boolean empty) {
+                    super.updateItem(book, empty);
+                    if (empty || book == null) {
+                        setText(null);
+                    } else {
+                        setText(book.getTitle() + " by " + book.getAuthor() + " - " + book.getSalesCount() + " sold");
+                    }
+                }
+            });
+            topSellersListView.setOnMouseClicked(event -> {
+                if (event.getClickCount() == 2) {
+                    openBookDetails(topSellersListView.getSelectionModel().getSelectedItem());
+                }
+            });
+        }
+        
         if (booksTableView != null) {
             setupTableColumns();
         }
@@ -158,18 +196,10 @@ public class CustomerDashboardController implements CartUpdateListener {
             initializeComboBoxes();
         }
         
-        loadBooks();
-        
-        loadOrders();
-        
         if (bookListView != null) {
             bookListView.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2) {
-                    Book selectedBook = bookListView.getSelectionModel().getSelectedItem();
-                    if (selectedBook != null) {
-                        SessionManager.getInstance().setCurrentBook(selectedBook);
-                        ViewNavigator.getInstance().navigateTo("book_details.fxml");
-                    }
+                    openBookDetails(bookListView.getSelectionModel().getSelectedItem());
                 }
             });
         }
@@ -185,17 +215,56 @@ public class CustomerDashboardController implements CartUpdateListener {
                 }
             });
         }
+    }
+    
+    @Override
+    public void onShow() {
+        User previousUser = currentUser;
+        currentUser = SessionManager.getInstance().getCurrentUser();
+        
+        if (currentUser == null) {
+            ViewNavigator.getInstance().navigateTo("login.fxml");
+            return;
+        }
+        
+        if (previousUser != null && previousUser.getId() != currentUser.getId()) {
+            // The view outlived the last session, so nothing of the previous customer may show
+            searchField.clear();
+            if (orderListView != null) {
+                orderListView.getItems().clear();
+            }
+        }
+        
+        welcomeLabel.setText("Welcome, " + currentUser.getFullName());
+        
+        loyaltyStatusLabel.setText("Status: " + currentUser.getLoyaltyStatus());
+        
+        updateCartItemCount();
+        CartEventBus.getInstance().addObserver(this);
+        ChangeFeed.getInstance().addListener(this);
+        
+        if (categoryComboBox != null) {
+            loadFacets();
+        }
+        
+        loadBooks();
+        
+        loadOrders();
+        
+        showTopSellers();
         
         // Force layout and refresh when returning from other screens
         if (booksTableView != null) {
             booksTableView.refresh();
             booksTableView.requestLayout();
         }
-        
-        // Ensure application of filters and sort criteria
-        if (categoryComboBox != null && sortByComboBox != null) {
-            applyFiltersAndSort();
-        }
+    }
+    
+    @Override
+    public void onHide() {
+        // Kept while hidden, so it stops following cart and catalog changes until shown again
+        CartEventBus.getInstance().removeObserver(this);
+        ChangeFeed.getInstance().removeListener(this);
     }
     
     private void setupTableColumns() {
@@ -203,203 +272,263 @@ public class CustomerDashboardController implements CartUpdateListener {
         authorColumn.setCellValueFactory(new PropertyValueFactory<>("author"));
         publisherColumn.setCellValueFactory(new PropertyValueFactory<>("publisher"));
         priceColumn.setCellValueFactory(cellData -> {
+            if (cellData.getValue() == PagedBookList.LOADING_PLACEHOLDER) {
+                return new SimpleStringProperty("");
+            }
             double price = cellData.getValue().getPrice().doubleValue();
             return new SimpleStringProperty(String.format("€%.2f", price));
         });
         categoryColumn.setCellValueFactory(new PropertyValueFactory<>("category"));
         ratingColumn.setCellValueFactory(cellData -> {
+            if (cellData.getValue() == PagedBookList.LOADING_PLACEHOLDER) {
+                return new SimpleStringProperty("");
+            }
             double rating = cellData.getValue().getAverageRating();
             return new SimpleStringProperty(rating > 0 ? String.format("%.1f★", rating) : "No ratings");
         });
+        
+        // Rows are sorted by the database through the sort box, not by clicking headers
+        for (TableColumn<Book, ?> column : booksTableView.getColumns()) {
+            column.setSortable(false);
+        }
     }
     
     private void initializeComboBoxes() {
         categoryComboBox.getItems().add("All Categories");
-        
-        try {
-            List<String> categories = bookService.getAllBooks().stream()
-                .map(Book::getCategory)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
-            
-            categoryComboBox.getItems().addAll(categories);
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading categories: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
         categoryComboBox.setValue("All Categories");
         
         categoryComboBox.setOnAction(e -> {
             currentCategory = categoryComboBox.getValue();
             applyFiltersAndSort();
+            showTopSellers();
         });
     
-        sortByComboBox.getItems().addAll(
-            "Title (A-Z)", 
-            "Title (Z-A)",
-            "Author (A-Z)", 
-            "Author (Z-A)",
-            "Publisher (A-Z)",
-            "Publisher (Z-A)",
-            "Category (A-Z)",
-            "Category (Z-A)",
-            "Price (Low to High)", 
-            "Price (High to Low)",
-            "Rating (Low to High)",
-            "Rating (High to Low)"
-        );
-        
-        sortByComboBox.setValue("Title (A-Z)");
+        for (BookSortOrder order : BookSortOrder.values()) {
+            if (order.isForCustomers()) {
+                sortByComboBox.getItems().add(order.getLabel());
+            }
+        }
+        
+        sortByComboBox.setValue(BookSortOrder.TITLE_ASC.getLabel());
         
         sortByComboBox.setOnAction(e -> {
             currentSortBy = sortByComboBox.getValue();
-            applyFiltersAndSort();
+            applySortOrder();
         });
+        
+        if (priceComboBox != null) {
+            priceComboBox.getItems().add(ANY_PRICE);
+            for (int range = 0; range < CatalogFacets.getPriceRangeCount(); range++) {
+                priceComboBox.getItems().add(range);
+            }
+            priceComboBox.setValue(ANY_PRICE);
+            priceComboBox.setOnAction(e -> applyFiltersAndSort());
+        }
+        
+        if (ratingComboBox != null) {
+            ratingComboBox.getItems().add(ANY_RATING);
+            for (int stars = CatalogFacets.HIGHEST_MIN_RATING; stars >= 1; stars--) {
+                ratingComboBox.getItems().add(stars);
+            }
+            ratingComboBox.setValue(ANY_RATING);
+            ratingComboBox.setOnAction(e -> applyFiltersAndSort());
+        }
+        
+        if (inStockCheckBox != null) {
+            inStockCheckBox.setOnAction(e -> applyFiltersAndSort());
+        }
+        
+        showFacets();
     }
     
-    private void loadBooks() {
-        try {
-            List<Book> books = bookService.getAllBooks();
-            
-            allBooks.clear();
-            allBooks.addAll(books);
-            
-            if (booksTableView != null) {
-                booksTableView.getItems().clear();
-                booksTableView.getItems().addAll(books);
+    private void loadFacets() {
+        AsyncTaskRunner.getInstance().submitLatest("customer-dashboard-facets", facetService::getFacets,
+            loaded -> {
+                facets = loaded;
+                if (categoryComboBox.getItems().size() <= 1) {
+                    loaded.getCategories().forEach(category -> categoryComboBox.getItems().add(category.getValue()));
+                }
+                showFacets();
+            },
+            error -> {
+                statusLabel.setText("Error loading categories: " + error.getMessage());
+                LOG.error("Error loading categories", error);
+            });
+    }
+    
+    // A new converter makes the boxes redraw their entries with the latest counts
+    private void showFacets() {
+        categoryComboBox.setConverter(facetConverter(value -> "All Categories".equals(value) ? value : label(CatalogFacets.CATEGORY, value)));
+        if (priceComboBox != null) {
+            priceComboBox.setConverter(facetConverter(range -> range == ANY_PRICE ? "Any price" : label(CatalogFacets.PRICE, String.valueOf(range))));
+        }
+        if (ratingComboBox != null) {
+            ratingComboBox.setConverter(facetConverter(stars -> stars == ANY_RATING ? "Any rating" : label(CatalogFacets.RATING, String.valueOf(stars))));
+        }
+    }
+    
+    private String label(String facet, String value) {
+        if (facets != null) {
+            List<FacetCount> counts = CatalogFacets.CATEGORY.equals(facet) ? facets.getCategories() :
+                CatalogFacets.PRICE.equals(facet) ? facets.getPriceRanges() : facets.getRatings();
+            for (FacetCount count : counts) {
+                if (count.getValue().equals(value)) {
+                    return count.toString();
+                }
             }
-            
-            if (bookListView != null) {
-                bookListView.getItems().clear();
-                bookListView.getItems().addAll(books);
+        }
+        return new FacetCount(facet, value, 0).getLabel();
+    }
+    
+    private static <T> StringConverter<T> facetConverter(java.util.function.Function<T, String> toLabel) {
+        return new StringConverter<T>() {
+            @Override
+            public String toString(T value) {
+                return value == null ? "" : toLabel.apply(value);
             }
             
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading books: " + e.getMessage());
-            e.printStackTrace();
-        }
+            @Override
+            public T fromString(String text) {
+                throw new UnsupportedOperationException("Filter boxes are not editable");
+            }
+        };
     }
     
-    @FXML
-    public void handleSearchButton(ActionEvent event) {
-        applyFiltersAndSort();
+    private BookFilter currentFilter() {
+        BookFilter filter = BookFilter.of(searchField != null ? searchField.getText() : null,
+            "All Categories".equals(currentCategory) ? null : currentCategory);
+        
+        Integer range = priceComboBox != null ? priceComboBox.getValue() : null;
+        if (range != null && range != ANY_PRICE) {
+            filter.setPriceRange(CatalogFacets.getPriceRangeMin(range), CatalogFacets.getPriceRangeMax(range));
+        }
+        if (ratingComboBox != null) {
+            filter.setMinRating(ratingComboBox.getValue());
+        }
+        if (inStockCheckBox != null) {
+            filter.setInStock(inStockCheckBox.isSelected());
+        }
+        return filter;
     }
     
-    private void applyFiltersAndSort() {
-        String searchQuery = searchField.getText().trim().toLowerCase();
+    private void loadBooks() {
+        BookFilter filter = currentFilter();
         
-        List<Book> filteredBooks = allBooks.stream()
-            .filter(book -> {
-                boolean categoryMatch = currentCategory.equals("All Categories") || 
-                                       book.getCategory().equals(currentCategory);
-                
-                boolean searchMatch = searchQuery.isEmpty() || 
-                                    book.getTitle().toLowerCase().contains(searchQuery) || 
-                                    book.getAuthor().toLowerCase().contains(searchQuery) ||
-                                    book.getPublisher().toLowerCase().contains(searchQuery) ||
-                                    book.getCategory().toLowerCase().contains(searchQuery);
+        // Only the row count is fetched here; the list pulls pages as the table scrolls to them
+        AsyncTaskRunner.getInstance().submitLatest("customer-dashboard-books",
+            () -> bookService.countBookSummaries(filter),
+            count -> {
+                showBooks(new PagedBookList(bookService, filter, BookSortOrder.fromLabel(currentSortBy), count));
                 
-                return categoryMatch && searchMatch;
-            })
-            .collect(Collectors.toList());
-        
-        applySort(filteredBooks);
+                if (statusLabel != null) {
+                    statusLabel.setText("Found " + count + " books");
+                }
+            },
+            error -> {
+                statusLabel.setText("Error loading books: " + error.getMessage());
+                LOG.error("Error loading books", error);
+            });
+    }
+    
+    // The filter is unchanged, so the count stands and the new order costs one page read
+    private void applySortOrder() {
+        if (pagedBooks == null) {
+            loadBooks();
+            return;
+        }
+        showBooks(pagedBooks.withSortOrder(BookSortOrder.fromLabel(currentSortBy)));
+    }
+    
+    private void showBooks(PagedBookList books) {
+        if (pagedBooks != null) {
+            pagedBooks.dispose();
+        }
+        pagedBooks = books;
         
         if (booksTableView != null) {
-            booksTableView.getItems().clear();
-            booksTableView.getItems().addAll(filteredBooks);
+            booksTableView.setItems(pagedBooks);
         }
         
         if (bookListView != null) {
-            bookListView.getItems().clear();
-            bookListView.getItems().addAll(filteredBooks);
+            bookListView.setItems(pagedBooks);
         }
-        
-        statusLabel.setText("Found " + filteredBooks.size() + " books");
     }
     
-    private void applySort(List<Book> books) {
-        switch (currentSortBy) {
-            case "Title (A-Z)":
-                books.sort(Comparator.comparing(Book::getTitle));
-                break;
-            case "Title (Z-A)":
-                books.sort(Comparator.comparing(Book::getTitle).reversed());
-                break;
-            case "Author (A-Z)":
-                books.sort(Comparator.comparing(Book::getAuthor));
-                break;
-            case "Author (Z-A)":
-                books.sort(Comparator.comparing(Book::getAuthor).reversed());
-                break;
-            case "Publisher (A-Z)":
-                books.sort(Comparator.comparing(Book::getPublisher));
-                break;
-            case "Publisher (Z-A)":
-                books.sort(Comparator.comparing(Book::getPublisher).reversed());
-                break;
-            case "Category (A-Z)":
-                books.sort(Comparator.comparing(Book::getCategory));
-                break;
-            case "Category (Z-A)":
-                books.sort(Comparator.comparing(Book::getCategory).reversed());
-                break;
-            case "Price (Low to High)":
-                books.sort(Comparator.comparing(Book::getPrice));
-                break;
-            case "Price (High to Low)":
-                books.sort(Comparator.comparing(Book::getPrice).reversed());
-                break;
-            case "Rating (Low to High)":
-                books.sort(Comparator.comparing(Book::getAverageRating));
-                break;
-            case "Rating (High to Low)":
-                books.sort(Comparator.comparing(Book::getAverageRating).reversed());
-                break;
-            default:
-                books.sort(Comparator.comparing(Book::getTitle));
-                break;
+    private void showTopSellers() {
+        if (topSellersListView == null) {
+            return;
         }
+        // Answered from memory, so it is cheap enough to call on every order change
+        String category = "All Categories".equals(currentCategory) ? null : currentCategory;
+        topSellersListView.getItems().setAll(TopSellersService.getInstance().getTopSellers(category, TOP_SELLERS_SHOWN));
     }
     
-    private void loadOrders() {
-        try {
-            System.out.println("CustomerDashboardController: Loading orders for user ID " + currentUser.getId());
-            
-            PurchaseService purchaseService = new PurchaseService();
-            List<Order> orders = purchaseService.getOrdersByUserId(currentUser.getId());
-            
-            System.out.println("CustomerDashboardController: Found " + orders.size() + " orders");
-            
-            orderListView.getItems().clear();
-            orderListView.getItems().addAll(orders);
-            
-            if (orders.isEmpty()) {
-                statusLabel.setText("You have no orders yet");
-            } else {
-                statusLabel.setText("Found " + orders.size() + " orders");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error loading orders: " + e.getMessage());
-            e.printStackTrace();
-            statusLabel.setText("Error loading orders: " + e.getMessage());
+    @FXML
+    public void handleSearchButton(ActionEvent event) {
+        applyFiltersAndSort();
+    }
+    
+    private void applyFiltersAndSort() {
+        loadBooks();
+    }
+    
+    private void openBookDetails(Book selectedBook) {
+        if (selectedBook == null || selectedBook == PagedBookList.LOADING_PLACEHOLDER) {
+            return;
         }
+        
+        // Table rows are summaries, so the full record is read only for the book being opened
+        AsyncTaskRunner.getInstance().submitLatest("customer-dashboard-open-book",
+            () -> bookService.getBookById(selectedBook.getId()),
+            book -> {
+                SessionManager.getInstance().setCurrentBook(book != null ? book : selectedBook);
+                ViewNavigator.getInstance().navigateTo("book_details.fxml");
+            },
+            error -> {
+                statusLabel.setText("Error loading book: " + error.getMessage());
+                LOG.error("Error loading book", error);
+            });
+    }
+    
+    private void loadOrders() {
+        LOG.debug("Loading orders for user ID {}", currentUser.getId());
+        int userId = currentUser.getId();
+        
+        AsyncTaskRunner.getInstance().submitLatest("customer-dashboard-orders",
+            () -> PurchaseService.getInstance().getOrdersByUserId(userId),
+            orders -> {
+                LOG.debug("Found {} orders", orders.size());
+                
+                orderListView.getItems().clear();
+                orderListView.getItems().addAll(orders);
+                
+                if (orders.isEmpty()) {
+                    statusLabel.setText("You have no orders yet");
+                } else {
+                    statusLabel.setText("Found " + orders.size() + " orders");
+                }
+            },
+            error -> {
+                LOG.error("Error loading orders", error);
+                statusLabel.setText("Error loading orders: " + error.getMessage());
+            });
     }
     
     private void updateCartItemCount() {
         try {
-            int count = cartService.getCartItemCount(currentUser.getId());
-            cartItemCountLabel.setText(count + " item" + (count != 1 ? "s" : ""));
-            
-            viewCartButton.setDisable(count == 0);
+            cartItemCount = cartService.getCartItemCount(currentUser.getId());
+            showCartItemCount();
         } catch (SQLException e) {
             statusLabel.setText("Error getting cart count: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error getting cart count", e);
         }
     }
     
+    private void showCartItemCount() {
+        cartItemCountLabel.setText(cartItemCount + " item" + (cartItemCount != 1 ? "s" : ""));
+        viewCartButton.setDisable(cartItemCount == 0);
+    }
+    
     @FXML
     public void handleViewCartButton(ActionEvent event) {
         ViewNavigator.getInstance().navigateTo("shopping_cart.fxml");
@@ -407,12 +536,11 @@ public class CustomerDashboardController implements CartUpdateListener {
     
     @FXML
     public void handleViewOrdersButton(ActionEvent event) {
-        System.out.println("Handling View Orders button click");
+        LOG.debug("Handling View Orders button click");
         try {
             ViewNavigator.getInstance().navigateTo("customer_orders.fxml");
         } catch (Exception e) {
-            System.err.println("Error navigating to orders view: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error navigating to orders view", e);
             statusLabel.setText("Error: Could not load orders view");
         }
     }
@@ -425,26 +553,14 @@ public class CustomerDashboardController implements CartUpdateListener {
     @FXML
     public void handleBookTableClick(javafx.scene.input.MouseEvent event) {
         if (booksTableView != null && event.getClickCount() == 2) {
-            Book selectedBook = booksTableView.getSelectionModel().getSelectedItem();
-            if (selectedBook != null) {
-                SessionManager.getInstance().setCurrentBook(selectedBook);
-                ViewNavigator.getInstance().navigateTo("book_details.fxml");
-                loadBooks();
-                applyFiltersAndSort();
-            }
+            openBookDetails(booksTableView.getSelectionModel().getSelectedItem());
         }
     }
     
     @FXML
     public void handleBookListViewClick(javafx.scene.input.MouseEvent event) {
         if (bookListView != null && event.getClickCount() == 2) {
-            Book selectedBook = bookListView.getSelectionModel().getSelectedItem();
-            if (selectedBook != null) {
-                SessionManager.getInstance().setCurrentBook(selectedBook);
-                ViewNavigator.getInstance().navigateTo("book_details.fxml");
-                loadBooks();
-                applyFiltersAndSort();
-            }
+            openBookDetails(bookListView.getSelectionModel().getSelectedItem());
         }
     }
     
@@ -459,19 +575,18 @@ public class CustomerDashboardController implements CartUpdateListener {
             selectedBook = bookListView.getSelectionModel().getSelectedItem();
         }
         
-        if (selectedBook != null) {
+        if (selectedBook != null && selectedBook != PagedBookList.LOADING_PLACEHOLDER) {
             try {
                 boolean success = cartService.addToCart(currentUser.getId(), selectedBook.getId(), 1);
                 
                 if (success) {
                     statusLabel.setText(selectedBook.getTitle() + " added to cart");
-                    updateCartItemCount();
                 } else {
                     statusLabel.setText("Failed to add to cart");
                 }
             } catch (SQLException e) {
                 statusLabel.setText("Error adding to cart: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Error adding to cart", e);
             }
         } else {
             statusLabel.setText("Please select a book to add to cart");
@@ -480,8 +595,6 @@ public class CustomerDashboardController implements CartUpdateListener {
     
     @FXML
     public void handleLogoutButton(ActionEvent event) {
-        cartService.removeCartUpdateListener(this);
-        
         SessionManager.getInstance().logout();
         ViewNavigator.getInstance().navigateTo("login.fxml");
     }
@@ -492,9 +605,67 @@ public class CustomerDashboardController implements CartUpdateListener {
     }
     
     @Override
-    public void onCartUpdated(int userId) {
-        if (userId == currentUser.getId()) {
-            updateCartItemCount();
+    public void update(CartEvent event) {
+        if (event.getUserId() == currentUser.getId()) {
+            // Events arrive on the cart event thread
+            javafx.application.Platform.runLater(() -> applyCartEvent(event));
+        }
+    }
+    
+    private void applyCartEvent(CartEvent event) {
+        switch (event.getType()) {
+            case ITEM_ADDED:
+                cartItemCount++;
+                break;
+            case ITEM_REMOVED:
+                cartItemCount = Math.max(0, cartItemCount - 1);
+                break;
+            case CART_CLEARED:
+                cartItemCount = 0;
+                break;
+            default:
+                return;
+        }
+        showCartItemCount();
+    }
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        javafx.application.Platform.runLater(() -> applyDatabaseChanges(changes));
+    }
+    
+    private void applyDatabaseChanges(List<ChangeFeed.Change> changes) {
+        boolean reloadBooks = false;
+        boolean reloadOrders = false;
+        boolean ordersChanged = false;
+        boolean booksChanged = false;
+        
+        for (ChangeFeed.Change change : changes) {
+            if (change.isOn("books")) {
+                booksChanged = true;
+                // An edited book only needs its own page re-read; added or removed ones shift every row
+                if (!change.isUpdate()) {
+                    reloadBooks = true;
+                } else if (pagedBooks != null) {
+                    pagedBooks.reloadBook(change.getId());
+                }
+            } else if (change.isOn("orders")) {
+                ordersChanged = true;
+                reloadOrders |= change.getRelatedId() == currentUser.getId();
+            }
+        }
+        
+        if (reloadBooks) {
+            loadBooks();
+        }
+        if (booksChanged && categoryComboBox != null) {
+            loadFacets();
+        }
+        if (reloadOrders) {
+            loadOrders();
+        }
+        if (ordersChanged) {
+            showTopSellers();
         }
     }
-}
\ No newline at end of file
+}
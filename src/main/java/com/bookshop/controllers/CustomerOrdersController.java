@@ -4,6 +4,7 @@ import com.bookshop.models.Order;
 import com.bookshop.models.OrderItem;
 import com.bookshop.models.User;
 import com.bookshop.services.PurchaseService;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 
@@ -22,6 +23,8 @@ import java.util.List;
 
 public class CustomerOrdersController {
     
+    private static final Log LOG = Log.get(CustomerOrdersController.class);
+    
     @FXML private TableView<Order> ordersTableView;
     @FXML private TableColumn<Order, String> orderIdColumn;
     @FXML private TableColumn<Order, String> orderDateColumn;
@@ -46,15 +49,15 @@ public class CustomerOrdersController {
     private ObservableList<Order> userOrders;
     
     public void refreshView() {
-        System.out.println("Refreshing Customer Orders view");
+        LOG.debug("Refreshing Customer Orders view");
         User sessionUser = SessionManager.getInstance().getCurrentUser();
         if (sessionUser != null) {
-            System.out.println("Session user found: ID=" + sessionUser.getId() + ", Name=" + sessionUser.getFullName());
+            LOG.debug("Session user found: ID={}, Name={}", sessionUser.getId(), sessionUser.getFullName());
             currentUser = sessionUser;
             
             loadOrders();
         } else {
-            System.err.println("No user in session!");
+            LOG.warn("No user in session!");
             statusLabel.setText("Error: No user logged in");
             ViewNavigator.getInstance().navigateTo("login.fxml");
         }
@@ -62,16 +65,16 @@ public class CustomerOrdersController {
     
     @FXML
     public void initialize() {
-        purchaseService = new PurchaseService();
+        purchaseService = PurchaseService.getInstance();
         currentUser = SessionManager.getInstance().getCurrentUser();
         
         if (currentUser == null) {
-            System.err.println("No user in session during initialize!");
+            LOG.warn("No user in session during initialize!");
             ViewNavigator.getInstance().navigateTo("login.fxml");
             return;
         }
         
-        System.out.println("Initializing Customer Orders Controller for user ID=" + currentUser.getId());
+        LOG.debug("Initializing Customer Orders Controller for user ID={}", currentUser.getId());
         
         purchaseService.checkDatabaseTables();
         
@@ -126,13 +129,13 @@ public class CustomerOrdersController {
     private void loadOrders() {
         try {
             String userInfo = "User ID: " + currentUser.getId() + ", Name: " + currentUser.getFullName();
-            System.out.println("Loading orders for " + userInfo);
+            LOG.debug("Loading orders for {}", userInfo);
             
             User sessionUser = SessionManager.getInstance().getCurrentUser();
             if (sessionUser != null) {
-                System.out.println("Session user ID: " + sessionUser.getId() + ", Name: " + sessionUser.getFullName());
+                LOG.debug("Session user ID: {}, Name: {}", sessionUser.getId(), sessionUser.getFullName());
                 if (sessionUser.getId() != currentUser.getId()) {
-                    System.out.println("WARNING: Session user doesn't match controller user!");
+                    LOG.warn("Session user doesn't match controller user");
                     currentUser = sessionUser;
                 }
             }
@@ -140,7 +143,7 @@ public class CustomerOrdersController {
             statusLabel.setText("Loading orders for " + userInfo);
             
             List<Order> orders = purchaseService.getOrdersByUserId(currentUser.getId());
-            System.out.println("Found " + orders.size() + " orders for user ID " + currentUser.getId());
+            LOG.debug("Found {} orders for user ID {}", orders.size(), currentUser.getId());
             
             if (orders.isEmpty()) {
                 statusLabel.setText("You don't have any orders yet. User ID: " + currentUser.getId());
@@ -163,12 +166,10 @@ public class CustomerOrdersController {
             }
             
         } catch (SQLException e) {
-            System.err.println("SQL error loading orders: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("SQL error loading orders", e);
             statusLabel.setText("Database error: " + e.getMessage());
         } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected error", e);
             statusLabel.setText("Error: " + e.getMessage());
         }
     }
@@ -239,7 +240,7 @@ public class CustomerOrdersController {
                     }
                 } catch (SQLException e) {
                     statusLabel.setText("Error cancelling order: " + e.getMessage());
-                    e.printStackTrace();
+                    LOG.error("Error cancelling order", e);
                 }
             }
         });
@@ -278,8 +279,7 @@ public class CustomerOrdersController {
                         statusLabel.setText("Failed to delete order #" + selectedOrder.getId());
                     }
                 } catch (SQLException e) {
-                    System.err.println("Error deleting order: " + e.getMessage());
-                    e.printStackTrace();
+                    LOG.error("Error deleting order", e);
                     statusLabel.setText("Error deleting order: " + e.getMessage());
                 }
             }
@@ -3,6 +3,7 @@ package com.bookshop.controllers;
 import com.bookshop.models.Book;
 import com.bookshop.models.User;
 import com.bookshop.services.BookService;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 import javafx.collections.FXCollections;
@@ -18,6 +19,8 @@ import java.util.ResourceBundle;
 
 public class EditBookController implements Initializable {
     
+    private static final Log LOG = Log.get(EditBookController.class);
+    
     @FXML private Label titleLabel;
     @FXML private TextField bookTitleField;
     @FXML private TextField authorField;
@@ -44,7 +47,7 @@ public class EditBookController implements Initializable {
             return;
         }
         
-        bookService = new BookService();
+        bookService = BookService.getInstance();
         
         initializeCategoryComboBox();
         initializeStockSpinner();
@@ -149,7 +152,7 @@ public class EditBookController implements Initializable {
             
         } catch (Exception e) {
             showError("Error saving book: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error saving book", e);
         }
     }
     
@@ -2,6 +2,7 @@ package com.bookshop.controllers;
 
 import com.bookshop.models.User;
 import com.bookshop.services.UserService;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 
@@ -19,6 +20,8 @@ import java.io.IOException;
 
 public class LoginController {
     
+    private static final Log LOG = Log.get(LoginController.class);
+    
     @FXML
     private TextField usernameField;
     
@@ -32,7 +35,7 @@ public class LoginController {
     
     @FXML
     private void initialize() {
-        userService = new UserService();
+        userService = UserService.getInstance();
     }
     
     @FXML
@@ -61,30 +64,30 @@ public class LoginController {
             }
         } catch (Exception e) {
             messageLabel.setText("Error: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Login failed", e);
         }
     }
     
     @FXML
     private void handleRegister(ActionEvent event) {
         try {
-            System.out.println("Attempting to load register view...");
+            LOG.debug("Attempting to load register view...");
             
             try {
-                System.out.println("Trying to use ViewNavigator...");
+                LOG.debug("Trying to use ViewNavigator...");
                 ViewNavigator.getInstance().navigateTo("register.fxml");
                 return;
             } catch (Exception e) {
-                System.out.println("ViewNavigator failed: " + e.getMessage());
+                LOG.debug("ViewNavigator failed: {}", e.getMessage());
             }
             
-            System.out.println("Trying to load from /views/register.fxml");
+            LOG.debug("Trying to load from /views/register.fxml");
             java.net.URL viewsUrl = getClass().getResource("/views/register.fxml");
-            System.out.println("Views URL: " + viewsUrl);
+            LOG.debug("Views URL: {}", viewsUrl);
             
-            System.out.println("Trying to load from /fxml/register.fxml");
+            LOG.debug("Trying to load from /fxml/register.fxml");
             java.net.URL fxmlUrl = getClass().getResource("/fxml/register.fxml");
-            System.out.println("FXML URL: " + fxmlUrl);
+            LOG.debug("FXML URL: {}", fxmlUrl);
             
             java.net.URL url = viewsUrl != null ? viewsUrl : fxmlUrl;
             
@@ -92,7 +95,7 @@ public class LoginController {
                 throw new IOException("Could not find register.fxml in any location");
             }
             
-            System.out.println("Loading from URL: " + url);
+            LOG.debug("Loading from URL: {}", url);
             
             Parent root = FXMLLoader.load(url);
             
@@ -103,8 +106,7 @@ public class LoginController {
             stage.show();
         } catch (Exception e) {
             messageLabel.setText("Error loading registration page: " + e.getMessage());
-            System.err.println("Error loading register view: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error loading register view", e);
         }
     }
     
@@ -121,24 +123,12 @@ public class LoginController {
             stage.show();
         } catch (Exception e) {
             messageLabel.setText("Error loading admin dashboard: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error loading admin dashboard", e);
         }
     }
     
     private void loadCustomerDashboard() {
-        try {
-            Parent root = FXMLLoader.load(getClass().getResource("/views/customer_dashboard.fxml"));
-            if (root == null) {
-                root = FXMLLoader.load(getClass().getResource("/fxml/customer_dashboard.fxml"));
-            }
-            Scene scene = new Scene(root);
-            
-            Stage stage = (Stage) usernameField.getScene().getWindow();
-            stage.setScene(scene);
-            stage.show();
-        } catch (Exception e) {
-            messageLabel.setText("Error loading customer dashboard: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Usually parsed in the background while the login screen was up
+        ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.bookshop.controllers;
 
 import com.bookshop.models.User;
 import com.bookshop.services.AuthService;
+import com.bookshop.utils.Log;
 import com.bookshop.utils.ViewNavigator;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -21,6 +22,8 @@ import java.util.regex.Pattern;
 
 public class RegisterController implements Initializable {
     
+    private static final Log LOG = Log.get(RegisterController.class);
+    
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
     @FXML private PasswordField confirmPasswordField;
@@ -102,7 +105,7 @@ public class RegisterController implements Initializable {
             
         } catch (Exception e) {
             showError("Registration error: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Registration error", e);
         }
     }
     
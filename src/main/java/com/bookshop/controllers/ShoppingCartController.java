@@ -1,12 +1,20 @@
 package com.bookshop.controllers;
 
 import com.bookshop.models.CartItem;
+import com.bookshop.models.Money;
 import com.bookshop.models.Order;
 import com.bookshop.models.User;
+import com.bookshop.observers.CartEvent;
+import com.bookshop.observers.CartEventBus;
+import com.bookshop.observers.CartObserver;
 import com.bookshop.services.CartService;
-import com.bookshop.services.CartService.CartUpdateListener;
 import com.bookshop.services.PaymentStrategy;
+import com.bookshop.services.PromotionService;
 import com.bookshop.services.PurchaseService;
+import com.bookshop.utils.AsyncTaskRunner;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.ReusableView;
 import com.bookshop.utils.SessionManager;
 import com.bookshop.utils.ViewNavigator;
 
@@ -21,8 +29,12 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ShoppingCartController implements CartUpdateListener {
+public class ShoppingCartController implements CartObserver, ChangeFeed.Listener, ReusableView {
+    
+    private static final Log LOG = Log.get(ShoppingCartController.class);
     
     @FXML private TableView<CartItem> cartTableView;
     @FXML private TableColumn<CartItem, String> titleColumn;
@@ -49,15 +61,7 @@ public class ShoppingCartController implements CartUpdateListener {
     @FXML
     public void initialize() {
         cartService = CartService.getInstance();
-        purchaseService = new PurchaseService();
-        currentUser = SessionManager.getInstance().getCurrentUser();
-        
-        if (currentUser == null) {
-            ViewNavigator.getInstance().navigateTo("login.fxml");
-            return;
-        }
-        
-        cartService.addCartUpdateListener(this);
+        purchaseService = PurchaseService.getInstance();
         
         titleColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getBookTitle()));
         authorColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getBookAuthor()));
@@ -74,8 +78,6 @@ public class ShoppingCartController implements CartUpdateListener {
         paymentMethodComboBox.getItems().addAll("Credit Card", "PayPal", "Bank Transfer");
         paymentMethodComboBox.getSelectionModel().selectFirst();
         
-        loadCartItems();
-        
         cartTableView.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
             boolean hasSelection = newSelection != null;
             increaseQuantityButton.setDisable(!hasSelection);
@@ -84,31 +86,81 @@ public class ShoppingCartController implements CartUpdateListener {
         });
     }
     
-    private void loadCartItems() {
-        try {
-            cartItems = FXCollections.observableArrayList(cartService.getCartItems(currentUser.getId()));
-            cartTableView.setItems(cartItems);
-            
-            updateTotal();
-            
-            boolean hasItems = !cartItems.isEmpty();
-            checkoutButton.setDisable(!hasItems);
-            clearCartButton.setDisable(!hasItems);
-            
-        } catch (SQLException e) {
-            statusLabel.setText("Error loading cart: " + e.getMessage());
-            e.printStackTrace();
+    @Override
+    public void onShow() {
+        currentUser = SessionManager.getInstance().getCurrentUser();
+        
+        if (currentUser == null) {
+            ViewNavigator.getInstance().navigateTo("login.fxml");
+            return;
         }
+        
+        statusLabel.setText("");
+        CartEventBus.getInstance().addObserver(this);
+        ChangeFeed.getInstance().addListener(this);
+        
+        loadCartItems();
+    }
+    
+    @Override
+    public void onHide() {
+        CartEventBus.getInstance().removeObserver(this);
+        ChangeFeed.getInstance().removeListener(this);
+    }
+    
+    private void loadCartItems() {
+        int userId = currentUser.getId();
+        
+        AsyncTaskRunner.getInstance().submitLatest("shopping-cart-items", () -> cartService.getCartItems(userId),
+            items -> {
+                cartItems = FXCollections.observableArrayList(items);
+                cartTableView.setItems(cartItems);
+                
+                updateTotal();
+                updateCartButtons();
+            },
+            error -> {
+                statusLabel.setText("Error loading cart: " + error.getMessage());
+                LOG.error("Error loading cart", error);
+            });
+    }
+    
+    private void updateCartButtons() {
+        boolean hasItems = cartItems != null && !cartItems.isEmpty();
+        checkoutButton.setDisable(!hasItems);
+        clearCartButton.setDisable(!hasItems);
     }
     
     private void updateTotal() {
-        try {
-            BigDecimal total = cartService.calculateTotal(currentUser.getId());
-            NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+        if (cartItems == null) {
+            return;
+        }
+        
+        // The table already holds every line, so the total is summed here rather than re-queried
+        long totalMinorUnits = 0;
+        for (CartItem item : cartItems) {
+            totalMinorUnits = Math.addExact(totalMinorUnits, item.getSubtotalMinorUnits());
+        }
+        BigDecimal total = Money.toBigDecimal(totalMinorUnits);
+        
+        // Promotions are priced on the worker, which also covers the rare load before they are compiled
+        List<CartItem> pricedItems = new ArrayList<>(cartItems);
+        AsyncTaskRunner.getInstance().submitLatest("shopping-cart-total",
+            () -> PromotionService.getInstance().calculateDiscount(pricedItems),
+            promotionDiscount -> showTotal(total, promotionDiscount),
+            error -> {
+                LOG.error("Error pricing promotions", error);
+                showTotal(total, BigDecimal.ZERO);
+            });
+    }
+    
+    private void showTotal(BigDecimal total, BigDecimal promotionDiscount) {
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+        if (promotionDiscount.signum() > 0) {
+            totalLabel.setText("Total: " + currencyFormat.format(total.subtract(promotionDiscount)) +
+                               " (promotions -" + currencyFormat.format(promotionDiscount) + ")");
+        } else {
             totalLabel.setText("Total: " + currencyFormat.format(total));
-        } catch (SQLException e) {
-            statusLabel.setText("Error calculating total: " + e.getMessage());
-            e.printStackTrace();
         }
     }
     
@@ -116,21 +168,7 @@ public class ShoppingCartController implements CartUpdateListener {
     public void handleIncreaseQuantity(ActionEvent event) {
         CartItem selectedItem = cartTableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
-            try {
-                int newQuantity = selectedItem.getQuantity() + 1;
-                boolean success = cartService.updateCartItemQuantity(selectedItem.getId(), newQuantity);
-                
-                if (success) {
-                    selectedItem.setQuantity(newQuantity);
-                    cartTableView.refresh();
-                    updateTotal();
-                } else {
-                    statusLabel.setText("Could not increase quantity. Check book availability.");
-                }
-            } catch (SQLException e) {
-                statusLabel.setText("Error updating quantity: " + e.getMessage());
-                e.printStackTrace();
-            }
+            changeQuantity(selectedItem, selectedItem.getQuantity() + 1, "Could not increase quantity. Check book availability.");
         }
     }
     
@@ -138,45 +176,49 @@ public class ShoppingCartController implements CartUpdateListener {
     public void handleDecreaseQuantity(ActionEvent event) {
         CartItem selectedItem = cartTableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null && selectedItem.getQuantity() > 1) {
-            try {
-                int newQuantity = selectedItem.getQuantity() - 1;
-                boolean success = cartService.updateCartItemQuantity(selectedItem.getId(), newQuantity);
-                
+            changeQuantity(selectedItem, selectedItem.getQuantity() - 1, "Could not decrease quantity.");
+        }
+    }
+    
+    private void changeQuantity(CartItem item, int newQuantity, String failureMessage) {
+        int itemId = item.getId();
+        
+        AsyncTaskRunner.getInstance().submit(() -> cartService.updateCartItemQuantity(itemId, newQuantity),
+            success -> {
                 if (success) {
-                    selectedItem.setQuantity(newQuantity);
+                    item.setQuantity(newQuantity);
                     cartTableView.refresh();
                     updateTotal();
                 } else {
-                    statusLabel.setText("Could not decrease quantity.");
+                    statusLabel.setText(failureMessage);
                 }
-            } catch (SQLException e) {
-                statusLabel.setText("Error updating quantity: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }
+            },
+            error -> {
+                statusLabel.setText("Error updating quantity: " + error.getMessage());
+                LOG.error("Error updating quantity", error);
+            });
     }
     
     @FXML
     public void handleRemoveItem(ActionEvent event) {
         CartItem selectedItem = cartTableView.getSelectionModel().getSelectedItem();
         if (selectedItem != null) {
-            try {
-                boolean success = cartService.removeFromCart(selectedItem.getId());
-                
-                if (success) {
-                    cartItems.remove(selectedItem);
-                    updateTotal();
-                    
-                    boolean hasItems = !cartItems.isEmpty();
-                    checkoutButton.setDisable(!hasItems);
-                    clearCartButton.setDisable(!hasItems);
-                } else {
-                    statusLabel.setText("Could not remove item from cart.");
-                }
-            } catch (SQLException e) {
-                statusLabel.setText("Error removing item: " + e.getMessage());
-                e.printStackTrace();
-            }
+            int itemId = selectedItem.getId();
+            
+            AsyncTaskRunner.getInstance().submit(() -> cartService.removeFromCart(itemId),
+                success -> {
+                    if (success) {
+                        cartItems.remove(selectedItem);
+                        updateTotal();
+                        updateCartButtons();
+                    } else {
+                        statusLabel.setText("Could not remove item from cart.");
+                    }
+                },
+                error -> {
+                    statusLabel.setText("Error removing item: " + error.getMessage());
+                    LOG.error("Error removing item", error);
+                });
         }
     }
     
@@ -189,42 +231,44 @@ public class ShoppingCartController implements CartUpdateListener {
         
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    boolean success = cartService.clearCart(currentUser.getId());
-                    
-                    if (success) {
-                        cartItems.clear();
-                        updateTotal();
-                        
-                        checkoutButton.setDisable(true);
-                        clearCartButton.setDisable(true);
-                        
-                        statusLabel.setText("Cart cleared successfully.");
-                    } else {
-                        statusLabel.setText("Failed to clear cart.");
-                    }
-                } catch (SQLException e) {
-                    statusLabel.setText("Error clearing cart: " + e.getMessage());
-                    e.printStackTrace();
-                }
+                int userId = currentUser.getId();
+                
+                AsyncTaskRunner.getInstance().submit(() -> cartService.clearCart(userId),
+                    success -> {
+                        if (success) {
+                            cartItems.clear();
+                            updateTotal();
+                            
+                            checkoutButton.setDisable(true);
+                            clearCartButton.setDisable(true);
+                            
+                            statusLabel.setText("Cart cleared successfully.");
+                        } else {
+                            statusLabel.setText("Failed to clear cart.");
+                        }
+                    },
+                    error -> {
+                        statusLabel.setText("Error clearing cart: " + error.getMessage());
+                        LOG.error("Error clearing cart", error);
+                    });
             }
         });
     }
     
     @FXML
     public void handleCheckout(ActionEvent event) {
-        if (cartItems.isEmpty()) {
+        if (cartItems == null || cartItems.isEmpty()) {
             statusLabel.setText("Your cart is empty. Add some books first.");
             return;
         }
         
-        System.out.println("Checkout for user ID: " + currentUser.getId() + ", Name: " + currentUser.getFullName());
+        LOG.debug("Checkout for user ID: {}, Name: {}", currentUser.getId(), currentUser.getFullName());
         
         User sessionUser = SessionManager.getInstance().getCurrentUser();
         if (sessionUser != null) {
-            System.out.println("Session user ID: " + sessionUser.getId() + ", Name: " + sessionUser.getFullName());
+            LOG.debug("Session user ID: {}, Name: {}", sessionUser.getId(), sessionUser.getFullName());
             if (sessionUser.getId() != currentUser.getId()) {
-                System.out.println("WARNING: Session user doesn't match controller user. Updating to session user.");
+                LOG.warn("Session user doesn't match controller user, using the session user");
                 currentUser = sessionUser;
             }
         }
@@ -233,72 +277,81 @@ public class ShoppingCartController implements CartUpdateListener {
         statusLabel.setText("Processing your order...");
         
         PaymentStrategy paymentStrategy = createPaymentStrategy("Standard");
+        User buyer = currentUser;
+        ObservableList<CartItem> itemsToPurchase = FXCollections.observableArrayList(cartItems);
         
-        try {
-            Order order = purchaseService.processPurchase(cartItems, currentUser, paymentStrategy);
+        AsyncTaskRunner.getInstance().submit(() -> {
+            Order order = purchaseService.processPurchase(itemsToPurchase, buyer, paymentStrategy);
+            if (order == null) {
+                return new CheckoutResult(null, false);
+            }
             
-            if (order != null) {
-                System.out.println("Order created successfully with ID: " + order.getId() + 
-                                 " for user ID: " + order.getUserId());
-                
-                try {
-                    cartService.clearCart(currentUser.getId());
-                    
-                    Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                    alert.setTitle("Order Placed");
-                    alert.setHeaderText("Order Successfully Placed");
-                    alert.setContentText("Your order #" + order.getId() + " has been recorded. You can view it in your orders section. User ID: " + currentUser.getId());
-                    
-                    alert.showAndWait().ifPresent(response -> {
-                        cartService.removeCartUpdateListener(this);
-                        try {
-                            System.out.println("Navigating to orders view for user ID: " + currentUser.getId());
-                            ViewNavigator.getInstance().navigateTo("customer_orders.fxml");
-                        } catch (Exception ex) {
-                            System.err.println("Error navigating to orders view: " + ex.getMessage());
-                            try {
-                                ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
-                            } catch (Exception e2) {
-                                statusLabel.setText("Error: Could not navigate to any view. Please restart the application.");
-                            }
-                        }
-                    });
-                } catch (SQLException e) {
-                    Alert alert = new Alert(Alert.AlertType.WARNING);
-                    alert.setTitle("Order Placed - With Warning");
-                    alert.setHeaderText("Order Successfully Placed");
-                    alert.setContentText("Your order #" + order.getId() + " has been recorded, but there was an issue clearing your cart. " +
-                                         "You may need to clear it manually.");
-                    
-                    alert.showAndWait().ifPresent(response -> {
-                        cartService.removeCartUpdateListener(this);
-                        try {
-                            System.out.println("Navigating to orders view for user ID: " + currentUser.getId());
-                            ViewNavigator.getInstance().navigateTo("customer_orders.fxml");
-                        } catch (Exception ex) {
-                            System.err.println("Error navigating to orders view: " + ex.getMessage());
-                            try {
-                                ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
-                            } catch (Exception e2) {
-                                statusLabel.setText("Error: Could not navigate to any view. Please restart the application.");
-                            }
-                        }
-                    });
-                }
+            try {
+                cartService.clearCart(buyer.getId());
+                return new CheckoutResult(order, true);
+            } catch (SQLException e) {
+                LOG.error("Order {} placed but the cart could not be cleared", order.getId(), e);
+                return new CheckoutResult(order, false);
+            }
+        }, this::showCheckoutResult, error -> {
+            LOG.error("Checkout failed", error);
+            if (error instanceof SQLException) {
+                statusLabel.setText("Database error: " + error.getMessage());
             } else {
-                System.err.println("Failed to create order for user ID: " + currentUser.getId());
-                statusLabel.setText("Failed to create order. Please try again.");
-                checkoutButton.setDisable(false);
+                statusLabel.setText("Unexpected error: " + error.getMessage());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            statusLabel.setText("Database error: " + e.getMessage());
             checkoutButton.setDisable(false);
-        } catch (Exception e) {
-            e.printStackTrace();
-            statusLabel.setText("Unexpected error: " + e.getMessage());
+        });
+    }
+    
+    private static class CheckoutResult {
+        final Order order;
+        final boolean cartCleared;
+        
+        CheckoutResult(Order order, boolean cartCleared) {
+            this.order = order;
+            this.cartCleared = cartCleared;
+        }
+    }
+    
+    private void showCheckoutResult(CheckoutResult result) {
+        Order order = result.order;
+        if (order == null) {
+            LOG.warn("Failed to create order for user ID: {}", currentUser.getId());
+            statusLabel.setText("Failed to create order. Please try again.");
             checkoutButton.setDisable(false);
+            return;
         }
+        
+        LOG.debug("Order created successfully with ID: {} for user ID: {}", order.getId(), order.getUserId());
+        
+        Alert alert;
+        if (result.cartCleared) {
+            alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Order Placed");
+            alert.setHeaderText("Order Successfully Placed");
+            alert.setContentText("Your order #" + order.getId() + " has been recorded. You can view it in your orders section. User ID: " + currentUser.getId());
+        } else {
+            alert = new Alert(Alert.AlertType.WARNING);
+            alert.setTitle("Order Placed - With Warning");
+            alert.setHeaderText("Order Successfully Placed");
+            alert.setContentText("Your order #" + order.getId() + " has been recorded, but there was an issue clearing your cart. " +
+                                 "You may need to clear it manually.");
+        }
+        
+        alert.showAndWait().ifPresent(response -> {
+            try {
+                LOG.debug("Navigating to orders view for user ID: {}", currentUser.getId());
+                ViewNavigator.getInstance().navigateTo("customer_orders.fxml");
+            } catch (Exception ex) {
+                LOG.warn("Error navigating to orders view: {}", ex.getMessage());
+                try {
+                    ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
+                } catch (Exception e2) {
+                    statusLabel.setText("Error: Could not navigate to any view. Please restart the application.");
+                }
+            }
+        });
     }
     
     private PaymentStrategy createPaymentStrategy(String paymentMethod) {
@@ -312,20 +365,77 @@ public class ShoppingCartController implements CartUpdateListener {
     
     @FXML
     public void handleBackToShop(ActionEvent event) {
-        cartService.removeCartUpdateListener(this);
         ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
     }
     
     @FXML
     public void handleContinueShopping(ActionEvent event) {
-        cartService.removeCartUpdateListener(this);
         ViewNavigator.getInstance().navigateTo("customer_dashboard.fxml");
     }
     
     @Override
-    public void onCartUpdated(int userId) {
-        if (currentUser != null && currentUser.getId() == userId) {
-            javafx.application.Platform.runLater(this::loadCartItems);
+    public void update(CartEvent event) {
+        if (currentUser != null && currentUser.getId() == event.getUserId()) {
+            javafx.application.Platform.runLater(() -> applyCartEvent(event));
+        }
+    }
+    
+    // Events carry the new state of a line, so applying one this view already made is harmless
+    private void applyCartEvent(CartEvent event) {
+        if (cartItems == null) {
+            return;
         }
+        
+        switch (event.getType()) {
+            case CART_CLEARED:
+                cartItems.clear();
+                break;
+            case ITEM_REMOVED:
+                cartItems.removeIf(item -> item.getId() == event.getItemId());
+                break;
+            case ITEM_ADDED:
+            case QUANTITY_CHANGED:
+                CartItem existing = null;
+                for (CartItem item : cartItems) {
+                    if (item.getId() == event.getItemId()) {
+                        existing = item;
+                        break;
+                    }
+                }
+                if (existing != null) {
+                    existing.setQuantity(event.getQuantity());
+                } else {
+                    cartItems.add(event.getItem());
+                }
+                break;
+        }
+        
+        cartTableView.refresh();
+        updateTotal();
+        updateCartButtons();
+    }
+    
+    // Cart edits made on another machine, or price changes to books in the cart, need the rows re-read;
+    // this process's own changes already reached the cart through CartEventBus
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        if (currentUser == null) {
+            return;
+        }
+        
+        javafx.application.Platform.runLater(() -> {
+            for (ChangeFeed.Change change : changes) {
+                if (change.isLocal()) {
+                    continue;
+                }
+                boolean cartChanged = change.isOn("cart_items") && change.getRelatedId() == currentUser.getId();
+                boolean bookInCartChanged = change.isOn("books") && cartItems != null
+                    && cartItems.stream().anyMatch(item -> item.getBookId() == change.getId());
+                if (cartChanged || bookInCartChanged) {
+                    loadCartItems();
+                    return;
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
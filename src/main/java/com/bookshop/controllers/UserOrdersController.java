@@ -32,7 +32,7 @@ public class UserOrdersController {
     
     @FXML
     public void initialize() {
-        orderService = new OrderService();
+        orderService = OrderService.getInstance();
         initializeColumns();
     }
     
@@ -1,5 +1,6 @@
 package com.bookshop.db;
 
+import com.bookshop.utils.Log;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -8,6 +9,8 @@ import java.util.Map;
 @Deprecated
 public class DatabaseConnection {
     
+    private static final Log LOG = Log.get(DatabaseConnection.class);
+    
     private static DatabaseConnection instance;
     private Connection connection;
     
@@ -30,7 +33,7 @@ public class DatabaseConnection {
             this.url = this.url.replace("postgres://", "jdbc:postgresql://");
         }
         
-        System.out.println("Note: Using deprecated DatabaseConnection class. Consider migrating to com.bookshop.utils.DatabaseConnection");
+        LOG.debug("Note: Using deprecated DatabaseConnection class. Consider migrating to com.bookshop.utils.DatabaseConnection");
     }
     
     public static synchronized DatabaseConnection getInstance() {
@@ -47,7 +50,7 @@ public class DatabaseConnection {
                 
                 connection = DriverManager.getConnection(url, user, password);
                 
-                System.out.println("PostgreSQL database connection established");
+                LOG.debug("PostgreSQL database connection established");
             } catch (ClassNotFoundException e) {
                 throw new SQLException("PostgreSQL JDBC driver not found", e);
             }
@@ -59,9 +62,9 @@ public class DatabaseConnection {
         if (connection != null) {
             try {
                 connection.close();
-                System.out.println("PostgreSQL database connection closed");
+                LOG.debug("PostgreSQL database connection closed");
             } catch (SQLException e) {
-                System.err.println("Error closing PostgreSQL database connection: " + e.getMessage());
+                LOG.warn("Error closing PostgreSQL database connection: {}", e.getMessage());
             } finally {
                 connection = null;
             }
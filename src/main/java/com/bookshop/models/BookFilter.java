@@ -0,0 +1,96 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+
+/**
+ * The conditions a book list is narrowed by. Every condition left null is not
+ * applied, and the ones that are set must all hold. The price range includes
+ * its minimum and excludes its maximum.
+ */
+public class BookFilter {
+    
+    private String search;
+    private String category;
+    private String author;
+    private String publisher;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Integer minRating;
+    private boolean inStock;
+    
+    public BookFilter() {
+    }
+    
+    public static BookFilter of(String search, String category) {
+        BookFilter filter = new BookFilter();
+        filter.setSearch(search);
+        filter.setCategory(category);
+        return filter;
+    }
+    
+    public String getSearch() {
+        return search;
+    }
+    
+    public void setSearch(String search) {
+        this.search = search != null && !search.trim().isEmpty() ? search.trim() : null;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category != null && !category.isEmpty() ? category : null;
+    }
+    
+    public String getAuthor() {
+        return author;
+    }
+    
+    public void setAuthor(String author) {
+        this.author = author != null && !author.isEmpty() ? author : null;
+    }
+    
+    public String getPublisher() {
+        return publisher;
+    }
+    
+    public void setPublisher(String publisher) {
+        this.publisher = publisher != null && !publisher.isEmpty() ? publisher : null;
+    }
+    
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+    
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+    
+    public void setPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+    
+    public Integer getMinRating() {
+        return minRating;
+    }
+    
+    public void setMinRating(Integer minRating) {
+        this.minRating = minRating != null && minRating > 0 ? minRating : null;
+    }
+    
+    public boolean isInStock() {
+        return inStock;
+    }
+    
+    public void setInStock(boolean inStock) {
+        this.inStock = inStock;
+    }
+    
+    public boolean isEmpty() {
+        return search == null && category == null && author == null && publisher == null &&
+               minPrice == null && maxPrice == null && minRating == null && !inStock;
+    }
+}
@@ -0,0 +1,86 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+
+public enum BookSortOrder {
+    TITLE_ASC("Title (A-Z)", "title", false, Book::getTitle),
+    TITLE_DESC("Title (Z-A)", "title", true, Book::getTitle),
+    AUTHOR_ASC("Author (A-Z)", "author", false, Book::getAuthor),
+    AUTHOR_DESC("Author (Z-A)", "author", true, Book::getAuthor),
+    PUBLISHER_ASC("Publisher (A-Z)", "publisher", false, Book::getPublisher),
+    PUBLISHER_DESC("Publisher (Z-A)", "publisher", true, Book::getPublisher),
+    CATEGORY_ASC("Category (A-Z)", "category", false, Book::getCategory),
+    CATEGORY_DESC("Category (Z-A)", "category", true, Book::getCategory),
+    PRICE_ASC("Price (Low to High)", "price", false, Book::getPrice),
+    PRICE_DESC("Price (High to Low)", "price", true, Book::getPrice),
+    STOCK_ASC("Stock (Low to High)", "stock_quantity", false, Book::getStockQuantity),
+    STOCK_DESC("Stock (High to Low)", "stock_quantity", true, Book::getStockQuantity),
+    // Books without reviews sort as 0; the expression matches the index on it
+    RATING_ASC("Rating (Low to High)", "COALESCE(average_rating, 0)", false, book -> BigDecimal.valueOf(book.getAverageRating())),
+    RATING_DESC("Rating (High to Low)", "COALESCE(average_rating, 0)", true, book -> BigDecimal.valueOf(book.getAverageRating())),
+    // Ids are handed out in order, so the highest id is the book added last
+    NEWEST("Newest First", "id", true, Book::getId);
+    
+    private final String label;
+    private final String column;
+    private final boolean descending;
+    private final Function<Book, Object> key;
+    
+    BookSortOrder(String label, String column, boolean descending, Function<Book, Object> key) {
+        this.label = label;
+        this.column = column;
+        this.descending = descending;
+        this.key = key;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * Stock levels are for the admin; customers are offered the other orders.
+     */
+    public boolean isForCustomers() {
+        return this != STOCK_ASC && this != STOCK_DESC;
+    }
+    
+    // Only ever built from the constants above, so it is safe to splice into SQL.
+    // The id breaks ties in the same direction, so every order is total and an index on (column, id) serves it
+    public String getOrderByClause() {
+        String direction = descending ? " DESC" : " ASC";
+        return isById() ? "id" + direction : column + direction + ", id" + direction;
+    }
+    
+    /**
+     * The condition for the rows that come after a given row in this order, with
+     * one placeholder per value of {@link #getKeysetValues}.
+     */
+    public String getKeysetCondition() {
+        String comparison = descending ? " < " : " > ";
+        return isById() ? "id" + comparison + "?" : "(" + column + ", id)" + comparison + "(?, ?)";
+    }
+    
+    public List<Object> getKeysetValues(Book last) {
+        return isById() ? List.of(last.getId()) : List.of(key.apply(last), last.getId());
+    }
+    
+    private boolean isById() {
+        return "id".equals(column);
+    }
+    
+    public static BookSortOrder fromLabel(String label) {
+        for (BookSortOrder order : values()) {
+            if (order.label.equals(label)) {
+                return order;
+            }
+        }
+        return TITLE_ASC;
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
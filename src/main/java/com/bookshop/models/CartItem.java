@@ -10,7 +10,9 @@ public class CartItem {
     private int quantity;
     private String title;
     private String author;
+    private String category;
     private BigDecimal price;
+    private long priceMinorUnits;
     private Book book;
     
     public CartItem() {
@@ -24,7 +26,7 @@ public class CartItem {
         this.quantity = quantity;
         this.title = title;
         this.author = author;
-        this.price = price;
+        setPrice(price);
     }
     
     public CartItem(Book book, int quantity) {
@@ -33,7 +35,8 @@ public class CartItem {
         this.quantity = quantity;
         this.title = book.getTitle();
         this.author = book.getAuthor();
-        this.price = book.getPrice();
+        this.category = book.getCategory();
+        setPrice(book.getPrice());
     }
     
     public int getId() {
@@ -84,12 +87,25 @@ public class CartItem {
         this.author = author;
     }
     
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
     public BigDecimal getPrice() {
         return price;
     }
     
     public void setPrice(BigDecimal price) {
         this.price = price;
+        this.priceMinorUnits = Money.toMinorUnits(price);
+    }
+    
+    public long getPriceMinorUnits() {
+        return priceMinorUnits;
     }
     
     public Book getBook() {
@@ -102,12 +118,17 @@ public class CartItem {
             this.bookId = book.getId();
             this.title = book.getTitle();
             this.author = book.getAuthor();
-            this.price = book.getPrice();
+            this.category = book.getCategory();
+            setPrice(book.getPrice());
         }
     }
     
     public BigDecimal getSubtotal() {
-        return price.multiply(new BigDecimal(quantity));
+        return Money.toBigDecimal(getSubtotalMinorUnits());
+    }
+    
+    public long getSubtotalMinorUnits() {
+        return Money.multiply(priceMinorUnits, quantity);
     }
     
     public String getSubtotalString() {
@@ -0,0 +1,127 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Book counts per category, author, publisher, price range and rating across
+ * the catalog, for the filter choices of the book list. Categories, authors and
+ * publishers come most books first. Price ranges are listed cheapest first,
+ * including empty ones, and ratings as "n stars and up" from 4 down to 1.
+ */
+public class CatalogFacets {
+    
+    public static final String CATEGORY = "category";
+    public static final String AUTHOR = "author";
+    public static final String PUBLISHER = "publisher";
+    public static final String PRICE = "price";
+    public static final String RATING = "rating";
+    public static final int HIGHEST_MIN_RATING = 4;
+    
+    // Where each price range after the first starts, in euros; FacetService counts books into these
+    private static final BigDecimal[] PRICE_BOUNDS = {new BigDecimal("10"), new BigDecimal("20"), new BigDecimal("50")};
+    
+    private final List<FacetCount> categories = new ArrayList<>();
+    private final List<FacetCount> authors = new ArrayList<>();
+    private final List<FacetCount> publishers = new ArrayList<>();
+    private final List<FacetCount> priceRanges = new ArrayList<>();
+    private final List<FacetCount> ratings = new ArrayList<>();
+    
+    /**
+     * Takes counts as stored, where a rating value is the whole stars of the
+     * average rating, and keeps the given order within each facet.
+     */
+    public CatalogFacets(List<FacetCount> counts) {
+        long[] perPriceRange = new long[getPriceRangeCount()];
+        long[] perRating = new long[HIGHEST_MIN_RATING + 2];
+        
+        for (FacetCount count : counts) {
+            switch (count.getFacet()) {
+                case CATEGORY:
+                    categories.add(count);
+                    break;
+                case AUTHOR:
+                    authors.add(count);
+                    break;
+                case PUBLISHER:
+                    publishers.add(count);
+                    break;
+                case PRICE:
+                    int range = Integer.parseInt(count.getValue());
+                    if (range >= 0 && range < perPriceRange.length) {
+                        perPriceRange[range] += count.getCount();
+                    }
+                    break;
+                case RATING:
+                    int stars = Math.min(Integer.parseInt(count.getValue()), perRating.length - 1);
+                    if (stars >= 0) {
+                        perRating[stars] += count.getCount();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        for (int range = 0; range < perPriceRange.length; range++) {
+            priceRanges.add(new FacetCount(PRICE, String.valueOf(range), perPriceRange[range]));
+        }
+        
+        long atLeast = perRating[HIGHEST_MIN_RATING + 1];
+        for (int stars = HIGHEST_MIN_RATING; stars >= 1; stars--) {
+            atLeast += perRating[stars];
+            ratings.add(new FacetCount(RATING, String.valueOf(stars), atLeast));
+        }
+    }
+    
+    public List<FacetCount> getCategories() {
+        return categories;
+    }
+    
+    public List<FacetCount> getAuthors() {
+        return authors;
+    }
+    
+    public List<FacetCount> getPublishers() {
+        return publishers;
+    }
+    
+    public List<FacetCount> getPriceRanges() {
+        return priceRanges;
+    }
+    
+    public List<FacetCount> getRatings() {
+        return ratings;
+    }
+    
+    public static int getPriceRangeCount() {
+        return PRICE_BOUNDS.length + 1;
+    }
+    
+    /**
+     * The lowest price in the range, or null for the first range.
+     */
+    public static BigDecimal getPriceRangeMin(int range) {
+        return range > 0 ? PRICE_BOUNDS[range - 1] : null;
+    }
+    
+    /**
+     * The price the range stops short of, or null for the last range.
+     */
+    public static BigDecimal getPriceRangeMax(int range) {
+        return range < PRICE_BOUNDS.length ? PRICE_BOUNDS[range] : null;
+    }
+    
+    public static String getPriceRangeLabel(int range) {
+        BigDecimal min = getPriceRangeMin(range);
+        BigDecimal max = getPriceRangeMax(range);
+        if (min == null) {
+            return "Under €" + max.toPlainString();
+        }
+        if (max == null) {
+            return "€" + min.toPlainString() + " and over";
+        }
+        return "€" + min.toPlainString() + " - €" + max.toPlainString();
+    }
+}
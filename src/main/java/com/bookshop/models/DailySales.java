@@ -0,0 +1,40 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public class DailySales {
+    
+    private final LocalDate day;
+    private final int orders;
+    private final int units;
+    private final BigDecimal revenue;
+    
+    public DailySales(LocalDate day, int orders, int units, BigDecimal revenue) {
+        this.day = day;
+        this.orders = orders;
+        this.units = units;
+        this.revenue = revenue;
+    }
+    
+    public LocalDate getDay() {
+        return day;
+    }
+    
+    public int getOrders() {
+        return orders;
+    }
+    
+    public int getUnits() {
+        return units;
+    }
+    
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+    
+    @Override
+    public String toString() {
+        return day + ": " + orders + " orders, " + units + " units, €" + revenue;
+    }
+}
@@ -0,0 +1,47 @@
+package com.bookshop.models;
+
+/**
+ * The number of books with one value of a facet, such as one category or one
+ * price range. Price ranges and ratings are identified by number: the range's
+ * position and the lowest rating in stars.
+ */
+public class FacetCount {
+    
+    private final String facet;
+    private final String value;
+    private final long count;
+    
+    public FacetCount(String facet, String value, long count) {
+        this.facet = facet;
+        this.value = value;
+        this.count = count;
+    }
+    
+    public String getFacet() {
+        return facet;
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public String getLabel() {
+        switch (facet) {
+            case CatalogFacets.PRICE:
+                return CatalogFacets.getPriceRangeLabel(Integer.parseInt(value));
+            case CatalogFacets.RATING:
+                return value + "★ & up";
+            default:
+                return value;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return getLabel() + " (" + count + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package com.bookshop.models;
+
+public enum LoyaltyTier {
+    BASIC(0, "Basic"),
+    REGULAR(5, "Regular"),
+    PREMIUM(10, "Premium");
+    
+    private final int minOrderCount;
+    private final String displayName;
+    
+    LoyaltyTier(int minOrderCount, String displayName) {
+        this.minOrderCount = minOrderCount;
+        this.displayName = displayName;
+    }
+    
+    public int getMinOrderCount() {
+        return minOrderCount;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    public static LoyaltyTier forOrderCount(int orderCount) {
+        if (orderCount >= PREMIUM.minOrderCount) {
+            return PREMIUM;
+        } else if (orderCount >= REGULAR.minOrderCount) {
+            return REGULAR;
+        } else {
+            return BASIC;
+        }
+    }
+    
+    public static LoyaltyTier fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        
+        try {
+            return LoyaltyTier.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
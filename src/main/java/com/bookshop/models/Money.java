@@ -0,0 +1,98 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amount held as a count of cents. The static methods work on raw
+ * {@code long} cents so pricing loops can run without allocating; BigDecimal is
+ * only produced at the JDBC and display boundaries.
+ */
+public final class Money implements Comparable<Money> {
+    
+    public static final int SCALE = 2;
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+    public static final Money ZERO = new Money(0);
+    
+    private static final int BASIS_POINTS_PER_UNIT = 10_000;
+    
+    private final long minorUnits;
+    
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+    
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+    
+    public static Money of(BigDecimal amount) {
+        return ofMinorUnits(toMinorUnits(amount));
+    }
+    
+    public static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        
+        return amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+    }
+    
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    public static long multiply(long minorUnits, int quantity) {
+        return Math.multiplyExact(minorUnits, (long) quantity);
+    }
+    
+    /**
+     * Returns the given share of an amount, in basis points (1500 = 15%),
+     * rounded half-up to the nearest cent.
+     */
+    public static long percentOf(long minorUnits, int basisPoints) {
+        long product = Math.multiplyExact(minorUnits, (long) basisPoints);
+        long half = BASIS_POINTS_PER_UNIT / 2;
+        return product >= 0
+            ? (product + half) / BASIS_POINTS_PER_UNIT
+            : -((-product + half) / BASIS_POINTS_PER_UNIT);
+    }
+    
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+    
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+    
+    public Money times(int quantity) {
+        return ofMinorUnits(multiply(minorUnits, quantity));
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(minorUnits);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        return minorUnits == ((Money) o).minorUnits;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+    
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -23,6 +23,7 @@ public class Order {
     private String paymentMethod;
     private String shippingAddress;
     private BigDecimal discountAmount;
+    private String customerName;
     private List<OrderItem> items;
     
     public Order() {
@@ -112,6 +113,14 @@ public class Order {
         this.discountAmount = discountAmount;
     }
     
+    public String getCustomerName() {
+        return customerName;
+    }
+    
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+    
     public BigDecimal getFinalAmount() {
         if (totalAmount == null) {
             return BigDecimal.ZERO;
@@ -0,0 +1,129 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class Promotion {
+    
+    public enum Type {
+        BOOK,
+        CATEGORY,
+        AUTHOR,
+        BUY_X_GET_Y
+    }
+    
+    private int id;
+    private String name;
+    private Type type;
+    private String target;
+    private BigDecimal discountPercentage;
+    private int buyQuantity;
+    private int freeQuantity;
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+    private boolean active;
+    
+    public Promotion() {
+        this.discountPercentage = BigDecimal.ZERO;
+        this.active = true;
+    }
+    
+    public Promotion(Type type, String target, BigDecimal discountPercentage) {
+        this();
+        this.type = type;
+        this.target = target;
+        this.discountPercentage = discountPercentage;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public void setType(Type type) {
+        this.type = type;
+    }
+    
+    public String getTarget() {
+        return target;
+    }
+    
+    public void setTarget(String target) {
+        this.target = target;
+    }
+    
+    public BigDecimal getDiscountPercentage() {
+        return discountPercentage;
+    }
+    
+    public void setDiscountPercentage(BigDecimal discountPercentage) {
+        this.discountPercentage = discountPercentage;
+    }
+    
+    public int getBuyQuantity() {
+        return buyQuantity;
+    }
+    
+    public void setBuyQuantity(int buyQuantity) {
+        this.buyQuantity = buyQuantity;
+    }
+    
+    public int getFreeQuantity() {
+        return freeQuantity;
+    }
+    
+    public void setFreeQuantity(int freeQuantity) {
+        this.freeQuantity = freeQuantity;
+    }
+    
+    public LocalDateTime getStartsAt() {
+        return startsAt;
+    }
+    
+    public void setStartsAt(LocalDateTime startsAt) {
+        this.startsAt = startsAt;
+    }
+    
+    public LocalDateTime getEndsAt() {
+        return endsAt;
+    }
+    
+    public void setEndsAt(LocalDateTime endsAt) {
+        this.endsAt = endsAt;
+    }
+    
+    public boolean isActive() {
+        return active;
+    }
+    
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+    
+    public boolean isActiveAt(LocalDateTime time) {
+        if (!active) {
+            return false;
+        }
+        
+        if (startsAt != null && time.isBefore(startsAt)) {
+            return false;
+        }
+        
+        return endsAt == null || time.isBefore(endsAt);
+    }
+}
@@ -0,0 +1,52 @@
+package com.bookshop.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Sales totals for one book or category over a date range. Revenue is the
+ * item price times quantity, before order-level promotions.
+ */
+public class SalesBreakdown {
+    
+    private final int bookId;
+    private final String label;
+    private final long units;
+    private final long orders;
+    private final BigDecimal revenue;
+    
+    public SalesBreakdown(int bookId, String label, long units, long orders, BigDecimal revenue) {
+        this.bookId = bookId;
+        this.label = label;
+        this.units = units;
+        this.orders = orders;
+        this.revenue = revenue;
+    }
+    
+    /**
+     * The book's id, or 0 when the row totals a category.
+     */
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public long getUnits() {
+        return units;
+    }
+    
+    public long getOrders() {
+        return orders;
+    }
+    
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+    
+    @Override
+    public String toString() {
+        return label + " - " + units + " sold in " + orders + " orders (€" + revenue + ")";
+    }
+}
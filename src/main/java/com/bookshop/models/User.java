@@ -19,6 +19,7 @@ public class User {
     private String address;
     private String role;
     private int orderCount;
+    private LoyaltyTier loyaltyTier;
     
     public User() {
     }
@@ -109,14 +110,26 @@ public class User {
     
     public void incrementOrderCount() {
         this.orderCount++;
+        if (this.loyaltyTier != null) {
+            this.loyaltyTier = LoyaltyTier.forOrderCount(orderCount);
+        }
+    }
+    
+    // Falls back to the order count for users that were not loaded with a persisted tier
+    public LoyaltyTier getLoyaltyTier() {
+        return loyaltyTier != null ? loyaltyTier : LoyaltyTier.forOrderCount(orderCount);
+    }
+    
+    public void setLoyaltyTier(LoyaltyTier loyaltyTier) {
+        this.loyaltyTier = loyaltyTier;
     }
     
     public boolean isRegularMember() {
-        return orderCount >= 5;
+        return getLoyaltyTier() != LoyaltyTier.BASIC;
     }
     
     public boolean isPremiumMember() {
-        return orderCount >= 10;
+        return getLoyaltyTier() == LoyaltyTier.PREMIUM;
     }
     
     public boolean isPremiumLoyaltyMember() {
@@ -132,13 +145,7 @@ public class User {
     }
     
     public String getLoyaltyStatus() {
-        if (isPremiumMember()) {
-            return "Premium";
-        } else if (isRegularMember()) {
-            return "Regular";
-        } else {
-            return "Basic";
-        }
+        return getLoyaltyTier().getDisplayName();
     }
     
     public String getPasswordHash() {
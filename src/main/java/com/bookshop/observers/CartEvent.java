@@ -42,6 +42,10 @@ public class CartEvent {
         return item;
     }
     
+    public int getItemId() {
+        return item != null ? item.getId() : 0;
+    }
+    
     public Book getBook() {
         return book;
     }
@@ -50,19 +54,30 @@ public class CartEvent {
         return quantity;
     }
     
+    public CartEvent withType(EventType newType) {
+        return new CartEvent(userId, newType, item, book, quantity);
+    }
+    
+    private String getTitle() {
+        if (book != null) {
+            return book.getTitle();
+        }
+        return item != null ? item.getTitle() : "item";
+    }
+    
     @Override
     public String toString() {
         switch (type) {
             case ITEM_ADDED:
-                return "Added " + quantity + " of '" + book.getTitle() + "' to cart";
+                return "Added " + quantity + " of '" + getTitle() + "' to cart";
             case ITEM_REMOVED:
-                return "Removed '" + book.getTitle() + "' from cart";
+                return "Removed '" + getTitle() + "' from cart";
             case QUANTITY_CHANGED:
-                return "Changed quantity of '" + book.getTitle() + "' to " + quantity;
+                return "Changed quantity of '" + getTitle() + "' to " + quantity;
             case CART_CLEARED:
                 return "Cart cleared";
             default:
                 return "Unknown cart event";
         }
     }
-} 
\ No newline at end of file
+} 
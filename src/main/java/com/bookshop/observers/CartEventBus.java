@@ -0,0 +1,137 @@
+package com.bookshop.observers;
+
+import com.bookshop.utils.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers cart changes to observers on a dedicated thread. Events for a user
+ * are held for a short window and collapsed per cart item, so a burst of
+ * quantity clicks reaches observers as one change carrying the final quantity
+ * and an item added and removed within the window is never reported.
+ */
+public class CartEventBus {
+    
+    private static final Log LOG = Log.get(CartEventBus.class);
+    
+    private static final long COALESCE_WINDOW_MILLIS = 50;
+    
+    private static CartEventBus instance;
+    
+    private final List<CartObserver> observers = new CopyOnWriteArrayList<>();
+    private final Map<Integer, PendingEvents> pendingByUser = new HashMap<>();
+    private final ScheduledExecutorService dispatcher;
+    private final long windowMillis;
+    
+    public static synchronized CartEventBus getInstance() {
+        if (instance == null) {
+            instance = new CartEventBus(COALESCE_WINDOW_MILLIS);
+        }
+        return instance;
+    }
+    
+    CartEventBus(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-cart-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void addObserver(CartObserver observer) {
+        if (observer != null && !observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+    
+    public void removeObserver(CartObserver observer) {
+        observers.remove(observer);
+    }
+    
+    public void publish(CartEvent event) {
+        synchronized (pendingByUser) {
+            PendingEvents pending = pendingByUser.get(event.getUserId());
+            if (pending == null) {
+                pending = new PendingEvents();
+                pendingByUser.put(event.getUserId(), pending);
+                int userId = event.getUserId();
+                dispatcher.schedule(() -> flush(userId), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            pending.add(event);
+        }
+    }
+    
+    private void flush(int userId) {
+        PendingEvents pending;
+        synchronized (pendingByUser) {
+            pending = pendingByUser.remove(userId);
+        }
+        if (pending == null) {
+            return;
+        }
+        
+        for (CartEvent event : pending.drain()) {
+            for (CartObserver observer : observers) {
+                try {
+                    observer.update(event);
+                } catch (RuntimeException e) {
+                    LOG.error("Cart observer failed on {}", event.getType(), e);
+                }
+            }
+        }
+    }
+    
+    private static final class PendingEvents {
+        private CartEvent cleared;
+        private final Map<Integer, CartEvent> byItem = new LinkedHashMap<>();
+        
+        void add(CartEvent event) {
+            if (event.getType() == CartEvent.EventType.CART_CLEARED) {
+                // Nothing queued before the clear matters any more
+                byItem.clear();
+                cleared = event;
+                return;
+            }
+            
+            int itemId = event.getItemId();
+            CartEvent earlier = byItem.remove(itemId);
+            CartEvent merged = earlier == null ? event : merge(earlier, event);
+            if (merged != null) {
+                byItem.put(itemId, merged);
+            }
+        }
+        
+        List<CartEvent> drain() {
+            List<CartEvent> events = new ArrayList<>(byItem.size() + 1);
+            if (cleared != null) {
+                events.add(cleared);
+            }
+            events.addAll(byItem.values());
+            return events;
+        }
+        
+        private static CartEvent merge(CartEvent earlier, CartEvent later) {
+            boolean addedInWindow = earlier.getType() == CartEvent.EventType.ITEM_ADDED;
+            switch (later.getType()) {
+                case ITEM_REMOVED:
+                    return addedInWindow ? null : later;
+                case QUANTITY_CHANGED:
+                    return addedInWindow ? later.withType(CartEvent.EventType.ITEM_ADDED) : later;
+                case ITEM_ADDED:
+                    return earlier.getType() == CartEvent.EventType.ITEM_REMOVED
+                        ? later.withType(CartEvent.EventType.QUANTITY_CHANGED)
+                        : later;
+                default:
+                    return later;
+            }
+        }
+    }
+}
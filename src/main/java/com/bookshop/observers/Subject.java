@@ -1,10 +0,0 @@
-package com.bookshop.observers;
-
-public interface Subject {
-    
-    void addObserver(CartObserver observer);
-    
-    void removeObserver(CartObserver observer);
-    
-    void notifyObservers();
-}
@@ -1,6 +1,8 @@
 package com.bookshop.repositories;
 
 import com.bookshop.models.Book;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -10,7 +12,32 @@ public interface BookRepository extends Repository<Book, Integer> {
     
     List<Book> search(String query) throws SQLException;
     
+    /**
+     * Streams every book through a server-side cursor that reads fetchSize rows at
+     * a time, instead of building a list. Returns the number of books passed on.
+     */
+    long streamAll(int fetchSize, RowCallback<Book> callback) throws SQLException;
+    
+    long streamByCategory(String category, int fetchSize, RowCallback<Book> callback) throws SQLException;
+    
+    long streamSearch(String query, int fetchSize, RowCallback<Book> callback) throws SQLException;
+    
     boolean updateStockQuantity(int bookId, int newQuantity) throws SQLException;
     
     boolean updateStockQuantityByDelta(int bookId, int quantityChange) throws SQLException;
+    
+    int countSummaries(BookFilter filter) throws SQLException;
+    
+    List<Book> findSummaries(BookFilter filter, BookSortOrder sortOrder, int offset, int limit) throws SQLException;
+    
+    /**
+     * The page that follows {@code after} in the given order, found by seeking
+     * past its sort key rather than skipping rows, so a late page costs the same
+     * as the first. {@code after} must carry the columns the order sorts by.
+     */
+    List<Book> findSummariesAfter(BookFilter filter, BookSortOrder sortOrder, Book after, int limit) throws SQLException;
+    
+    List<Book> findSummariesByIds(List<Integer> ids) throws SQLException;
+    
+    List<String> findCategories() throws SQLException;
 } 
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.bookshop.repositories;
 
 import com.bookshop.models.Book;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
 import com.bookshop.utils.BookFactory;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.RowMapper;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,22 +13,39 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 public class BookRepositoryImpl implements BookRepository {
     
+    /**
+     * The searched columns as one lower-case text, so a single trigram index serves
+     * a search over all of them. Newlines keep a match from spanning two columns,
+     * since search text comes from a single-line field. DatabaseConnection indexes
+     * exactly this expression.
+     */
+    public static final String SEARCH_TEXT_SQL = "LOWER(title || '\n' || author || '\n' || publisher || '\n' || " +
+                                                 "category || '\n' || COALESCE(description, ''))";
+    
+    private static final String FIND_ALL_SQL = "SELECT * FROM books ORDER BY title";
+    private static final String FIND_BY_CATEGORY_SQL = "SELECT * FROM books WHERE category = ? ORDER BY title";
+    private static final String SEARCH_SQL = "SELECT * FROM books WHERE " +
+                                             "LOWER(title) LIKE ? ESCAPE '\\' OR " +
+                                             "LOWER(author) LIKE ? ESCAPE '\\' OR " +
+                                             "LOWER(description) LIKE ? ESCAPE '\\' " +
+                                             "ORDER BY title";
+    
     @Override
     public List<Book> findAll() throws SQLException {
         List<Book> books = new ArrayList<>();
         
-        String sql = "SELECT * FROM books ORDER BY title";
-        
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery(FIND_ALL_SQL)) {
             
+            RowMapper<Book> mapper = BookFactory.bookMapper(rs);
             while (rs.next()) {
-                books.add(BookFactory.createFromResultSet(rs));
+                books.add(mapper.map(rs));
             }
         }
         
@@ -135,16 +155,15 @@ public class BookRepositoryImpl implements BookRepository {
     public List<Book> findByCategory(String category) throws SQLException {
         List<Book> books = new ArrayList<>();
         
-        String sql = "SELECT * FROM books WHERE category = ? ORDER BY title";
-        
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(FIND_BY_CATEGORY_SQL)) {
             
             pstmt.setString(1, category);
             
             try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<Book> mapper = BookFactory.bookMapper(rs);
                 while (rs.next()) {
-                    books.add(BookFactory.createFromResultSet(rs));
+                    books.add(mapper.map(rs));
                 }
             }
         }
@@ -156,24 +175,19 @@ public class BookRepositoryImpl implements BookRepository {
     public List<Book> search(String query) throws SQLException {
         List<Book> books = new ArrayList<>();
         
-        String sql = "SELECT * FROM books WHERE " +
-                     "LOWER(title) LIKE ? OR " +
-                     "LOWER(author) LIKE ? OR " +
-                     "LOWER(description) LIKE ? " +
-                     "ORDER BY title";
-        
-        String searchPattern = "%" + query.toLowerCase() + "%";
+        String searchPattern = containsPattern(query);
         
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_SQL)) {
             
             pstmt.setString(1, searchPattern);
             pstmt.setString(2, searchPattern);
             pstmt.setString(3, searchPattern);
             
             try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<Book> mapper = BookFactory.bookMapper(rs);
                 while (rs.next()) {
-                    books.add(BookFactory.createFromResultSet(rs));
+                    books.add(mapper.map(rs));
                 }
             }
         }
@@ -181,6 +195,55 @@ public class BookRepositoryImpl implements BookRepository {
         return books;
     }
     
+    @Override
+    public long streamAll(int fetchSize, RowCallback<Book> callback) throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().openCursorConnection();
+             PreparedStatement pstmt = conn.prepareStatement(FIND_ALL_SQL)) {
+            
+            return stream(pstmt, fetchSize, callback);
+        }
+    }
+    
+    @Override
+    public long streamByCategory(String category, int fetchSize, RowCallback<Book> callback) throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().openCursorConnection();
+             PreparedStatement pstmt = conn.prepareStatement(FIND_BY_CATEGORY_SQL)) {
+            
+            pstmt.setString(1, category);
+            return stream(pstmt, fetchSize, callback);
+        }
+    }
+    
+    @Override
+    public long streamSearch(String query, int fetchSize, RowCallback<Book> callback) throws SQLException {
+        String searchPattern = containsPattern(query);
+        
+        try (Connection conn = DatabaseConnection.getInstance().openCursorConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SEARCH_SQL)) {
+            
+            pstmt.setString(1, searchPattern);
+            pstmt.setString(2, searchPattern);
+            pstmt.setString(3, searchPattern);
+            return stream(pstmt, fetchSize, callback);
+        }
+    }
+    
+    // Each book is handed over as soon as it is read, so only one fetch is held at a time
+    private static long stream(PreparedStatement pstmt, int fetchSize, RowCallback<Book> callback) throws SQLException {
+        pstmt.setFetchSize(fetchSize);
+        long count = 0;
+        
+        try (ResultSet rs = pstmt.executeQuery()) {
+            RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+            while (rs.next()) {
+                callback.accept(mapper.map(rs));
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
     @Override
     public boolean updateStockQuantity(int bookId, int newQuantity) throws SQLException {
         String sql = "UPDATE books SET stock_quantity = ? WHERE id = ?";
@@ -210,4 +273,160 @@ public class BookRepositoryImpl implements BookRepository {
             return affectedRows > 0;
         }
     }
-} 
\ No newline at end of file
+    
+    // Everything the book list shows; description and image_url are left for the details view
+    private static final String SUMMARY_COLUMNS =
+        "id, title, author, publisher, price, category, isbn, stock_quantity, average_rating, review_count";
+    
+    @Override
+    public int countSummaries(BookFilter filter) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM books" + where(filter, params);
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+    
+    @Override
+    public List<Book> findSummaries(BookFilter filter, BookSortOrder sortOrder, int offset, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM books" + where(filter, params) +
+                     " ORDER BY " + sortOrder.getOrderByClause() + " LIMIT ? OFFSET ?";
+        params.add(limit);
+        params.add(offset);
+        
+        return querySummaries(sql, params);
+    }
+    
+    @Override
+    public List<Book> findSummariesAfter(BookFilter filter, BookSortOrder sortOrder, Book after, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String where = where(filter, params);
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM books" + where +
+                     (where.isEmpty() ? " WHERE " : " AND ") + sortOrder.getKeysetCondition() +
+                     " ORDER BY " + sortOrder.getOrderByClause() + " LIMIT ?";
+        params.addAll(sortOrder.getKeysetValues(after));
+        params.add(limit);
+        
+        return querySummaries(sql, params);
+    }
+    
+    private static List<Book> querySummaries(String sql, List<Object> params) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
+            }
+        }
+        
+        return books;
+    }
+    
+    @Override
+    public List<Book> findSummariesByIds(List<Integer> ids) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return books;
+        }
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM books WHERE id = ANY (?)";
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
+            }
+        }
+        
+        // Returned in the order the ids were given; ids without a book are skipped
+        books.sort(Comparator.comparingInt(book -> ids.indexOf(book.getId())));
+        return books;
+    }
+    
+    @Override
+    public List<String> findCategories() throws SQLException {
+        List<String> categories = new ArrayList<>();
+        String sql = "SELECT DISTINCT category FROM books WHERE category IS NOT NULL ORDER BY category";
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            while (rs.next()) {
+                categories.add(rs.getString(1));
+            }
+        }
+        
+        return categories;
+    }
+    
+    // Each facet condition compares an indexed column or expression on its own, so an index can serve it
+    private static String where(BookFilter filter, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        
+        if (filter.getCategory() != null) {
+            conditions.add("category = ?");
+            params.add(filter.getCategory());
+        }
+        if (filter.getAuthor() != null) {
+            conditions.add("author = ?");
+            params.add(filter.getAuthor());
+        }
+        if (filter.getPublisher() != null) {
+            conditions.add("publisher = ?");
+            params.add(filter.getPublisher());
+        }
+        if (filter.getMinPrice() != null) {
+            conditions.add("price >= ?");
+            params.add(filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            conditions.add("price < ?");
+            params.add(filter.getMaxPrice());
+        }
+        if (filter.getMinRating() != null) {
+            conditions.add("COALESCE(average_rating, 0) >= ?");
+            params.add(filter.getMinRating());
+        }
+        if (filter.isInStock()) {
+            conditions.add("stock_quantity > 0");
+        }
+        if (filter.getSearch() != null) {
+            // Served by the trigram index when the text has at least three characters
+            conditions.add(SEARCH_TEXT_SQL + " LIKE ? ESCAPE '\\'");
+            params.add(containsPattern(filter.getSearch()));
+        }
+        
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+    
+    // Matches the text anywhere, with % and _ in it taken literally
+    private static String containsPattern(String text) {
+        String escaped = text.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
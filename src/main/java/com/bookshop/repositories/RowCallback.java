@@ -0,0 +1,13 @@
+package com.bookshop.repositories;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a streamed query one at a time, while the cursor is
+ * still open. Throwing stops the scan and closes the cursor.
+ */
+@FunctionalInterface
+public interface RowCallback<T> {
+    
+    void accept(T row) throws SQLException;
+}
@@ -9,6 +9,8 @@ public interface UserRepository extends Repository<User, Integer> {
     
     User findByEmail(String email) throws SQLException;
     
+    int count() throws SQLException;
+    
     boolean updateOrderCount(int userId, int newOrderCount) throws SQLException;
     
     boolean incrementOrderCount(int userId) throws SQLException;
@@ -1,7 +1,10 @@
 package com.bookshop.repositories;
 
+import com.bookshop.models.LoyaltyTier;
 import com.bookshop.models.User;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.ResultColumns;
+import com.bookshop.utils.RowMapper;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -23,14 +26,25 @@ public class UserRepositoryImpl implements UserRepository {
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
+            RowMapper<User> mapper = userMapper(rs);
             while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
+                users.add(mapper.map(rs));
             }
         }
         
         return users;
     }
     
+    @Override
+    public int count() throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+            
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
     @Override
     public User findById(Integer id) throws SQLException {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -186,17 +200,35 @@ public class UserRepositoryImpl implements UserRepository {
     }
     
     private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        User user = new User();
-        user.setId(rs.getInt("id"));
-        user.setUsername(rs.getString("username"));
-        user.setPasswordHash(rs.getString("password_hash"));
-        user.setFullName(rs.getString("full_name"));
-        user.setEmail(rs.getString("email"));
-        user.setAddress(rs.getString("address"));
-        user.setPhoneNumber(rs.getString("phone_number"));
-        user.setRole(rs.getString("role"));
-        user.setOrderCount(rs.getInt("order_count"));
+        return userMapper(rs).map(rs);
+    }
+    
+    private static RowMapper<User> userMapper(ResultSet rs) throws SQLException {
+        ResultColumns columns = ResultColumns.of(rs);
+        int id = columns.required("id");
+        int username = columns.required("username");
+        int passwordHash = columns.required("password_hash");
+        int fullName = columns.required("full_name");
+        int email = columns.required("email");
+        int address = columns.required("address");
+        int phoneNumber = columns.required("phone_number");
+        int role = columns.required("role");
+        int orderCount = columns.required("order_count");
+        int loyaltyTier = columns.required("loyalty_tier");
         
-        return user;
+        return row -> {
+            User user = new User();
+            user.setId(row.getInt(id));
+            user.setUsername(row.getString(username));
+            user.setPasswordHash(row.getString(passwordHash));
+            user.setFullName(row.getString(fullName));
+            user.setEmail(row.getString(email));
+            user.setAddress(row.getString(address));
+            user.setPhoneNumber(row.getString(phoneNumber));
+            user.setRole(row.getString(role));
+            user.setOrderCount(row.getInt(orderCount));
+            user.setLoyaltyTier(LoyaltyTier.fromString(row.getString(loyaltyTier)));
+            return user;
+        };
     }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.bookshop.services;
 
 import com.bookshop.models.User; 
+import com.bookshop.utils.Log;
 import com.bookshop.utils.SessionManager;
 
 import java.sql.SQLException;
@@ -10,6 +11,8 @@ import java.sql.SQLException;
  */
 public class AuthService {
     
+    private static final Log LOG = Log.get(AuthService.class);
+    
     private final UserService userService;
     
     /**
@@ -25,7 +28,7 @@ public class AuthService {
      * Default constructor that creates a default UserService.
      */
     public AuthService() {
-        this(new UserService());
+        this(UserService.getInstance());
     }
     
     /**
@@ -45,8 +48,7 @@ public class AuthService {
                 return user;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error during login: " + e.getMessage());
+            LOG.error("Error during login", e);
         }
         
         return null;
@@ -89,8 +91,7 @@ public class AuthService {
                 return registeredUser;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error during registration: " + e.getMessage());
+            LOG.error("Error during registration", e);
         }
         
         return null;
@@ -170,8 +171,7 @@ public class AuthService {
                 return true;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error updating profile: " + e.getMessage());
+            LOG.error("Error updating profile", e);
         }
         
         return false;
@@ -188,8 +188,7 @@ public class AuthService {
         try {
             return userService.changePassword(userId, newPassword);
         } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error changing password: " + e.getMessage());
+            LOG.error("Error changing password", e);
             return false;
         }
     }
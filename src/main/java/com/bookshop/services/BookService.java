@@ -2,9 +2,13 @@ package com.bookshop.services;
 
 import com.bookshop.models.Book;
 import com.bookshop.models.BookDTO;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
 import com.bookshop.repositories.BookRepository;
 import com.bookshop.repositories.BookRepositoryImpl;
+import com.bookshop.repositories.RowCallback;
 import com.bookshop.utils.BookFactory;
+import com.bookshop.utils.Log;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -12,6 +16,19 @@ import java.util.stream.Collectors;
 
 public class BookService {
     
+    private static final Log LOG = Log.get(BookService.class);
+    
+    private static final int STREAM_FETCH_SIZE = 500;
+    
+    private static BookService instance;
+    
+    public static synchronized BookService getInstance() {
+        if (instance == null) {
+            instance = new BookService();
+        }
+        return instance;
+    }
+    
     private final BookRepository repository;
     
     public BookService(BookRepository repository) {
@@ -23,23 +40,37 @@ public class BookService {
     }
     
     public List<Book> getAllBooks() throws SQLException {
-        System.out.println("BookService: getAllBooks called");
+        LOG.debug("getAllBooks called");
         
         try {
             List<Book> books = repository.findAll();
-            System.out.println("BookService: Found " + books.size() + " books in total");
+            LOG.debug("Found {} books in total", books.size());
             return books;
         } catch (SQLException e) {
-            System.err.println("BookService: SQLException in getAllBooks: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("SQLException in getAllBooks", e);
             throw e;
         } catch (Exception e) {
-            System.err.println("BookService: Unexpected exception in getAllBooks: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected exception in getAllBooks", e);
             throw new SQLException("Error retrieving books: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Passes every book to the callback without loading the catalog into memory.
+     * Meant for scans over the whole table; screens should use the paged summaries.
+     */
+    public long forEachBook(RowCallback<Book> callback) throws SQLException {
+        return repository.streamAll(STREAM_FETCH_SIZE, callback);
+    }
+    
+    public long forEachBookInCategory(String category, RowCallback<Book> callback) throws SQLException {
+        return repository.streamByCategory(category, STREAM_FETCH_SIZE, callback);
+    }
+    
+    public long forEachSearchResult(String query, RowCallback<Book> callback) throws SQLException {
+        return repository.streamSearch(query, STREAM_FETCH_SIZE, callback);
+    }
+    
     public List<Book> getBooksByCategory(String category) throws SQLException {
         return repository.findByCategory(category);
     }
@@ -48,6 +79,34 @@ public class BookService {
         return repository.findById(id);
     }
     
+    public int countBookSummaries(String search, String category) throws SQLException {
+        return repository.countSummaries(BookFilter.of(search, category));
+    }
+    
+    public int countBookSummaries(BookFilter filter) throws SQLException {
+        return repository.countSummaries(filter);
+    }
+    
+    public List<Book> getBookSummaries(String search, String category, BookSortOrder sortOrder, int offset, int limit) throws SQLException {
+        return repository.findSummaries(BookFilter.of(search, category), sortOrder, offset, limit);
+    }
+    
+    public List<Book> getBookSummaries(BookFilter filter, BookSortOrder sortOrder, int offset, int limit) throws SQLException {
+        return repository.findSummaries(filter, sortOrder, offset, limit);
+    }
+    
+    public List<Book> getBookSummariesAfter(BookFilter filter, BookSortOrder sortOrder, Book after, int limit) throws SQLException {
+        return repository.findSummariesAfter(filter, sortOrder, after, limit);
+    }
+    
+    public List<Book> getBookSummariesByIds(List<Integer> ids) throws SQLException {
+        return repository.findSummariesByIds(ids);
+    }
+    
+    public List<String> getCategories() throws SQLException {
+        return repository.findCategories();
+    }
+    
     public BookDTO getBookDTOById(int id) throws SQLException {
         Book book = repository.findById(id);
         if (book == null) {
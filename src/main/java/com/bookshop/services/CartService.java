@@ -2,7 +2,10 @@ package com.bookshop.services;
 
 import com.bookshop.models.Book;
 import com.bookshop.models.CartItem;
+import com.bookshop.models.Money;
 import com.bookshop.models.User;
+import com.bookshop.observers.CartEvent;
+import com.bookshop.observers.CartEventBus;
 import com.bookshop.utils.DatabaseConnection;
 
 import java.math.BigDecimal;
@@ -10,21 +13,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 public class CartService {
     
-    public interface CartUpdateListener {
-        void onCartUpdated(int userId);
-    }
-    
-    private final List<CartUpdateListener> listeners = new CopyOnWriteArrayList<>();
-    
     private static CartService instance;
     
-    public static CartService getInstance() {
+    public static synchronized CartService getInstance() {
         if (instance == null) {
             instance = new CartService();
         }
@@ -32,23 +29,18 @@ public class CartService {
     }
     
     private CartService() { 
-        this.bookService = new BookService();
+        this.bookService = BookService.getInstance();
     }
     
-    public void addCartUpdateListener(CartUpdateListener listener) {
-        if (listener != null && !listeners.contains(listener)) {
-            listeners.add(listener);
-        }
+    private void publish(CartItem item, CartEvent.EventType type, Book book) {
+        CartEventBus.getInstance().publish(new CartEvent(item.getUserId(), type, item, book, item.getQuantity()));
     }
     
-    public void removeCartUpdateListener(CartUpdateListener listener) {
-        listeners.remove(listener);
-    }
-    
-    private void notifyCartUpdated(int userId) {
-        for (CartUpdateListener listener : listeners) {
-            listener.onCartUpdated(userId);
-        }
+    private static CartItem cartItem(int itemId, int userId, Book book, int quantity) {
+        CartItem item = new CartItem(book, quantity);
+        item.setId(itemId);
+        item.setUserId(userId);
+        return item;
     }
     
     private BookService bookService;
@@ -86,7 +78,7 @@ public class CartService {
                     int rowsAffected = updateStmt.executeUpdate();
                     
                     if (rowsAffected > 0) {
-                        notifyCartUpdated(userId);
+                        publish(cartItem(itemId, userId, book, newQuantity), CartEvent.EventType.QUANTITY_CHANGED, book);
                         return true;
                     }
                     return false;
@@ -94,14 +86,17 @@ public class CartService {
             } else {
                 String insertQuery = "INSERT INTO cart_items (user_id, book_id, quantity) VALUES (?, ?, ?)";
                 try (Connection insertConn = getConnection();
-                     PreparedStatement insertStmt = insertConn.prepareStatement(insertQuery)) {
+                     PreparedStatement insertStmt = insertConn.prepareStatement(insertQuery, Statement.RETURN_GENERATED_KEYS)) {
                     insertStmt.setInt(1, userId);
                     insertStmt.setInt(2, bookId);
                     insertStmt.setInt(3, quantity);
                     int rowsAffected = insertStmt.executeUpdate();
                     
                     if (rowsAffected > 0) {
-                        notifyCartUpdated(userId);
+                        try (ResultSet keys = insertStmt.getGeneratedKeys()) {
+                            int itemId = keys.next() ? keys.getInt(1) : 0;
+                            publish(cartItem(itemId, userId, book, quantity), CartEvent.EventType.ITEM_ADDED, book);
+                        }
                         return true;
                     }
                     return false;
@@ -148,7 +143,7 @@ public class CartService {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                notifyCartUpdated(userId);
+                publish(cartItem(itemId, userId, book, quantity), CartEvent.EventType.QUANTITY_CHANGED, book);
                 return true;
             }
             return false;
@@ -157,7 +152,8 @@ public class CartService {
     
     public boolean removeFromCart(int itemId) throws SQLException {
         int userId;
-        String getUserQuery = "SELECT user_id FROM cart_items WHERE id = ?";
+        int bookId;
+        String getUserQuery = "SELECT user_id, book_id FROM cart_items WHERE id = ?";
         
         try (Connection connection = getConnection();
              PreparedStatement stmt = connection.prepareStatement(getUserQuery)) {
@@ -170,6 +166,7 @@ public class CartService {
             }
             
             userId = rs.getInt("user_id");
+            bookId = rs.getInt("book_id");
         }
         
         String deleteQuery = "DELETE FROM cart_items WHERE id = ?";
@@ -181,7 +178,11 @@ public class CartService {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                notifyCartUpdated(userId);
+                CartItem removed = new CartItem();
+                removed.setId(itemId);
+                removed.setUserId(userId);
+                removed.setBookId(bookId);
+                publish(removed, CartEvent.EventType.ITEM_REMOVED, null);
                 return true;
             }
             return false;
@@ -192,7 +193,7 @@ public class CartService {
         List<CartItem> cartItems = new ArrayList<>();
         
         String query = "SELECT ci.id, ci.user_id, ci.book_id, ci.quantity, " +
-                      "b.title, b.author, b.price " +
+                      "b.title, b.author, b.price, b.category " +
                       "FROM cart_items ci " +
                       "JOIN books b ON ci.book_id = b.id " +
                       "WHERE ci.user_id = ?";
@@ -213,6 +214,7 @@ public class CartService {
                     rs.getString("author"),
                     rs.getBigDecimal("price")
                 );
+                item.setCategory(rs.getString("category"));
                 cartItems.add(item);
             }
         }
@@ -238,7 +240,7 @@ public class CartService {
             int rowsAffected = stmt.executeUpdate();
             
             if (rowsAffected > 0) {
-                notifyCartUpdated(userId);
+                CartEventBus.getInstance().publish(new CartEvent(userId));
             }
             return true;
         }
@@ -254,13 +256,13 @@ public class CartService {
     
     public BigDecimal calculateTotal(int userId) throws SQLException {
         List<CartItem> items = getCartItems(userId);
-        BigDecimal total = BigDecimal.ZERO;
+        long totalMinorUnits = 0;
         
         for (CartItem item : items) {
-            total = total.add(item.getPrice().multiply(new BigDecimal(item.getQuantity())));
+            totalMinorUnits = Math.addExact(totalMinorUnits, item.getSubtotalMinorUnits());
         }
         
-        return total;
+        return Money.toBigDecimal(totalMinorUnits);
     }
     
     public BigDecimal calculateTotal() throws SQLException {
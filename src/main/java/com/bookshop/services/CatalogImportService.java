@@ -0,0 +1,428 @@
+package com.bookshop.services;
+
+import com.bookshop.utils.CatalogFeedReader;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.MetricsRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a publisher's catalog feed into the books table. The feed is read as a
+ * stream, validated in batches on several threads and copied into a staging
+ * table with COPY, so memory stays flat however large the feed is. The staged
+ * rows are then merged on ISBN in one transaction: known ISBNs are updated and
+ * new ones inserted. When an ISBN appears more than once, its last row wins.
+ *
+ * Rows that fail validation are counted and skipped; the first few are kept
+ * with their line numbers so the publisher can be told what to fix.
+ */
+public class CatalogImportService {
+    
+    private static final Log LOG = Log.get(CatalogImportService.class);
+    
+    static final String[] COLUMNS = {"title", "author", "publisher", "category", "isbn", "price",
+        "stock_quantity", "description", "image_url"};
+    // The first six columns are NOT NULL in books
+    private static final int REQUIRED_COLUMNS = 6;
+    private static final Map<String, String> COLUMN_ALIASES = Map.of("stock", "stock_quantity", "image", "image_url");
+    private static final int[] MAX_LENGTHS = {255, 100, 100, 50, 20, 0, 0, 0, 0};
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    private static final int BATCH_SIZE = 1_000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    
+    private static CatalogImportService instance;
+    
+    private final int validatorThreads;
+    
+    public static synchronized CatalogImportService getInstance() {
+        if (instance == null) {
+            instance = new CatalogImportService(Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+    
+    CatalogImportService(int validatorThreads) {
+        this.validatorThreads = Math.max(1, validatorThreads);
+    }
+    
+    /**
+     * Imports the feed at the given path; its extension picks the format (.csv,
+     * .jsonl or .ndjson). Nothing is written to books unless the whole feed has
+     * been read.
+     */
+    public ImportResult importFeed(Path file) throws IOException, SQLException {
+        CatalogFeedReader.Format format = CatalogFeedReader.Format.forFileName(file.getFileName().toString());
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFeed(reader, format);
+        }
+    }
+    
+    public ImportResult importFeed(Reader source, CatalogFeedReader.Format format) throws IOException, SQLException {
+        long started = System.nanoTime();
+        ImportResult result = new ImportResult();
+        
+        try (CatalogFeedReader feed = new CatalogFeedReader(source, format);
+             Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+            int[] columnIndexes = feed.getHeader() != null ? columnIndexes(feed.getHeader()) : null;
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    // The merge sends one change notice for the whole import instead of one per row
+                    stmt.execute("SET LOCAL bookshop.bulk_load = 'on'");
+                    stmt.execute("CREATE TEMP TABLE book_import (" +
+                        "line BIGINT NOT NULL, title VARCHAR(255), author VARCHAR(100), publisher VARCHAR(100), " +
+                        "category VARCHAR(50), isbn VARCHAR(20), price DECIMAL(10, 2), stock_quantity INT, " +
+                        "description TEXT, image_url TEXT) ON COMMIT DROP");
+                }
+                
+                stage(feed, columnIndexes, conn, result);
+                merge(conn, result);
+                conn.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        
+        result.seconds = (System.nanoTime() - started) / 1e9;
+        MetricsRegistry.getInstance().counter("bookshop_catalog_import_rows_total",
+            "Catalog feed rows accepted by the bulk import").add(result.accepted);
+        LOG.info("Catalog import: {}", result);
+        return result;
+    }
+    
+    /**
+     * Streams the feed into the staging table. Batches are validated and turned
+     * into COPY text by the pool; at most two batches per thread are in flight, and
+     * they are written in feed order as they complete.
+     */
+    private void stage(CatalogFeedReader feed, int[] columnIndexes, Connection conn, ImportResult result)
+            throws IOException, SQLException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService validators = Executors.newFixedThreadPool(validatorThreads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<>();
+        CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(
+            "COPY book_import (line, " + String.join(", ", COLUMNS) + ") FROM STDIN WITH (FORMAT csv)");
+        
+        try {
+            List<CatalogFeedReader.Record> records = new ArrayList<>(BATCH_SIZE);
+            CatalogFeedReader.Record record;
+            while ((record = feed.next()) != null) {
+                records.add(record);
+                if (records.size() == BATCH_SIZE) {
+                    List<CatalogFeedReader.Record> batch = records;
+                    inFlight.add(validators.submit(() -> validate(batch, columnIndexes)));
+                    records = new ArrayList<>(BATCH_SIZE);
+                    if (inFlight.size() >= validatorThreads * 2) {
+                        write(inFlight.poll(), copy, result);
+                    }
+                }
+            }
+            if (!records.isEmpty()) {
+                List<CatalogFeedReader.Record> batch = records;
+                inFlight.add(validators.submit(() -> validate(batch, columnIndexes)));
+            }
+            while (!inFlight.isEmpty()) {
+                write(inFlight.poll(), copy, result);
+            }
+            copy.endCopy();
+        } finally {
+            validators.shutdownNow();
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+    
+    private void write(Future<Batch> pending, CopyIn copy, ImportResult result) throws IOException, SQLException {
+        Batch batch;
+        try {
+            batch = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating the feed", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not validate the feed: " + e.getCause().getMessage(), e.getCause());
+        }
+        if (batch.copyText.length > 0) {
+            copy.writeToCopy(batch.copyText, 0, batch.copyText.length);
+        }
+        result.read += batch.read;
+        result.accepted += batch.read - batch.errors.size();
+        for (String error : batch.errors) {
+            if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                result.errors.add(error);
+            }
+        }
+        result.rejected += batch.errors.size();
+    }
+    
+    private void merge(Connection conn, ImportResult result) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE book_import_latest ON COMMIT DROP AS " +
+                "SELECT DISTINCT ON (isbn) * FROM book_import ORDER BY isbn, line DESC");
+            stmt.execute("ANALYZE book_import_latest");
+            // Keeps two imports from inserting the same new ISBN side by side; readers are not blocked
+            stmt.execute("LOCK TABLE books IN SHARE ROW EXCLUSIVE MODE");
+            
+            result.updated = stmt.executeUpdate(
+                "UPDATE books b SET title = s.title, author = s.author, publisher = s.publisher, " +
+                "category = s.category, price = s.price, " +
+                "stock_quantity = COALESCE(s.stock_quantity, b.stock_quantity), " +
+                "description = COALESCE(s.description, b.description), " +
+                "image_url = COALESCE(s.image_url, b.image_url) " +
+                "FROM book_import_latest s WHERE b.isbn = s.isbn " +
+                "AND (b.title, b.author, b.publisher, b.category, b.price, b.stock_quantity, b.description, b.image_url) " +
+                "IS DISTINCT FROM (s.title, s.author, s.publisher, s.category, s.price, " +
+                "COALESCE(s.stock_quantity, b.stock_quantity), COALESCE(s.description, b.description), " +
+                "COALESCE(s.image_url, b.image_url))");
+            result.inserted = stmt.executeUpdate(
+                "INSERT INTO books (title, author, publisher, category, isbn, price, stock_quantity, description, image_url) " +
+                "SELECT s.title, s.author, s.publisher, s.category, s.isbn, s.price, COALESCE(s.stock_quantity, 0), " +
+                "s.description, s.image_url FROM book_import_latest s " +
+                "WHERE NOT EXISTS (SELECT 1 FROM books b WHERE b.isbn = s.isbn) ORDER BY s.line");
+        }
+        if (result.inserted + result.updated > 0) {
+            try (PreparedStatement notify = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+                notify.setString(1, ChangeFeed.CHANNEL);
+                notify.setString(2, "books:IMPORT:0::" + ChangeFeed.ORIGIN);
+                notify.execute();
+            }
+        }
+    }
+    
+    /**
+     * Maps the feed's header to {@link #COLUMNS}; -1 where the feed has no such column.
+     */
+    static int[] columnIndexes(String[] header) {
+        int[] indexes = new int[COLUMNS.length];
+        Arrays.fill(indexes, -1);
+        for (int i = 0; i < header.length; i++) {
+            String name = COLUMN_ALIASES.getOrDefault(header[i], header[i]);
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (COLUMNS[c].equals(name)) {
+                    indexes[c] = i;
+                }
+            }
+        }
+        for (int c = 0; c < REQUIRED_COLUMNS; c++) {
+            if (indexes[c] < 0) {
+                throw new IllegalArgumentException("The feed has no '" + COLUMNS[c] + "' column");
+            }
+        }
+        return indexes;
+    }
+    
+    static Batch validate(List<CatalogFeedReader.Record> records, int[] columnIndexes) {
+        Batch batch = new Batch();
+        StringBuilder copyText = new StringBuilder(records.size() * 160);
+        for (CatalogFeedReader.Record record : records) {
+            batch.read++;
+            try {
+                String[] row = normalize(fields(record, columnIndexes));
+                copyText.append(record.getLine());
+                for (String value : row) {
+                    copyText.append(',');
+                    appendCsv(copyText, value);
+                }
+                copyText.append('\n');
+            } catch (IllegalArgumentException e) {
+                batch.errors.add("Line " + record.getLine() + ": " + e.getMessage());
+            }
+        }
+        batch.copyText = copyText.toString().getBytes(StandardCharsets.UTF_8);
+        return batch;
+    }
+    
+    private static String[] fields(CatalogFeedReader.Record record, int[] columnIndexes) {
+        String[] row = new String[COLUMNS.length];
+        if (record.getJson() != null) {
+            Map<String, String> json = CatalogFeedReader.parseJsonObject(record.getJson());
+            Map<String, String> named = new HashMap<>();
+            json.forEach((key, value) -> named.put(COLUMN_ALIASES.getOrDefault(key, key), value));
+            for (int c = 0; c < COLUMNS.length; c++) {
+                row[c] = named.get(COLUMNS[c]);
+            }
+            return row;
+        }
+        String[] values = record.getValues();
+        for (int c = 0; c < COLUMNS.length; c++) {
+            int index = columnIndexes[c];
+            row[c] = index >= 0 && index < values.length ? values[index] : null;
+        }
+        return row;
+    }
+    
+    /**
+     * Checks one row against the books table and returns it in the form it is
+     * stored: trimmed, blanks as null, the ISBN without separators and the price
+     * in plain notation. Throws IllegalArgumentException naming the first problem.
+     */
+    static String[] normalize(String[] row) {
+        String[] clean = new String[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            String value = row[c] == null ? null : row[c].trim();
+            clean[c] = value == null || value.isEmpty() ? null : value;
+            if (clean[c] == null && c < REQUIRED_COLUMNS) {
+                throw new IllegalArgumentException(COLUMNS[c] + " is missing");
+            }
+            if (clean[c] != null && MAX_LENGTHS[c] > 0 && clean[c].length() > MAX_LENGTHS[c]) {
+                throw new IllegalArgumentException(COLUMNS[c] + " is longer than " + MAX_LENGTHS[c] + " characters");
+            }
+        }
+        
+        String isbn = clean[4].replace("-", "").replace(" ", "").toUpperCase(Locale.ROOT);
+        if (!isValidIsbn(isbn)) {
+            throw new IllegalArgumentException("isbn '" + clean[4] + "' is not a valid ISBN-10 or ISBN-13");
+        }
+        clean[4] = isbn;
+        
+        BigDecimal price;
+        try {
+            price = new BigDecimal(clean[5]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price '" + clean[5] + "' is not a number");
+        }
+        if (price.signum() < 0 || price.compareTo(MAX_PRICE) > 0 || price.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("price '" + clean[5] + "' must be between 0 and " + MAX_PRICE + " with at most 2 decimals");
+        }
+        clean[5] = price.toPlainString();
+        
+        if (clean[6] != null) {
+            try {
+                if (Integer.parseInt(clean[6]) < 0) {
+                    throw new IllegalArgumentException("stock_quantity must not be negative");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("stock_quantity '" + clean[6] + "' is not a whole number");
+            }
+        }
+        return clean;
+    }
+    
+    static boolean isValidIsbn(String isbn) {
+        if (isbn.length() == 10) {
+            int sum = 0;
+            for (int i = 0; i < 10; i++) {
+                char c = isbn.charAt(i);
+                int digit = c == 'X' && i == 9 ? 10 : Character.isDigit(c) ? c - '0' : -1;
+                if (digit < 0) {
+                    return false;
+                }
+                sum += (10 - i) * digit;
+            }
+            return sum % 11 == 0;
+        }
+        if (isbn.length() == 13) {
+            int sum = 0;
+            for (int i = 0; i < 13; i++) {
+                char c = isbn.charAt(i);
+                if (!Character.isDigit(c)) {
+                    return false;
+                }
+                sum += (c - '0') * (i % 2 == 0 ? 1 : 3);
+            }
+            return sum % 10 == 0;
+        }
+        return false;
+    }
+    
+    private static void appendCsv(StringBuilder out, String value) {
+        // An unquoted empty field is NULL to COPY; quoted text is taken as is
+        if (value == null) {
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+    
+    static final class Batch {
+        int read;
+        final List<String> errors = new ArrayList<>();
+        byte[] copyText;
+    }
+    
+    public static final class ImportResult {
+        private long read;
+        private long accepted;
+        private long rejected;
+        private int inserted;
+        private int updated;
+        private double seconds;
+        private final List<String> errors = new ArrayList<>();
+        
+        public long getRead() {
+            return read;
+        }
+        
+        public long getAccepted() {
+            return accepted;
+        }
+        
+        public long getRejected() {
+            return rejected;
+        }
+        
+        public int getInserted() {
+            return inserted;
+        }
+        
+        public int getUpdated() {
+            return updated;
+        }
+        
+        public double getSeconds() {
+            return seconds;
+        }
+        
+        /**
+         * The first rejected rows, as "Line n: problem".
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d rows read, %d accepted, %d rejected; %d books added, %d updated in %.1f s",
+                read, accepted, rejected, inserted, updated, seconds);
+        }
+    }
+}
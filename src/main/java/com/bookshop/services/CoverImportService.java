@@ -0,0 +1,103 @@
+package com.bookshop.services;
+
+import com.bookshop.utils.CoverPack;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Copies book covers into the local cover pack so the book screens can show
+ * them without going to the network. Covers already in the pack are skipped,
+ * so the import can be re-run after new books are added.
+ */
+public class CoverImportService {
+    
+    private static final Log LOG = Log.get(CoverImportService.class);
+    
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 15_000;
+    
+    private static CoverImportService instance;
+    
+    private final CoverPack pack;
+    
+    public static synchronized CoverImportService getInstance() {
+        if (instance == null) {
+            instance = new CoverImportService(CoverPack.getInstance());
+        }
+        return instance;
+    }
+    
+    CoverImportService(CoverPack pack) {
+        this.pack = pack;
+    }
+    
+    /**
+     * Imports the cover of every book that has an image URL and returns how many
+     * were added. A cover that cannot be fetched is reported and skipped.
+     */
+    public int importAll() throws SQLException {
+        String sql = "SELECT isbn, image_url FROM books WHERE image_url IS NOT NULL AND image_url <> ''";
+        int imported = 0;
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            
+            while (rs.next()) {
+                String isbn = rs.getString("isbn");
+                String imageUrl = rs.getString("image_url");
+                try {
+                    if (importCover(isbn, imageUrl)) {
+                        imported++;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    LOG.warn("Could not import cover for ISBN {} from {}: {}", isbn, imageUrl, e.getMessage());
+                }
+            }
+        }
+        
+        return imported;
+    }
+    
+    /**
+     * Adds the cover at {@code source} (a URL or a local file path) under the given ISBN.
+     * Returns false if the pack already has a cover for it.
+     */
+    public boolean importCover(String isbn, String source) throws IOException {
+        if (pack.contains(isbn)) {
+            return false;
+        }
+        
+        byte[] image = read(source);
+        if (image.length == 0) {
+            throw new IOException("Empty image at " + source);
+        }
+        
+        pack.append(isbn, image);
+        return true;
+    }
+    
+    private byte[] read(String source) throws IOException {
+        if (!source.contains("://")) {
+            return Files.readAllBytes(Paths.get(source));
+        }
+        
+        URLConnection connection = new URL(source).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        try (InputStream in = connection.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.bookshop.services;
 
 import com.bookshop.models.User;
+import com.bookshop.utils.Log;
 import java.math.BigDecimal;
 
 public class CreditCardPayment implements PaymentStrategy {
     
+    private static final Log LOG = Log.get(CreditCardPayment.class);
+    
     private String cardNumber;
     private String expiryDate;
     private String cvv;
@@ -17,7 +20,7 @@ public class CreditCardPayment implements PaymentStrategy {
     
     @Override
     public boolean processPayment(User user, BigDecimal amount) {
-        System.out.println("Processing credit card payment of " + amount + " for " + user.getUsername());
+        LOG.debug("Processing credit card payment of {} for {}", amount, user.getUsername());
         return true;
     }
 }
\ No newline at end of file
@@ -1,16 +1,21 @@
 package com.bookshop.services;
 
 import com.bookshop.db.DatabaseConnection;
+import com.bookshop.utils.Log;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement; 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class DatabaseInitializationService {
     
+    private static final Log LOG = Log.get(DatabaseInitializationService.class);
+    
     private static final String INIT_SCRIPT_PATH = "/db/init_database.sql";
     
     public void initializeDatabase() throws Exception {
@@ -28,15 +33,13 @@ public class DatabaseInitializationService {
     
     private void executeSqlScript(Connection conn, String sqlScript) throws SQLException {
         try (Statement stmt = conn.createStatement()) {
-            String[] statements = sqlScript.split(";");
-            
-            for (String statement : statements) {
+            for (String statement : splitStatements(sqlScript)) {
                 String trimmedStatement = statement.trim();
                 if (!trimmedStatement.isEmpty()) {
                     try {
                         stmt.execute(trimmedStatement);
                     } catch (SQLException e) {
-                        System.err.println("Error executing statement: " + trimmedStatement);
+                        LOG.warn("Error executing statement: {}", trimmedStatement);
                         throw e;
                     }
                 }
@@ -44,6 +47,30 @@ public class DatabaseInitializationService {
         }
     }
     
+    // Splits on semicolons, except inside $$-quoted function bodies
+    private List<String> splitStatements(String sqlScript) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inDollarQuote = false;
+        
+        for (int i = 0; i < sqlScript.length(); i++) {
+            char c = sqlScript.charAt(i);
+            if (c == '$' && i + 1 < sqlScript.length() && sqlScript.charAt(i + 1) == '$') {
+                inDollarQuote = !inDollarQuote;
+                current.append("$$");
+                i++;
+            } else if (c == ';' && !inDollarQuote) {
+                statements.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        statements.add(current.toString());
+        
+        return statements;
+    }
+    
     private String readSqlScript() throws Exception {
         try (InputStream is = getClass().getResourceAsStream(INIT_SCRIPT_PATH);
              BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
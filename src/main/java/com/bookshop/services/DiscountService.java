@@ -1,32 +1,147 @@
 package com.bookshop.services;
 
+import com.bookshop.models.CartItem;
+import com.bookshop.models.LoyaltyTier;
+import com.bookshop.models.Money;
 import com.bookshop.models.User;
 
-import java.math.BigDecimal; 
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 public class DiscountService {
     
+    // Strategies hold no state, so one instance of each is shared by every lookup
+    private static final DiscountStrategy NO_DISCOUNT = new NoDiscount();
+    private static final DiscountStrategy REGULAR_MEMBER_DISCOUNT = new RegularMemberDiscount();
+    private static final DiscountStrategy PREMIUM_MEMBER_DISCOUNT = new PremiumMemberDiscount();
+    
+    private static final String RECORD_ORDER_SQL =
+        "UPDATE users SET order_count = order_count + 1, " +
+        "loyalty_tier = " + tierSql("order_count + 1") + " " +
+        "WHERE id = ? RETURNING order_count, loyalty_tier";
+    
+    private static DiscountService instance;
+    
+    public static synchronized DiscountService getInstance() {
+        if (instance == null) {
+            instance = new DiscountService();
+        }
+        return instance;
+    }
+    
     public DiscountStrategy getDiscountStrategy(User user) {
-        if (user == null) {
-            return new NoDiscount();
+        if (user == null || user.isAdmin()) {
+            return NO_DISCOUNT;
         }
         
-        if (user.getOrderCount() >= 10) {
-            return new PremiumMemberDiscount();
-        } else if (user.getOrderCount() >= 5) {
-            return new RegularMemberDiscount();
-        } else {
-            return new NoDiscount();
+        return getDiscountStrategy(user.getLoyaltyTier());
+    }
+    
+    public DiscountStrategy getDiscountStrategy(LoyaltyTier tier) {
+        if (tier == null) {
+            return NO_DISCOUNT;
+        }
+        
+        switch (tier) {
+            case PREMIUM:
+                return PREMIUM_MEMBER_DISCOUNT;
+            case REGULAR:
+                return REGULAR_MEMBER_DISCOUNT;
+            default:
+                return NO_DISCOUNT;
         }
     }
     
     public BigDecimal calculateDiscountedPrice(BigDecimal originalPrice, User user) {
+        long originalMinorUnits = Money.toMinorUnits(originalPrice);
+        long discountMinorUnits = getDiscountStrategy(user).calculateDiscountMinorUnits(user, originalMinorUnits);
+        return Money.toBigDecimal(originalMinorUnits - discountMinorUnits);
+    }
+    
+    public long[] priceLineItems(User user, long[] unitPriceMinorUnits, int[] quantities) {
+        if (unitPriceMinorUnits.length != quantities.length) {
+            throw new IllegalArgumentException("Expected one quantity per unit price");
+        }
+        
+        // The strategy is resolved once for the whole cart, leaving only long arithmetic in the loop
         DiscountStrategy strategy = getDiscountStrategy(user);
-        BigDecimal discountAmount = strategy.calculateDiscount(user, originalPrice);
-        return originalPrice.subtract(discountAmount);
+        long[] lineTotals = new long[unitPriceMinorUnits.length];
+        for (int i = 0; i < unitPriceMinorUnits.length; i++) {
+            long subtotal = Money.multiply(unitPriceMinorUnits[i], quantities[i]);
+            lineTotals[i] = subtotal - strategy.calculateDiscountMinorUnits(user, subtotal);
+        }
+        
+        return lineTotals;
+    }
+    
+    public BigDecimal[] priceLineItems(User user, BigDecimal[] unitPrices, int[] quantities) {
+        long[] unitPriceMinorUnits = new long[unitPrices.length];
+        for (int i = 0; i < unitPrices.length; i++) {
+            unitPriceMinorUnits[i] = Money.toMinorUnits(unitPrices[i]);
+        }
+        
+        long[] lineTotals = priceLineItems(user, unitPriceMinorUnits, quantities);
+        BigDecimal[] result = new BigDecimal[lineTotals.length];
+        for (int i = 0; i < lineTotals.length; i++) {
+            result[i] = Money.toBigDecimal(lineTotals[i]);
+        }
+        
+        return result;
+    }
+    
+    public long[] priceLineItems(User user, List<CartItem> items) {
+        long[] unitPriceMinorUnits = new long[items.size()];
+        int[] quantities = new int[items.size()];
+        for (int i = 0; i < unitPriceMinorUnits.length; i++) {
+            CartItem item = items.get(i);
+            unitPriceMinorUnits[i] = item.getPriceMinorUnits();
+            quantities[i] = item.getQuantity();
+        }
+        
+        return priceLineItems(user, unitPriceMinorUnits, quantities);
     }
     
     public String getDiscountDescription(User user) {
         return getDiscountStrategy(user).getDescription();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Bumps the user's order count and persisted loyalty tier on the caller's connection,
+     * so the change commits or rolls back together with the order itself.
+     */
+    public static LoyaltyTier recordOrder(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RECORD_ORDER_SQL)) {
+            stmt.setInt(1, userId);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return LoyaltyTier.fromString(rs.getString("loyalty_tier"));
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * A CASE expression giving the tier name for the order count in {@code orderCount},
+     * built from the LoyaltyTier thresholds so the stored tiers follow the enum.
+     */
+    public static String tierSql(String orderCount) {
+        LoyaltyTier[] tiers = LoyaltyTier.values();
+        Arrays.sort(tiers, Comparator.comparingInt(LoyaltyTier::getMinOrderCount).reversed());
+        
+        StringBuilder sql = new StringBuilder("CASE");
+        for (int i = 0; i < tiers.length - 1; i++) {
+            sql.append(" WHEN ").append(orderCount).append(" >= ").append(tiers[i].getMinOrderCount())
+                .append(" THEN '").append(tiers[i].name()).append("'");
+        }
+        return sql.append(" ELSE '").append(tiers[tiers.length - 1].name()).append("' END").toString();
+    }
+}
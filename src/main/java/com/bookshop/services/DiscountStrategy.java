@@ -1,5 +1,6 @@
 package com.bookshop.services;
 
+import com.bookshop.models.Money;
 import com.bookshop.models.User;
 import java.math.BigDecimal;
 
@@ -7,6 +8,10 @@ public interface DiscountStrategy {
     
     BigDecimal calculateDiscount(User user, BigDecimal amount);
     
+    default long calculateDiscountMinorUnits(User user, long amountMinorUnits) {
+        return Money.toMinorUnits(calculateDiscount(user, Money.toBigDecimal(amountMinorUnits)));
+    }
+    
     boolean isApplicable(User user);
     
     String getDescription();
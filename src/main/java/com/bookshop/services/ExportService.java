@@ -0,0 +1,105 @@
+package com.bookshop.services;
+
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.ExportWriter;
+import com.bookshop.utils.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Exports books, orders and reviews to CSV or JSON-lines files. Rows are read
+ * through a server-side cursor and written as they arrive, so heap use does not
+ * grow with the table. Each export runs on a connection of its own, leaving the
+ * shared one free for the rest of the application.
+ */
+public class ExportService {
+    
+    private static final Log LOG = Log.get(ExportService.class);
+    
+    private static final int FETCH_SIZE = 1_000;
+    
+    private static ExportService instance;
+    
+    public static synchronized ExportService getInstance() {
+        if (instance == null) {
+            instance = new ExportService();
+        }
+        return instance;
+    }
+    
+    private ExportService() {
+    }
+    
+    /**
+     * Writes every book to the file and returns the row count. The columns match
+     * what CatalogImportService reads, so the file can be imported again.
+     */
+    public long exportBooks(Path file) throws IOException, SQLException {
+        return export(file,
+            "SELECT id, title, author, publisher, category, isbn, price, stock_quantity, " +
+            "average_rating, review_count, description, image_url FROM books ORDER BY id",
+            "id", "title", "author", "publisher", "category", "isbn", "price", "stock_quantity",
+            "average_rating", "review_count", "description", "image_url");
+    }
+    
+    /**
+     * Writes one row per order item, with the order's columns repeated on each.
+     * An order without items gets a single row with empty item columns.
+     */
+    public long exportOrders(Path file) throws IOException, SQLException {
+        return export(file,
+            "SELECT o.id, o.user_id, o.order_date, o.status, o.total_amount, o.discount_applied, " +
+            "o.payment_method, o.shipping_address, oi.book_id, b.isbn, b.title, oi.quantity, oi.price " +
+            "FROM orders o " +
+            "LEFT JOIN order_items oi ON oi.order_id = o.id " +
+            "LEFT JOIN books b ON b.id = oi.book_id " +
+            "ORDER BY o.id, oi.id",
+            "order_id", "user_id", "order_date", "status", "total_amount", "discount_applied",
+            "payment_method", "shipping_address", "book_id", "isbn", "title", "quantity", "price");
+    }
+    
+    public long exportReviews(Path file) throws IOException, SQLException {
+        return export(file,
+            "SELECT r.id, r.book_id, b.isbn, r.user_id, u.username, r.rating, r.comment, r.review_date " +
+            "FROM reviews r " +
+            "JOIN books b ON b.id = r.book_id " +
+            "JOIN users u ON u.id = r.user_id " +
+            "ORDER BY r.id",
+            "review_id", "book_id", "isbn", "user_id", "username", "rating", "comment", "review_date");
+    }
+    
+    private long export(Path file, String sql, String... columns) throws IOException, SQLException {
+        long started = System.nanoTime();
+        Object[] values = new Object[columns.length];
+        
+        try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+            // PostgreSQL only streams with a fetch size inside a transaction; otherwise it reads every row first
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 ExportWriter writer = ExportWriter.open(file, columns)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = rs.getObject(i + 1);
+                        }
+                        writer.writeRow(values);
+                    }
+                }
+                conn.commit();
+                LOG.info("Exported {} rows to {} in {} ms", writer.getRows(), file,
+                    (System.nanoTime() - started) / 1_000_000);
+                return writer.getRows();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.bookshop.services;
+
+import com.bookshop.models.CatalogFacets;
+import com.bookshop.models.FacetCount;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter choices for the book list with the number of books behind each. The
+ * counts live in book_facet_counts, which triggers on books keep current on
+ * every insert, delete and relevant update, so reading them is one small query
+ * however large the catalog is. The result is cached until a book changes.
+ */
+public class FacetService implements ChangeFeed.Listener {
+    
+    private static final Log LOG = Log.get(FacetService.class);
+    
+    // Authors and publishers can run into the thousands; the list only offers the largest
+    private static final int VALUES_PER_FACET = 100;
+    // Catches changes the feed missed, such as ones made while it was reconnecting
+    private static final long MAX_CACHE_AGE_MILLIS = 60_000;
+    
+    private static final String FACETS_SQL =
+        "SELECT facet, value, book_count FROM (" +
+        "SELECT facet, value, book_count, " +
+        "ROW_NUMBER() OVER (PARTITION BY facet ORDER BY book_count DESC, value) AS position " +
+        "FROM book_facet_counts WHERE book_count > 0" +
+        ") f WHERE position <= ? " +
+        "ORDER BY facet, book_count DESC, value";
+    
+    // Books are counted by their stored values, into CatalogFacets' price ranges and whole stars
+    private static final String PRICE_RANGE_SQL = priceRangeSql();
+    private static final String RATING_SQL = "CAST(CAST(FLOOR(COALESCE(average_rating, 0)) AS INT) AS TEXT)";
+    
+    private static final String REBUILD_SQL =
+        "INSERT INTO book_facet_counts (facet, value, book_count) " +
+        countsSql("SELECT category, author, publisher, price, average_rating, 1 AS d FROM books");
+    
+    private static FacetService instance;
+    
+    private volatile CatalogFacets cached;
+    private volatile long cachedAt;
+    
+    public static synchronized FacetService getInstance() {
+        if (instance == null) {
+            instance = new FacetService();
+            ChangeFeed.getInstance().addListener(instance);
+        }
+        return instance;
+    }
+    
+    private FacetService() {
+    }
+    
+    public CatalogFacets getFacets() throws SQLException {
+        CatalogFacets facets = cached;
+        if (facets != null && System.currentTimeMillis() - cachedAt < MAX_CACHE_AGE_MILLIS) {
+            return facets;
+        }
+        
+        List<FacetCount> counts = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(FACETS_SQL)) {
+            stmt.setInt(1, VALUES_PER_FACET);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.add(new FacetCount(rs.getString(1), rs.getString(2), rs.getLong(3)));
+                }
+            }
+        }
+        
+        facets = new CatalogFacets(counts);
+        cachedAt = System.currentTimeMillis();
+        cached = facets;
+        return facets;
+    }
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        for (ChangeFeed.Change change : changes) {
+            if (change.isOn("books")) {
+                cached = null;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Recounts every facet from the books table, for the first run after
+     * upgrading or if the counts were ever changed by hand. Book changes wait
+     * until the recount commits.
+     */
+    public int backfill() throws SQLException {
+        long started = System.nanoTime();
+        
+        try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Writers lock books before the triggers touch the counts, so take them in that order too
+                stmt.execute("LOCK TABLE books IN SHARE MODE");
+                stmt.execute("LOCK TABLE book_facet_counts IN EXCLUSIVE MODE");
+                int values = rebuild(conn);
+                conn.commit();
+                cached = null;
+                
+                LOG.info("Recounted {} facet values in {} ms", values, (System.nanoTime() - started) / 1_000_000);
+                return values;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Replaces the counts with ones computed from the books table, on the
+     * caller's connection and transaction. Returns the number of facet values.
+     */
+    public static int rebuild(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM book_facet_counts");
+            return stmt.executeUpdate(REBUILD_SQL);
+        }
+    }
+    
+    /**
+     * The bookshop_count_facets() trigger function that keeps the counts current.
+     * DatabaseConnection installs it together with the triggers on books.
+     */
+    public static String countTriggerFunctionSql() {
+        // Inserts and deletes are counted once per statement, so a catalog import adds its books in one step;
+        // updates are counted per row and only when a counted column changed, which leaves out stock updates
+        String fromOld = "SELECT OLD.category AS category, OLD.author AS author, OLD.publisher AS publisher, " +
+            "OLD.price AS price, OLD.average_rating AS average_rating, -1 AS d";
+        String fromNew = "SELECT NEW.category, NEW.author, NEW.publisher, NEW.price, NEW.average_rating, 1";
+        
+        return "CREATE OR REPLACE FUNCTION bookshop_count_facets() RETURNS trigger AS $$ " +
+            "BEGIN " +
+            "IF TG_OP = 'INSERT' THEN " +
+            countsUpdateSql("SELECT category, author, publisher, price, average_rating, 1 AS d FROM new_rows") + "; " +
+            "ELSIF TG_OP = 'DELETE' THEN " +
+            countsUpdateSql("SELECT category, author, publisher, price, average_rating, -1 AS d FROM old_rows") + "; " +
+            "ELSE " +
+            countsUpdateSql(fromOld + " UNION ALL " + fromNew) + "; " +
+            "END IF; " +
+            "RETURN NULL; " +
+            "END; $$ LANGUAGE plpgsql";
+    }
+    
+    // Values are written in key order so concurrent book changes lock shared count rows in the same order
+    private static String countsUpdateSql(String rows) {
+        return "INSERT INTO book_facet_counts (facet, value, book_count) " +
+            countsSql(rows) + " HAVING SUM(d) <> 0 ORDER BY facet, value " +
+            "ON CONFLICT (facet, value) DO UPDATE SET book_count = book_facet_counts.book_count + EXCLUDED.book_count";
+    }
+    
+    /**
+     * A query that counts books per facet value. {@code rows} must select the
+     * category, author, publisher, price and average_rating columns plus a
+     * column {@code d} with what each row adds to the count, such as 1 or -1.
+     * Yields facet, value and book_count, grouped by facet and value.
+     */
+    private static String countsSql(String rows) {
+        return "WITH r AS (" + rows + ") " +
+               "SELECT facet, value, SUM(d) AS book_count FROM (" +
+               "SELECT '" + CatalogFacets.CATEGORY + "' AS facet, category AS value, d FROM r UNION ALL " +
+               "SELECT '" + CatalogFacets.AUTHOR + "', author, d FROM r UNION ALL " +
+               "SELECT '" + CatalogFacets.PUBLISHER + "', publisher, d FROM r UNION ALL " +
+               "SELECT '" + CatalogFacets.PRICE + "', " + PRICE_RANGE_SQL + ", d FROM r UNION ALL " +
+               "SELECT '" + CatalogFacets.RATING + "', " + RATING_SQL + ", d FROM r" +
+               ") c WHERE value IS NOT NULL GROUP BY facet, value";
+    }
+    
+    private static String priceRangeSql() {
+        StringBuilder sql = new StringBuilder("CASE WHEN price IS NULL THEN NULL");
+        int last = CatalogFacets.getPriceRangeCount() - 1;
+        for (int range = 0; range < last; range++) {
+            sql.append(" WHEN price < ").append(CatalogFacets.getPriceRangeMax(range).toPlainString())
+                .append(" THEN '").append(range).append("'");
+        }
+        return sql.append(" ELSE '").append(last).append("' END").toString();
+    }
+}
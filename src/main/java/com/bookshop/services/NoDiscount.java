@@ -10,6 +10,11 @@ public class NoDiscount implements DiscountStrategy {
         return BigDecimal.ZERO;
     }
     
+    @Override
+    public long calculateDiscountMinorUnits(User user, long amountMinorUnits) {
+        return 0;
+    }
+    
     @Override
     public boolean isApplicable(User user) {
         return true;
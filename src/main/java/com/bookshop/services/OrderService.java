@@ -4,7 +4,11 @@ import com.bookshop.models.Order;
 import com.bookshop.models.OrderItem;
 import com.bookshop.models.CartItem;
 import com.bookshop.models.Book;
+import com.bookshop.models.Money;
+import com.bookshop.utils.BookFactory;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.RowMapper;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,17 +17,28 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.math.BigDecimal;
 
 public class OrderService {
     
-    private BookService bookService;
+    private static final Log LOG = Log.get(OrderService.class);
+    
+    private static OrderService instance;
+    
+    public static synchronized OrderService getInstance() {
+        if (instance == null) {
+            instance = new OrderService();
+        }
+        return instance;
+    }
+    
     private DiscountService discountService;
     
     public OrderService() {
-        this.bookService = new BookService();
-        this.discountService = new DiscountService();
+        this.discountService = DiscountService.getInstance();
     }
     
     public int createOrder(int userId, List<CartItem> cartItems, String paymentMethod) throws SQLException {
@@ -31,41 +46,47 @@ public class OrderService {
             return -1;
         }
         
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
         int orderId = -1;
         
-        try {
-            conn = DatabaseConnection.getInstance().getConnection();
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
             conn.setAutoCommit(false);
             
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            for (CartItem item : cartItems) {
-                Book book = bookService.getBookById(item.getBookId());
-                if (book != null) {
-                    BigDecimal itemPrice = book.getPrice().multiply(new BigDecimal(item.getQuantity()));
-                    totalAmount = totalAmount.add(itemPrice);
+            try {
+                // Books are read on this connection; BookService would close it and end the transaction
+                Map<Integer, Book> books = lockBooks(conn, cartItems);
+                List<CartItem> pricedItems = new ArrayList<>();
+                long totalMinorUnits = 0;
+                for (CartItem item : cartItems) {
+                    Book book = books.get(item.getBookId());
+                    if (book != null) {
+                        CartItem pricedItem = new CartItem(book, item.getQuantity());
+                        totalMinorUnits = Math.addExact(totalMinorUnits, pricedItem.getSubtotalMinorUnits());
+                        pricedItems.add(pricedItem);
+                    }
+                }
+                totalMinorUnits -= PromotionService.getInstance().calculateDiscountMinorUnits(pricedItems);
+                
+                String sql = "INSERT INTO orders (user_id, order_date, status, total_amount, payment_method) " +
+                             "VALUES (?, ?, ?, ?, ?) RETURNING id";
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, userId);
+                    pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    pstmt.setString(3, "pending");
+                    pstmt.setBigDecimal(4, Money.toBigDecimal(totalMinorUnits));
+                    pstmt.setString(5, paymentMethod);
+                    
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return -1;
+                        }
+                        orderId = rs.getInt(1);
+                    }
                 }
-            }
-            
-            String sql = "INSERT INTO orders (user_id, order_date, status, total_amount, payment_method) " +
-                         "VALUES (?, ?, ?, ?, ?) RETURNING id";
-            
-            pstmt = conn.prepareStatement(sql);
-            pstmt.setInt(1, userId);
-            pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.setString(3, "pending");
-            pstmt.setBigDecimal(4, totalAmount);
-            pstmt.setString(5, paymentMethod);
-            
-            rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                orderId = rs.getInt(1);
                 
                 for (CartItem item : cartItems) {
-                    Book book = bookService.getBookById(item.getBookId());
+                    Book book = books.get(item.getBookId());
                     if (book != null) {
                         String itemSql = "INSERT INTO order_items (order_id, book_id, quantity, price) " +
                                          "VALUES (?, ?, ?, ?)";
@@ -78,60 +99,86 @@ public class OrderService {
                             itemStmt.executeUpdate();
                         }
                         
-                        book.reduceStock(item.getQuantity());
-                        bookService.updateBook(book);
+                        if (book.reduceStock(item.getQuantity())) {
+                            try (PreparedStatement stockStmt = conn.prepareStatement(
+                                    "UPDATE books SET stock_quantity = ? WHERE id = ?")) {
+                                stockStmt.setInt(1, book.getStockQuantity());
+                                stockStmt.setInt(2, book.getId());
+                                stockStmt.executeUpdate();
+                            }
+                        }
                     }
                 }
                 
-                String updateUserSql = "UPDATE users SET order_count = order_count + 1 WHERE id = ?";
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateUserSql)) {
-                    updateStmt.setInt(1, userId);
-                    updateStmt.executeUpdate();
-                }
+                DiscountService.recordOrder(conn, userId);
+                SalesAnalyticsService.recordOrder(conn, orderId);
                 
                 conn.commit();
-            }
-        } catch (SQLException e) {
-            try {
-                if (conn != null) {
+                TopSellersService.getInstance().recordSale(pricedItems);
+                RecommendationService.getInstance().recordOrder(orderId, pricedItems);
+            } catch (SQLException e) {
+                try {
                     conn.rollback();
+                } catch (SQLException ex) {
+                    LOG.error("Rollback of order for user {} failed", userId, ex);
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            
-            throw e;
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-                if (conn != null) {
-                    conn.setAutoCommit(true);
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
         
         return orderId;
     }
     
+    /**
+     * Reads the cart's books inside the caller's transaction and locks them until it
+     * ends, so price and stock cannot change under the order. Rows are locked in id
+     * order so that concurrent checkouts cannot deadlock.
+     */
+    private static Map<Integer, Book> lockBooks(Connection conn, List<CartItem> cartItems) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (CartItem item : cartItems) {
+            ids.add(item.getBookId());
+        }
+        
+        Map<Integer, Book> books = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT * FROM books WHERE id = ANY (?) ORDER BY id FOR UPDATE")) {
+            stmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+                while (rs.next()) {
+                    Book book = mapper.map(rs);
+                    books.put(book.getId(), book);
+                }
+            }
+        }
+        return books;
+    }
+    
     public List<Order> getAllOrders() throws SQLException {
         List<Order> orders = new ArrayList<>();
-        String sql = "SELECT * FROM orders ORDER BY order_date DESC";
+        Map<Integer, Order> ordersById = new HashMap<>();
+        // Customer names come from one join, as in searchOrders, and the items from one more
+        // query, instead of a lookup per order or per rendered row
+        String sql = "SELECT o.*, u.full_name AS customer_name FROM orders o " +
+                     "JOIN users u ON o.user_id = u.id " +
+                     "ORDER BY o.order_date DESC";
         
-        System.out.println("OrderService: getAllOrders called");
+        LOG.debug("getAllOrders called");
         
         try (Connection conn = DatabaseConnection.getInstance().getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
-            System.out.println("OrderService: Query executed");
+            LOG.debug("Query executed");
             
             int count = 0;
             while (rs.next()) {
                 count++;
-                System.out.println("OrderService: Processing order #" + count);
+                LOG.debug("Processing order #{}", count);
                 
                 Order order = new Order();
                 order.setId(rs.getInt("id"));
@@ -142,48 +189,115 @@ public class OrderService {
                     if (timestamp != null) {
                         order.setOrderDate(timestamp.toLocalDateTime());
                     } else {
-                        System.out.println("OrderService: order_date is null for order ID " + order.getId());
+                        LOG.debug("order_date is null for order ID {}", order.getId());
                         order.setOrderDate(LocalDateTime.now());
                     }
                 } catch (Exception e) {
-                    System.err.println("OrderService: Error parsing order_date: " + e.getMessage());
+                    LOG.warn("Error parsing order_date: {}", e.getMessage());
                     order.setOrderDate(LocalDateTime.now());
                 }
                 
                 String status = rs.getString("status");
-                System.out.println("OrderService: Order status is: " + status);
+                LOG.debug("Order status is: {}", status);
                 order.setStatus(status);
                 
                 try {
                     order.setTotalAmount(rs.getBigDecimal("total_amount"));
                 } catch (Exception e) {
-                    System.err.println("OrderService: Error getting total_amount: " + e.getMessage());
+                    LOG.warn("Error getting total_amount: {}", e.getMessage());
                     order.setTotalAmount(BigDecimal.ZERO);
                 }
                 
                 order.setPaymentMethod(rs.getString("payment_method"));
-                
-                List<OrderItem> items = getOrderItems(order.getId());
-                System.out.println("OrderService: Order ID " + order.getId() + " has " + items.size() + " items");
-                order.setItems(items);
+                order.setCustomerName(rs.getString("customer_name"));
                 
                 orders.add(order);
+                ordersById.put(order.getId(), order);
+            }
+            
+            try (PreparedStatement itemStmt = conn.prepareStatement("SELECT * FROM order_items ORDER BY order_id, id");
+                 ResultSet itemRs = itemStmt.executeQuery()) {
+                while (itemRs.next()) {
+                    Order order = ordersById.get(itemRs.getInt("order_id"));
+                    if (order != null) {
+                        order.getItems().add(mapOrderItem(itemRs));
+                    }
+                }
             }
             
-            System.out.println("OrderService: Found " + orders.size() + " orders in total");
+            LOG.debug("Found {} orders in total", orders.size());
         } catch (SQLException e) {
-            System.err.println("OrderService: SQLException in getAllOrders: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("SQLException in getAllOrders", e);
             throw e;
         } catch (Exception e) {
-            System.err.println("OrderService: Unexpected exception in getAllOrders: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected exception in getAllOrders", e);
             throw new SQLException("Error retrieving orders: " + e.getMessage(), e);
         }
         
         return orders;
     }
     
+    public List<Order> searchOrders(String query, int limit, int offset) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        String searchText = query == null ? "" : query.trim();
+        boolean idSearch = !searchText.isEmpty() && searchText.chars().allMatch(Character::isDigit);
+        
+        // Joins users once so the customer name comes back with the order row, and lets the
+        // trigram index on users.full_name and the text index on orders.id serve the predicates
+        StringBuilder sql = new StringBuilder(
+            "SELECT o.id, o.user_id, o.order_date, o.status, o.total_amount, o.payment_method, " +
+            "u.full_name AS customer_name " +
+            "FROM orders o " +
+            "JOIN users u ON o.user_id = u.id ");
+        
+        if (!searchText.isEmpty()) {
+            sql.append("WHERE u.full_name ILIKE ? ");
+            if (idSearch) {
+                sql.append("OR CAST(o.id AS TEXT) LIKE ? ");
+            }
+        }
+        
+        sql.append("ORDER BY o.order_date DESC, o.id DESC LIMIT ? OFFSET ?");
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            int index = 1;
+            if (!searchText.isEmpty()) {
+                stmt.setString(index++, "%" + escapeLikePattern(searchText) + "%");
+                if (idSearch) {
+                    stmt.setString(index++, searchText + "%");
+                }
+            }
+            stmt.setInt(index++, limit);
+            stmt.setInt(index, offset);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order order = new Order();
+                    order.setId(rs.getInt("id"));
+                    order.setUserId(rs.getInt("user_id"));
+                    
+                    Timestamp timestamp = rs.getTimestamp("order_date");
+                    order.setOrderDate(timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now());
+                    
+                    order.setStatus(rs.getString("status"));
+                    order.setTotalAmount(rs.getBigDecimal("total_amount"));
+                    order.setPaymentMethod(rs.getString("payment_method"));
+                    order.setCustomerName(rs.getString("customer_name"));
+                    
+                    orders.add(order);
+                }
+            }
+        }
+        
+        return orders;
+    }
+    
+    private static String escapeLikePattern(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
     public List<Order> getOrdersByUser(int userId) throws SQLException {
         List<Order> orders = new ArrayList<>();
         String sql = "SELECT * FROM orders WHERE user_id = ? ORDER BY order_date DESC";
@@ -250,14 +364,7 @@ public class OrderService {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    OrderItem item = new OrderItem();
-                    item.setId(rs.getInt("id"));
-                    item.setOrderId(rs.getInt("order_id"));
-                    item.setBookId(rs.getInt("book_id"));
-                    item.setQuantity(rs.getInt("quantity"));
-                    item.setPrice(rs.getBigDecimal("price"));
-                    
-                    items.add(item);
+                    items.add(mapOrderItem(rs));
                 }
             }
         }
@@ -265,17 +372,64 @@ public class OrderService {
         return items;
     }
     
+    private static OrderItem mapOrderItem(ResultSet rs) throws SQLException {
+        OrderItem item = new OrderItem();
+        item.setId(rs.getInt("id"));
+        item.setOrderId(rs.getInt("order_id"));
+        item.setBookId(rs.getInt("book_id"));
+        item.setQuantity(rs.getInt("quantity"));
+        item.setPrice(rs.getBigDecimal("price"));
+        return item;
+    }
+    
     public boolean updateOrderStatus(int orderId, String status) throws SQLException {
-        String sql = "UPDATE orders SET status = ? WHERE id = ?";
-        
-        try (Connection conn = DatabaseConnection.getInstance().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
             
+            try {
+                boolean updated = changeOrderStatus(conn, orderId, status);
+                conn.commit();
+                return updated;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    /**
+     * Sets an order's status inside the caller's transaction, taking the order out of
+     * the sales rollups when it becomes cancelled and putting it back when it stops being so.
+     */
+    static boolean changeOrderStatus(Connection conn, int orderId, String status) throws SQLException {
+        String previous;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT status FROM orders WHERE id = ? FOR UPDATE")) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                previous = rs.getString(1);
+            }
+        }
+        
+        boolean wasCancelled = "CANCELLED".equalsIgnoreCase(previous);
+        boolean cancelled = "CANCELLED".equalsIgnoreCase(status);
+        if (cancelled && !wasCancelled) {
+            SalesAnalyticsService.removeOrder(conn, orderId);
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE orders SET status = ? WHERE id = ?")) {
             stmt.setString(1, status);
             stmt.setInt(2, orderId);
-            
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            stmt.executeUpdate();
+        }
+        
+        if (wasCancelled && !cancelled) {
+            SalesAnalyticsService.recordOrder(conn, orderId);
         }
+        return true;
     }
-}
\ No newline at end of file
+}
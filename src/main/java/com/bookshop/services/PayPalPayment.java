@@ -1,10 +1,13 @@
 package com.bookshop.services;
 
 import com.bookshop.models.User;
+import com.bookshop.utils.Log;
 import java.math.BigDecimal;
 
 public class PayPalPayment implements PaymentStrategy {
     
+    private static final Log LOG = Log.get(PayPalPayment.class);
+    
     private String email;
     private String password;
     
@@ -15,7 +18,7 @@ public class PayPalPayment implements PaymentStrategy {
     
     @Override
     public boolean processPayment(User user, BigDecimal amount) {
-        System.out.println("Processing PayPal payment of " + amount + " for " + user.getUsername());
+        LOG.debug("Processing PayPal payment of {} for {}", amount, user.getUsername());
         return true;
     }
 }
\ No newline at end of file
@@ -1,20 +1,27 @@
 package com.bookshop.services;
 
+import com.bookshop.models.LoyaltyTier;
+import com.bookshop.models.Money;
 import com.bookshop.models.User;
 import java.math.BigDecimal;
 
 public class PremiumMemberDiscount implements DiscountStrategy {
     
-    private static final BigDecimal DISCOUNT_PERCENTAGE = new BigDecimal("0.15");
+    private static final int DISCOUNT_BASIS_POINTS = 1500;
     
     @Override
     public BigDecimal calculateDiscount(User user, BigDecimal amount) {
-        return amount.multiply(DISCOUNT_PERCENTAGE);
+        return Money.toBigDecimal(calculateDiscountMinorUnits(user, Money.toMinorUnits(amount)));
+    }
+    
+    @Override
+    public long calculateDiscountMinorUnits(User user, long amountMinorUnits) {
+        return Money.percentOf(amountMinorUnits, DISCOUNT_BASIS_POINTS);
     }
     
     @Override
     public boolean isApplicable(User user) {
-        return user != null && user.getOrderCount() >= 10;
+        return user != null && user.getLoyaltyTier() == LoyaltyTier.PREMIUM;
     }
     
     @Override
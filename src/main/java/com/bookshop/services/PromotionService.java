@@ -0,0 +1,286 @@
+package com.bookshop.services;
+
+import com.bookshop.models.CartItem;
+import com.bookshop.models.Money;
+import com.bookshop.models.Promotion;
+import com.bookshop.utils.ChangeFeed;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class PromotionService implements ChangeFeed.Listener {
+    
+    private static final Log LOG = Log.get(PromotionService.class);
+    
+    private static final int FULL_BASIS_POINTS = 10_000;
+    
+    private static PromotionService instance;
+    
+    private volatile CompiledRules compiled;
+    
+    public static synchronized PromotionService getInstance() {
+        if (instance == null) {
+            instance = new PromotionService();
+            ChangeFeed.getInstance().addListener(instance);
+        }
+        return instance;
+    }
+    
+    private PromotionService() {
+    }
+    
+    /**
+     * Reads the active promotions on a connection of its own and swaps in the compiled
+     * rules. Pricing only reads the compiled rules, so a reload never runs on the shared
+     * connection or inside a caller's transaction. If the read fails the previous rules
+     * stay in force.
+     */
+    public void reload() {
+        try {
+            loadRules(findActiveRules());
+        } catch (SQLException e) {
+            LOG.error("Error loading promotions", e);
+            if (compiled == null) {
+                loadRules(Collections.emptyList());
+            }
+        }
+    }
+    
+    public void loadRules(List<Promotion> promotions) {
+        this.compiled = compile(new ArrayList<>(promotions), LocalDateTime.now());
+    }
+    
+    @Override
+    public void onDatabaseChanges(List<ChangeFeed.Change> changes) {
+        for (ChangeFeed.Change change : changes) {
+            if (change.isOn("promotions")) {
+                // Carts keep being priced with the old rules until the new ones are compiled
+                reload();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns the promotion discount for each line in cents. Every line costs a fixed number of
+     * hash lookups, so the price of a cart does not depend on how many rules are active.
+     */
+    public long[] evaluate(List<CartItem> items) {
+        CompiledRules current = currentRules();
+        long[] discounts = new long[items.size()];
+        
+        for (int i = 0; i < discounts.length; i++) {
+            CartItem item = items.get(i);
+            long subtotal = item.getSubtotalMinorUnits();
+            
+            int basisPoints = current.bookBasisPoints.getOrDefault(item.getBookId(), 0);
+            if (item.getCategory() != null) {
+                basisPoints = Math.max(basisPoints, current.categoryBasisPoints.getOrDefault(normalize(item.getCategory()), 0));
+            }
+            if (item.getAuthor() != null) {
+                basisPoints = Math.max(basisPoints, current.authorBasisPoints.getOrDefault(normalize(item.getAuthor()), 0));
+            }
+            long discount = Money.percentOf(subtotal, basisPoints);
+            
+            Promotion buyXGetY = current.buyXGetYByBook.get(item.getBookId());
+            if (buyXGetY != null) {
+                int groupSize = buyXGetY.getBuyQuantity() + buyXGetY.getFreeQuantity();
+                int freeUnits = (item.getQuantity() / groupSize) * buyXGetY.getFreeQuantity();
+                discount = Math.max(discount, Money.multiply(item.getPriceMinorUnits(), freeUnits));
+            }
+            
+            discounts[i] = discount;
+        }
+        
+        return discounts;
+    }
+    
+    public long calculateDiscountMinorUnits(List<CartItem> items) {
+        long total = 0;
+        for (long discount : evaluate(items)) {
+            total += discount;
+        }
+        return total;
+    }
+    
+    public BigDecimal calculateDiscount(List<CartItem> items) {
+        return Money.toBigDecimal(calculateDiscountMinorUnits(items));
+    }
+    
+    private CompiledRules currentRules() {
+        CompiledRules current = compiled;
+        if (current == null) {
+            // Only before the startup load has finished
+            reload();
+            return compiled;
+        }
+        
+        // Time windows are resolved at compile time, so recompile once the next start or end passes
+        LocalDateTime now = LocalDateTime.now();
+        if (current.validUntil != null && !now.isBefore(current.validUntil)) {
+            return recompile(current, now);
+        }
+        return current;
+    }
+    
+    // A reload that finished in the meantime wins over recompiling the rules it replaced
+    private synchronized CompiledRules recompile(CompiledRules current, LocalDateTime now) {
+        if (compiled == current) {
+            compiled = compile(current.promotions, now);
+        }
+        return compiled;
+    }
+    
+    private List<Promotion> findActiveRules() throws SQLException {
+        List<Promotion> promotions = new ArrayList<>();
+        String sql = "SELECT * FROM promotions WHERE active = TRUE AND (ends_at IS NULL OR ends_at > ?)";
+        
+        try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Promotion promotion = mapResultSetToPromotion(rs);
+                    if (promotion != null) {
+                        promotions.add(promotion);
+                    }
+                }
+            }
+        }
+        
+        return promotions;
+    }
+    
+    private Promotion mapResultSetToPromotion(ResultSet rs) throws SQLException {
+        Promotion.Type type;
+        try {
+            type = Promotion.Type.valueOf(rs.getString("rule_type").trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            LOG.warn("Skipping promotion {} with unknown rule type", rs.getInt("id"));
+            return null;
+        }
+        
+        Promotion promotion = new Promotion();
+        promotion.setId(rs.getInt("id"));
+        promotion.setName(rs.getString("name"));
+        promotion.setType(type);
+        promotion.setTarget(rs.getString("target"));
+        
+        BigDecimal percentage = rs.getBigDecimal("discount_percentage");
+        promotion.setDiscountPercentage(percentage != null ? percentage : BigDecimal.ZERO);
+        promotion.setBuyQuantity(rs.getInt("buy_quantity"));
+        promotion.setFreeQuantity(rs.getInt("free_quantity"));
+        
+        Timestamp startsAt = rs.getTimestamp("starts_at");
+        promotion.setStartsAt(startsAt != null ? startsAt.toLocalDateTime() : null);
+        Timestamp endsAt = rs.getTimestamp("ends_at");
+        promotion.setEndsAt(endsAt != null ? endsAt.toLocalDateTime() : null);
+        promotion.setActive(rs.getBoolean("active"));
+        
+        return promotion;
+    }
+    
+    private static CompiledRules compile(List<Promotion> promotions, LocalDateTime now) {
+        CompiledRules result = new CompiledRules(promotions);
+        
+        for (Promotion promotion : promotions) {
+            if (promotion.getStartsAt() != null && promotion.getStartsAt().isAfter(now)) {
+                result.noteBoundary(promotion.getStartsAt());
+            }
+            if (!promotion.isActiveAt(now) || promotion.getTarget() == null) {
+                continue;
+            }
+            if (promotion.getEndsAt() != null) {
+                result.noteBoundary(promotion.getEndsAt());
+            }
+            
+            switch (promotion.getType()) {
+                case BOOK:
+                    Integer bookId = parseBookId(promotion);
+                    if (bookId != null) {
+                        result.bookBasisPoints.merge(bookId, toBasisPoints(promotion), Math::max);
+                    }
+                    break;
+                case CATEGORY:
+                    result.categoryBasisPoints.merge(normalize(promotion.getTarget()), toBasisPoints(promotion), Math::max);
+                    break;
+                case AUTHOR:
+                    result.authorBasisPoints.merge(normalize(promotion.getTarget()), toBasisPoints(promotion), Math::max);
+                    break;
+                case BUY_X_GET_Y:
+                    Integer targetBookId = parseBookId(promotion);
+                    if (targetBookId != null && promotion.getBuyQuantity() > 0 && promotion.getFreeQuantity() > 0) {
+                        result.buyXGetYByBook.merge(targetBookId, promotion, PromotionService::betterBuyXGetY);
+                    }
+                    break;
+            }
+        }
+        
+        return result;
+    }
+    
+    private static Promotion betterBuyXGetY(Promotion a, Promotion b) {
+        // Compares the free share free/(buy+free) without dividing
+        long shareA = (long) a.getFreeQuantity() * (b.getBuyQuantity() + b.getFreeQuantity());
+        long shareB = (long) b.getFreeQuantity() * (a.getBuyQuantity() + a.getFreeQuantity());
+        return shareA >= shareB ? a : b;
+    }
+    
+    private static int toBasisPoints(Promotion promotion) {
+        BigDecimal percentage = promotion.getDiscountPercentage();
+        if (percentage == null || percentage.signum() <= 0) {
+            return 0;
+        }
+        
+        int basisPoints = percentage.movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValue();
+        return Math.min(basisPoints, FULL_BASIS_POINTS);
+    }
+    
+    private static Integer parseBookId(Promotion promotion) {
+        try {
+            return Integer.valueOf(promotion.getTarget().trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Skipping promotion {}: target is not a book ID", promotion.getId());
+            return null;
+        }
+    }
+    
+    private static String normalize(String key) {
+        return key.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static final class CompiledRules {
+        final List<Promotion> promotions;
+        final Map<Integer, Integer> bookBasisPoints = new HashMap<>();
+        final Map<String, Integer> categoryBasisPoints = new HashMap<>();
+        final Map<String, Integer> authorBasisPoints = new HashMap<>();
+        final Map<Integer, Promotion> buyXGetYByBook = new HashMap<>();
+        LocalDateTime validUntil;
+        
+        CompiledRules(List<Promotion> promotions) {
+            this.promotions = promotions;
+        }
+        
+        void noteBoundary(LocalDateTime boundary) {
+            if (validUntil == null || boundary.isBefore(validUntil)) {
+                validUntil = boundary;
+            }
+        }
+    }
+}
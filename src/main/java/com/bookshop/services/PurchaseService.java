@@ -2,6 +2,9 @@ package com.bookshop.services;
 
 import com.bookshop.models.*;
 import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.ResultColumns;
+import com.bookshop.utils.RowMapper;
 
 import javafx.collections.ObservableList;
 
@@ -13,13 +16,24 @@ import java.util.List;
 
 public class PurchaseService {
     
+    private static final Log LOG = Log.get(PurchaseService.class);
+    
+    private static PurchaseService instance;
+    
+    public static synchronized PurchaseService getInstance() {
+        if (instance == null) {
+            instance = new PurchaseService();
+        }
+        return instance;
+    }
+    
     private BookService bookService;
     
     public PurchaseService() {
         try {
-            this.bookService = new BookService();
+            this.bookService = BookService.getInstance();
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Could not get BookService", e);
         }
     }
     
@@ -32,6 +46,8 @@ public class PurchaseService {
         
         try {
             connection = DatabaseConnection.getInstance().getConnection();
+            // The order, its items, the rollups and the loyalty count commit together or not at all
+            connection.setAutoCommit(false);
             
             Order order = new Order();
             order.setUserId(user.getId());
@@ -40,69 +56,86 @@ public class PurchaseService {
             order.setShippingAddress(user.getAddress());
             order.setPaymentMethod("Standard");
             
-            BigDecimal total = BigDecimal.ZERO;
+            long totalMinorUnits = 0;
             for (CartItem item : cartItems) {
-                total = total.add(item.getSubtotal());
+                totalMinorUnits = Math.addExact(totalMinorUnits, item.getSubtotalMinorUnits());
             }
+            long promotionMinorUnits = PromotionService.getInstance().calculateDiscountMinorUnits(cartItems);
+            // orders stores the total after promotions and has no discount column, so the
+            // returned order carries the same total as the order read back later
+            BigDecimal total = Money.toBigDecimal(totalMinorUnits - promotionMinorUnits);
             order.setTotalAmount(total);
             
             String insertOrderSQL = "INSERT INTO orders (user_id, order_date, status, total_amount, shipping_address, payment_method) " +
                                   "VALUES (?, ?, ?, ?, ?, ?) RETURNING id";
             
-            PreparedStatement pstmt = connection.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS);
-            pstmt.setInt(1, user.getId());
-            pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.setString(3, "PENDING");
-            pstmt.setBigDecimal(4, total);
-            pstmt.setString(5, user.getAddress());
-            pstmt.setString(6, "Standard");
-            
-            int affectedRows = pstmt.executeUpdate();
-            
-            if (affectedRows == 0) {
-                throw new SQLException("Creating order failed, no rows affected.");
-            }
-            
-            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    order.setId(generatedKeys.getInt(1));
-                } else {
-                    throw new SQLException("Creating order failed, no ID obtained.");
+            try (PreparedStatement pstmt = connection.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setInt(1, user.getId());
+                pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                pstmt.setString(3, "PENDING");
+                pstmt.setBigDecimal(4, total);
+                pstmt.setString(5, user.getAddress());
+                pstmt.setString(6, "Standard");
+                
+                int affectedRows = pstmt.executeUpdate();
+                
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating order failed, no rows affected.");
+                }
+                
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        order.setId(generatedKeys.getInt(1));
+                    } else {
+                        throw new SQLException("Creating order failed, no ID obtained.");
+                    }
                 }
             }
             
             String insertItemSQL = "INSERT INTO order_items (order_id, book_id, quantity, price) VALUES (?, ?, ?, ?)";
-            PreparedStatement itemStmt = connection.prepareStatement(insertItemSQL);
-            
-            for (CartItem item : cartItems) {
-                OrderItem orderItem = new OrderItem();
-                orderItem.setOrderId(order.getId());
-                orderItem.setBookId(item.getBookId());
-                orderItem.setQuantity(item.getQuantity());
-                orderItem.setPrice(item.getBookPrice());
-                order.addItem(orderItem);
+            try (PreparedStatement itemStmt = connection.prepareStatement(insertItemSQL)) {
+                for (CartItem item : cartItems) {
+                    OrderItem orderItem = new OrderItem();
+                    orderItem.setOrderId(order.getId());
+                    orderItem.setBookId(item.getBookId());
+                    orderItem.setQuantity(item.getQuantity());
+                    orderItem.setPrice(item.getBookPrice());
+                    order.addItem(orderItem);
+                    
+                    itemStmt.setInt(1, order.getId());
+                    itemStmt.setInt(2, item.getBookId());
+                    itemStmt.setInt(3, item.getQuantity());
+                    itemStmt.setBigDecimal(4, item.getBookPrice());
+                    itemStmt.addBatch();
+                }
                 
-                itemStmt.setInt(1, order.getId());
-                itemStmt.setInt(2, item.getBookId());
-                itemStmt.setInt(3, item.getQuantity());
-                itemStmt.setBigDecimal(4, item.getBookPrice());
-                itemStmt.addBatch();
+                itemStmt.executeBatch();
             }
+            SalesAnalyticsService.recordOrder(connection, order.getId());
             
-            itemStmt.executeBatch();
+            LoyaltyTier tier = DiscountService.recordOrder(connection, user.getId());
+            connection.commit();
             
-            String updateUserSQL = "UPDATE users SET order_count = order_count + 1 WHERE id = ?";
-            PreparedStatement userStmt = connection.prepareStatement(updateUserSQL);
-            userStmt.setInt(1, user.getId());
-            userStmt.executeUpdate();
+            user.incrementOrderCount();
+            user.setLoyaltyTier(tier);
+            TopSellersService.getInstance().recordSale(cartItems);
+            RecommendationService.getInstance().recordOrder(order.getId(), cartItems);
             
             return order;
             
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    LOG.error("Rollback of purchase for user {} failed", user.getId(), ex);
+                }
+            }
+            LOG.error("Error processing purchase for user {}", user.getId(), e);
             throw e;
         } finally {
             if (connection != null && !connection.isClosed()) {
+                connection.setAutoCommit(true);
                 connection.close();
             }
         }
@@ -111,7 +144,7 @@ public class PurchaseService {
     public List<Order> getOrdersByUserId(int userId) throws SQLException {
         List<Order> orders = new ArrayList<>();
         
-        System.out.println("Getting orders for user ID: " + userId);
+        LOG.debug("Getting orders for user ID: {}", userId);
         
         try (Connection connection = DatabaseConnection.getInstance().getConnection();
              PreparedStatement pstmt = connection.prepareStatement(
@@ -121,14 +154,15 @@ public class PurchaseService {
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 int count = 0;
+                RowMapper<Order> mapper = orderMapper(rs);
                 while (rs.next()) {
                     count++;
-                    Order order = mapResultSetToOrder(rs);
+                    Order order = mapper.map(rs);
                     loadOrderItems(order);
                     orders.add(order);
-                    System.out.println("Loaded order #" + order.getId() + " with status " + order.getStatus());
+                    LOG.debug("Loaded order #{} with status {}", order.getId(), order.getStatus());
                 }
-                System.out.println("Found " + count + " orders in database");
+                LOG.debug("Found {} orders in database", count);
             }
         }
         
@@ -142,8 +176,9 @@ public class PurchaseService {
              Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM orders ORDER BY order_date DESC")) {
             
+            RowMapper<Order> mapper = orderMapper(rs);
             while (rs.next()) {
-                Order order = mapResultSetToOrder(rs);
+                Order order = mapper.map(rs);
                 loadOrderItems(order);
                 orders.add(order);
             }
@@ -171,48 +206,48 @@ public class PurchaseService {
     }
     
     public boolean updateOrderStatus(int orderId, Order.Status status) throws SQLException {
-        try (Connection connection = DatabaseConnection.getInstance().getConnection();
-             PreparedStatement pstmt = connection.prepareStatement("UPDATE orders SET status = ? WHERE id = ?")) {
-            
-            pstmt.setString(1, status.name());
-            pstmt.setInt(2, orderId);
-            
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        }
+        return OrderService.getInstance().updateOrderStatus(orderId, status.name());
     }
     
     public boolean cancelOrder(int orderId) throws SQLException {
         try (Connection connection = DatabaseConnection.getInstance().getConnection()) {
             connection.setAutoCommit(false);
             
+            // Everything runs on this connection; the services would close it and end the transaction
             try {
-                Order order = getOrderById(orderId);
-                if (order == null || order.getStatus() == Order.Status.CANCELLED) {
-                    connection.rollback();
-                    return false;
+                try (PreparedStatement stmt = connection.prepareStatement("SELECT status FROM orders WHERE id = ? FOR UPDATE")) {
+                    stmt.setInt(1, orderId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next() || Order.Status.CANCELLED.name().equalsIgnoreCase(rs.getString(1))) {
+                            connection.rollback();
+                            return false;
+                        }
+                    }
                 }
                 
-                String updateOrderQuery = "UPDATE orders SET status = ? WHERE id = ?";
-                try (PreparedStatement pstmt = connection.prepareStatement(updateOrderQuery)) {
-                    pstmt.setString(1, Order.Status.CANCELLED.name());
-                    pstmt.setInt(2, orderId);
-                    pstmt.executeUpdate();
-                }
+                OrderService.changeOrderStatus(connection, orderId, Order.Status.CANCELLED.name());
                 
-                for (OrderItem item : order.getItems()) {
-                    Book book = bookService.getBookById(item.getBookId());
-                    if (book != null) {
-                        book.setStockQuantity(book.getStockQuantity() + item.getQuantity());
-                        bookService.updateBook(book);
+                // Books are updated in id order, as checkout locks them, so the two cannot deadlock
+                try (PreparedStatement items = connection.prepareStatement(
+                         "SELECT book_id, quantity FROM order_items WHERE order_id = ? ORDER BY book_id");
+                     PreparedStatement restock = connection.prepareStatement(
+                         "UPDATE books SET stock_quantity = stock_quantity + ? WHERE id = ?")) {
+                    items.setInt(1, orderId);
+                    try (ResultSet rs = items.executeQuery()) {
+                        while (rs.next()) {
+                            restock.setInt(1, rs.getInt("quantity"));
+                            restock.setInt(2, rs.getInt("book_id"));
+                            restock.addBatch();
+                        }
                     }
+                    restock.executeBatch();
                 }
                 
                 connection.commit();
                 return true;
             } catch (Exception e) {
                 connection.rollback();
-                e.printStackTrace();
+                LOG.error("Error cancelling order {}", orderId, e);
                 return false;
             } finally {
                 connection.setAutoCommit(true);
@@ -225,6 +260,8 @@ public class PurchaseService {
             connection.setAutoCommit(false);
             
             try {
+                SalesAnalyticsService.removeOrder(connection, orderId);
+                
                 try (PreparedStatement pstmt = connection.prepareStatement("DELETE FROM order_items WHERE order_id = ?")) {
                     pstmt.setInt(1, orderId);
                     pstmt.executeUpdate();
@@ -279,75 +316,82 @@ public class PurchaseService {
     }
     
     public void checkDatabaseTables() {
+        // The queries only feed the debug output
+        if (!LOG.isDebugEnabled()) {
+            return;
+        }
+        
         try (Connection connection = DatabaseConnection.getInstance().getConnection();
              Statement stmt = connection.createStatement()) {
             
-            System.out.println("--- CHECKING ORDERS TABLE ---");
+            LOG.debug("--- CHECKING ORDERS TABLE ---");
             try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
                 if (rs.next()) {
-                    System.out.println("Total orders in database: " + rs.getInt(1));
+                    LOG.debug("Total orders in database: {}", rs.getInt(1));
                 }
             }
             
             try (ResultSet rs = stmt.executeQuery("SELECT * FROM orders LIMIT 5")) {
                 while (rs.next()) {
-                    System.out.println("Order #" + rs.getInt("id") + 
-                                     ", User: " + rs.getInt("user_id") + 
-                                     ", Status: " + rs.getString("status"));
+                    LOG.debug("Order #{}, User: {}, Status: {}", rs.getInt("id"), rs.getInt("user_id"), rs.getString("status"));
                 }
             }
             
-            System.out.println("--- CHECKING ORDER_ITEMS TABLE ---");
+            LOG.debug("--- CHECKING ORDER_ITEMS TABLE ---");
             try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM order_items")) {
                 if (rs.next()) {
-                    System.out.println("Total order items in database: " + rs.getInt(1));
+                    LOG.debug("Total order items in database: {}", rs.getInt(1));
                 }
             }
             
             try (ResultSet rs = stmt.executeQuery("SELECT * FROM order_items LIMIT 5")) {
                 while (rs.next()) {
-                    System.out.println("Item #" + rs.getInt("id") + 
-                                     ", Order: " + rs.getInt("order_id") + 
-                                     ", Book: " + rs.getInt("book_id") +
-                                     ", Quantity: " + rs.getInt("quantity"));
+                    LOG.debug("Item #{}, Order: {}, Book: {}, Quantity: {}", rs.getInt("id"), rs.getInt("order_id"),
+                        rs.getInt("book_id"), rs.getInt("quantity"));
                 }
             }
             
         } catch (SQLException e) {
-            System.err.println("Error checking database tables: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error checking database tables", e);
         }
     }
     
     private Order mapResultSetToOrder(ResultSet rs) throws SQLException {
-        Order order = new Order();
-        order.setId(rs.getInt("id"));
-        order.setUserId(rs.getInt("user_id"));
-        order.setOrderDate(rs.getTimestamp("order_date").toLocalDateTime());
-        
-        String statusStr = rs.getString("status");
-        try {
-            order.setStatus(Order.Status.valueOf(statusStr.toUpperCase()));
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid status in database: " + statusStr);
-            order.setStatus(Order.Status.PENDING);
-        }
-        
-        order.setTotalAmount(rs.getBigDecimal("total_amount"));
+        return orderMapper(rs).map(rs);
+    }
+    
+    // orders has no discount_amount column in current schemas; it is read only where a query provides it
+    private static RowMapper<Order> orderMapper(ResultSet rs) throws SQLException {
+        ResultColumns columns = ResultColumns.of(rs);
+        int id = columns.required("id");
+        int userId = columns.required("user_id");
+        int orderDate = columns.required("order_date");
+        int status = columns.required("status");
+        int totalAmount = columns.required("total_amount");
+        int discountAmount = columns.optional("discount_amount");
+        int shippingAddress = columns.required("shipping_address");
+        int paymentMethod = columns.required("payment_method");
         
-        try {
-            BigDecimal discountAmount = rs.getBigDecimal("discount_amount");
-            if (discountAmount != null) {
-                order.setDiscountAmount(discountAmount);
-            } else {
-                order.setDiscountAmount(BigDecimal.ZERO);
+        return row -> {
+            Order order = new Order();
+            order.setId(row.getInt(id));
+            order.setUserId(row.getInt(userId));
+            order.setOrderDate(row.getTimestamp(orderDate).toLocalDateTime());
+            
+            String statusStr = row.getString(status);
+            try {
+                order.setStatus(Order.Status.valueOf(statusStr.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid status in database: {}", statusStr);
+                order.setStatus(Order.Status.PENDING);
             }
-        } catch (SQLException e) {
-            order.setDiscountAmount(BigDecimal.ZERO);
-        }
-        
-        order.setShippingAddress(rs.getString("shipping_address"));
-        order.setPaymentMethod(rs.getString("payment_method"));
-        return order;
+            
+            order.setTotalAmount(row.getBigDecimal(totalAmount));
+            BigDecimal discount = discountAmount > 0 ? row.getBigDecimal(discountAmount) : null;
+            order.setDiscountAmount(discount != null ? discount : BigDecimal.ZERO);
+            order.setShippingAddress(row.getString(shippingAddress));
+            order.setPaymentMethod(row.getString(paymentMethod));
+            return order;
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.bookshop.services;
+
+import com.bookshop.models.Book;
+import com.bookshop.models.CartItem;
+import com.bookshop.utils.CoPurchaseIndex;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.IntIntHashMap;
+import com.bookshop.utils.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * "Customers also bought" recommendations from a co-purchase index. The index
+ * is built from order_items into ~/.bookshop/copurchase.idx and memory-mapped,
+ * so a lookup reads a few ints from the mapped file. Orders placed since the
+ * file was written are kept in a small in-memory layer on top: those committed
+ * by this process are added as they commit, others are read on start. Once that
+ * layer holds enough orders the file is rebuilt in the background.
+ */
+public class RecommendationService {
+    
+    private static final Log LOG = Log.get(RecommendationService.class);
+    
+    private static final Path INDEX_FILE = Paths.get(System.getProperty("user.home"), ".bookshop", "copurchase.idx");
+    private static final int NEIGHBOURS_PER_BOOK = 20;
+    private static final int REBUILD_AFTER_ORDERS = 5_000;
+    private static final int FETCH_SIZE = 5_000;
+    
+    private static final String ORDER_ITEMS_SQL =
+        "SELECT oi.order_id, oi.book_id " +
+        "FROM order_items oi " +
+        "JOIN orders o ON o.id = oi.order_id " +
+        "WHERE oi.order_id > ? AND UPPER(o.status) <> 'CANCELLED' " +
+        "ORDER BY oi.order_id";
+    
+    private static RecommendationService instance;
+    
+    private final Path file;
+    private volatile CoPurchaseIndex index = CoPurchaseIndex.empty();
+    private CoPurchaseIndex.Builder recent = new CoPurchaseIndex.Builder();
+    private ExecutorService worker;
+    private boolean rebuilding;
+    
+    public static synchronized RecommendationService getInstance() {
+        if (instance == null) {
+            instance = new RecommendationService(INDEX_FILE);
+        }
+        return instance;
+    }
+    
+    RecommendationService(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Maps the index and catches up with orders placed since it was written, or
+     * builds it if there is none yet. Runs in the background; until then books
+     * only get recommendations from orders placed in this session.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-recommendations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.execute(this::load);
+    }
+    
+    /**
+     * Adds the books of an order that has just committed.
+     */
+    public void recordOrder(int orderId, List<CartItem> items) {
+        int[] bookIds = items.stream().mapToInt(CartItem::getBookId).toArray();
+        synchronized (this) {
+            recent.addOrder(orderId, bookIds);
+            if (recent.getOrders() >= REBUILD_AFTER_ORDERS && worker != null && !rebuilding) {
+                rebuilding = true;
+                worker.execute(this::rebuildQuietly);
+            }
+        }
+    }
+    
+    /**
+     * Ids of the books most often bought together with the given one, most often first.
+     */
+    public List<Integer> getRecommendedBookIds(int bookId, int limit) {
+        IntIntHashMap scores = new IntIntHashMap(NEIGHBOURS_PER_BOOK * 2);
+        index.forEachNeighbour(bookId, scores::addTo);
+        synchronized (this) {
+            recent.forEachNeighbour(bookId, scores::addTo);
+        }
+        
+        List<Integer> ids = new ArrayList<>();
+        for (int id : scores.topKeys(limit)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+    
+    public List<Book> getRecommendations(int bookId, int limit) throws SQLException {
+        List<Integer> ids = getRecommendedBookIds(bookId, limit);
+        return ids.isEmpty() ? new ArrayList<>() : BookService.getInstance().getBookSummariesByIds(ids);
+    }
+    
+    /**
+     * Builds the index from every order, writes it and maps the new file.
+     */
+    public void rebuild() throws SQLException, IOException {
+        long started = System.nanoTime();
+        CoPurchaseIndex.Builder builder = new CoPurchaseIndex.Builder();
+        readOrders(0, builder);
+        builder.write(file, NEIGHBOURS_PER_BOOK);
+        CoPurchaseIndex rebuilt = CoPurchaseIndex.open(file);
+        
+        // Orders that commit between this read and the swap only count from the next rebuild on
+        CoPurchaseIndex.Builder newer = new CoPurchaseIndex.Builder();
+        readOrders(rebuilt.getLastOrderId(), newer);
+        synchronized (this) {
+            index = rebuilt;
+            recent = newer;
+        }
+        LOG.info("Built co-purchase index of {} books from {} orders in {} ms", rebuilt.getBooks(), builder.getOrders(),
+            (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    private void load() {
+        try {
+            if (Files.isRegularFile(file)) {
+                CoPurchaseIndex loaded = CoPurchaseIndex.open(file);
+                CoPurchaseIndex.Builder newer = new CoPurchaseIndex.Builder();
+                readOrders(loaded.getLastOrderId(), newer);
+                synchronized (this) {
+                    index = loaded;
+                    recent = newer;
+                }
+                LOG.info("Mapped co-purchase index of {} books, {} orders since", loaded.getBooks(), newer.getOrders());
+                if (newer.getOrders() < REBUILD_AFTER_ORDERS) {
+                    return;
+                }
+            }
+        } catch (IOException | SQLException e) {
+            LOG.warn("Could not load co-purchase index {}: {}", file, e.getMessage());
+        }
+        synchronized (this) {
+            rebuilding = true;
+        }
+        rebuildQuietly();
+    }
+    
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (IOException | SQLException | RuntimeException e) {
+            LOG.error("Could not build co-purchase index {}", file, e);
+        } finally {
+            synchronized (this) {
+                rebuilding = false;
+            }
+        }
+    }
+    
+    private static void readOrders(long afterOrderId, CoPurchaseIndex.Builder builder) throws SQLException {
+        try (Connection conn = DatabaseConnection.getInstance().openCursorConnection();
+             PreparedStatement stmt = conn.prepareStatement(ORDER_ITEMS_SQL)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            stmt.setLong(1, afterOrderId);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                long orderId = -1;
+                int[] bookIds = new int[16];
+                int count = 0;
+                while (rs.next()) {
+                    long nextOrderId = rs.getLong(1);
+                    if (nextOrderId != orderId && count > 0) {
+                        builder.addOrder(orderId, Arrays.copyOf(bookIds, count));
+                        count = 0;
+                    }
+                    orderId = nextOrderId;
+                    if (count == bookIds.length) {
+                        bookIds = Arrays.copyOf(bookIds, count * 2);
+                    }
+                    bookIds[count++] = rs.getInt(2);
+                }
+                if (count > 0) {
+                    builder.addOrder(orderId, Arrays.copyOf(bookIds, count));
+                }
+            }
+            conn.commit();
+        }
+    }
+}
@@ -1,24 +1,27 @@
 package com.bookshop.services;
 
+import com.bookshop.models.LoyaltyTier;
+import com.bookshop.models.Money;
 import com.bookshop.models.User;
 import java.math.BigDecimal;
 
 public class RegularMemberDiscount implements DiscountStrategy {
     
-    private static final BigDecimal DISCOUNT_PERCENTAGE = new BigDecimal("0.10");
-    private static final int MIN_ORDER_COUNT = 5;
-    private static final int MAX_ORDER_COUNT = 9;
+    private static final int DISCOUNT_BASIS_POINTS = 1000;
     
     @Override
     public BigDecimal calculateDiscount(User user, BigDecimal amount) {
-        return amount.multiply(DISCOUNT_PERCENTAGE);
+        return Money.toBigDecimal(calculateDiscountMinorUnits(user, Money.toMinorUnits(amount)));
+    }
+    
+    @Override
+    public long calculateDiscountMinorUnits(User user, long amountMinorUnits) {
+        return Money.percentOf(amountMinorUnits, DISCOUNT_BASIS_POINTS);
     }
     
     @Override
     public boolean isApplicable(User user) {
-        return user != null && 
-               user.getOrderCount() >= MIN_ORDER_COUNT && 
-               user.getOrderCount() <= MAX_ORDER_COUNT;
+        return user != null && user.getLoyaltyTier() == LoyaltyTier.REGULAR;
     }
     
     @Override
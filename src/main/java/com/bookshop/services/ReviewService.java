@@ -14,6 +14,15 @@ import java.util.List;
 
 public class ReviewService {
     
+    private static ReviewService instance;
+    
+    public static synchronized ReviewService getInstance() {
+        if (instance == null) {
+            instance = new ReviewService();
+        }
+        return instance;
+    }
+    
     public ReviewService() {
     }
     
@@ -0,0 +1,244 @@
+package com.bookshop.services;
+
+import com.bookshop.models.DailySales;
+import com.bookshop.models.SalesBreakdown;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sales reporting from two rollup tables kept current as orders change:
+ * sales_daily holds orders, units and revenue per day, and sales_daily_books the
+ * same per day and book with the book's category at the time of sale. Reports
+ * read the rollups, so they cost the same however long the order history grows.
+ *
+ * Daily revenue is what customers paid (orders.total_amount, after promotions);
+ * per-book and per-category revenue is item price times quantity, since
+ * promotions are not split across items. Cancelled orders are left out.
+ */
+public class SalesAnalyticsService {
+    
+    private static final Log LOG = Log.get(SalesAnalyticsService.class);
+    
+    // Rows are inserted in book order so concurrent orders lock shared rollup rows in the same order
+    private static final String APPLY_BOOKS_SQL =
+        "INSERT INTO sales_daily_books (day, book_id, category, revenue, units, orders) " +
+        "SELECT CAST(o.order_date AS DATE), oi.book_id, MAX(COALESCE(b.category, '')), " +
+        "? * SUM(oi.price * oi.quantity), ? * SUM(oi.quantity), ? " +
+        "FROM orders o " +
+        "JOIN order_items oi ON oi.order_id = o.id " +
+        "JOIN books b ON b.id = oi.book_id " +
+        "WHERE o.id = ? AND UPPER(o.status) <> 'CANCELLED' " +
+        "GROUP BY CAST(o.order_date AS DATE), oi.book_id " +
+        "ORDER BY oi.book_id " +
+        "ON CONFLICT (day, book_id) DO UPDATE SET " +
+        "revenue = sales_daily_books.revenue + EXCLUDED.revenue, " +
+        "units = sales_daily_books.units + EXCLUDED.units, " +
+        "orders = sales_daily_books.orders + EXCLUDED.orders";
+    
+    private static final String APPLY_DAILY_SQL =
+        "INSERT INTO sales_daily (day, orders, units, revenue) " +
+        "SELECT CAST(o.order_date AS DATE), ?, " +
+        "? * COALESCE((SELECT SUM(oi.quantity) FROM order_items oi WHERE oi.order_id = o.id), 0), " +
+        "? * o.total_amount " +
+        "FROM orders o " +
+        "WHERE o.id = ? AND UPPER(o.status) <> 'CANCELLED' " +
+        "ON CONFLICT (day) DO UPDATE SET " +
+        "orders = sales_daily.orders + EXCLUDED.orders, " +
+        "units = sales_daily.units + EXCLUDED.units, " +
+        "revenue = sales_daily.revenue + EXCLUDED.revenue";
+    
+    private static final String BACKFILL_BOOKS_SQL =
+        "INSERT INTO sales_daily_books (day, book_id, category, revenue, units, orders) " +
+        "SELECT CAST(o.order_date AS DATE), oi.book_id, MAX(COALESCE(b.category, '')), " +
+        "SUM(oi.price * oi.quantity), SUM(oi.quantity), COUNT(DISTINCT o.id) " +
+        "FROM orders o " +
+        "JOIN order_items oi ON oi.order_id = o.id " +
+        "JOIN books b ON b.id = oi.book_id " +
+        "WHERE UPPER(o.status) <> 'CANCELLED' " +
+        "GROUP BY CAST(o.order_date AS DATE), oi.book_id";
+    
+    private static final String BACKFILL_DAILY_SQL =
+        "INSERT INTO sales_daily (day, orders, units, revenue) " +
+        "SELECT CAST(o.order_date AS DATE), COUNT(*), COALESCE(SUM(i.units), 0), SUM(o.total_amount) " +
+        "FROM orders o " +
+        "LEFT JOIN (SELECT order_id, SUM(quantity) AS units FROM order_items GROUP BY order_id) i " +
+        "ON i.order_id = o.id " +
+        "WHERE UPPER(o.status) <> 'CANCELLED' " +
+        "GROUP BY CAST(o.order_date AS DATE)";
+    
+    private static SalesAnalyticsService instance;
+    
+    public static synchronized SalesAnalyticsService getInstance() {
+        if (instance == null) {
+            instance = new SalesAnalyticsService();
+        }
+        return instance;
+    }
+    
+    private SalesAnalyticsService() {
+    }
+    
+    /**
+     * Adds a placed order to the rollups on the caller's connection, so the
+     * totals commit or roll back together with the order. Call it once the
+     * order's items are written; cancelled orders are ignored.
+     */
+    public static void recordOrder(Connection conn, int orderId) throws SQLException {
+        apply(conn, orderId, 1);
+    }
+    
+    /**
+     * Takes an order back out of the rollups. Call it while the order and its
+     * items still exist and before its status changes to cancelled.
+     */
+    public static void removeOrder(Connection conn, int orderId) throws SQLException {
+        apply(conn, orderId, -1);
+    }
+    
+    private static void apply(Connection conn, int orderId, int sign) throws SQLException {
+        try (PreparedStatement books = conn.prepareStatement(APPLY_BOOKS_SQL);
+             PreparedStatement daily = conn.prepareStatement(APPLY_DAILY_SQL)) {
+            books.setInt(1, sign);
+            books.setInt(2, sign);
+            books.setInt(3, sign);
+            books.setInt(4, orderId);
+            books.executeUpdate();
+            
+            daily.setInt(1, sign);
+            daily.setInt(2, sign);
+            daily.setInt(3, sign);
+            daily.setInt(4, orderId);
+            daily.executeUpdate();
+        }
+    }
+    
+    /**
+     * Rebuilds both rollups from the full order history, for the first run after
+     * upgrading or after orders were changed outside the services. Orders placed
+     * meanwhile wait for the rebuild to commit and are then added on top of it.
+     */
+    public int backfill() throws SQLException {
+        long started = System.nanoTime();
+        
+        try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Same table order as recordOrder, which writes sales_daily_books first
+                stmt.execute("LOCK TABLE sales_daily_books, sales_daily IN EXCLUSIVE MODE");
+                int days = rebuild(conn);
+                conn.commit();
+                
+                LOG.info("Rebuilt sales rollups for {} days in {} ms", days, (System.nanoTime() - started) / 1_000_000);
+                return days;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Replaces the rollups with totals computed from the order history, on the
+     * caller's connection and transaction. Returns the number of days with sales.
+     */
+    public static int rebuild(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM sales_daily_books");
+            stmt.execute("DELETE FROM sales_daily");
+            stmt.executeUpdate(BACKFILL_BOOKS_SQL);
+            return stmt.executeUpdate(BACKFILL_DAILY_SQL);
+        }
+    }
+    
+    /**
+     * Returns one entry per day from {@code from} to {@code to} inclusive, with
+     * zero totals on days without sales.
+     */
+    public List<DailySales> getDailySales(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT day, orders, units, revenue FROM sales_daily WHERE day BETWEEN ? AND ? ORDER BY day";
+        List<DailySales> days = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.add(new DailySales(rs.getDate(1).toLocalDate(), rs.getInt(2), rs.getInt(3), rs.getBigDecimal(4)));
+                }
+            }
+        }
+        
+        return withEmptyDays(days, from, to);
+    }
+    
+    public List<SalesBreakdown> getTopSellers(LocalDate from, LocalDate to, int limit) throws SQLException {
+        String sql = "SELECT s.book_id, b.title, SUM(s.units), SUM(s.orders), SUM(s.revenue) " +
+                     "FROM sales_daily_books s " +
+                     "JOIN books b ON b.id = s.book_id " +
+                     "WHERE s.day BETWEEN ? AND ? " +
+                     "GROUP BY s.book_id, b.title " +
+                     "HAVING SUM(s.units) > 0 " +
+                     "ORDER BY SUM(s.units) DESC, SUM(s.revenue) DESC, s.book_id " +
+                     "LIMIT ?";
+        
+        return queryBreakdown(sql, from, to, limit);
+    }
+    
+    public List<SalesBreakdown> getCategorySales(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT 0, category, SUM(units), SUM(orders), SUM(revenue) " +
+                     "FROM sales_daily_books " +
+                     "WHERE day BETWEEN ? AND ? " +
+                     "GROUP BY category " +
+                     "HAVING SUM(units) > 0 " +
+                     "ORDER BY SUM(revenue) DESC, category";
+        
+        return queryBreakdown(sql, from, to, 0);
+    }
+    
+    private List<SalesBreakdown> queryBreakdown(String sql, LocalDate from, LocalDate to, int limit) throws SQLException {
+        List<SalesBreakdown> rows = new ArrayList<>();
+        
+        try (Connection conn = DatabaseConnection.getInstance().getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            if (limit > 0) {
+                stmt.setInt(3, limit);
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new SalesBreakdown(rs.getInt(1), rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getBigDecimal(5)));
+                }
+            }
+        }
+        
+        return rows;
+    }
+    
+    static List<DailySales> withEmptyDays(List<DailySales> days, LocalDate from, LocalDate to) {
+        List<DailySales> filled = new ArrayList<>();
+        int next = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (next < days.size() && days.get(next).getDay().equals(day)) {
+                filled.add(days.get(next++));
+            } else {
+                filled.add(new DailySales(day, 0, 0, BigDecimal.ZERO));
+            }
+        }
+        return filled;
+    }
+}
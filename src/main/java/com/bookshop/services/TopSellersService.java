@@ -0,0 +1,196 @@
+package com.bookshop.services;
+
+import com.bookshop.models.Book;
+import com.bookshop.models.CartItem;
+import com.bookshop.utils.BookFactory;
+import com.bookshop.utils.DatabaseConnection;
+import com.bookshop.utils.Log;
+import com.bookshop.utils.RowMapper;
+import com.bookshop.utils.SpaceSavingSketch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A live best-seller leaderboard, overall and per category, answered from memory.
+ * Orders placed by this process are counted as they commit into Space-Saving
+ * sketches of fixed size. Every few minutes the sketches are replaced with exact
+ * totals from the sales rollups, which also brings in orders placed elsewhere
+ * and takes out cancelled ones; between runs the counts are estimates.
+ */
+public class TopSellersService {
+    
+    private static final Log LOG = Log.get(TopSellersService.class);
+    
+    private static final int OVERALL_CAPACITY = 200;
+    private static final int CATEGORY_CAPACITY = 50;
+    private static final long RECONCILE_INTERVAL_SECONDS = 300;
+    
+    // Highest first, so each sketch is filled with its exact top entries and never evicts
+    private static final String EXACT_SALES_SQL =
+        "SELECT b.id, b.title, b.author, b.publisher, b.price, b.category, b.isbn, b.stock_quantity, s.units " +
+        "FROM (SELECT book_id, SUM(units) AS units FROM sales_daily_books GROUP BY book_id) s " +
+        "JOIN books b ON b.id = s.book_id " +
+        "WHERE s.units > 0 " +
+        "ORDER BY s.units DESC, b.id";
+    
+    private static TopSellersService instance;
+    
+    private SpaceSavingSketch<Integer> overall = new SpaceSavingSketch<>(OVERALL_CAPACITY);
+    private Map<String, SpaceSavingSketch<Integer>> byCategory = new HashMap<>();
+    // Only books some sketch still counts, so this stays as small as the sketches
+    private Map<Integer, Book> books = new HashMap<>();
+    private ScheduledExecutorService scheduler;
+    
+    public static synchronized TopSellersService getInstance() {
+        if (instance == null) {
+            instance = new TopSellersService();
+        }
+        return instance;
+    }
+    
+    TopSellersService() {
+    }
+    
+    /**
+     * Reconciles with the database now and then every few minutes.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-top-sellers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, 0, RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * Counts the items of an order that has just committed.
+     */
+    public synchronized void recordSale(List<CartItem> items) {
+        for (CartItem item : items) {
+            if (item.getQuantity() <= 0) {
+                continue;
+            }
+            Integer bookId = item.getBookId();
+            if (!books.containsKey(bookId)) {
+                Book book = new Book(bookId, item.getTitle(), item.getAuthor(), item.getPrice());
+                book.setCategory(item.getCategory());
+                books.put(bookId, book);
+            }
+            
+            forget(overall.offer(bookId, item.getQuantity()));
+            if (item.getCategory() != null) {
+                forget(byCategory.computeIfAbsent(item.getCategory(), category -> new SpaceSavingSketch<>(CATEGORY_CAPACITY))
+                    .offer(bookId, item.getQuantity()));
+            }
+        }
+    }
+    
+    /**
+     * The best sellers overall, or within a category when one is given, highest
+     * first. Each book carries its estimated units sold as its sales count.
+     */
+    public synchronized List<Book> getTopSellers(String category, int limit) {
+        SpaceSavingSketch<Integer> sketch = category == null ? overall : byCategory.get(category);
+        List<Book> top = new ArrayList<>();
+        if (sketch == null) {
+            return top;
+        }
+        
+        for (SpaceSavingSketch.Counter<Integer> counter : sketch.top(limit)) {
+            Book known = books.get(counter.getKey());
+            Book book = new Book(known.getId(), known.getTitle(), known.getAuthor(), known.getPrice());
+            book.setCategory(known.getCategory());
+            book.setSalesCount((int) Math.min(counter.getCount(), Integer.MAX_VALUE));
+            top.add(book);
+        }
+        return top;
+    }
+    
+    /**
+     * Replaces the sketches with exact per-book totals of all orders that are not cancelled.
+     * Runs on the scheduler's thread, so it reads over a connection of its own rather
+     * than the shared one the services are using.
+     */
+    public void reconcile() throws SQLException {
+        long started = System.nanoTime();
+        SpaceSavingSketch<Integer> exactOverall = new SpaceSavingSketch<>(OVERALL_CAPACITY);
+        Map<String, SpaceSavingSketch<Integer>> exactByCategory = new HashMap<>();
+        Map<Integer, Book> exactBooks = new HashMap<>();
+        
+        try (Connection conn = DatabaseConnection.getInstance().openCursorConnection();
+             PreparedStatement stmt = conn.prepareStatement(EXACT_SALES_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+            int units = rs.findColumn("units");
+            while (rs.next()) {
+                Book book = mapper.map(rs);
+                long sold = rs.getLong(units);
+                boolean counted = false;
+                
+                if (!exactOverall.isFull()) {
+                    exactOverall.offer(book.getId(), sold);
+                    counted = true;
+                }
+                if (book.getCategory() != null) {
+                    SpaceSavingSketch<Integer> sketch = exactByCategory.computeIfAbsent(book.getCategory(),
+                        category -> new SpaceSavingSketch<>(CATEGORY_CAPACITY));
+                    if (!sketch.isFull()) {
+                        sketch.offer(book.getId(), sold);
+                        counted = true;
+                    }
+                }
+                if (counted) {
+                    exactBooks.put(book.getId(), book);
+                }
+            }
+        }
+        
+        // Sales recorded while the query ran are dropped or counted twice until the next run
+        synchronized (this) {
+            overall = exactOverall;
+            byCategory = exactByCategory;
+            books = exactBooks;
+        }
+        LOG.debug("Reconciled top sellers for {} books in {} ms", exactBooks.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException | RuntimeException e) {
+            LOG.warn("Could not reconcile top sellers: {}", e.getMessage());
+        }
+    }
+    
+    private void forget(Integer evicted) {
+        if (evicted == null || overall.contains(evicted)) {
+            return;
+        }
+        Book book = books.get(evicted);
+        SpaceSavingSketch<Integer> sketch = book != null && book.getCategory() != null ? byCategory.get(book.getCategory()) : null;
+        if (sketch == null || !sketch.contains(evicted)) {
+            books.remove(evicted);
+        }
+    }
+}
@@ -10,6 +10,15 @@ import java.util.List;
 
 public class UserService {
     
+    private static UserService instance;
+    
+    public static synchronized UserService getInstance() {
+        if (instance == null) {
+            instance = new UserService();
+        }
+        return instance;
+    }
+    
     private final UserRepository repository;
     
     public UserService(UserRepository repository) {
@@ -125,6 +134,10 @@ public class UserService {
         return repository.findAll();
     }
     
+    public int countUsers() throws SQLException {
+        return repository.count();
+    }
+    
     public boolean isAdmin(User user) {
         return user != null && "ADMIN".equals(user.getRole());
     }
@@ -1,10 +0,0 @@
-package com.bookshop.strategies.discount;
-
-import com.bookshop.models.User;
-import java.math.BigDecimal;
-
-public interface DiscountStrategy {
-    boolean isApplicable(User user);
-    BigDecimal applyDiscount(BigDecimal amount);
-    String getDescription();
-}
\ No newline at end of file
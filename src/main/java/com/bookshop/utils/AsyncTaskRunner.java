@@ -0,0 +1,147 @@
+package com.bookshop.utils;
+
+import javafx.application.Platform;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs blocking service calls off the JavaFX application thread and hands the
+ * results back on it through Platform.runLater. All services share the single
+ * connection held by DatabaseConnection, so a single worker runs the calls in
+ * submission order behind a bounded queue.
+ */
+public class AsyncTaskRunner {
+    
+    @FunctionalInterface
+    public interface ServiceCall<T> {
+        T call() throws SQLException;
+    }
+    
+    private static final int MAX_QUEUED_TASKS = 256;
+    private static final String UNNAMED_TASK = "unnamed";
+    private static final String TASK_SECONDS = "bookshop_async_task_seconds";
+    private static final String TASK_WAIT_SECONDS = "bookshop_async_task_wait_seconds";
+    
+    private static AsyncTaskRunner instance;
+    
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<?>> latestByKey = new ConcurrentHashMap<>();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    
+    public static synchronized AsyncTaskRunner getInstance() {
+        if (instance == null) {
+            instance = new AsyncTaskRunner();
+        }
+        return instance;
+    }
+    
+    private AsyncTaskRunner() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_TASKS),
+            runnable -> {
+                Thread thread = new Thread(runnable, "bookshop-service");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor = pool;
+        metrics.gauge("bookshop_async_queue_depth", "Service calls waiting for the worker", () -> pool.getQueue().size());
+    }
+    
+    public <T> CompletableFuture<T> submit(ServiceCall<T> call) {
+        return submit(UNNAMED_TASK, call);
+    }
+    
+    private <T> CompletableFuture<T> submit(String task, ServiceCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queuedNanos = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                // A request cancelled while still queued never touches the database
+                if (future.isDone()) {
+                    return;
+                }
+                long startedNanos = System.nanoTime();
+                metrics.timer(TASK_WAIT_SECONDS, "Time service calls wait in the queue", null, null)
+                    .record((startedNanos - queuedNanos) / 1_000);
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    metrics.timer(TASK_SECONDS, "Time spent running service calls off the JavaFX thread", "task", task)
+                        .record((System.nanoTime() - startedNanos) / 1_000);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    public <T> CompletableFuture<T> submit(ServiceCall<T> call, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<T> future = submit(call);
+        deliverOnFxThread(future, () -> true, onSuccess, onError);
+        return future;
+    }
+    
+    /**
+     * Submits a call whose result replaces any earlier request with the same key, e.g. the
+     * book list for the latest search. The earlier request is cancelled and its callbacks
+     * never run, even if it had already finished.
+     */
+    public <T> CompletableFuture<T> submitLatest(String key, ServiceCall<T> call,
+                                                 Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<T> future = submit(key, call);
+        CompletableFuture<?> previous = latestByKey.put(key, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        
+        deliverOnFxThread(future, () -> latestByKey.get(key) == future, onSuccess, onError);
+        return future;
+    }
+    
+    public void cancel(String key) {
+        CompletableFuture<?> future = latestByKey.remove(key);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+    
+    private <T> void deliverOnFxThread(CompletableFuture<T> future, BooleanSupplier stillWanted,
+                                       Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (!stillWanted.getAsBoolean()) {
+                    return;
+                }
+                if (error != null) {
+                    onError.accept(unwrap(error));
+                } else {
+                    onSuccess.accept(result);
+                }
+            });
+        });
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
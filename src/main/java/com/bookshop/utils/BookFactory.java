@@ -10,38 +10,53 @@ import java.sql.SQLException;
 public class BookFactory {
     
     public static Book createFromResultSet(ResultSet rs) throws SQLException {
-        Book book = new Book();
-        
-        book.setId(rs.getInt("id"));
-        book.setTitle(rs.getString("title"));
-        book.setAuthor(rs.getString("author"));
-        book.setPublisher(rs.getString("publisher"));
-        book.setPrice(rs.getBigDecimal("price"));
-        book.setCategory(rs.getString("category"));
-        book.setIsbn(rs.getString("isbn"));
-        book.setImageUrl(rs.getString("image_url"));
-        book.setDescription(rs.getString("description"));
-        book.setStockQuantity(rs.getInt("stock_quantity"));
+        return bookMapper(rs).map(rs);
+    }
+    
+    /**
+     * A mapper for the rows of this result set. Full rows and the list summaries
+     * both map; description, image_url and the rating columns are left at their
+     * defaults when the query does not select them.
+     */
+    public static RowMapper<Book> bookMapper(ResultSet rs) throws SQLException {
+        ResultColumns columns = ResultColumns.of(rs);
+        int id = columns.required("id");
+        int title = columns.required("title");
+        int author = columns.required("author");
+        int publisher = columns.required("publisher");
+        int price = columns.required("price");
+        int category = columns.required("category");
+        int isbn = columns.required("isbn");
+        int stockQuantity = columns.required("stock_quantity");
+        int imageUrl = columns.optional("image_url");
+        int description = columns.optional("description");
+        int averageRating = columns.optional("average_rating");
+        int reviewCount = columns.optional("review_count");
         
-        // Get average rating and review count
-        try {
-            double avgRating = rs.getDouble("average_rating");
-            int reviewCount = rs.getInt("review_count");
-            
-            // If the rating is NaN (no reviews), set it to 0
-            if (Double.isNaN(avgRating)) {
-                avgRating = 0.0;
+        return row -> {
+            Book book = new Book();
+            book.setId(row.getInt(id));
+            book.setTitle(row.getString(title));
+            book.setAuthor(row.getString(author));
+            book.setPublisher(row.getString(publisher));
+            book.setPrice(row.getBigDecimal(price));
+            book.setCategory(row.getString(category));
+            book.setIsbn(row.getString(isbn));
+            book.setStockQuantity(row.getInt(stockQuantity));
+            if (imageUrl > 0) {
+                book.setImageUrl(row.getString(imageUrl));
             }
-            
-            book.setAverageRating(avgRating);
-            book.setReviewCount(reviewCount);
-        } catch (SQLException e) {
-            // If columns don't exist, set default values
-            book.setAverageRating(0.0);
-            book.setReviewCount(0);
-        }
-        
-        return book;
+            if (description > 0) {
+                book.setDescription(row.getString(description));
+            }
+            if (averageRating > 0) {
+                book.setAverageRating(row.getDouble(averageRating));
+            }
+            if (reviewCount > 0) {
+                book.setReviewCount(row.getInt(reviewCount));
+            }
+            return book;
+        };
     }
     
     public static Book createBasicBook(String title, String author, BigDecimal price) {
@@ -0,0 +1,347 @@
+package com.bookshop.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads a catalog feed one record at a time, so a feed of any size is read in
+ * constant memory. CSV feeds start with a header row and may quote fields over
+ * several lines; JSON-lines feeds hold one flat object per line. JSON records are
+ * only split into lines here and parsed with {@link #parseJsonObject} by the
+ * caller, which lets that work run on several threads.
+ */
+public class CatalogFeedReader implements Closeable {
+    
+    public enum Format {
+        CSV, JSON_LINES;
+        
+        public static Format forFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSON_LINES;
+            }
+            throw new IllegalArgumentException("Unknown feed format for " + fileName + ", expected .csv, .jsonl or .ndjson");
+        }
+    }
+    
+    /**
+     * One record with the line it starts on. A CSV record carries its fields, a
+     * JSON-lines record the raw line.
+     */
+    public static final class Record {
+        private final long line;
+        private final String[] values;
+        private final String json;
+        
+        Record(long line, String[] values, String json) {
+            this.line = line;
+            this.values = values;
+            this.json = json;
+        }
+        
+        public long getLine() {
+            return line;
+        }
+        
+        public String[] getValues() {
+            return values;
+        }
+        
+        public String getJson() {
+            return json;
+        }
+    }
+    
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+    
+    private final Reader reader;
+    private final Format format;
+    private final char[] buffer = new char[1 << 16];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private long line = 1;
+    private String[] header;
+    
+    public CatalogFeedReader(Reader reader, Format format) throws IOException {
+        this.reader = reader;
+        this.format = format;
+        if (format == Format.CSV) {
+            Record first = nextCsv();
+            if (first == null) {
+                throw new IOException("The feed is empty; a CSV feed needs a header row");
+            }
+            header = first.values;
+            for (int i = 0; i < header.length; i++) {
+                header[i] = header[i].trim().toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+    
+    /**
+     * The lower-cased CSV column names, or null for a JSON-lines feed.
+     */
+    public String[] getHeader() {
+        return header;
+    }
+    
+    /**
+     * The next record, or null at the end of the feed. Blank lines are skipped.
+     */
+    public Record next() throws IOException {
+        return format == Format.CSV ? nextCsv() : nextJsonLine();
+    }
+    
+    private Record nextJsonLine() throws IOException {
+        while (true) {
+            long start = line;
+            field.setLength(0);
+            int c;
+            while ((c = read()) != -1 && c != '\n') {
+                append((char) c, start);
+            }
+            line++;
+            if (c == -1 && field.length() == 0) {
+                return null;
+            }
+            String text = field.toString().trim();
+            if (!text.isEmpty()) {
+                return new Record(start, null, text);
+            }
+        }
+    }
+    
+    private Record nextCsv() throws IOException {
+        while (true) {
+            long start = line;
+            List<String> values = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean sawQuote = false;
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field in the record starting on line " + start);
+                    }
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            append('"', start);
+                        } else {
+                            quoted = false;
+                            c = following;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        append((char) c, start);
+                    }
+                } else if (c == '"' && field.length() == 0 && !sawQuote) {
+                    quoted = true;
+                    sawQuote = true;
+                } else if (c == ',') {
+                    values.add(field.toString());
+                    field.setLength(0);
+                    sawQuote = false;
+                } else if (c == '\n' || c == -1) {
+                    line++;
+                    values.add(field.toString());
+                    break;
+                } else if (c != '\r') {
+                    append((char) c, start);
+                }
+                c = read();
+            }
+            
+            if (values.size() > 1 || !values.get(0).isEmpty() || sawQuote) {
+                return new Record(start, values.toArray(new String[0]), null);
+            }
+        }
+    }
+    
+    private void append(char c, long start) throws IOException {
+        if (field.length() >= MAX_RECORD_LENGTH) {
+            throw new IOException("The record starting on line " + start + " is longer than " + MAX_RECORD_LENGTH + " characters");
+        }
+        field.append(c);
+    }
+    
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * Parses one flat JSON object into lower-cased keys and text values. Numbers and
+     * booleans keep their written form; null values are left out.
+     */
+    public static Map<String, String> parseJsonObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        JsonCursor cursor = new JsonCursor(json);
+        cursor.expect('{');
+        if (cursor.peek() == '}') {
+            cursor.position++;
+            cursor.expectEnd();
+            return fields;
+        }
+        while (true) {
+            String key = cursor.string();
+            cursor.expect(':');
+            String value = cursor.value();
+            if (value != null) {
+                fields.put(key.toLowerCase(Locale.ROOT), value);
+            }
+            char c = cursor.nextSignificant();
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw cursor.error("expected ',' or '}'");
+            }
+        }
+        cursor.expectEnd();
+        return fields;
+    }
+    
+    private static final class JsonCursor {
+        private final String text;
+        private int position;
+        
+        JsonCursor(String text) {
+            this.text = text;
+        }
+        
+        char peek() {
+            skipWhitespace();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+        
+        char nextSignificant() {
+            char c = peek();
+            if (c == 0) {
+                throw error("unexpected end of line");
+            }
+            position++;
+            return c;
+        }
+        
+        void expect(char expected) {
+            if (nextSignificant() != expected) {
+                position--;
+                throw error("expected '" + expected + "'");
+            }
+        }
+        
+        void expectEnd() {
+            if (peek() != 0) {
+                throw error("unexpected text after the object");
+            }
+        }
+        
+        String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("nested objects and arrays are not supported");
+            }
+            int start = position;
+            while (position < text.length() && "-+.0123456789eEtrufalsn".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty()) {
+                throw error("expected a value");
+            }
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (!literal.equals("true") && !literal.equals("false") && !literal.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) {
+                throw error("invalid value '" + literal + "'");
+            }
+            return literal;
+        }
+        
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    throw error("unterminated string");
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"': case '\\': case '/': value.append(escaped); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("truncated \\u escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid \\u escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("invalid escape \\" + escaped);
+                }
+            }
+        }
+        
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+        
+        IllegalArgumentException error(String problem) {
+            return new IllegalArgumentException("Invalid JSON at column " + (position + 1) + ": " + problem);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.bookshop.utils;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Listens for the row changes that the database triggers publish with NOTIFY and
+ * passes them on, so views opened on one machine see stock, price, order and
+ * review changes made from another. One thread per JVM holds a connection of
+ * its own, since LISTEN belongs to a session and the shared connection is
+ * closed by its callers after every query.
+ *
+ * Listeners are held weakly: a controller registers itself and is dropped
+ * once its screen is gone, without needing a close hook.
+ *
+ * Every session this process opens is tagged with {@link #ORIGIN}, which the
+ * triggers add to the payload, so listeners can tell their own changes, already
+ * applied locally, from those of other machines.
+ */
+public class ChangeFeed {
+    
+    private static final Log LOG = Log.get(ChangeFeed.class);
+    
+    public static final String CHANNEL = "bookshop_changes";
+    public static final String ORIGIN = UUID.randomUUID().toString();
+    
+    private static final int POLL_MILLIS = 1_000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+    
+    public interface Listener {
+        void onDatabaseChanges(List<Change> changes);
+    }
+    
+    /**
+     * One changed row, parsed from a "table:operation:id[:related id[:origin]]" payload.
+     * The related id is the row's user for orders and cart items and its book for
+     * reviews. A catalog import sends a single "books:IMPORT:0" for all the books it touched.
+     */
+    public static final class Change {
+        private final String table;
+        private final String operation;
+        private final int id;
+        private final int relatedId;
+        private final String origin;
+        
+        Change(String table, String operation, int id, int relatedId, String origin) {
+            this.table = table;
+            this.operation = operation;
+            this.id = id;
+            this.relatedId = relatedId;
+            this.origin = origin;
+        }
+        
+        static Change parse(String payload) {
+            String[] parts = payload.split(":");
+            if (parts.length < 3) {
+                return null;
+            }
+            try {
+                int relatedId = parts.length > 3 && !parts[3].isEmpty() ? Integer.parseInt(parts[3]) : 0;
+                String origin = parts.length > 4 ? parts[4] : "";
+                return new Change(parts[0], parts[1], Integer.parseInt(parts[2]), relatedId, origin);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        
+        public String getTable() {
+            return table;
+        }
+        
+        public String getOperation() {
+            return operation;
+        }
+        
+        public int getId() {
+            return id;
+        }
+        
+        public int getRelatedId() {
+            return relatedId;
+        }
+        
+        /**
+         * Whether a session of this process made the change.
+         */
+        public boolean isLocal() {
+            return ORIGIN.equals(origin);
+        }
+        
+        public boolean isOn(String tableName) {
+            return table.equals(tableName);
+        }
+        
+        public boolean isUpdate() {
+            return "UPDATE".equals(operation);
+        }
+        
+        @Override
+        public String toString() {
+            return table + ":" + operation + ":" + id + (relatedId != 0 ? ":" + relatedId : "");
+        }
+    }
+    
+    private static ChangeFeed instance;
+    
+    private final Set<Listener> listeners = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private volatile boolean running;
+    private Thread thread;
+    
+    public static synchronized ChangeFeed getInstance() {
+        if (instance == null) {
+            instance = new ChangeFeed();
+        }
+        return instance;
+    }
+    
+    private ChangeFeed() {
+    }
+    
+    public void addListener(Listener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+    
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "bookshop-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+    
+    private void run() {
+        long retryMillis = 1_000;
+        
+        while (running) {
+            try (Connection conn = DatabaseConnection.getInstance().openDedicatedConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                LOG.info("Listening for database changes on {}", CHANNEL);
+                retryMillis = 1_000;
+                
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null && notifications.length > 0) {
+                        dispatch(notifications);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                LOG.warn("Change feed disconnected, retrying in {} ms: {}", retryMillis, e.getMessage());
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+    
+    private void dispatch(PGNotification[] notifications) {
+        List<Change> changes = new ArrayList<>(notifications.length);
+        for (PGNotification notification : notifications) {
+            Change change = Change.parse(notification.getParameter());
+            if (change != null) {
+                changes.add(change);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        
+        List<Listener> current;
+        synchronized (listeners) {
+            current = new ArrayList<>(listeners);
+        }
+        
+        List<Change> batch = Collections.unmodifiableList(changes);
+        for (Listener listener : current) {
+            try {
+                listener.onDatabaseChanges(batch);
+            } catch (RuntimeException e) {
+                LOG.error("Change listener failed", e);
+            }
+        }
+    }
+}
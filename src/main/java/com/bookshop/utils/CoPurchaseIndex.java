@@ -0,0 +1,240 @@
+package com.bookshop.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only "bought together" index in a memory-mapped file. For each book it
+ * keeps the books most often found in the same order and how many orders they
+ * shared. The file is a header (magic, book count, pair count, id of the last
+ * order counted) followed by four int arrays: book ids in ascending order, the
+ * start of each book's neighbours (one more entry than books), and the
+ * neighbour ids and counts, each book's neighbours highest count first.
+ * A lookup is a binary search over the mapped ids, with no parsing on open.
+ */
+public class CoPurchaseIndex {
+    
+    private static final int MAGIC = 0x424B434F; // "BKCO"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    
+    private final ByteBuffer buffer;
+    private final int books;
+    private final int pairs;
+    private final long lastOrderId;
+    
+    private CoPurchaseIndex(ByteBuffer buffer, int books, int pairs, long lastOrderId) {
+        this.buffer = buffer;
+        this.books = books;
+        this.pairs = pairs;
+        this.lastOrderId = lastOrderId;
+    }
+    
+    public static CoPurchaseIndex empty() {
+        return new CoPurchaseIndex(ByteBuffer.allocate(HEADER_BYTES + Integer.BYTES), 0, 0, 0);
+    }
+    
+    public static CoPurchaseIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a co-purchase index");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a co-purchase index");
+            }
+            int books = buffer.getInt(4);
+            int pairs = buffer.getInt(8);
+            if (books < 0 || pairs < 0 || length != expectedLength(books, pairs)) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            return new CoPurchaseIndex(buffer, books, pairs, buffer.getLong(12));
+        }
+    }
+    
+    /**
+     * Calls the visitor with each neighbour of the book and the number of orders
+     * the two shared, highest first. Books that were never bought get no calls.
+     */
+    public void forEachNeighbour(int bookId, IntIntHashMap.Visitor visitor) {
+        int low = 0;
+        int high = books - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = buffer.getInt(idsOffset() + middle * Integer.BYTES);
+            if (id < bookId) {
+                low = middle + 1;
+            } else if (id > bookId) {
+                high = middle - 1;
+            } else {
+                int start = buffer.getInt(startsOffset() + middle * Integer.BYTES);
+                int end = buffer.getInt(startsOffset() + (middle + 1) * Integer.BYTES);
+                for (int i = start; i < end; i++) {
+                    visitor.accept(buffer.getInt(neighboursOffset() + i * Integer.BYTES),
+                        buffer.getInt(countsOffset() + i * Integer.BYTES));
+                }
+                return;
+            }
+        }
+    }
+    
+    public int getBooks() {
+        return books;
+    }
+    
+    public int getPairs() {
+        return pairs;
+    }
+    
+    /**
+     * The highest order id counted, so later orders can be added on top.
+     */
+    public long getLastOrderId() {
+        return lastOrderId;
+    }
+    
+    private int idsOffset() {
+        return HEADER_BYTES;
+    }
+    
+    private int startsOffset() {
+        return idsOffset() + books * Integer.BYTES;
+    }
+    
+    private int neighboursOffset() {
+        return startsOffset() + (books + 1) * Integer.BYTES;
+    }
+    
+    private int countsOffset() {
+        return neighboursOffset() + pairs * Integer.BYTES;
+    }
+    
+    private static long expectedLength(int books, int pairs) {
+        return HEADER_BYTES + (2L * books + 1 + 2L * pairs) * Integer.BYTES;
+    }
+    
+    /**
+     * Counts how often each pair of books appears in the same order. Books are
+     * keyed by id in primitive maps, one row per book that was ever bought.
+     */
+    public static class Builder {
+        
+        // Orders this large are bulk purchases and say little about what goes together
+        private static final int MAX_BOOKS_PER_ORDER = 50;
+        
+        private final IntIntHashMap rowIndex = new IntIntHashMap(1024);
+        private final List<IntIntHashMap> rows = new ArrayList<>();
+        private int[] rowBookIds = new int[1024];
+        private long lastOrderId;
+        private int orders;
+        
+        /**
+         * Adds one order's books. Repeated ids are counted once.
+         */
+        public void addOrder(long orderId, int[] bookIds) {
+            lastOrderId = Math.max(lastOrderId, orderId);
+            orders++;
+            
+            int[] distinct = Arrays.stream(bookIds).filter(id -> id != 0).distinct().toArray();
+            if (distinct.length < 2 || distinct.length > MAX_BOOKS_PER_ORDER) {
+                return;
+            }
+            for (int a : distinct) {
+                IntIntHashMap row = row(a);
+                for (int b : distinct) {
+                    if (a != b) {
+                        row.addTo(b, 1);
+                    }
+                }
+            }
+        }
+        
+        public void forEachNeighbour(int bookId, IntIntHashMap.Visitor visitor) {
+            int index = rowIndex.get(bookId);
+            if (index > 0) {
+                rows.get(index - 1).forEach(visitor);
+            }
+        }
+        
+        public long getLastOrderId() {
+            return lastOrderId;
+        }
+        
+        public int getOrders() {
+            return orders;
+        }
+        
+        /**
+         * Writes the index with at most {@code neighbours} entries per book, replacing
+         * the file only once the new one is complete.
+         */
+        public void write(Path file, int neighbours) throws IOException {
+            int[] bookIds = Arrays.copyOf(rowBookIds, rows.size());
+            Arrays.sort(bookIds);
+            
+            int[][] topIds = new int[bookIds.length][];
+            int pairs = 0;
+            for (int i = 0; i < bookIds.length; i++) {
+                topIds[i] = rows.get(rowIndex.get(bookIds[i]) - 1).topKeys(neighbours);
+                pairs += topIds[i].length;
+            }
+            
+            ByteBuffer out = ByteBuffer.allocate((int) expectedLength(bookIds.length, pairs));
+            out.putInt(MAGIC).putInt(bookIds.length).putInt(pairs).putLong(lastOrderId);
+            for (int id : bookIds) {
+                out.putInt(id);
+            }
+            int start = 0;
+            for (int[] top : topIds) {
+                out.putInt(start);
+                start += top.length;
+            }
+            out.putInt(start);
+            for (int[] top : topIds) {
+                for (int id : top) {
+                    out.putInt(id);
+                }
+            }
+            for (int i = 0; i < bookIds.length; i++) {
+                IntIntHashMap row = rows.get(rowIndex.get(bookIds[i]) - 1);
+                for (int id : topIds[i]) {
+                    out.putInt(row.get(id));
+                }
+            }
+            out.flip();
+            
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        
+        private IntIntHashMap row(int bookId) {
+            int index = rowIndex.get(bookId);
+            if (index == 0) {
+                if (rows.size() == rowBookIds.length) {
+                    rowBookIds = Arrays.copyOf(rowBookIds, rowBookIds.length * 2);
+                }
+                rowBookIds[rows.size()] = bookId;
+                rows.add(new IntIntHashMap(8));
+                index = rows.size();
+                rowIndex.put(bookId, index);
+            }
+            return rows.get(index - 1);
+        }
+    }
+}
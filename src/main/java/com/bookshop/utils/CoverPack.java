@@ -0,0 +1,229 @@
+package com.bookshop.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only file of cover images keyed by ISBN. Each record is the ISBN
+ * length and bytes followed by the image length and bytes. The file is
+ * memory-mapped for reading and the ISBN to offset index is rebuilt from the
+ * record headers when the pack is opened, so a record cut short by a crash is
+ * simply dropped and overwritten by the next append.
+ */
+public class CoverPack {
+    
+    private static final Log LOG = Log.get(CoverPack.class);
+    
+    private static final int MAGIC = 0x424B4350; // "BKCP"
+    private static final int HEADER_BYTES = Integer.BYTES;
+    private static final int MAX_ISBN_BYTES = 64;
+    
+    private static CoverPack instance;
+    
+    private final Path file;
+    private final Map<String, Entry> index = new HashMap<>();
+    private MappedByteBuffer mapped;
+    private long end;
+    private boolean loaded;
+    
+    public static synchronized CoverPack getInstance() {
+        if (instance == null) {
+            Path file = Paths.get(System.getProperty("user.home"), ".bookshop", "covers.pack");
+            instance = new CoverPack(file);
+            try {
+                instance.load();
+            } catch (IOException e) {
+                // Covers then come from the network as before
+                LOG.error("Could not open cover pack {}", file, e);
+            }
+        }
+        return instance;
+    }
+    
+    public static CoverPack open(Path file) throws IOException {
+        CoverPack pack = new CoverPack(file);
+        pack.load();
+        return pack;
+    }
+    
+    private CoverPack(Path file) {
+        this.file = file;
+    }
+    
+    public static String normalizeIsbn(String isbn) {
+        return isbn == null ? null : isbn.replace("-", "").replace(" ", "").trim();
+    }
+    
+    public synchronized boolean contains(String isbn) {
+        String key = normalizeIsbn(isbn);
+        return key != null && index.containsKey(key);
+    }
+    
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * Returns a read-only view of the cover bytes inside the mapped file, or null
+     * if the pack has no cover for the ISBN.
+     */
+    public synchronized ByteBuffer get(String isbn) {
+        Entry entry = index.get(normalizeIsbn(isbn));
+        if (entry == null) {
+            return null;
+        }
+        
+        try {
+            if (mapped == null || mapped.capacity() < entry.offset + entry.length) {
+                remap();
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not map cover pack {}: {}", file, e.getMessage());
+            return null;
+        }
+        
+        ByteBuffer view = mapped.asReadOnlyBuffer();
+        view.position((int) entry.offset);
+        view.limit((int) (entry.offset + entry.length));
+        return view.slice();
+    }
+    
+    public InputStream openStream(String isbn) throws IOException {
+        ByteBuffer buffer = get(isbn);
+        if (buffer == null) {
+            throw new IOException("No cover for ISBN " + isbn);
+        }
+        return new BufferInputStream(buffer);
+    }
+    
+    public synchronized void append(String isbn, byte[] image) throws IOException {
+        if (!loaded) {
+            throw new IOException("Cover pack " + file + " could not be opened");
+        }
+        String key = normalizeIsbn(isbn);
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("ISBN is required");
+        }
+        byte[] isbnBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (isbnBytes.length > MAX_ISBN_BYTES) {
+            throw new IllegalArgumentException("ISBN too long: " + isbn);
+        }
+        
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(
+                (end == 0 ? HEADER_BYTES : 0) + Integer.BYTES + isbnBytes.length + Integer.BYTES + image.length);
+            if (end == 0) {
+                record.putInt(MAGIC);
+            }
+            record.putInt(isbnBytes.length).put(isbnBytes).putInt(image.length).put(image);
+            record.flip();
+            
+            // Anything past the last complete record is a torn write and is overwritten
+            channel.truncate(end);
+            long position = end;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            channel.force(false);
+            
+            index.put(key, new Entry(position - image.length, image.length));
+            end = position;
+        }
+    }
+    
+    private synchronized void load() throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) > 0) {
+            remap();
+            readIndex();
+        }
+        loaded = true;
+    }
+    
+    private void remap() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Cover pack larger than 2 GB");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+    
+    private void readIndex() throws IOException {
+        ByteBuffer buffer = mapped.duplicate();
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a cover pack");
+        }
+        
+        end = buffer.position();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int isbnLength = buffer.getInt();
+            if (isbnLength <= 0 || isbnLength > MAX_ISBN_BYTES || buffer.remaining() < isbnLength + Integer.BYTES) {
+                break;
+            }
+            byte[] isbnBytes = new byte[isbnLength];
+            buffer.get(isbnBytes);
+            int imageLength = buffer.getInt();
+            if (imageLength < 0 || buffer.remaining() < imageLength) {
+                break;
+            }
+            
+            index.put(new String(isbnBytes, StandardCharsets.UTF_8), new Entry(buffer.position(), imageLength));
+            buffer.position(buffer.position() + imageLength);
+            end = buffer.position();
+        }
+        
+        if (end < mapped.capacity()) {
+            LOG.warn("Ignoring {} trailing bytes in {}", mapped.capacity() - end, file);
+        }
+    }
+    
+    private static final class Entry {
+        final long offset;
+        final int length;
+        
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+    
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.bookshop.utils;
 
+import com.bookshop.repositories.BookRepositoryImpl;
+import com.bookshop.services.DiscountService;
+import com.bookshop.services.FacetService;
+import com.bookshop.services.SalesAnalyticsService;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 public class DatabaseConnection {
     
+    private static final Log LOG = Log.get(DatabaseConnection.class);
+    private static final ThreadLocal<Connection> THREAD_CONNECTION = new ThreadLocal<>();
+    
     private static DatabaseConnection instance;
+    private static boolean schemaInitialized;
     private Connection connection;
     
     private static final String DB_URL = System.getenv("DATABASE_URL");
@@ -18,6 +28,28 @@ public class DatabaseConnection {
     private static final String DB_NAME = System.getenv("PGDATABASE") != null ? System.getenv("PGDATABASE") : "bookshop";
     
     private DatabaseConnection() throws SQLException {
+        connection = connect();
+        // Reconnects only need a new session, the schema was checked by the first one
+        if (!schemaInitialized) {
+            initializeDatabase();
+            schemaInitialized = true;
+        }
+    }
+    
+    private static Connection connect() throws SQLException {
+        Connection conn = open();
+        // The notify triggers add this to each payload, so ChangeFeed can tell this process's own changes
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT set_config('bookshop.origin', ?, false)")) {
+            stmt.setString(1, ChangeFeed.ORIGIN);
+            stmt.execute();
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+    
+    private static Connection open() throws SQLException {
         try {
             Class.forName("org.postgresql.Driver");
 
@@ -25,8 +57,8 @@ public class DatabaseConnection {
                     DB_NAME != null && !DB_NAME.isEmpty()) {
 
                 String jdbcUrl = "jdbc:postgresql://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME;
-                System.out.println("Connecting to PostgreSQL: " + jdbcUrl);
-                connection = DriverManager.getConnection(
+                LOG.debug("Connecting to PostgreSQL: {}", jdbcUrl);
+                return DriverManager.getConnection(
                         jdbcUrl,
                         DB_USER,
                         DB_PASSWORD);
@@ -35,56 +67,102 @@ public class DatabaseConnection {
 
                 if (url.startsWith("postgres://")) {
                     String jdbcUrl = url.replace("postgres://", "jdbc:postgresql://");
-                    System.out.println("Connecting to PostgreSQL with URL: " + jdbcUrl);
-                    connection = DriverManager.getConnection(jdbcUrl);
+                    LOG.debug("Connecting to PostgreSQL with URL: {}", jdbcUrl);
+                    return DriverManager.getConnection(jdbcUrl);
                 } else {
-                    System.out.println("Connecting using direct URL: " + url);
-                    connection = DriverManager.getConnection(url);
+                    LOG.debug("Connecting using direct URL: {}", url);
+                    return DriverManager.getConnection(url);
                 }
             } else {
                 String jdbcUrl = "jdbc:postgresql://localhost:5432/bookshop";
-                System.out.println("Connecting to default PostgreSQL: " + jdbcUrl);
-                connection = DriverManager.getConnection(jdbcUrl, "postgres", "admin123");
+                LOG.debug("Connecting to default PostgreSQL: {}", jdbcUrl);
+                return DriverManager.getConnection(jdbcUrl, "postgres", "admin123");
             }
-
-            initializeDatabase();
-
         } catch (ClassNotFoundException e) {
-            System.err.println(
-                    "PostgreSQL JDBC driver not found! Make sure the PostgreSQL connector JAR is in the classpath.");
-            e.printStackTrace();
+            LOG.error("PostgreSQL JDBC driver not found! Make sure the PostgreSQL connector JAR is in the classpath.", e);
             throw new SQLException("Database driver not found", e);
         } catch (SQLException e) {
-            System.err.println("Failed to connect to PostgreSQL database!");
-            e.printStackTrace();
+            LOG.error("Failed to connect to PostgreSQL database!", e);
             throw e;
         }
     }
     
-    public static synchronized DatabaseConnection getInstance() throws SQLException {
+    public static DatabaseConnection getInstance() throws SQLException {
+        // Time spent here is lock contention plus reconnecting, i.e. what a caller waits to get a connection
+        long started = System.nanoTime();
+        try {
+            return acquireInstance();
+        } finally {
+            MetricsRegistry.getInstance().timer("bookshop_db_connection_acquire_seconds",
+                "Time waiting for the shared connection, including reconnects", null, null)
+                .record((System.nanoTime() - started) / 1_000);
+        }
+    }
+    
+    private static synchronized DatabaseConnection acquireInstance() throws SQLException {
         if (instance == null) {
             instance = new DatabaseConnection();
         } else if (instance.connection.isClosed()) {
             instance = new DatabaseConnection();
+            MetricsRegistry.getInstance().counter("bookshop_db_reconnects_total",
+                "Times the shared connection was found closed and opened again").increment();
         }
         return instance;
     }
     
     public Connection getConnection() throws SQLException {
+        Connection bound = THREAD_CONNECTION.get();
+        if (bound != null) {
+            return InstrumentedConnection.wrapBorrowed(bound);
+        }
         if (connection == null || connection.isClosed()) {
             instance = new DatabaseConnection();
         }
-        return connection;
+        return InstrumentedConnection.wrap(connection);
+    }
+    
+    /**
+     * Opens a connection that is not shared with the services, for sessions that
+     * must stay open such as LISTEN. The caller closes it.
+     */
+    public Connection openDedicatedConnection() throws SQLException {
+        return connect();
+    }
+    
+    /**
+     * Opens a read-only connection of its own for a long scan through a server-side
+     * cursor. The cursor needs autocommit off, which would otherwise hold a
+     * transaction open on the shared connection. Statements are timed and traced as
+     * on the shared one. The caller closes it.
+     */
+    public Connection openCursorConnection() throws SQLException {
+        Connection cursorConnection = connect();
+        cursorConnection.setAutoCommit(false);
+        cursorConnection.setReadOnly(true);
+        return InstrumentedConnection.wrap(cursorConnection);
+    }
+    
+    /**
+     * Makes getConnection() on the calling thread return the given connection
+     * instead of the shared one until unbindThreadConnection() is called. Services
+     * closing what they got leave it open, so a transaction spanning several
+     * service calls survives. The caller still owns and closes the connection.
+     */
+    public static void bindThreadConnection(Connection connection) {
+        THREAD_CONNECTION.set(connection);
+    }
+    
+    public static void unbindThreadConnection() {
+        THREAD_CONNECTION.remove();
     }
     
     public void closeConnection() {
         if (connection != null) {
             try {
                 connection.close();
-                System.out.println("Database connection closed.");
+                LOG.debug("Database connection closed.");
             } catch (SQLException e) {
-                System.err.println("Error closing database connection!");
-                e.printStackTrace();
+                LOG.error("Error closing database connection!", e);
             }
         }
     }
@@ -101,10 +179,17 @@ public class DatabaseConnection {
                 "address TEXT, " +
                 "phone_number VARCHAR(20), " +
                 "role VARCHAR(20) NOT NULL, " +
-                "order_count INT DEFAULT 0" +
+                "order_count INT DEFAULT 0, " +
+                "loyalty_tier VARCHAR(20) DEFAULT 'BASIC'" +
                 ")"
             );
             
+            // Databases created before the tier was persisted get the column and a backfill from order_count
+            stmt.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS loyalty_tier VARCHAR(20) DEFAULT 'BASIC'");
+            // Also realigns stored tiers when the LoyaltyTier thresholds change
+            String tier = DiscountService.tierSql("order_count");
+            stmt.execute("UPDATE users SET loyalty_tier = " + tier + " WHERE loyalty_tier IS DISTINCT FROM " + tier);
+            
             stmt.execute(
                 "CREATE TABLE IF NOT EXISTS books (" +
                 "id SERIAL PRIMARY KEY, " +
@@ -174,6 +259,86 @@ public class DatabaseConnection {
                 ")"
             );
             
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS promotions (" +
+                "id SERIAL PRIMARY KEY, " +
+                "name VARCHAR(100) NOT NULL, " +
+                "rule_type VARCHAR(20) NOT NULL, " +
+                "target VARCHAR(255) NOT NULL, " +
+                "discount_percentage DECIMAL(5, 2) DEFAULT 0, " +
+                "buy_quantity INT DEFAULT 0, " +
+                "free_quantity INT DEFAULT 0, " +
+                "starts_at TIMESTAMP, " +
+                "ends_at TIMESTAMP, " +
+                "active BOOLEAN DEFAULT TRUE" +
+                ")"
+            );
+            
+            boolean salesRollupsExist;
+            try (java.sql.ResultSet rs = stmt.executeQuery("SELECT to_regclass('sales_daily') IS NOT NULL")) {
+                salesRollupsExist = rs.next() && rs.getBoolean(1);
+            }
+            
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS sales_daily_books (" +
+                "day DATE NOT NULL, " +
+                "book_id INT NOT NULL, " +
+                "category VARCHAR(50) NOT NULL, " +
+                "revenue DECIMAL(14, 2) NOT NULL, " +
+                "units INT NOT NULL, " +
+                "orders INT NOT NULL, " +
+                "PRIMARY KEY (day, book_id)" +
+                ")"
+            );
+            
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS sales_daily (" +
+                "day DATE PRIMARY KEY, " +
+                "orders INT NOT NULL, " +
+                "units INT NOT NULL, " +
+                "revenue DECIMAL(14, 2) NOT NULL" +
+                ")"
+            );
+            
+            if (!salesRollupsExist) {
+                LOG.info("Built sales rollups for {} days of existing orders", SalesAnalyticsService.rebuild(connection));
+            }
+            
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS book_facet_counts (" +
+                "facet VARCHAR(20) NOT NULL, " +
+                "value VARCHAR(255) NOT NULL, " +
+                "book_count INT NOT NULL, " +
+                "PRIMARY KEY (facet, value)" +
+                ")"
+            );
+            if (createFacetTriggers(stmt)) {
+                LOG.info("Counted {} facet values of existing books", FacetService.rebuild(connection));
+            }
+            
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_order_date ON orders (order_date DESC, id DESC)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_id_text ON orders ((CAST(id AS TEXT)) text_pattern_ops)");
+            // Not unique: existing catalogs may already hold the same ISBN twice
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_isbn ON books (isbn)");
+            // One per sort order of the book list, ending in id like its ORDER BY so a page
+            // is an index range scan; the leading column also serves filters on it.
+            // They replace the single-column ones databases built from init_database.sql had
+            stmt.execute("DROP INDEX IF EXISTS idx_books_title");
+            stmt.execute("DROP INDEX IF EXISTS idx_books_author");
+            stmt.execute("DROP INDEX IF EXISTS idx_books_category");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_title_id ON books (title, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_author_id ON books (author, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_publisher_id ON books (publisher, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_category_id ON books (category, id)");
+            // A category filter on the default title order
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_category_title_id ON books (category, title, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_price_id ON books (price, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_stock_id ON books (stock_quantity, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_rating_id ON books ((COALESCE(average_rating, 0)), id)");
+            
+            createTrigramIndexes(stmt);
+            createChangeTriggers(stmt);
+            
             stmt.execute(
                 "INSERT INTO users (username, password_hash, full_name, email, role) " +
                 "SELECT 'admin', '$2a$10$h.dl5J86rGH7I8bD9bZeZeci0pDt0.VwR.k5.5wcn4p/7ZpQzJCqO', 'Admin User', 'admin@bookshop.com', 'ADMIN' " +
@@ -247,11 +412,103 @@ public class DatabaseConnection {
                 );
             }
             
-            System.out.println("PostgreSQL database initialized successfully.");
+            LOG.info("PostgreSQL database initialized successfully.");
         } catch (SQLException e) {
-            System.err.println("Error initializing PostgreSQL database!");
-            e.printStackTrace();
+            LOG.error("Error initializing PostgreSQL database!", e);
             throw e;
         }
     }
+    
+    private void createChangeTriggers(Statement stmt) {
+        // Each row change is sent to ChangeFeed as "table:operation:id:related id:origin"
+        String[][] tables = {
+            {"books", ""},
+            {"orders", "'user_id'"},
+            {"cart_items", "'user_id'"},
+            {"reviews", "'book_id'"},
+            {"promotions", ""}
+        };
+        
+        try {
+            // A bulk load sets bookshop.bulk_load and sends one notice of its own instead of one per row
+            stmt.execute(
+                "CREATE OR REPLACE FUNCTION bookshop_notify_change() RETURNS trigger AS $$ " +
+                "DECLARE row_data JSONB; " +
+                "BEGIN " +
+                "IF current_setting('bookshop.bulk_load', true) = 'on' THEN RETURN NULL; END IF; " +
+                "IF TG_OP = 'DELETE' THEN row_data := to_jsonb(OLD); ELSE row_data := to_jsonb(NEW); END IF; " +
+                "PERFORM pg_notify('" + ChangeFeed.CHANNEL + "', TG_TABLE_NAME || ':' || TG_OP || ':' || (row_data->>'id') || " +
+                "':' || CASE WHEN TG_NARGS > 0 THEN COALESCE(row_data->>TG_ARGV[0], '') ELSE '' END || " +
+                "':' || COALESCE(current_setting('bookshop.origin', true), '')); " +
+                "RETURN NULL; " +
+                "END; $$ LANGUAGE plpgsql"
+            );
+            
+            // Recreating triggers locks the tables, so skip it once they are all in place
+            try (java.sql.ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE '%\\_notify\\_change' AND NOT tgisinternal")) {
+                if (rs.next() && rs.getInt(1) >= tables.length) {
+                    return;
+                }
+            }
+            
+            for (String[] table : tables) {
+                stmt.execute("DROP TRIGGER IF EXISTS " + table[0] + "_notify_change ON " + table[0]);
+                stmt.execute(
+                    "CREATE TRIGGER " + table[0] + "_notify_change AFTER INSERT OR UPDATE OR DELETE ON " + table[0] +
+                    " FOR EACH ROW EXECUTE PROCEDURE bookshop_notify_change(" + table[1] + ")"
+                );
+            }
+        } catch (SQLException e) {
+            LOG.warn("Could not create change notification triggers: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Installs the facet count function and, when missing, the triggers on books
+     * that call it. Returns true when the triggers were created, since changes
+     * made before then were not counted.
+     */
+    private boolean createFacetTriggers(Statement stmt) throws SQLException {
+        stmt.execute(FacetService.countTriggerFunctionSql());
+        
+        try (java.sql.ResultSet rs = stmt.executeQuery(
+                "SELECT COUNT(*) FROM pg_trigger WHERE tgname LIKE 'books\\_count\\_facets\\_%' AND NOT tgisinternal")) {
+            if (rs.next() && rs.getInt(1) >= 3) {
+                return false;
+            }
+        }
+        
+        stmt.execute("DROP TRIGGER IF EXISTS books_count_facets_insert ON books");
+        stmt.execute("DROP TRIGGER IF EXISTS books_count_facets_delete ON books");
+        stmt.execute("DROP TRIGGER IF EXISTS books_count_facets_update ON books");
+        stmt.execute(
+            "CREATE TRIGGER books_count_facets_insert AFTER INSERT ON books REFERENCING NEW TABLE AS new_rows " +
+            "FOR EACH STATEMENT EXECUTE PROCEDURE bookshop_count_facets()"
+        );
+        stmt.execute(
+            "CREATE TRIGGER books_count_facets_delete AFTER DELETE ON books REFERENCING OLD TABLE AS old_rows " +
+            "FOR EACH STATEMENT EXECUTE PROCEDURE bookshop_count_facets()"
+        );
+        stmt.execute(
+            "CREATE TRIGGER books_count_facets_update AFTER UPDATE OF category, author, publisher, price, average_rating ON books " +
+            "FOR EACH ROW WHEN (OLD.category IS DISTINCT FROM NEW.category OR OLD.author IS DISTINCT FROM NEW.author OR " +
+            "OLD.publisher IS DISTINCT FROM NEW.publisher OR OLD.price IS DISTINCT FROM NEW.price OR " +
+            "OLD.average_rating IS DISTINCT FROM NEW.average_rating) " +
+            "EXECUTE PROCEDURE bookshop_count_facets()"
+        );
+        return true;
+    }
+    
+    private void createTrigramIndexes(Statement stmt) {
+        // pg_trgm needs CREATE privilege on the database; without it searches still work, just unindexed
+        try {
+            stmt.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_users_full_name_trgm ON users USING gin (full_name gin_trgm_ops)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_search_trgm ON books USING gin ((" +
+                BookRepositoryImpl.SEARCH_TEXT_SQL + ") gin_trgm_ops)");
+        } catch (SQLException e) {
+            LOG.warn("Could not create trigram indexes: {}", e.getMessage());
+        }
+    }
 }
\ No newline at end of file
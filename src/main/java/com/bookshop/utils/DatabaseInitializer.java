@@ -31,7 +31,7 @@ public class DatabaseInitializer {
     }
     
     public static void createTestOrders() throws SQLException {
-        OrderService orderService = new OrderService();
+        OrderService orderService = OrderService.getInstance();
         List<Order> existingOrders = orderService.getAllOrders();
         
         if (!existingOrders.isEmpty()) {
@@ -56,8 +56,8 @@ public class DatabaseInitializer {
             return;
         }
         
-        UserService userService = new UserService();
-        BookService bookService = new BookService();
+        UserService userService = UserService.getInstance();
+        BookService bookService = BookService.getInstance();
         
         List<User> users = userService.getAllUsers();
         List<Book> books = bookService.getAllBooks();
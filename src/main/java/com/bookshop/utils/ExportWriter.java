@@ -0,0 +1,130 @@
+package com.bookshop.utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes rows to a CSV or JSON-lines file as they arrive, so an export never
+ * holds more than one row. The format follows the file name as for catalog
+ * feeds (.csv, .jsonl or .ndjson), and a trailing .gz compresses the output.
+ * CSV files start with a header row; JSON lines use the column names as keys.
+ */
+public class ExportWriter implements Closeable {
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final Writer out;
+    private final CatalogFeedReader.Format format;
+    private final String[] columns;
+    private final StringBuilder line = new StringBuilder(256);
+    private long rows;
+    
+    private ExportWriter(Writer out, CatalogFeedReader.Format format, String[] columns) {
+        this.out = out;
+        this.format = format;
+        this.columns = columns.clone();
+    }
+    
+    public static ExportWriter open(Path path, String... columns) throws IOException {
+        String name = path.getFileName().toString();
+        boolean gzip = name.toLowerCase(Locale.ROOT).endsWith(".gz");
+        CatalogFeedReader.Format format = CatalogFeedReader.Format.forFileName(
+            gzip ? name.substring(0, name.length() - 3) : name);
+        
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        ExportWriter writer = new ExportWriter(
+            new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE), format, columns);
+        if (format == CatalogFeedReader.Format.CSV) {
+            writer.writeLine(columns);
+        }
+        return writer;
+    }
+    
+    /**
+     * Writes one row with a value per column. Numbers and booleans are written as
+     * such in JSON, timestamps as ISO local date-times and null as an empty CSV field.
+     */
+    public void writeRow(Object... values) throws IOException {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " values, got " + values.length);
+        }
+        if (format == CatalogFeedReader.Format.CSV) {
+            writeLine(values);
+        } else {
+            line.setLength(0);
+            line.append('{');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                Log.quote(line, columns[i]);
+                line.append(':');
+                Object value = values[i];
+                if (value instanceof Number || value instanceof Boolean) {
+                    line.append(text(value));
+                } else {
+                    Log.quote(line, value == null ? null : text(value));
+                }
+            }
+            out.append(line.append('}').append('\n'));
+        }
+        rows++;
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    private void writeLine(Object[] values) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = text(values[i]);
+            if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        out.append(line.append('\n'));
+    }
+    
+    private static String text(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        return value.toString();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,277 @@
+package com.bookshop.utils;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cover images for the book screens. Decoded thumbnails are kept in an LRU
+ * bounded by their pixel size, and the downloaded bytes are kept on disk under
+ * the SHA-256 of their URL so a restart does not go back to the network.
+ * Concurrent requests for the same cover share one download and decode, which
+ * run on background threads.
+ */
+public class ImageCache {
+    
+    private static final Log LOG = Log.get(ImageCache.class);
+    
+    private interface ImageSource {
+        InputStream open() throws IOException;
+    }
+    
+    public static final String PLACEHOLDER_RESOURCE = "/images/default-book.jpg";
+    
+    private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    private static final int[] SIZE_BUCKETS = {64, 128, 256, 512};
+    private static final int LOADER_THREADS = 2;
+    private static final String VIEW_URL_KEY = "bookshop.imageSource";
+    
+    private static ImageCache instance;
+    
+    private final Map<String, Image> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService loader;
+    private final Path diskDirectory;
+    private long memoryBytes;
+    private volatile Image placeholder;
+    
+    public static synchronized ImageCache getInstance() {
+        if (instance == null) {
+            instance = new ImageCache();
+        }
+        return instance;
+    }
+    
+    private ImageCache() {
+        this.diskDirectory = Paths.get(System.getProperty("user.home"), ".bookshop", "image-cache");
+        this.loader = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-images");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * The default cover, decoded once and shared by every view that shows it.
+     */
+    public Image getPlaceholder() {
+        Image image = placeholder;
+        if (image == null) {
+            synchronized (this) {
+                if (placeholder == null) {
+                    placeholder = new Image(ImageCache.class.getResourceAsStream(PLACEHOLDER_RESOURCE));
+                }
+                image = placeholder;
+            }
+        }
+        return image;
+    }
+    
+    /**
+     * Returns the cover scaled to fit the smallest size bucket covering {@code size}.
+     * The future fails if the image cannot be fetched or decoded.
+     */
+    public CompletableFuture<Image> load(String url, int size) {
+        if (url == null || url.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(getPlaceholder());
+        }
+        
+        return load(url, bucketFor(size), () -> new ByteArrayInputStream(fetch(url)));
+    }
+    
+    /**
+     * Like {@link #load(String, int)}, but decodes straight from the local cover pack
+     * when it holds the book's ISBN and only falls back to the URL otherwise.
+     */
+    public CompletableFuture<Image> loadCover(String isbn, String url, int size) {
+        CoverPack pack = CoverPack.getInstance();
+        if (isbn != null && pack.contains(isbn)) {
+            String key = "isbn:" + CoverPack.normalizeIsbn(isbn);
+            return load(key, bucketFor(size), () -> pack.openStream(isbn));
+        }
+        return load(url, size);
+    }
+    
+    /**
+     * Shows the placeholder in the view straight away and swaps in the cover once it
+     * is ready, unless the view has been pointed at another cover in the meantime.
+     * {@code onFailure} runs on the JavaFX thread if the cover could not be loaded.
+     */
+    public void loadInto(ImageView view, String url, int size, Runnable onFailure) {
+        show(view, url, load(url, size), onFailure);
+    }
+    
+    public void loadCoverInto(ImageView view, String isbn, String url, int size, Runnable onFailure) {
+        show(view, isbn + "|" + url, loadCover(isbn, url, size), onFailure);
+    }
+    
+    private CompletableFuture<Image> load(String source, int bucket, ImageSource opener) {
+        String key = bucket + ":" + source;
+        
+        Image cached = getFromMemory(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            return pending;
+        }
+        
+        loader.execute(() -> {
+            try {
+                Image image = decode(source, bucket, opener);
+                putInMemory(key, image);
+                inFlight.remove(key, created);
+                created.complete(image);
+            } catch (Throwable e) {
+                inFlight.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+    
+    private void show(ImageView view, String viewKey, CompletableFuture<Image> future, Runnable onFailure) {
+        view.getProperties().put(VIEW_URL_KEY, viewKey);
+        
+        Image ready = future.getNow(null);
+        if (ready != null) {
+            view.setImage(ready);
+            return;
+        }
+        
+        view.setImage(getPlaceholder());
+        future.whenComplete((image, error) -> Platform.runLater(() -> {
+            if (!viewKey.equals(view.getProperties().get(VIEW_URL_KEY))) {
+                return;
+            }
+            if (image != null) {
+                view.setImage(image);
+            } else {
+                LOG.warn("Error loading image {}: {}", viewKey, error.getMessage());
+                if (onFailure != null) {
+                    onFailure.run();
+                }
+            }
+        }));
+    }
+    
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+    
+    private Image decode(String source, int bucket, ImageSource opener) {
+        try (InputStream in = opener.open()) {
+            Image image = new Image(in, bucket, bucket, true, true);
+            if (image.isError()) {
+                throw new IllegalStateException("Cannot decode " + source, image.getException());
+            }
+            return image;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + source, e);
+        }
+    }
+    
+    private byte[] fetch(String url) throws IOException {
+        // Covers bundled with the application are read straight from the classpath
+        if (!url.contains(":")) {
+            String resource = url.startsWith("/") ? url : "/" + url;
+            try (InputStream in = ImageCache.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IOException("No such resource " + resource);
+                }
+                return in.readAllBytes();
+            }
+        }
+        
+        Path cached = diskDirectory.resolve(sha256(url));
+        if (Files.isRegularFile(cached)) {
+            return Files.readAllBytes(cached);
+        }
+        
+        byte[] bytes;
+        try (InputStream in = new URL(url).openStream()) {
+            bytes = in.readAllBytes();
+        }
+        
+        try {
+            Files.createDirectories(diskDirectory);
+            Path temp = Files.createTempFile(diskDirectory, "download", ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write image cache entry for {}: {}", url, e.getMessage());
+        }
+        return bytes;
+    }
+    
+    private synchronized Image getFromMemory(String key) {
+        return memory.get(key);
+    }
+    
+    private synchronized void putInMemory(String key, Image image) {
+        Image previous = memory.put(key, image);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(image);
+        
+        Iterator<Image> eldest = memory.values().iterator();
+        while (memoryBytes > MAX_MEMORY_BYTES && eldest.hasNext()) {
+            Image evicted = eldest.next();
+            if (evicted == image) {
+                break;
+            }
+            memoryBytes -= sizeOf(evicted);
+            eldest.remove();
+        }
+    }
+    
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+    
+    private static int bucketFor(int size) {
+        for (int bucket : SIZE_BUCKETS) {
+            if (size <= bucket) {
+                return bucket;
+            }
+        }
+        return SIZE_BUCKETS[SIZE_BUCKETS.length - 1];
+    }
+    
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,28 +1,13 @@
 package com.bookshop.utils;
 
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
 public class ImageLoader {
     
-    private static final String DEFAULT_BOOK_IMAGE = "/images/default_book.png";
+    private static final int DEFAULT_IMAGE_SIZE = 200;
     
     public static void loadImage(String url, ImageView imageView) {
-        try {
-            Image image;
-            if (url != null && !url.isEmpty()) {
-                image = new Image(url, true);
-            
-                if (image.isError()) {
-                    image = new Image(url.startsWith("/") ? url : "/" + url);
-                }
-            } else {
-                image = new Image(DEFAULT_BOOK_IMAGE);
-            }
-            
-            imageView.setImage(image);
-        } catch (Exception e) {
-            imageView.setImage(new Image(DEFAULT_BOOK_IMAGE));
-        }
+        int size = imageView.getFitWidth() > 0 ? (int) imageView.getFitWidth() : DEFAULT_IMAGE_SIZE;
+        ImageCache.getInstance().loadInto(imageView, url, size, null);
     }
-} 
\ No newline at end of file
+}
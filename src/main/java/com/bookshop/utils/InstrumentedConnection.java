@@ -0,0 +1,333 @@
+package com.bookshop.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Wraps the connection handed to a service or repository method so that the
+ * method is timed from the moment it takes the connection until it closes it,
+ * together with the rows it read and any statement that failed. The method is
+ * found on the call stack, so every caller of DatabaseConnection is covered
+ * without changes of its own. Each statement it runs is also handed to the
+ * QueryTracer with its SQL and bind values. Result sets are wrapped by a plain
+ * delegating class rather than a proxy, so reading columns row by row costs
+ * no more than on the driver's own.
+ */
+final class InstrumentedConnection implements InvocationHandler {
+    
+    static final String OPERATION_SECONDS = "bookshop_db_operation_seconds";
+    static final String OPERATION_ROWS = "bookshop_db_operation_rows";
+    static final String OPERATION_ERRORS = "bookshop_db_operation_errors_total";
+    
+    private static final StackWalker STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> RESULT_SET_SOURCES = Set.of("executeQuery", "getResultSet", "getGeneratedKeys");
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+        "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+    private static final String EXPLAIN = "EXPLAIN (ANALYZE, BUFFERS) ";
+    
+    private final Connection connection;
+    private final boolean borrowed;
+    private final String operation;
+    private final long startedNanos = System.nanoTime();
+    private final QueryTracer tracer = QueryTracer.getInstance();
+    private final List<QueryTracer.Trace> openTraces = new ArrayList<>();
+    private long rows;
+    private boolean failed;
+    private boolean recorded;
+    
+    private InstrumentedConnection(Connection connection, boolean borrowed, String operation) {
+        this.connection = connection;
+        this.borrowed = borrowed;
+        this.operation = operation;
+    }
+    
+    static Connection wrap(Connection connection) {
+        return wrap(connection, false);
+    }
+    
+    /**
+     * Like wrap, but closing the wrapper only ends the timed operation and leaves
+     * the connection open for its owner.
+     */
+    static Connection wrapBorrowed(Connection connection) {
+        return wrap(connection, true);
+    }
+    
+    private static Connection wrap(Connection connection, boolean borrowed) {
+        InstrumentedConnection handler = new InstrumentedConnection(connection, borrowed, callerOf(DatabaseConnection.class));
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, handler);
+    }
+    
+    /**
+     * The first method on the stack outside the given class and this one, e.g.
+     * "BookRepositoryImpl.findAll". Helpers that only fetch the connection are skipped.
+     */
+    static String callerOf(Class<?> connectionSource) {
+        return STACK.walk(frames -> frames
+            .filter(frame -> frame.getDeclaringClass() != connectionSource
+                && frame.getDeclaringClass() != InstrumentedConnection.class
+                && !frame.getMethodName().equals("getConnection"))
+            .findFirst()
+            .map(frame -> frame.getDeclaringClass().getSimpleName() + "." + frame.getMethodName())
+            .orElse("unknown"));
+    }
+    
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("close")) {
+            record();
+            if (borrowed) {
+                return null;
+            }
+        }
+        
+        Object result = call(connection, method, args);
+        
+        if (STATEMENT_FACTORIES.contains(name) && result instanceof Statement) {
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                : result instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {type},
+                new StatementHandler((Statement) result, sql));
+        }
+        return result;
+    }
+    
+    private Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                failed = true;
+            }
+            throw e.getCause();
+        }
+    }
+    
+    private synchronized void record() {
+        // Services close the shared connection more than once in some paths
+        if (recorded) {
+            return;
+        }
+        recorded = true;
+        
+        for (QueryTracer.Trace trace : openTraces) {
+            tracer.finish(trace);
+        }
+        openTraces.clear();
+        
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.timer(OPERATION_SECONDS, "Time from taking a connection to closing it, per service or repository method",
+            "operation", operation).record((System.nanoTime() - startedNanos) / 1_000);
+        metrics.histogram(OPERATION_ROWS, "Rows read per service or repository method call",
+            "operation", operation).record(rows);
+        if (failed) {
+            metrics.counter(OPERATION_ERRORS, "Service or repository method calls with a failed statement",
+                "operation", operation).increment();
+        }
+    }
+    
+    /**
+     * Runs a slow read again as EXPLAIN (ANALYZE, BUFFERS) with the same bind
+     * values. Skipped inside a transaction, where a failing EXPLAIN would abort
+     * the caller's work.
+     */
+    private String explain(String sql, List<Method> bindSetters, List<Object[]> bindArgs) {
+        try {
+            if (!connection.getAutoCommit()) {
+                return "EXPLAIN skipped: statement ran inside a transaction";
+            }
+            try (PreparedStatement statement = connection.prepareStatement(EXPLAIN + sql)) {
+                for (int i = 0; i < bindSetters.size(); i++) {
+                    bindSetters.get(i).invoke(statement, bindArgs.get(i));
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(plan.length() > 0 ? "\n" : "").append(rs.getString(1));
+                    }
+                }
+                return plan.toString();
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            return "EXPLAIN failed: " + cause.getMessage();
+        }
+    }
+    
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private final Set<Integer> redacted;
+        private final TreeMap<Integer, Method> bindSetters = new TreeMap<>();
+        private final TreeMap<Integer, Object[]> bindArgs = new TreeMap<>();
+        private final List<String> batchSql = new ArrayList<>();
+        private int batchSize;
+        private QueryTracer.Trace current;
+        
+        StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.redacted = QueryTracer.redactedParameters(preparedSql);
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer) {
+                bindSetters.put((Integer) args[0], method);
+                bindArgs.put((Integer) args[0], args);
+            } else if (name.equals("clearParameters")) {
+                bindSetters.clear();
+                bindArgs.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+                if (args != null && args.length == 1) {
+                    batchSql.add((String) args[0]);
+                }
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+                batchSql.clear();
+            } else if (name.equals("close")) {
+                finishCurrent();
+            } else if (EXECUTE_METHODS.contains(name)) {
+                return execute(method, args);
+            }
+            
+            Object result = call(statement, method, args);
+            if (RESULT_SET_SOURCES.contains(name) && result instanceof ResultSet) {
+                return wrapResultSet((ResultSet) result, name.equals("getGeneratedKeys") ? null : current);
+            }
+            return result;
+        }
+        
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishCurrent();
+            boolean batch = method.getName().contains("Batch");
+            String sql = preparedSql != null ? preparedSql
+                : batch ? String.join(";\n", batchSql)
+                : (String) args[0];
+            List<Object> values = new ArrayList<>(bindArgs.size());
+            for (Integer index : bindArgs.keySet()) {
+                values.add(bindSetters.get(index).getName().equals("setNull") ? null : bindArgs.get(index)[1]);
+            }
+            QueryTracer.Trace trace = tracer.begin(operation, sql,
+                values.isEmpty() ? Collections.emptyList() : QueryTracer.describeBinds(redacted, values),
+                batch ? batchSize : 0);
+            
+            long started = System.nanoTime();
+            Object result;
+            try {
+                result = call(statement, method, args);
+            } catch (Throwable e) {
+                trace.setDurationNanos(System.nanoTime() - started);
+                trace.setError(e.getMessage());
+                tracer.finish(trace);
+                throw e;
+            }
+            trace.setDurationNanos(System.nanoTime() - started);
+            
+            if (batch) {
+                batchSize = 0;
+                batchSql.clear();
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                trace.addRows(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    trace.addRows(Math.max(count, 0));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    trace.addRows(Math.max(count, 0));
+                }
+            }
+            if (tracer.shouldExplain(trace)) {
+                trace.setPlan(explain(sql, new ArrayList<>(bindSetters.values()), new ArrayList<>(bindArgs.values())));
+            }
+            
+            if (result instanceof ResultSet) {
+                current = trace;
+                synchronized (InstrumentedConnection.this) {
+                    openTraces.add(trace);
+                }
+                return wrapResultSet((ResultSet) result, trace);
+            }
+            if (method.getName().equals("execute") && Boolean.TRUE.equals(result)) {
+                // Rows are counted when the caller fetches the result set
+                current = trace;
+                synchronized (InstrumentedConnection.this) {
+                    openTraces.add(trace);
+                }
+                return result;
+            }
+            tracer.finish(trace);
+            return result;
+        }
+        
+        private void finishCurrent() {
+            if (current != null) {
+                tracer.finish(current);
+                current = null;
+            }
+        }
+        
+        private ResultSet wrapResultSet(ResultSet resultSet, QueryTracer.Trace trace) {
+            return new CountingResultSet(resultSet, trace);
+        }
+    }
+    
+    // Only next and close are watched; column reads go straight to the driver, row after row
+    private final class CountingResultSet extends DelegatingResultSet {
+        private final QueryTracer.Trace trace;
+        
+        CountingResultSet(ResultSet resultSet, QueryTracer.Trace trace) {
+            super(resultSet);
+            this.trace = trace;
+        }
+        
+        @Override
+        public boolean next() throws SQLException {
+            boolean hasRow;
+            try {
+                hasRow = delegate.next();
+            } catch (SQLException e) {
+                failed = true;
+                throw e;
+            }
+            if (hasRow) {
+                rows++;
+                if (trace != null) {
+                    trace.addRows(1);
+                }
+            }
+            return hasRow;
+        }
+        
+        @Override
+        public void close() throws SQLException {
+            delegate.close();
+            if (trace != null) {
+                tracer.finish(trace);
+            }
+        }
+    }
+}
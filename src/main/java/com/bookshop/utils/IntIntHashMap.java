@@ -0,0 +1,130 @@
+package com.bookshop.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int to int that stores keys and values in
+ * plain arrays, for counting pairs without an Integer per entry. Absent keys
+ * read as 0. Key 0 marks a free slot and cannot be stored. Not thread-safe.
+ */
+public class IntIntHashMap {
+    
+    public interface Visitor {
+        void accept(int key, int value);
+    }
+    
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+    
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+    
+    public int get(int key) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+    
+    public boolean containsKey(int key) {
+        return key != 0 && keys[find(key)] == key;
+    }
+    
+    public void put(int key, int value) {
+        int slot = slotFor(key);
+        values[slot] = value;
+    }
+    
+    /**
+     * Adds {@code delta} to the key's value, starting from 0, and returns the new value.
+     */
+    public int addTo(int key, int delta) {
+        int slot = slotFor(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    /**
+     * The keys of the {@code n} largest values, largest first, with ties going to
+     * the larger key. Values must not be negative.
+     */
+    public int[] topKeys(int n) {
+        long[] packed = new long[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                packed[count++] = ((long) values[i] << 32) | (keys[i] & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(packed);
+        
+        int[] top = new int[Math.min(n, size)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = (int) packed[size - 1 - i];
+        }
+        return top;
+    }
+    
+    private int slotFor(int key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            if (size >= resizeAt) {
+                rehash(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return slot;
+    }
+    
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        resizeAt = capacity / 4 * 3;
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,299 @@
+package com.bookshop.utils;
+
+import com.bookshop.models.Book;
+import com.bookshop.models.BookSortOrder;
+import com.bookshop.models.CartItem;
+import com.bookshop.models.User;
+import com.bookshop.services.BookService;
+import com.bookshop.services.CartService;
+import com.bookshop.services.OrderService;
+import com.bookshop.services.ReviewService;
+import com.bookshop.services.UserService;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs simulated customers against the real services for a fixed time and
+ * reports throughput, latency percentiles and errors per scenario. Each
+ * customer repeatedly picks a scenario from the mix, with no think time, so
+ * the numbers show what the services sustain at that concurrency.
+ *
+ * Every customer gets a database connection of its own, bound to its thread,
+ * as a pooled server would give each request. The desktop app instead runs
+ * all database work on one worker over a single connection, so these numbers
+ * are not what a single app instance sees.
+ *
+ * Checkout and review write real orders and reviews, so point it at a test
+ * database.
+ */
+public class LoadTest {
+    
+    public static final String DEFAULT_MIX = "browse=50,search=25,add_to_cart=15,checkout=5,review=5";
+    
+    private static final int SAMPLE_BOOKS = 200;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    
+    @FunctionalInterface
+    private interface Scenario {
+        void run(Shopper shopper) throws SQLException;
+    }
+    
+    private final BookService bookService = BookService.getInstance();
+    private final CartService cartService = CartService.getInstance();
+    private final OrderService orderService = OrderService.getInstance();
+    private final ReviewService reviewService = ReviewService.getInstance();
+    
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private final List<Book> books = new ArrayList<>();
+    private final List<String> categories = new ArrayList<>();
+    private final List<String> searchTerms = new ArrayList<>();
+    private String[] weightedScenarios;
+    
+    public LoadTest() {
+        scenarios.put("browse", this::browse);
+        scenarios.put("search", this::search);
+        scenarios.put("add_to_cart", this::addToCart);
+        scenarios.put("checkout", this::checkout);
+        scenarios.put("review", this::review);
+    }
+    
+    public void run(int shopperCount, int seconds, String mix) throws SQLException, InterruptedException {
+        weightedScenarios = parseMix(mix);
+        
+        List<User> customers = new ArrayList<>();
+        for (User user : UserService.getInstance().getAllUsers()) {
+            if (!user.isAdmin()) {
+                customers.add(user);
+            }
+        }
+        books.addAll(bookService.getBookSummaries(null, null, BookSortOrder.TITLE_ASC, 0, SAMPLE_BOOKS));
+        categories.addAll(bookService.getCategories());
+        for (Book book : books) {
+            for (String word : book.getTitle().split("\\W+")) {
+                if (word.length() > 3) {
+                    searchTerms.add(word.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (customers.isEmpty() || books.isEmpty()) {
+            System.out.println("The load test needs at least one customer and one book in the database.");
+            return;
+        }
+        
+        for (String name : scenarios.keySet()) {
+            stats.put(name, new Stats());
+        }
+        
+        AtomicInteger threadNumber = new AtomicInteger();
+        boolean virtual = false;
+        ExecutorService executor;
+        try {
+            // Available from Java 21; the build still targets 17, where platform threads are used
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+        } catch (ReflectiveOperationException e) {
+            executor = Executors.newFixedThreadPool(shopperCount, runnable -> {
+                Thread thread = new Thread(runnable, "loadtest-shopper-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        System.out.println("Running " + shopperCount + " shoppers for " + seconds + " s on "
+            + (virtual ? "virtual" : "platform") + " threads with a connection each, mix " + mix
+            + " (" + customers.size() + " customers, " + books.size() + " books)");
+        
+        // Connections are opened before the clock starts so the run measures queries, not logins
+        List<Shopper> shoppers = new ArrayList<>();
+        try {
+            for (int i = 0; i < shopperCount; i++) {
+                shoppers.add(new Shopper(customers.get(i % customers.size()),
+                    DatabaseConnection.getInstance().openDedicatedConnection()));
+            }
+            
+            long started = System.nanoTime();
+            long deadline = started + TimeUnit.SECONDS.toNanos(seconds);
+            for (Shopper shopper : shoppers) {
+                executor.execute(() -> shop(shopper, deadline));
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS)) {
+                System.out.println("Some shoppers were still busy after the run; their last calls are not counted.");
+                executor.shutdownNow();
+            }
+            report((System.nanoTime() - started) / 1e9);
+        } finally {
+            executor.shutdownNow();
+            for (Shopper shopper : shoppers) {
+                try {
+                    shopper.connection.close();
+                } catch (SQLException e) {
+                    System.out.println("Could not close a shopper connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void shop(Shopper shopper, long deadline) {
+        DatabaseConnection.bindThreadConnection(shopper.connection);
+        try {
+            runScenarios(shopper, deadline);
+        } finally {
+            DatabaseConnection.unbindThreadConnection();
+        }
+    }
+    
+    private void runScenarios(Shopper shopper, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            String name = weightedScenarios[random.nextInt(weightedScenarios.length)];
+            Stats scenarioStats = stats.get(name);
+            long start = System.nanoTime();
+            try {
+                scenarios.get(name).run(shopper);
+                scenarioStats.latencyMicros.record((System.nanoTime() - start) / 1_000);
+            } catch (SQLException | RuntimeException e) {
+                scenarioStats.latencyMicros.record((System.nanoTime() - start) / 1_000);
+                scenarioStats.errors.increment();
+                scenarioStats.errorMessages.computeIfAbsent(String.valueOf(e.getMessage()), message -> new LongAdder()).increment();
+            }
+        }
+    }
+    
+    private void browse(Shopper shopper) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String category = categories.isEmpty() || random.nextBoolean() ? null : pick(categories);
+        int total = bookService.countBookSummaries(null, category);
+        int pageSize = PagedBookList.PAGE_SIZE;
+        int offset = total > pageSize ? random.nextInt(total / pageSize) * pageSize : 0;
+        List<Book> page = bookService.getBookSummaries(null, category, BookSortOrder.TITLE_ASC, offset, pageSize);
+        if (!page.isEmpty()) {
+            bookService.getBookById(pick(page).getId());
+        }
+    }
+    
+    private void search(Shopper shopper) throws SQLException {
+        String term = searchTerms.isEmpty() ? pick(books).getAuthor() : pick(searchTerms);
+        bookService.countBookSummaries(term, null);
+        bookService.getBookSummaries(term, null, BookSortOrder.TITLE_ASC, 0, PagedBookList.PAGE_SIZE);
+    }
+    
+    private void addToCart(Shopper shopper) throws SQLException {
+        int userId = shopper.user.getId();
+        cartService.addToCart(userId, pick(books).getId(), 1);
+        cartService.getCartItemCount(userId);
+    }
+    
+    private void checkout(Shopper shopper) throws SQLException {
+        int userId = shopper.user.getId();
+        List<CartItem> items = cartService.getCartItems(userId);
+        if (items.isEmpty()) {
+            cartService.addToCart(userId, pick(books).getId(), 1);
+            items = cartService.getCartItems(userId);
+        }
+        if (orderService.createOrder(userId, items, "Credit Card") < 0) {
+            throw new IllegalStateException("Order was not created");
+        }
+        cartService.clearCart(userId);
+    }
+    
+    private void review(Shopper shopper) throws SQLException {
+        int userId = shopper.user.getId();
+        int bookId = pick(books).getId();
+        reviewService.getBookReviews(bookId);
+        if (!reviewService.hasUserReviewedBook(userId, bookId)) {
+            reviewService.addReview(userId, bookId, "Load test review", 1 + ThreadLocalRandom.current().nextInt(5));
+        }
+    }
+    
+    private static <T> T pick(List<T> items) {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+    
+    /**
+     * Turns "browse=50,search=25" into a table with one entry per weight point,
+     * so picking a scenario is a single random index.
+     */
+    private String[] parseMix(String mix) {
+        List<String> table = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split("=");
+            String name = entry[0].trim();
+            if (!scenarios.containsKey(name) || entry.length != 2) {
+                throw new IllegalArgumentException("Unknown scenario '" + part.trim() + "', expected name=weight with one of " + scenarios.keySet());
+            }
+            int weight = Integer.parseInt(entry[1].trim());
+            for (int i = 0; i < weight; i++) {
+                table.add(name);
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("The scenario mix has no weight: " + mix);
+        }
+        return table.toArray(new String[0]);
+    }
+    
+    private void report(double elapsedSeconds) {
+        long totalCount = 0;
+        long totalErrors = 0;
+        System.out.println();
+        System.out.println(String.format("%-12s %8s %9s %8s %9s %9s %9s %9s",
+            "scenario", "count", "per sec", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latencyMicros;
+            long count = latency.getCount();
+            long errors = entry.getValue().errors.sum();
+            if (count == 0) {
+                continue;
+            }
+            totalCount += count;
+            totalErrors += errors;
+            StringBuilder line = new StringBuilder(String.format("%-12s %8d %9.1f %7.1f%%",
+                entry.getKey(), count, count / elapsedSeconds, 100.0 * errors / count));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.1f", latency.valueAtQuantile(percentile) / 1000.0));
+            }
+            line.append(String.format(" %9.1f", latency.getMax() / 1000.0));
+            System.out.println(line);
+        }
+        System.out.println(String.format("%-12s %8d %9.1f %7.1f%%", "total", totalCount, totalCount / elapsedSeconds,
+            totalCount == 0 ? 0.0 : 100.0 * totalErrors / totalCount));
+        
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            entry.getValue().errorMessages.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(3)
+                .forEach(error -> System.out.println("  " + entry.getKey() + " error x" + error.getValue().sum() + ": " + error.getKey()));
+        }
+    }
+    
+    private static final class Shopper {
+        final User user;
+        final Connection connection;
+        
+        Shopper(User user, Connection connection) {
+            this.user = user;
+            this.connection = connection;
+        }
+    }
+    
+    private static final class Stats {
+        final Histogram latencyMicros = new Histogram();
+        final LongAdder errors = new LongAdder();
+        final Map<String, LongAdder> errorMessages = new ConcurrentHashMap<>();
+    }
+}
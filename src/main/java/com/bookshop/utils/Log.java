@@ -0,0 +1,382 @@
+package com.bookshop.utils;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Levelled logger that writes one JSON object per line. Callers only check the
+ * level and put the event in a lock-free ring buffer; the message is formatted
+ * and written by a single background thread, so a disabled level costs a field
+ * read and an enabled one never waits on the console. When the buffer is full
+ * events are dropped and counted rather than blocking the caller.
+ *
+ * Messages use {} placeholders, filled from the arguments in order; a Throwable
+ * left over after the placeholders is written with its stack trace.
+ *
+ * BOOKSHOP_LOG_LEVEL sets the threshold (default INFO) and BOOKSHOP_LOG_FILE
+ * sends the lines to a file instead of standard error.
+ */
+public final class Log {
+    
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+    
+    private static final int BUFFER_SIZE = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_INSTANT;
+    
+    private static final RingBuffer<Event> buffer = new RingBuffer<>(BUFFER_SIZE);
+    private static final LongAdder dropped = MetricsRegistry.getInstance()
+        .counter("bookshop_log_dropped_total", "Log events dropped because the buffer was full");
+    private static volatile Level threshold = configuredLevel();
+    
+    static {
+        MetricsRegistry.getInstance().gauge("bookshop_log_queue_depth", "Log events waiting to be written", buffer::size);
+    }
+    
+    private final String name;
+    
+    private Log(String name) {
+        this.name = name;
+    }
+    
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+    
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+    
+    public static Level getLevel() {
+        return threshold;
+    }
+    
+    public boolean isDebugEnabled() {
+        return Level.DEBUG.compareTo(threshold) >= 0;
+    }
+    
+    public void debug(String message) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, message, null);
+        }
+    }
+    
+    public void debug(String format, Object arg) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, format, new Object[] {arg});
+        }
+    }
+    
+    public void debug(String format, Object first, Object second) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, format, new Object[] {first, second});
+        }
+    }
+    
+    public void debug(String format, Object... args) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, format, args);
+        }
+    }
+    
+    public void info(String message) {
+        if (enabled(Level.INFO)) {
+            log(Level.INFO, message, null);
+        }
+    }
+    
+    public void info(String format, Object arg) {
+        if (enabled(Level.INFO)) {
+            log(Level.INFO, format, new Object[] {arg});
+        }
+    }
+    
+    public void info(String format, Object... args) {
+        if (enabled(Level.INFO)) {
+            log(Level.INFO, format, args);
+        }
+    }
+    
+    public void warn(String message) {
+        if (enabled(Level.WARN)) {
+            log(Level.WARN, message, null);
+        }
+    }
+    
+    public void warn(String format, Object arg) {
+        if (enabled(Level.WARN)) {
+            log(Level.WARN, format, new Object[] {arg});
+        }
+    }
+    
+    public void warn(String format, Object... args) {
+        if (enabled(Level.WARN)) {
+            log(Level.WARN, format, args);
+        }
+    }
+    
+    public void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+    
+    public void error(String format, Object arg) {
+        log(Level.ERROR, format, new Object[] {arg});
+    }
+    
+    public void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+    
+    private static boolean enabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+    
+    private void log(Level level, String format, Object[] args) {
+        Event event = new Event(level, name, Thread.currentThread().getName(), format, freeze(args));
+        if (buffer.offer(event)) {
+            Appender.ensureStarted();
+        } else {
+            dropped.increment();
+        }
+    }
+    
+    /**
+     * Arguments are formatted later on another thread, so anything that could
+     * still change is turned into its string now.
+     */
+    private static Object[] freeze(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg != null && !(arg instanceof String || arg instanceof Number || arg instanceof Boolean
+                    || arg instanceof Character || arg instanceof Enum || arg instanceof Throwable)) {
+                args[i] = String.valueOf(arg);
+            }
+        }
+        return args;
+    }
+    
+    static String format(String format, Object[] args) {
+        if (args == null || args.length == 0 || format == null) {
+            return format;
+        }
+        StringBuilder out = new StringBuilder(format.length() + 16 * args.length);
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while (argIndex < args.length && (at = format.indexOf("{}", from)) >= 0) {
+            out.append(format, from, at).append(args[argIndex++]);
+            from = at + 2;
+        }
+        return out.append(format, from, format.length()).toString();
+    }
+    
+    static Throwable thrown(String format, Object[] args) {
+        if (args == null || args.length == 0 || !(args[args.length - 1] instanceof Throwable)) {
+            return null;
+        }
+        int placeholders = 0;
+        for (int at = format.indexOf("{}"); at >= 0; at = format.indexOf("{}", at + 2)) {
+            placeholders++;
+        }
+        return placeholders < args.length ? (Throwable) args[args.length - 1] : null;
+    }
+    
+    static String toJson(long timestampMillis, Level level, String logger, String thread, String message, Throwable error) {
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"ts\":\"").append(TIMESTAMP.format(Instant.ofEpochMilli(timestampMillis)))
+            .append("\",\"level\":\"").append(level)
+            .append("\",\"logger\":");
+        quote(json, logger);
+        json.append(",\"thread\":");
+        quote(json, thread);
+        json.append(",\"msg\":");
+        quote(json, message);
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            json.append(",\"error\":");
+            quote(json, String.valueOf(error));
+            json.append(",\"stack\":");
+            quote(json, trace.toString());
+        }
+        return json.append('}').toString();
+    }
+    
+    static void quote(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+    
+    private static Level configuredLevel() {
+        String value = System.getenv("BOOKSHOP_LOG_LEVEL");
+        if (value == null || value.isEmpty()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring BOOKSHOP_LOG_LEVEL=" + value + ", expected DEBUG, INFO, WARN or ERROR");
+            return Level.INFO;
+        }
+    }
+    
+    private static final class Event {
+        final long timestampMillis = System.currentTimeMillis();
+        final Level level;
+        final String logger;
+        final String thread;
+        final String format;
+        final Object[] args;
+        
+        Event(Level level, String logger, String thread, String format, Object[] args) {
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.format = format;
+            this.args = args;
+        }
+    }
+    
+    /**
+     * The single consumer of the buffer. It is started by the first event, so a
+     * run that logs nothing never creates the thread.
+     */
+    private static final class Appender implements Runnable {
+        private static final Appender INSTANCE = start();
+        
+        private final Writer out;
+        private final Thread thread;
+        private volatile boolean stopping;
+        private long droppedReported;
+        
+        private Appender(Writer out) {
+            this.out = out;
+            this.thread = new Thread(this, "bookshop-log");
+            thread.setDaemon(true);
+        }
+        
+        static void ensureStarted() {
+            // Calling this is enough to run the class initializer, which starts the thread
+        }
+        
+        private static Appender start() {
+            Appender appender = new Appender(openTarget());
+            appender.thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(appender::stop, "bookshop-log-flush"));
+            return appender;
+        }
+        
+        private static Writer openTarget() {
+            String file = System.getenv("BOOKSHOP_LOG_FILE");
+            OutputStream stream = System.err;
+            if (file != null && !file.isEmpty()) {
+                try {
+                    Path path = Paths.get(file);
+                    if (path.getParent() != null) {
+                        Files.createDirectories(path.getParent());
+                    }
+                    stream = new FileOutputStream(path.toFile(), true);
+                } catch (IOException e) {
+                    System.err.println("Could not open log file " + file + ", logging to standard error: " + e.getMessage());
+                }
+            }
+            return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+        }
+        
+        @Override
+        public void run() {
+            while (true) {
+                boolean finalPass = stopping;
+                if (buffer.drain(this::write) == 0) {
+                    reportDropped();
+                    flush();
+                    if (finalPass) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+        
+        private void stop() {
+            stopping = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        private void write(Event event) {
+            String message = format(event.format, event.args);
+            Throwable error = thrown(event.format, event.args);
+            writeLine(toJson(event.timestampMillis, event.level, event.logger, event.thread, message, error));
+        }
+        
+        private void reportDropped() {
+            long total = dropped.sum();
+            if (total > droppedReported) {
+                writeLine(toJson(System.currentTimeMillis(), Level.WARN, "Log", thread.getName(),
+                    (total - droppedReported) + " log events dropped, the buffer was full", null));
+                droppedReported = total;
+            }
+        }
+        
+        private void writeLine(String line) {
+            try {
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                // Nowhere left to report it
+            }
+        }
+        
+        private void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                // Nowhere left to report it
+            }
+        }
+    }
+}
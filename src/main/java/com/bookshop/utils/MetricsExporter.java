@@ -0,0 +1,138 @@
+package com.bookshop.utils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics registry as Prometheus text on http://127.0.0.1:PORT/metrics
+ * and rewrites a snapshot file with the same text every minute, so latencies
+ * can be read from a machine that is not scraped. The port comes from
+ * BOOKSHOP_METRICS_PORT (default 9464, 0 turns the endpoint off); a port that is
+ * taken only disables the endpoint.
+ */
+public class MetricsExporter {
+    
+    private static final Log LOG = Log.get(MetricsExporter.class);
+    
+    private static final int DEFAULT_PORT = 9464;
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final Path SNAPSHOT_FILE = Paths.get(System.getProperty("user.home"), ".bookshop", "metrics.prom");
+    
+    private static MetricsExporter instance;
+    
+    private final MetricsRegistry registry = MetricsRegistry.getInstance();
+    private ScheduledExecutorService scheduler;
+    private HttpServer server;
+    
+    public static synchronized MetricsExporter getInstance() {
+        if (instance == null) {
+            instance = new MetricsExporter();
+        }
+        return instance;
+    }
+    
+    private MetricsExporter() {
+    }
+    
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registry.gauge("bookshop_jvm_heap_used_bytes", "Heap in use", () -> memory.getHeapMemoryUsage().getUsed());
+        registry.gauge("bookshop_jvm_threads", "Live threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The server's dispatcher thread takes its daemon flag from the thread that starts it
+        scheduler.execute(this::startServer);
+        scheduler.scheduleAtFixedRate(this::writeSnapshotQuietly,
+            SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeSnapshotQuietly, "bookshop-metrics-snapshot"));
+    }
+    
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    public Path writeSnapshot() throws IOException {
+        Files.createDirectories(SNAPSHOT_FILE.getParent());
+        Path temp = SNAPSHOT_FILE.resolveSibling(SNAPSHOT_FILE.getFileName() + ".tmp");
+        Files.write(temp, registry.toPrometheusText().getBytes(StandardCharsets.UTF_8));
+        // Readers never see a half-written snapshot
+        Files.move(temp, SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return SNAPSHOT_FILE;
+    }
+    
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            LOG.warn("Could not write metrics snapshot: {}", e.getMessage());
+        }
+    }
+    
+    private void startServer() {
+        int port = configuredPort();
+        if (port <= 0) {
+            return;
+        }
+        
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            httpServer.start();
+            synchronized (this) {
+                server = httpServer;
+            }
+            LOG.info("Metrics available at http://127.0.0.1:{}/metrics", port);
+        } catch (IOException e) {
+            LOG.warn("Metrics endpoint not started on port {}: {}", port, e.getMessage());
+        }
+    }
+    
+    private static int configuredPort() {
+        String value = System.getenv("BOOKSHOP_METRICS_PORT");
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_PORT;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring BOOKSHOP_METRICS_PORT={}, expected a port number", value);
+            return DEFAULT_PORT;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.bookshop.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process counters, gauges and histograms, written out in the Prometheus
+ * text format. A metric has at most one label, such as the operation a query
+ * latency belongs to, and its series are created on first use. Timers record
+ * microseconds and are exported in seconds.
+ */
+public class MetricsRegistry {
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    private enum Kind { COUNTER, GAUGE, SUMMARY }
+    
+    private static final class Family {
+        final String name;
+        final String help;
+        final Kind kind;
+        final String label;
+        final double scale;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+        
+        Family(String name, String help, Kind kind, String label, double scale) {
+            this.name = name;
+            this.help = help;
+            this.kind = kind;
+            this.label = label;
+            this.scale = scale;
+        }
+    }
+    
+    private static MetricsRegistry instance;
+    
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+    
+    MetricsRegistry() {
+    }
+    
+    public LongAdder counter(String name, String help, String label, String labelValue) {
+        return (LongAdder) family(name, help, Kind.COUNTER, label, 1)
+            .series.computeIfAbsent(seriesKey(labelValue), key -> new LongAdder());
+    }
+    
+    public LongAdder counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+    
+    public void gauge(String name, String help, LongSupplier value) {
+        family(name, help, Kind.GAUGE, null, 1).series.put("", value);
+    }
+    
+    /**
+     * A latency histogram; record durations in microseconds.
+     */
+    public Histogram timer(String name, String help, String label, String labelValue) {
+        return (Histogram) family(name, help, Kind.SUMMARY, label, 1e-6)
+            .series.computeIfAbsent(seriesKey(labelValue), key -> new Histogram());
+    }
+    
+    public Histogram histogram(String name, String help, String label, String labelValue) {
+        return (Histogram) family(name, help, Kind.SUMMARY, label, 1)
+            .series.computeIfAbsent(seriesKey(labelValue), key -> new Histogram());
+    }
+    
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.kind.name().toLowerCase()).append('\n');
+            
+            for (Map.Entry<String, Object> entry : new TreeMap<>(family.series).entrySet()) {
+                String labelValue = entry.getKey();
+                Object metric = entry.getValue();
+                
+                if (metric instanceof LongAdder) {
+                    sample(out, family.name, family.label, labelValue, null, ((LongAdder) metric).sum());
+                } else if (metric instanceof LongSupplier) {
+                    sample(out, family.name, family.label, labelValue, null, ((LongSupplier) metric).getAsLong());
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    for (double quantile : QUANTILES) {
+                        sample(out, family.name, family.label, labelValue, quantile,
+                            histogram.valueAtQuantile(quantile) * family.scale);
+                    }
+                    sample(out, family.name + "_sum", family.label, labelValue, null, histogram.getSum() * family.scale);
+                    sample(out, family.name + "_count", family.label, labelValue, null, histogram.getCount());
+                }
+            }
+        }
+        return out.toString();
+    }
+    
+    private Family family(String name, String help, Kind kind, String label, double scale) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, kind, label, scale));
+        if (family.kind != kind) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.kind);
+        }
+        return family;
+    }
+    
+    private static String seriesKey(String labelValue) {
+        return labelValue != null ? labelValue : "";
+    }
+    
+    private static void sample(StringBuilder out, String name, String label, String labelValue, Double quantile, double value) {
+        out.append(name);
+        boolean labelled = label != null && !labelValue.isEmpty();
+        if (labelled || quantile != null) {
+            out.append('{');
+            if (labelled) {
+                out.append(label).append("=\"").append(escape(labelValue)).append('"');
+            }
+            if (quantile != null) {
+                out.append(labelled ? "," : "").append("quantile=\"").append(quantile).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
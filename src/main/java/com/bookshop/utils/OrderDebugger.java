@@ -78,7 +78,7 @@ public class OrderDebugger {
     
     private static void debugOrderService() {
         try {
-            PurchaseService purchaseService = new PurchaseService();
+            PurchaseService purchaseService = PurchaseService.getInstance();
             List<Order> allOrders = purchaseService.getAllOrders();
             
             System.out.println("Orders found via service: " + allOrders.size());
@@ -0,0 +1,151 @@
+package com.bookshop.utils;
+
+import com.bookshop.models.Book;
+import com.bookshop.models.BookFilter;
+import com.bookshop.models.BookSortOrder;
+import com.bookshop.services.BookService;
+import javafx.collections.ObservableListBase;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only list behind the book table that holds only the pages around what
+ * the table has asked for. Rows outside a loaded page come back as a shared
+ * placeholder while the page is fetched, and the table is told to redraw once
+ * it arrives. Each filter or sort change gets a new list.
+ *
+ * A page that follows a loaded one is read by seeking past the loaded page's
+ * last row, so scrolling through a long list stays as cheap as the first page.
+ * Only pages reached by jumping are read by offset.
+ */
+public class PagedBookList extends ObservableListBase<Book> {
+    
+    private static final Log LOG = Log.get(PagedBookList.class);
+    
+    public static final Book LOADING_PLACEHOLDER = new Book();
+    
+    static {
+        LOADING_PLACEHOLDER.setTitle("Loading...");
+        LOADING_PLACEHOLDER.setAuthor("");
+        LOADING_PLACEHOLDER.setPublisher("");
+        LOADING_PLACEHOLDER.setCategory("");
+    }
+    
+    public static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 10;
+    
+    private final BookService bookService;
+    private final BookFilter filter;
+    private final BookSortOrder sortOrder;
+    private final int size;
+    private final Set<Integer> pendingPages = new HashSet<>();
+    private final Map<Integer, List<Book>> pages = new LinkedHashMap<Integer, List<Book>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Book>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    
+    private boolean disposed;
+    
+    public PagedBookList(BookService bookService, BookFilter filter, BookSortOrder sortOrder, int size) {
+        this.bookService = bookService;
+        this.filter = filter;
+        this.sortOrder = sortOrder;
+        this.size = size;
+    }
+    
+    @Override
+    public Book get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        
+        int page = index / PAGE_SIZE;
+        List<Book> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page, false, true);
+            return LOADING_PLACEHOLDER;
+        }
+        
+        int offset = index - page * PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : LOADING_PLACEHOLDER;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * The same books in another order. The count is kept, so only pages are read.
+     */
+    public PagedBookList withSortOrder(BookSortOrder newSortOrder) {
+        return new PagedBookList(bookService, filter, newSortOrder, size);
+    }
+    
+    /**
+     * Re-reads the loaded page holding the given book, if any. The old rows stay on
+     * screen until the new page arrives. Returns false if the book is not loaded.
+     */
+    public boolean reloadBook(int bookId) {
+        for (Map.Entry<Integer, List<Book>> entry : pages.entrySet()) {
+            for (Book book : entry.getValue()) {
+                if (book.getId() == bookId) {
+                    requestPage(entry.getKey(), true, false);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    // Stops pages that are still loading from touching a list the table no longer shows
+    public void dispose() {
+        disposed = true;
+        pages.clear();
+    }
+    
+    private void requestPage(int page, boolean refresh, boolean prefetchNext) {
+        if (disposed || (!refresh && pages.containsKey(page)) || !pendingPages.add(page)) {
+            return;
+        }
+        
+        int offset = page * PAGE_SIZE;
+        List<Book> previous = page > 0 ? pages.get(page - 1) : null;
+        Book after = previous != null && previous.size() == PAGE_SIZE ? previous.get(PAGE_SIZE - 1) : null;
+        
+        AsyncTaskRunner.getInstance().submit(
+            () -> after != null
+                ? bookService.getBookSummariesAfter(filter, sortOrder, after, PAGE_SIZE)
+                : bookService.getBookSummaries(filter, sortOrder, offset, PAGE_SIZE),
+            rows -> {
+                pendingPages.remove(page);
+                if (disposed) {
+                    return;
+                }
+                pages.put(page, rows);
+                firePageLoaded(offset, Math.min(offset + PAGE_SIZE, size));
+                // One page ahead, so scrolling down rarely shows placeholders; it follows on from this one
+                if (prefetchNext && offset + PAGE_SIZE < size) {
+                    requestPage(page + 1, false, false);
+                }
+            },
+            error -> {
+                pendingPages.remove(page);
+                LOG.error("Error loading books {}-{}", offset, offset + PAGE_SIZE, error);
+            });
+    }
+    
+    private void firePageLoaded(int from, int to) {
+        beginChange();
+        for (int i = from; i < to; i++) {
+            nextSet(i, LOADING_PLACEHOLDER);
+        }
+        endChange();
+    }
+}
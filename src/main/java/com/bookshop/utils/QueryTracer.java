@@ -0,0 +1,366 @@
+package com.bookshop.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the last statements run through DatabaseConnection with their SQL,
+ * bind values, duration, rows and the service or repository method that ran
+ * them. Statements slower than the threshold are also kept in a separate ring
+ * and written to the log. With EXPLAIN capture on, a slow read is run once more
+ * as EXPLAIN (ANALYZE, BUFFERS) and the plan is kept with it.
+ *
+ * Bind values for password_hash are never recorded. BOOKSHOP_SLOW_QUERY_MS sets
+ * the starting threshold (default 250); both settings can be changed at runtime.
+ */
+public class QueryTracer {
+    
+    private static final int RECENT_CAPACITY = 256;
+    private static final int SLOW_CAPACITY = 64;
+    private static final long DEFAULT_SLOW_MILLIS = 250;
+    private static final int MAX_BIND_LENGTH = 100;
+    private static final String REDACTED = "***";
+    private static final Set<String> SECRET_COLUMNS = Set.of("password_hash");
+    private static final Pattern COMPARED_COLUMN = Pattern.compile("(\\w+)\\s*(=|<>|!=|<=|>=|<|>|\\bLIKE|\\bILIKE)\\s*$",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT_COLUMNS = Pattern.compile("^\\s*INSERT\\s+INTO\\s+[\\w.]+\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\(",
+        Pattern.CASE_INSENSITIVE);
+    private static final Log LOG = Log.get(QueryTracer.class);
+    
+    private static QueryTracer instance;
+    
+    private final Ring recent = new Ring(RECENT_CAPACITY);
+    private final Ring slow = new Ring(SLOW_CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(configuredSlowMillis());
+    private volatile boolean explainSlowQueries;
+    
+    public static synchronized QueryTracer getInstance() {
+        if (instance == null) {
+            instance = new QueryTracer();
+        }
+        return instance;
+    }
+    
+    QueryTracer() {
+    }
+    
+    public void setSlowThresholdMillis(long millis) {
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+    
+    public void setExplainSlowQueries(boolean explain) {
+        explainSlowQueries = explain;
+    }
+    
+    public boolean isExplainSlowQueries() {
+        return explainSlowQueries;
+    }
+    
+    public List<Trace> getRecentStatements() {
+        return recent.snapshot();
+    }
+    
+    public List<Trace> getSlowStatements() {
+        return slow.snapshot();
+    }
+    
+    public void clear() {
+        recent.clear();
+        slow.clear();
+    }
+    
+    Trace begin(String operation, String sql, List<String> binds, int batchSize) {
+        Trace trace = new Trace(sequence.incrementAndGet(), operation, sql, binds, batchSize);
+        recent.add(trace);
+        return trace;
+    }
+    
+    boolean isSlow(Trace trace) {
+        return trace.durationNanos >= slowThresholdNanos;
+    }
+    
+    boolean shouldExplain(Trace trace) {
+        return explainSlowQueries && isSlow(trace) && isRead(trace.sql);
+    }
+    
+    void finish(Trace trace) {
+        if (trace.finished) {
+            return;
+        }
+        trace.finished = true;
+        if (isSlow(trace)) {
+            slow.add(trace);
+            LOG.warn("Slow statement in {}: {}", trace.operation, trace);
+        }
+    }
+    
+    /**
+     * Formats the bind values of one statement, with the redacted positions
+     * replaced. Values are turned into text straight away so the trace does not
+     * hold on to them.
+     */
+    static List<String> describeBinds(Set<Integer> redacted, List<Object> values) {
+        List<String> binds = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (redacted.contains(i + 1)) {
+                binds.add(REDACTED);
+                continue;
+            }
+            Object value = values.get(i);
+            String text = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+            binds.add(text.length() > MAX_BIND_LENGTH ? text.substring(0, MAX_BIND_LENGTH) + "..." : text);
+        }
+        return binds;
+    }
+    
+    /**
+     * The 1-based parameter positions that bind a secret column, either compared
+     * in a condition or SET clause ("password_hash = ?") or listed in an INSERT.
+     */
+    static Set<Integer> redactedParameters(String sql) {
+        if (sql == null || SECRET_COLUMNS.stream().noneMatch(sql.toLowerCase(Locale.ROOT)::contains)) {
+            return Collections.emptySet();
+        }
+        
+        Set<Integer> redacted = new HashSet<>();
+        List<Integer> placeholders = placeholderOffsets(sql);
+        for (int i = 0; i < placeholders.size(); i++) {
+            Matcher column = COMPARED_COLUMN.matcher(sql.substring(0, placeholders.get(i)));
+            if (column.find() && isSecret(column.group(1))) {
+                redacted.add(i + 1);
+            }
+        }
+        
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        if (insert.find()) {
+            String[] columns = insert.group(1).split(",");
+            List<String> values = splitTopLevel(sql, insert.end());
+            int parameter = 0;
+            for (Integer offset : placeholders) {
+                if (offset < insert.end()) {
+                    parameter++;
+                }
+            }
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i).trim();
+                int inValue = (int) value.chars().filter(c -> c == '?').count();
+                if (value.equals("?") && i < columns.length && isSecret(columns[i].trim())) {
+                    redacted.add(parameter + 1);
+                }
+                parameter += inValue;
+            }
+        }
+        return redacted;
+    }
+    
+    private static boolean isSecret(String column) {
+        return SECRET_COLUMNS.contains(column.toLowerCase(Locale.ROOT));
+    }
+    
+    private static boolean isRead(String sql) {
+        String start = sql.trim().toLowerCase(Locale.ROOT);
+        return start.startsWith("select") || start.startsWith("with");
+    }
+    
+    private static List<Integer> placeholderOffsets(String sql) {
+        List<Integer> offsets = new ArrayList<>();
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                offsets.add(i);
+            }
+        }
+        return offsets;
+    }
+    
+    /**
+     * The comma-separated items of the parenthesised list that starts at the given
+     * offset, stopping at its closing parenthesis.
+     */
+    private static List<String> splitTopLevel(String sql, int from) {
+        List<String> items = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = from;
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth-- == 0) {
+                items.add(sql.substring(start, i));
+                return items;
+            } else if (c == ',' && depth == 0) {
+                items.add(sql.substring(start, i));
+                start = i + 1;
+            }
+        }
+        items.add(sql.substring(start));
+        return items;
+    }
+    
+    private static long configuredSlowMillis() {
+        String value = System.getenv("BOOKSHOP_SLOW_QUERY_MS");
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_SLOW_MILLIS;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring BOOKSHOP_SLOW_QUERY_MS={}, expected milliseconds", value);
+            return DEFAULT_SLOW_MILLIS;
+        }
+    }
+    
+    /**
+     * One executed statement. Rows keep counting while its result set is read.
+     */
+    public static final class Trace {
+        private final long sequence;
+        private final long startedAtMillis = System.currentTimeMillis();
+        private final String operation;
+        private final String sql;
+        private final List<String> binds;
+        private final int batchSize;
+        private volatile long durationNanos;
+        private volatile long rows;
+        private volatile String error;
+        private volatile String plan;
+        private volatile boolean finished;
+        
+        Trace(long sequence, String operation, String sql, List<String> binds, int batchSize) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.sql = sql;
+            this.binds = binds;
+            this.batchSize = batchSize;
+        }
+        
+        public long getStartedAtMillis() {
+            return startedAtMillis;
+        }
+        
+        public String getOperation() {
+            return operation;
+        }
+        
+        public String getSql() {
+            return sql;
+        }
+        
+        public List<String> getBinds() {
+            return binds;
+        }
+        
+        public int getBatchSize() {
+            return batchSize;
+        }
+        
+        public long getDurationMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        }
+        
+        public long getRows() {
+            return rows;
+        }
+        
+        public String getError() {
+            return error;
+        }
+        
+        public String getPlan() {
+            return plan;
+        }
+        
+        void setDurationNanos(long durationNanos) {
+            this.durationNanos = durationNanos;
+        }
+        
+        void addRows(long count) {
+            rows += count;
+        }
+        
+        void setError(String error) {
+            this.error = error;
+        }
+        
+        void setPlan(String plan) {
+            this.plan = plan;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%.1f ms, %d rows", durationNanos / 1_000_000.0, rows));
+            if (batchSize > 0) {
+                text.append(", batch of ").append(batchSize);
+            }
+            text.append(": ").append(sql.replaceAll("\\s+", " ").trim());
+            if (!binds.isEmpty()) {
+                text.append(" ").append(binds);
+            }
+            if (error != null) {
+                text.append(" failed: ").append(error);
+            }
+            if (plan != null) {
+                text.append("\n").append(plan);
+            }
+            return text.toString();
+        }
+    }
+    
+    /**
+     * Fixed-size ring that overwrites its oldest entry; writers never wait.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Trace> slots;
+        private final AtomicLong next = new AtomicLong();
+        
+        Ring(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+        
+        void add(Trace trace) {
+            slots.set((int) (next.getAndIncrement() % slots.length()), trace);
+        }
+        
+        List<Trace> snapshot() {
+            List<Trace> traces = new ArrayList<>(slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                Trace trace = slots.get(i);
+                if (trace != null) {
+                    traces.add(trace);
+                }
+            }
+            traces.sort(Comparator.comparingLong(trace -> trace.sequence));
+            return traces;
+        }
+        
+        void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bookshop.utils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The column positions of one result set, read from its metadata once so that
+ * row mappers can use indexed getters. Names are matched case-insensitively and
+ * the first column with a name wins, as with ResultSet.findColumn.
+ */
+public final class ResultColumns {
+    
+    private final Map<String, Integer> indexes;
+    
+    private ResultColumns(Map<String, Integer> indexes) {
+        this.indexes = indexes;
+    }
+    
+    public static ResultColumns of(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        Map<String, Integer> indexes = new HashMap<>(count * 2);
+        for (int i = 1; i <= count; i++) {
+            indexes.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        return new ResultColumns(indexes);
+    }
+    
+    public int required(String name) throws SQLException {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            throw new SQLException("The result has no column named " + name);
+        }
+        return index;
+    }
+    
+    /**
+     * The column's position, or 0 when the result does not have it.
+     */
+    public int optional(String name) {
+        return indexes.getOrDefault(name, 0);
+    }
+}
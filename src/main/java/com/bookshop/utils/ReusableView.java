@@ -0,0 +1,19 @@
+package com.bookshop.utils;
+
+/**
+ * Implemented by controllers whose view ViewNavigator parses once and then keeps.
+ * Their initialize() only wires up the controls, since it may run on a background
+ * thread before anyone is signed in. Anything that depends on the session or on
+ * the database belongs in onShow, which runs on the JavaFX thread every time the
+ * view is shown.
+ */
+public interface ReusableView {
+    
+    void onShow();
+    
+    /**
+     * Called when another view replaces this one, so listeners can be dropped until it is shown again.
+     */
+    default void onHide() {
+    }
+}
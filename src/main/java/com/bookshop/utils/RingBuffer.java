@@ -0,0 +1,68 @@
+package com.bookshop.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, single-consumer queue over a power-of-two array.
+ * Producers claim a slot with one compare-and-set and never block: when the
+ * buffer is full the element is refused. Only one thread may drain it.
+ */
+public class RingBuffer<E> {
+    
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+    
+    public boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.set((int) (claimed & mask), element);
+        return true;
+    }
+    
+    /**
+     * Hands every published element to the consumer in claim order and returns
+     * how many there were. Stops at a slot whose producer has claimed it but not
+     * yet written it; that element comes with the next drain.
+     */
+    public int drain(Consumer<? super E> consumer) {
+        int drained = 0;
+        long next = head;
+        while (true) {
+            int index = (int) (next & mask);
+            E element = slots.get(index);
+            if (element == null) {
+                return drained;
+            }
+            slots.set(index, null);
+            // Clearing the slot before moving head lets producers reuse it
+            head = ++next;
+            consumer.accept(element);
+            drained++;
+        }
+    }
+    
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
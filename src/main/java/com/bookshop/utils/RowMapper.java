@@ -0,0 +1,15 @@
+package com.bookshop.utils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a result set into an object. Mappers are built for
+ * one result set with its column positions already looked up, so mapping a row
+ * is only a run of indexed getters.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    
+    T map(ResultSet rs) throws SQLException;
+}
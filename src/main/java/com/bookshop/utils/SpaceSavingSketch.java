@@ -0,0 +1,170 @@
+package com.bookshop.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate heavy hitters in fixed memory (the Space-Saving algorithm). At most
+ * {@code capacity} keys are counted; a new key takes the place of the smallest
+ * counter and inherits its count as error. Any key whose true count exceeds
+ * total / capacity is guaranteed to be kept, and a kept key's true count lies
+ * between {@code count - error} and {@code count}.
+ *
+ * Counters sit in a binary min-heap indexed by key, so an update costs
+ * O(log capacity) whatever its weight. Not thread-safe.
+ */
+public class SpaceSavingSketch<K> {
+    
+    public static final class Counter<K> {
+        
+        private final K key;
+        private long count;
+        private long error;
+        private int position;
+        
+        private Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+        
+        public K getKey() {
+            return key;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getError() {
+            return error;
+        }
+    }
+    
+    private final int capacity;
+    private final Counter<K>[] heap;
+    private final Map<K, Counter<K>> counters;
+    private int size;
+    private long total;
+    
+    @SuppressWarnings("unchecked")
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new Counter[capacity];
+        this.counters = new HashMap<>(capacity * 2);
+    }
+    
+    /**
+     * Adds {@code weight} occurrences of the key and returns the key it displaced,
+     * or null when the key was already counted or there was room for it.
+     */
+    public K offer(K key, long weight) {
+        if (weight <= 0) {
+            return null;
+        }
+        total += weight;
+        
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+            return null;
+        }
+        
+        if (size < capacity) {
+            counter = new Counter<>(key, weight, 0);
+            counter.position = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.position);
+            return null;
+        }
+        
+        Counter<K> smallest = heap[0];
+        counters.remove(smallest.key);
+        counter = new Counter<>(key, smallest.count + weight, smallest.count);
+        counter.position = 0;
+        heap[0] = counter;
+        counters.put(key, counter);
+        siftDown(0);
+        return smallest.key;
+    }
+    
+    public boolean contains(K key) {
+        return counters.containsKey(key);
+    }
+    
+    /**
+     * The estimated count of a key, or 0 if it is not counted.
+     */
+    public long estimate(K key) {
+        Counter<K> counter = counters.get(key);
+        return counter != null ? counter.count : 0;
+    }
+    
+    /**
+     * The {@code k} keys with the highest counts, highest first.
+     */
+    public List<Counter<K>> top(int k) {
+        List<Counter<K>> top = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            top.add(heap[i]);
+        }
+        top.sort((a, b) -> Long.compare(b.count, a.count));
+        return top.size() > k ? new ArrayList<>(top.subList(0, k)) : top;
+    }
+    
+    public boolean isFull() {
+        return size == capacity;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    private void siftUp(int position) {
+        Counter<K> counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+    
+    private void siftDown(int position) {
+        Counter<K> counter = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+    
+    private void place(Counter<K> counter, int position) {
+        heap[position] = counter;
+        counter.position = position;
+    }
+}
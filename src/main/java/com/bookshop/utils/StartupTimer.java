@@ -0,0 +1,76 @@
+package com.bookshop.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each startup phase takes and when it finished, measured from
+ * JVM start, so the time to the first usable screen can be followed from run to
+ * run. Phases may run on different threads at the same time.
+ */
+public class StartupTimer {
+    
+    @FunctionalInterface
+    public interface Phase<T> {
+        T run() throws Exception;
+    }
+    
+    private static StartupTimer instance;
+    
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final List<String> entries = new ArrayList<>();
+    
+    public static synchronized StartupTimer getInstance() {
+        if (instance == null) {
+            instance = new StartupTimer();
+        }
+        return instance;
+    }
+    
+    private StartupTimer() {
+    }
+    
+    public <T> T time(String name, Phase<T> phase) throws Exception {
+        long started = System.nanoTime();
+        try {
+            return phase.run();
+        } finally {
+            record(name, started);
+        }
+    }
+    
+    /**
+     * Records a phase that began at {@code startedNanos} (from System.nanoTime) and ends now.
+     */
+    public void record(String name, long startedNanos) {
+        long tookMillis = (System.nanoTime() - startedNanos) / 1_000_000;
+        add(String.format("%-22s %6d ms  (done at %6d ms, %s)",
+            name, tookMillis, sinceJvmStart(), Thread.currentThread().getName()));
+    }
+    
+    public void mark(String milestone) {
+        add(String.format("%-22s %9s  (at      %6d ms)", milestone, "", sinceJvmStart()));
+    }
+    
+    public long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+    
+    public void report() {
+        List<String> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries);
+        }
+        System.out.println("Startup phases:");
+        for (String entry : snapshot) {
+            System.out.println("  " + entry);
+        }
+    }
+    
+    private void add(String entry) {
+        synchronized (entries) {
+            entries.add(entry);
+        }
+    }
+}
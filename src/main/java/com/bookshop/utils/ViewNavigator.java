@@ -6,169 +6,254 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Switches the stage between views. Each FXML path is resolved once, and views
+ * whose controller is a {@link ReusableView} are parsed once and kept, so moving
+ * between the dashboard, cart and book details swaps an existing root into the
+ * one scene instead of parsing and styling the screen again. The screens a view
+ * usually leads to are parsed in the background while the user is on it.
+ */
 public class ViewNavigator {
     
+    private static final Log LOG = Log.get(ViewNavigator.class);
+    
+    private static final Map<String, List<String>> LIKELY_NEXT_VIEWS = Map.of(
+        "login.fxml", List.of("customer_dashboard.fxml"),
+        "customer_dashboard.fxml", List.of("book_details.fxml", "shopping_cart.fxml"),
+        "book_details.fxml", List.of("shopping_cart.fxml"),
+        "shopping_cart.fxml", List.of("customer_dashboard.fxml")
+    );
+    
     private static ViewNavigator instance;
     private Stage stage;
- 
-    private ViewNavigator() { 
+    
+    private final Map<String, URL> resolvedUrls = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<LoadedView>> keptViews = new ConcurrentHashMap<>();
+    private final ExecutorService preloader;
+    private String stylesheet;
+    private ReusableView shownController;
+    
+    private ViewNavigator() {
+        preloader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bookshop-view-preload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        URL styles = getClass().getResource("/styles/styles.css");
+        if (styles != null) {
+            stylesheet = styles.toExternalForm();
+        } else {
+            LOG.warn("Could not load stylesheet: /styles/styles.css not found");
+        }
     }
- 
+    
     public static synchronized ViewNavigator getInstance() {
         if (instance == null) {
             instance = new ViewNavigator();
         }
         return instance;
     }
-     
+    
     public void setStage(Stage stage) {
         this.stage = stage;
     }
-     
+    
     public Stage getStage() {
         return stage;
     }
-     
+    
     public void navigateTo(String fxmlPath) {
         try {
             if (stage == null) {
                 throw new IOException("Stage is not set. Make sure to call setStage() before navigating.");
             }
-             
-            System.out.println("Navigating to: " + fxmlPath);
             
-            // Try multiple locations to find the FXML file
-            Parent root = null;
-            Exception lastException = null;
+            LOG.debug("Navigating to: {}", fxmlPath);
+            show(obtain(fxmlPath));
+            preloadNext(fxmlPath);
             
-            // Array of possible paths to try
-            String[] pathsToTry = {
-                "/fxml/" + fxmlPath,
-                "/views/" + fxmlPath,
-                "/" + fxmlPath,
-                fxmlPath
-            };
+        } catch (Exception e) {
+            LOG.error("Error loading view", e);
+            
+            javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.ERROR);
+            alert.setTitle("Navigation Error");
+            alert.setHeaderText("Error loading view");
+            alert.setContentText("Could not load the view: " + fxmlPath + "\nError: " + e.getMessage() +
+                                "\n\nPlease check that the FXML file exists and that the application has access to it.");
+            alert.showAndWait();
+        }
+    }
+    
+    /**
+     * Parses a view without showing it. Nothing here needs the stage, so it can
+     * run before the window is up or off the JavaFX thread.
+     */
+    public Parent loadView(String fxmlPath) throws Exception {
+        return parse(fxmlPath).root;
+    }
+    
+    /**
+     * Shows a view returned by {@link #loadView} and starts parsing the views it leads to.
+     */
+    public void showView(String fxmlPath, Parent root) {
+        show(new LoadedView(root, null));
+        preloadNext(fxmlPath);
+    }
+    
+    private LoadedView obtain(String fxmlPath) throws Exception {
+        CompletableFuture<LoadedView> kept = keptViews.get(fxmlPath);
+        if (kept != null) {
+            try {
+                // Normally already done; otherwise the preload is part way through and finishing it is quickest
+                return kept.join();
+            } catch (CompletionException e) {
+                LOG.warn("Preloading {} failed, loading it again: {}", fxmlPath, e.getCause().getMessage());
+                keptViews.remove(fxmlPath, kept);
+            }
+        }
+        
+        LoadedView view = parse(fxmlPath);
+        if (view.isReusable()) {
+            keptViews.put(fxmlPath, CompletableFuture.completedFuture(view));
+        }
+        return view;
+    }
+    
+    private void preloadNext(String fxmlPath) {
+        for (String next : LIKELY_NEXT_VIEWS.getOrDefault(fxmlPath, List.of())) {
+            CompletableFuture<LoadedView> future = new CompletableFuture<>();
+            if (keptViews.putIfAbsent(next, future) != null) {
+                continue;
+            }
             
-            for (String path : pathsToTry) {
+            preloader.execute(() -> {
                 try {
-                    System.out.println("Attempting to load from: " + path);
-                    
-                    // Try different class loaders to ensure we find the resource
-                    FXMLLoader loader = null;
-                    java.net.URL resourceUrl = getClass().getResource(path);
-                    
-                    if (resourceUrl == null) {
-                        // Try the class loader
-                        resourceUrl = getClass().getClassLoader().getResource(path.startsWith("/") ? path.substring(1) : path);
-                    }
-                    
-                    if (resourceUrl == null) {
-                        // Try the thread context class loader
-                        resourceUrl = Thread.currentThread().getContextClassLoader().getResource(path.startsWith("/") ? path.substring(1) : path);
-                    }
-                    
-                    if (resourceUrl != null) {
-                        System.out.println("Located FXML at: " + resourceUrl);
-                        loader = new FXMLLoader(resourceUrl);
-                    } else {
-                        System.out.println("Could not locate FXML at: " + path);
-                        continue;
-                    }
-                    
-                    if (loader.getLocation() != null) {
-                        System.out.println("Located FXML at: " + loader.getLocation());
-                        root = loader.load();
-                        
-                        // Initialize controller
-                        Object controller = loader.getController();
-                        if (controller != null) {
-                            if (controller instanceof com.bookshop.controllers.CustomerOrdersController) {
-                                System.out.println("Found CustomerOrdersController, calling refreshView");
-                                ((com.bookshop.controllers.CustomerOrdersController) controller).refreshView();
-                            }
-                            // Force layout pass to ensure proper initialization
-                            root.applyCss();
-                            root.layout();
-                        }
-                        
-                        break; // Successfully loaded, stop trying
+                    LoadedView view = parse(next);
+                    if (!view.isReusable()) {
+                        // Only views that can be shown more than once are worth keeping
+                        keptViews.remove(next, future);
                     }
+                    future.complete(view);
                 } catch (Exception e) {
-                    System.err.println("Failed to load from " + path + ": " + e.getMessage());
-                    if (lastException == null) {
-                        lastException = e;
-                    }
+                    future.completeExceptionally(e);
                 }
+            });
+        }
+    }
+    
+    private LoadedView parse(String fxmlPath) throws Exception {
+        URL resolved = resolvedUrls.get(fxmlPath);
+        if (resolved != null) {
+            return parse(resolved);
+        }
+        
+        // Try multiple locations to find the FXML file; the first one that loads is used from then on
+        String[] pathsToTry = {
+            "/fxml/" + fxmlPath,
+            "/views/" + fxmlPath,
+            "/" + fxmlPath,
+            fxmlPath
+        };
+        
+        Exception lastException = null;
+        for (String path : pathsToTry) {
+            URL resourceUrl = locate(path);
+            if (resourceUrl == null) {
+                continue;
             }
             
-            // If we couldn't load the FXML from any path, throw the last exception
-            if (root == null) {
-                if (lastException != null) {
-                    throw lastException;
-                } else {
-                    throw new IOException("FXML file not found: " + fxmlPath);
+            try {
+                LoadedView view = parse(resourceUrl);
+                LOG.debug("Located FXML at: {}", resourceUrl);
+                resolvedUrls.put(fxmlPath, resourceUrl);
+                return view;
+            } catch (Exception e) {
+                LOG.warn("Failed to load from {}: {}", path, e.getMessage());
+                if (lastException == null) {
+                    lastException = e;
                 }
             }
-            
-            Scene scene = new Scene(root, 800, 600);
-            // Apply any global stylesheets if needed
-            try {
-                scene.getStylesheets().add(getClass().getResource("/styles/styles.css").toExternalForm());
-            } catch (Exception ex) {
-                System.err.println("Could not load stylesheet: " + ex.getMessage());
+        }
+        
+        if (lastException != null) {
+            throw lastException;
+        }
+        throw new IOException("FXML file not found: " + fxmlPath);
+    }
+    
+    private LoadedView parse(URL resourceUrl) throws IOException {
+        FXMLLoader loader = new FXMLLoader(resourceUrl);
+        Parent root = loader.load();
+        
+        // Initialize controller
+        Object controller = loader.getController();
+        if (controller != null) {
+            if (controller instanceof com.bookshop.controllers.CustomerOrdersController) {
+                LOG.debug("Found CustomerOrdersController, calling refreshView");
+                ((com.bookshop.controllers.CustomerOrdersController) controller).refreshView();
+            }
+            // Force layout pass to ensure proper initialization
+            root.applyCss();
+            root.layout();
+        }
+        
+        return new LoadedView(root, controller);
+    }
+    
+    private URL locate(String path) {
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        
+        // Try different class loaders to ensure we find the resource
+        URL resourceUrl = getClass().getResource(path);
+        if (resourceUrl == null) {
+            resourceUrl = getClass().getClassLoader().getResource(relativePath);
+        }
+        if (resourceUrl == null) {
+            resourceUrl = Thread.currentThread().getContextClassLoader().getResource(relativePath);
+        }
+        return resourceUrl;
+    }
+    
+    private void show(LoadedView view) {
+        ReusableView previous = shownController;
+        shownController = view.isReusable() ? (ReusableView) view.controller : null;
+        if (previous != null && previous != shownController) {
+            previous.onHide();
+        }
+        
+        Scene scene = stage.getScene();
+        if (view.root.getScene() != null) {
+            // A kept view that is still the root of the scene it was first shown in
+            if (view.root.getScene() != scene) {
+                stage.setScene(view.root.getScene());
+            }
+        } else if (scene == null) {
+            scene = new Scene(view.root, 800, 600);
+            if (stylesheet != null) {
+                scene.getStylesheets().add(stylesheet);
             }
             stage.setScene(scene);
-            stage.show();
-            
-        } catch (Exception e) {
-            System.err.println("Error loading view: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Try a more direct approach as a fallback
-            try {
-                System.out.println("Attempting direct fallback loading...");
-                String directPath = "/fxml/" + fxmlPath;
-                
-                // Try different class loaders
-                java.net.URL resourceUrl = getClass().getResource(directPath);
-                
-                if (resourceUrl == null) {
-                    // Try the class loader
-                    resourceUrl = getClass().getClassLoader().getResource(directPath.startsWith("/") ? directPath.substring(1) : directPath);
-                }
-                
-                if (resourceUrl == null) {
-                    // Try the thread context class loader
-                    resourceUrl = Thread.currentThread().getContextClassLoader().getResource(directPath.startsWith("/") ? directPath.substring(1) : directPath);
-                }
-                
-                if (resourceUrl == null) {
-                    throw new IOException("Could not find resource: " + directPath);
-                }
-                
-                System.out.println("Found resource at: " + resourceUrl);
-                Parent root = FXMLLoader.load(resourceUrl);
-                Scene scene = new Scene(root, 800, 600);
-                try {
-                    scene.getStylesheets().add(getClass().getResource("/styles/styles.css").toExternalForm());
-                } catch (Exception ex) {
-                    System.err.println("Could not load stylesheet: " + ex.getMessage());
-                }
-                stage.setScene(scene);
-                stage.show();
-                return;
-            } catch (Exception fallbackEx) {
-                System.err.println("Fallback loading also failed: " + fallbackEx.getMessage());
-                fallbackEx.printStackTrace();
+        } else {
+            // One scene is reused, so its stylesheet is parsed once and the window keeps its size
+            if (stylesheet != null && !scene.getStylesheets().contains(stylesheet)) {
+                scene.getStylesheets().add(stylesheet);
             }
-            
-            javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.ERROR);
-            alert.setTitle("Navigation Error");
-            alert.setHeaderText("Error loading view");
-            alert.setContentText("Could not load the view: " + fxmlPath + "\nError: " + e.getMessage() + 
-                                "\n\nPlease check that the FXML file exists and that the application has access to it.");
-            alert.showAndWait();
+            scene.setRoot(view.root);
+        }
+        stage.show();
+        
+        if (shownController != null) {
+            shownController.onShow();
         }
     }
     
@@ -177,4 +262,18 @@ public class ViewNavigator {
             stage.close();
         }
     }
-}
\ No newline at end of file
+    
+    private static final class LoadedView {
+        private final Parent root;
+        private final Object controller;
+        
+        LoadedView(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+        
+        boolean isReusable() {
+            return controller instanceof ReusableView;
+        }
+    }
+}
@@ -1,3 +1,9 @@
+-- Derived tables go too, so DatabaseConnection rebuilds them from the data seeded below
+DROP TABLE IF EXISTS sales_daily_books;
+DROP TABLE IF EXISTS sales_daily;
+DROP TABLE IF EXISTS book_facet_counts;
+DROP TABLE IF EXISTS promotions;
+DROP TABLE IF EXISTS promotions;
 DROP TABLE IF EXISTS order_items;
 DROP TABLE IF EXISTS orders;
 DROP TABLE IF EXISTS reviews;
@@ -13,7 +19,9 @@ CREATE TABLE users (
     address TEXT,
     phone_number VARCHAR(20),
     role VARCHAR(20) NOT NULL CHECK (role IN ('ADMIN', 'CUSTOMER')),
-    status VARCHAR(20) NOT NULL DEFAULT 'BASIC' CHECK (status IN ('BASIC', 'PREMIUM'))
+    status VARCHAR(20) NOT NULL DEFAULT 'BASIC' CHECK (status IN ('BASIC', 'PREMIUM')),
+    order_count INT NOT NULL DEFAULT 0,
+    loyalty_tier VARCHAR(20) NOT NULL DEFAULT 'BASIC' CHECK (loyalty_tier IN ('BASIC', 'REGULAR', 'PREMIUM'))
 );
 
 CREATE TABLE books (
@@ -70,12 +78,42 @@ CREATE TABLE order_items (
     FOREIGN KEY (book_id) REFERENCES books (id) ON DELETE SET NULL
 );
 
-CREATE INDEX idx_books_title ON books (title);
-CREATE INDEX idx_books_author ON books (author);
-CREATE INDEX idx_books_category ON books (category);
+CREATE TABLE promotions (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    rule_type VARCHAR(20) NOT NULL CHECK (rule_type IN ('BOOK', 'CATEGORY', 'AUTHOR', 'BUY_X_GET_Y')),
+    target VARCHAR(255) NOT NULL,
+    discount_percentage DECIMAL(5, 2) DEFAULT 0.00,
+    buy_quantity INT DEFAULT 0,
+    free_quantity INT DEFAULT 0,
+    starts_at TIMESTAMP,
+    ends_at TIMESTAMP,
+    active BOOLEAN DEFAULT TRUE
+);
+
+-- The sales rollups (sales_daily, sales_daily_books) and book_facet_counts with its
+-- triggers are created and filled from the seeded rows by the application when it
+-- connects (DatabaseConnection)
+
+-- One per sort order of the book list, ending in id like its ORDER BY
+CREATE INDEX idx_books_title_id ON books (title, id);
+CREATE INDEX idx_books_author_id ON books (author, id);
+CREATE INDEX idx_books_publisher_id ON books (publisher, id);
+CREATE INDEX idx_books_category_id ON books (category, id);
+CREATE INDEX idx_books_category_title_id ON books (category, title, id);
+CREATE INDEX idx_books_price_id ON books (price, id);
+CREATE INDEX idx_books_stock_id ON books (stock_quantity, id);
+CREATE INDEX idx_books_rating_id ON books ((COALESCE(average_rating, 0)), id);
 CREATE INDEX idx_reviews_book_id ON reviews (book_id);
 CREATE INDEX idx_orders_user_id ON orders (user_id);
 CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+CREATE INDEX idx_orders_order_date ON orders (order_date DESC, id DESC);
+CREATE INDEX idx_orders_id_text ON orders ((CAST(id AS TEXT)) text_pattern_ops);
+CREATE INDEX idx_books_isbn ON books (isbn);
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_users_full_name_trgm ON users USING gin (full_name gin_trgm_ops);
+-- The book search index is created by DatabaseConnection, next to the expression it has to match
 
 INSERT INTO users (username, password_hash, full_name, email, address, phone_number, role, status)
 VALUES ('admin', '$2a$12$M8OSI5ZMKpWRn3tCjbzh6eXwkXQJmQg9Hw66O9Z6U0RW9wLqCCL5W', 'Admin User', 'admin@bookshop.com', '123 Admin St', '555-123-4567', 'ADMIN', 'BASIC');
@@ -142,3 +180,10 @@ VALUES
 (5, 14, 'The Hunger Games', 'Suzanne Collins', 2, 12.99, 0.00),
 (5, 17, 'Educated', 'Tara Westover', 1, 13.99, 0.00),
 (5, 20, 'Where the Crawdads Sing', 'Delia Owens', 1, 14.99, 0.00);
+
+INSERT INTO promotions (name, rule_type, target, discount_percentage)
+SELECT 'Book discount: ' || title, 'BOOK', CAST(id AS TEXT), discount_percentage
+FROM books
+WHERE discount_percentage > 0;
+
+-- The change notification triggers are created by the application when it connects (DatabaseConnection)
@@ -1,76 +0,0 @@
-package com.bookshop.models;
-
-import java.math.BigDecimal;
-
-public class Book {
-    private int id;
-    private String title;
-    private String author;
-    private BigDecimal price;
-    private int stockQuantity;
-    private String category;
-    private String isbn;
-    
-    public Book() {
-    }
-    
-    public int getId() {
-        return id;
-    }
-    
-    public void setId(int id) {
-        this.id = id;
-    }
-    
-    public String getTitle() {
-        return title;
-    }
-    
-    public void setTitle(String title) {
-        this.title = title;
-    }
-    
-    public String getAuthor() {
-        return author;
-    }
-    
-    public void setAuthor(String author) {
-        this.author = author;
-    }
-    
-    public BigDecimal getPrice() {
-        return price;
-    }
-    
-    public void setPrice(BigDecimal price) {
-        this.price = price;
-    }
-    
-    public int getStockQuantity() {
-        return stockQuantity;
-    }
-    
-    public void setStockQuantity(int stockQuantity) {
-        this.stockQuantity = stockQuantity;
-    }
-    
-    public String getCategory() {
-        return category;
-    }
-    
-    public void setCategory(String category) {
-        this.category = category;
-    }
-    
-    public String getIsbn() {
-        return isbn;
-    }
-    
-    public void setIsbn(String isbn) {
-        this.isbn = isbn;
-    }
-    
-    public boolean isAvailable(int quantity) {
-        return stockQuantity >= quantity;
-    }
-} 
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.bookshop.models;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class BookSortOrderTest {
+    
+    @Test
+    @DisplayName("Test every order breaks ties by id in its own direction")
+    void testOrderByClause() {
+        assertEquals("title ASC, id ASC", BookSortOrder.TITLE_ASC.getOrderByClause());
+        assertEquals("price DESC, id DESC", BookSortOrder.PRICE_DESC.getOrderByClause());
+        assertEquals("id DESC", BookSortOrder.NEWEST.getOrderByClause());
+    }
+    
+    @Test
+    @DisplayName("Test the keyset condition continues after the last book of a page")
+    void testKeysetContinuation() {
+        Book last = new Book();
+        last.setId(42);
+        last.setTitle("Dune");
+        last.setAverageRating(4.5);
+        
+        assertEquals("(title, id) > (?, ?)", BookSortOrder.TITLE_ASC.getKeysetCondition());
+        assertEquals(List.of("Dune", 42), BookSortOrder.TITLE_ASC.getKeysetValues(last));
+        
+        assertEquals("(COALESCE(average_rating, 0), id) < (?, ?)", BookSortOrder.RATING_DESC.getKeysetCondition());
+        assertEquals(List.of(BigDecimal.valueOf(4.5), 42), BookSortOrder.RATING_DESC.getKeysetValues(last));
+        
+        assertEquals("id < ?", BookSortOrder.NEWEST.getKeysetCondition());
+        assertEquals(List.of(42), BookSortOrder.NEWEST.getKeysetValues(last));
+    }
+    
+    @Test
+    @DisplayName("Test stock orders are kept off the customer list")
+    void testCustomerOrders() {
+        assertFalse(BookSortOrder.STOCK_ASC.isForCustomers());
+        assertTrue(BookSortOrder.NEWEST.isForCustomers());
+        assertEquals(BookSortOrder.NEWEST, BookSortOrder.fromLabel("Newest First"));
+    }
+}
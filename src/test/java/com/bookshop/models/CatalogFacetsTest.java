@@ -0,0 +1,54 @@
+package com.bookshop.models;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class CatalogFacetsTest {
+    
+    @Test
+    @DisplayName("Test stored counts become every price range and cumulative star ratings")
+    void testFacetsFromStoredCounts() {
+        CatalogFacets facets = new CatalogFacets(List.of(
+            new FacetCount(CatalogFacets.CATEGORY, "Fiction", 7),
+            new FacetCount(CatalogFacets.CATEGORY, "Fantasy", 3),
+            new FacetCount(CatalogFacets.PRICE, "1", 8),
+            new FacetCount(CatalogFacets.PRICE, "3", 2),
+            new FacetCount(CatalogFacets.RATING, "0", 4),
+            new FacetCount(CatalogFacets.RATING, "3", 3),
+            new FacetCount(CatalogFacets.RATING, "4", 2),
+            new FacetCount(CatalogFacets.RATING, "5", 1)));
+        
+        assertEquals("Fiction (7)", facets.getCategories().get(0).toString());
+        assertEquals(2, facets.getCategories().size());
+        
+        List<FacetCount> prices = facets.getPriceRanges();
+        assertEquals(CatalogFacets.getPriceRangeCount(), prices.size());
+        assertEquals(0, prices.get(0).getCount());
+        assertEquals("€10 - €20 (8)", prices.get(1).toString());
+        assertEquals("€50 and over (2)", prices.get(3).toString());
+        
+        List<FacetCount> ratings = facets.getRatings();
+        assertEquals(4, ratings.size());
+        assertEquals("4★ & up (3)", ratings.get(0).toString());
+        assertEquals(6, ratings.get(1).getCount());
+        assertEquals(6, ratings.get(3).getCount());
+    }
+    
+    @Test
+    @DisplayName("Test price ranges meet without gaps and are left open at both ends")
+    void testPriceRangeBounds() {
+        int last = CatalogFacets.getPriceRangeCount() - 1;
+        
+        assertNull(CatalogFacets.getPriceRangeMin(0));
+        assertNull(CatalogFacets.getPriceRangeMax(last));
+        for (int range = 1; range <= last; range++) {
+            assertEquals(CatalogFacets.getPriceRangeMax(range - 1), CatalogFacets.getPriceRangeMin(range));
+        }
+        assertEquals(new BigDecimal("10"), CatalogFacets.getPriceRangeMax(0));
+        assertEquals("Under €10", CatalogFacets.getPriceRangeLabel(0));
+    }
+}
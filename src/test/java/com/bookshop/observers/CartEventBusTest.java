@@ -0,0 +1,90 @@
+package com.bookshop.observers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.models.CartItem;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CartEventBusTest {
+    
+    private CartEventBus bus;
+    private RecordingObserver observer;
+    
+    @BeforeEach
+    void setUp() {
+        bus = new CartEventBus(20);
+        observer = new RecordingObserver();
+        bus.addObserver(observer);
+    }
+    
+    private static CartEvent event(int userId, CartEvent.EventType type, int itemId, int quantity) {
+        CartItem item = new CartItem();
+        item.setId(itemId);
+        item.setUserId(userId);
+        item.setQuantity(quantity);
+        return new CartEvent(userId, type, item, null, quantity);
+    }
+    
+    private List<CartEvent> awaitFlush() throws InterruptedException {
+        // A marker for another user is flushed after the events under test
+        Thread.sleep(5);
+        bus.publish(event(99, CartEvent.EventType.ITEM_ADDED, 99, 1));
+        assertTrue(observer.marker.await(2, TimeUnit.SECONDS), "Events should be dispatched");
+        observer.received.removeIf(e -> e.getUserId() == 99);
+        return observer.received;
+    }
+    
+    @Test
+    @DisplayName("Test quantity changes inside the window collapse into one event")
+    void testQuantityChangesCoalesce() throws Exception {
+        bus.publish(event(1, CartEvent.EventType.ITEM_ADDED, 10, 1));
+        bus.publish(event(1, CartEvent.EventType.QUANTITY_CHANGED, 10, 2));
+        bus.publish(event(1, CartEvent.EventType.QUANTITY_CHANGED, 10, 3));
+        bus.publish(event(1, CartEvent.EventType.QUANTITY_CHANGED, 11, 4));
+        
+        List<CartEvent> received = awaitFlush();
+        
+        assertEquals(2, received.size());
+        assertEquals(CartEvent.EventType.ITEM_ADDED, received.get(0).getType());
+        assertEquals(3, received.get(0).getQuantity());
+        assertEquals(11, received.get(1).getItemId());
+        assertEquals(CartEvent.EventType.QUANTITY_CHANGED, received.get(1).getType());
+    }
+    
+    @Test
+    @DisplayName("Test an item added and removed inside the window is not reported")
+    void testAddThenRemoveCancels() throws Exception {
+        bus.publish(event(1, CartEvent.EventType.ITEM_ADDED, 10, 1));
+        bus.publish(event(1, CartEvent.EventType.ITEM_REMOVED, 10, 1));
+        bus.publish(event(1, CartEvent.EventType.ITEM_REMOVED, 12, 0));
+        bus.publish(new CartEvent(2));
+        bus.publish(event(2, CartEvent.EventType.ITEM_ADDED, 20, 1));
+        
+        List<CartEvent> received = awaitFlush();
+        
+        assertEquals(3, received.size());
+        assertEquals(CartEvent.EventType.ITEM_REMOVED, received.get(0).getType());
+        assertEquals(12, received.get(0).getItemId());
+        assertEquals(CartEvent.EventType.CART_CLEARED, received.get(1).getType());
+        assertEquals(CartEvent.EventType.ITEM_ADDED, received.get(2).getType());
+    }
+    
+    private static class RecordingObserver implements CartObserver {
+        final List<CartEvent> received = new CopyOnWriteArrayList<>();
+        final CountDownLatch marker = new CountDownLatch(1);
+        
+        @Override
+        public void update(CartEvent event) {
+            received.add(event);
+            if (event.getUserId() == 99) {
+                marker.countDown();
+            }
+        }
+    }
+}
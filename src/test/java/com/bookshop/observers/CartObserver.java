@@ -1,6 +0,0 @@
-package com.bookshop.observers;
-
-
-public interface CartObserver {
-    void update();
-} 
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.bookshop.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.utils.CatalogFeedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CatalogImportServiceTest {
+    
+    @Test
+    @DisplayName("Test CSV records keep quoted commas, quotes and line breaks")
+    void testCsvReader() throws IOException {
+        String feed = "Title,Author,Publisher,Category,ISBN,Price\r\n"
+            + "\"Dune, Part One\",Frank Herbert,Ace,Science Fiction,978-0441172719,9.99\r\n"
+            + "\n"
+            + "\"The \"\"Hobbit\"\"\",Tolkien,\"Allen\nUnwin\",Fantasy,0261103342,12.50\n";
+        
+        try (CatalogFeedReader reader = new CatalogFeedReader(new StringReader(feed), CatalogFeedReader.Format.CSV)) {
+            assertArrayEquals(new String[] {"title", "author", "publisher", "category", "isbn", "price"}, reader.getHeader());
+            CatalogFeedReader.Record dune = reader.next();
+            CatalogFeedReader.Record hobbit = reader.next();
+            
+            assertEquals(2, dune.getLine());
+            assertEquals("Dune, Part One", dune.getValues()[0]);
+            assertEquals(4, hobbit.getLine());
+            assertEquals("The \"Hobbit\"", hobbit.getValues()[0]);
+            assertEquals("Allen\nUnwin", hobbit.getValues()[2]);
+            assertNull(reader.next());
+        }
+    }
+    
+    @Test
+    @DisplayName("Test rows are normalized for COPY and invalid rows are reported with their line")
+    void testValidate() throws IOException {
+        String feed = "title,author,publisher,category,isbn,price,stock\n"
+            + "Dune,Frank Herbert,Ace,Science Fiction,978-0441172719,9.9,5\n"
+            + "Dune,Frank Herbert,Ace,Science Fiction,9780441172710,9.99,5\n"
+            + "Dune,Frank Herbert,Ace,Science Fiction,9780441172719,9.999,\n"
+            + "Dune,,Ace,Science Fiction,9780441172719,9.99,1\n";
+        List<CatalogFeedReader.Record> records = new ArrayList<>();
+        String[] header;
+        try (CatalogFeedReader reader = new CatalogFeedReader(new StringReader(feed), CatalogFeedReader.Format.CSV)) {
+            header = reader.getHeader();
+            CatalogFeedReader.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        
+        CatalogImportService.Batch batch = CatalogImportService.validate(records, CatalogImportService.columnIndexes(header));
+        
+        assertEquals(4, batch.read);
+        assertEquals("2,\"Dune\",\"Frank Herbert\",\"Ace\",\"Science Fiction\",\"9780441172719\",\"9.9\",\"5\",,\n",
+            new String(batch.copyText, StandardCharsets.UTF_8));
+        assertEquals(3, batch.errors.size());
+        assertTrue(batch.errors.get(0).startsWith("Line 3: isbn"));
+        assertTrue(batch.errors.get(1).startsWith("Line 4: price"));
+        assertEquals("Line 5: author is missing", batch.errors.get(2));
+    }
+    
+    @Test
+    @DisplayName("Test JSON-lines objects and ISBN check digits")
+    void testJsonAndIsbn() {
+        Map<String, String> fields = CatalogFeedReader.parseJsonObject(
+            "{\"Title\": \"Caf\\u00e9 \\\"Noir\\\"\", \"price\": 7.5, \"stock_quantity\": 3, \"description\": null}");
+        
+        assertEquals(Map.of("title", "Café \"Noir\"", "price", "7.5", "stock_quantity", "3"), fields);
+        assertThrows(IllegalArgumentException.class, () -> CatalogFeedReader.parseJsonObject("{\"title\": [1]}"));
+        assertTrue(CatalogImportService.isValidIsbn("080442957X"));
+        assertTrue(CatalogImportService.isValidIsbn("9780060850524"));
+        assertFalse(CatalogImportService.isValidIsbn("9780060850525"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.bookshop.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bookshop.utils.CoverPack;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoverImportServiceTest {
+    
+    private static final byte[] COVER = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5, (byte) 0xFF, (byte) 0xD9};
+    
+    @TempDir
+    Path tempDir;
+    
+    private HttpServer server;
+    private AtomicInteger requests;
+    private String coverUrl;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/covers/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, COVER.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(COVER);
+            }
+        });
+        server.start();
+        coverUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/covers/9780743273565-L.jpg";
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    @Test
+    @DisplayName("Test an imported cover is read back from the pack without another download")
+    void testImportOnce() throws Exception {
+        Path packFile = tempDir.resolve("covers.pack");
+        CoverImportService importer = new CoverImportService(CoverPack.open(packFile));
+        
+        assertTrue(importer.importCover("978-0-7432-7356-5", coverUrl));
+        assertFalse(importer.importCover("9780743273565", coverUrl), "Same ISBN should not be imported twice");
+        assertEquals(1, requests.get());
+        
+        CoverPack reopened = CoverPack.open(packFile);
+        assertEquals(1, reopened.size());
+        assertArrayEquals(COVER, bytesOf(reopened.get("9780743273565")));
+        assertNull(reopened.get("9780000000000"));
+    }
+    
+    @Test
+    @DisplayName("Test a torn trailing record is dropped and overwritten by the next import")
+    void testTornRecordIsDropped() throws Exception {
+        Path packFile = tempDir.resolve("covers.pack");
+        new CoverImportService(CoverPack.open(packFile)).importCover("9780743273565", coverUrl);
+        
+        long complete = Files.size(packFile);
+        Files.write(packFile, new byte[] {0, 0, 0, 13, '9', '7', '8'}, StandardOpenOption.APPEND);
+        
+        CoverPack reopened = CoverPack.open(packFile);
+        assertEquals(1, reopened.size());
+        
+        new CoverImportService(reopened).importCover("9780061120084", coverUrl);
+        assertEquals(complete * 2 - 4, Files.size(packFile));
+        assertArrayEquals(COVER, bytesOf(CoverPack.open(packFile).get("9780061120084")));
+    }
+}
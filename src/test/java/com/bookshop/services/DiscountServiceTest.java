@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import com.bookshop.models.LoyaltyTier;
 import com.bookshop.models.User;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -92,4 +93,41 @@ public class DiscountServiceTest {
                        "The regular discount (10%) should not be applied when premium discount is available");
     }
     
+    @Test
+    @DisplayName("Test persisted loyalty tier takes precedence over the order count")
+    void testPersistedLoyaltyTierIsUsed() {
+        User user = new User();
+        user.setOrderCount(3);
+        user.setLoyaltyTier(LoyaltyTier.PREMIUM);
+        user.setRole(User.Role.CUSTOMER);
+        
+        assertTrue(discountService.getDiscountStrategy(user) instanceof PremiumMemberDiscount);
+        assertSame(discountService.getDiscountStrategy(user), new DiscountService().getDiscountStrategy(user),
+                  "Strategies should be shared instead of created per lookup");
+    }
+    
+    @Test
+    @DisplayName("Test the stored tier expression follows the LoyaltyTier thresholds")
+    void testTierSql() {
+        assertEquals("CASE WHEN n >= " + LoyaltyTier.PREMIUM.getMinOrderCount() + " THEN 'PREMIUM'"
+            + " WHEN n >= " + LoyaltyTier.REGULAR.getMinOrderCount() + " THEN 'REGULAR' ELSE 'BASIC' END",
+            DiscountService.tierSql("n"));
+    }
+    
+    @Test
+    @DisplayName("Test pricing several line items for one user")
+    void testPriceLineItems() {
+        User user = new User();
+        user.setOrderCount(5);
+        user.setRole(User.Role.CUSTOMER);
+        
+        BigDecimal[] unitPrices = { new BigDecimal("20.00"), new BigDecimal("12.50") };
+        int[] quantities = { 2, 4 };
+        BigDecimal[] lineTotals = discountService.priceLineItems(user, unitPrices, quantities);
+        
+        assertEquals(2, lineTotals.length);
+        assertEquals(new BigDecimal("36.00"), lineTotals[0].setScale(2, RoundingMode.HALF_UP));
+        assertEquals(new BigDecimal("45.00"), lineTotals[1].setScale(2, RoundingMode.HALF_UP));
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.bookshop.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.models.CartItem;
+import com.bookshop.models.Promotion;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+public class PromotionServiceTest {
+    
+    private PromotionService promotionService;
+    
+    @BeforeEach
+    void setUp() {
+        promotionService = PromotionService.getInstance();
+    }
+    
+    private CartItem item(int bookId, String category, String author, String price, int quantity) {
+        CartItem item = new CartItem();
+        item.setBookId(bookId);
+        item.setCategory(category);
+        item.setAuthor(author);
+        item.setPrice(new BigDecimal(price));
+        item.setQuantity(quantity);
+        return item;
+    }
+    
+    @Test
+    @DisplayName("Test the best matching rule is applied per line")
+    void testBestRulePerLine() {
+        Promotion bookRule = new Promotion(Promotion.Type.BOOK, "1", new BigDecimal("10"));
+        Promotion categoryRule = new Promotion(Promotion.Type.CATEGORY, "Fiction", new BigDecimal("20"));
+        Promotion authorRule = new Promotion(Promotion.Type.AUTHOR, "Jane Austen", new BigDecimal("5"));
+        promotionService.loadRules(Arrays.asList(bookRule, categoryRule, authorRule));
+        
+        List<CartItem> items = Arrays.asList(
+            item(1, "fiction", "George Orwell", "10.00", 1),
+            item(2, "History", "Jane Austen", "20.00", 2),
+            item(3, "History", "Someone Else", "5.00", 1));
+        
+        long[] discounts = promotionService.evaluate(items);
+        
+        assertEquals(200, discounts[0], "Category match should beat the smaller book discount");
+        assertEquals(200, discounts[1], "Author discount applies to the whole line");
+        assertEquals(0, discounts[2]);
+    }
+    
+    @Test
+    @DisplayName("Test buy-X-get-Y and time-windowed rules")
+    void testBuyXGetYAndTimeWindows() {
+        Promotion buyTwoGetOne = new Promotion(Promotion.Type.BUY_X_GET_Y, "7", BigDecimal.ZERO);
+        buyTwoGetOne.setBuyQuantity(2);
+        buyTwoGetOne.setFreeQuantity(1);
+        
+        Promotion expired = new Promotion(Promotion.Type.BOOK, "8", new BigDecimal("50"));
+        expired.setEndsAt(LocalDateTime.now().minusDays(1));
+        
+        Promotion upcoming = new Promotion(Promotion.Type.BOOK, "8", new BigDecimal("30"));
+        upcoming.setStartsAt(LocalDateTime.now().plusDays(1));
+        
+        promotionService.loadRules(Arrays.asList(buyTwoGetOne, expired, upcoming));
+        
+        List<CartItem> items = Arrays.asList(
+            item(7, null, null, "4.00", 7),
+            item(8, null, null, "10.00", 1));
+        
+        long[] discounts = promotionService.evaluate(items);
+        
+        assertEquals(800, discounts[0], "Seven copies on buy 2 get 1 should make two copies free");
+        assertEquals(0, discounts[1], "Rules outside their time window should not apply");
+    }
+}
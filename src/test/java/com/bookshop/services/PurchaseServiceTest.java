@@ -0,0 +1,74 @@
+package com.bookshop.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.models.Book;
+import com.bookshop.models.CartItem;
+import com.bookshop.utils.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public class PurchaseServiceTest {
+    
+    @Test
+    @DisplayName("Test cancelling an order changes its status, the stock and the daily sales together")
+    void testCancelOrder() throws SQLException {
+        Connection conn;
+        try {
+            conn = DatabaseConnection.getInstance().openDedicatedConnection();
+        } catch (SQLException e) {
+            assumeTrue(false, "No database to test against: " + e.getMessage());
+            return;
+        }
+        
+        try (conn) {
+            int userId = queryInt(conn, "SELECT id FROM users WHERE UPPER(role) <> 'ADMIN' ORDER BY id LIMIT 1");
+            int bookId = queryInt(conn, "SELECT id FROM books WHERE stock_quantity >= 2 ORDER BY id LIMIT 1");
+            assumeTrue(userId > 0 && bookId > 0, "The test needs a customer and a book with stock");
+            
+            Book book = BookService.getInstance().getBookById(bookId);
+            int orderId = OrderService.getInstance().createOrder(userId, List.of(new CartItem(book, 2)), "Credit Card");
+            assertTrue(orderId > 0);
+            
+            try {
+                String unitsSql = "SELECT units FROM sales_daily WHERE day = " +
+                    "(SELECT CAST(order_date AS DATE) FROM orders WHERE id = " + orderId + ")";
+                int stockBefore = queryInt(conn, "SELECT stock_quantity FROM books WHERE id = " + bookId);
+                int unitsBefore = queryInt(conn, unitsSql);
+                
+                assertTrue(PurchaseService.getInstance().cancelOrder(orderId));
+                
+                assertEquals("CANCELLED", queryString(conn, "SELECT UPPER(status) FROM orders WHERE id = " + orderId));
+                assertEquals(stockBefore + 2, queryInt(conn, "SELECT stock_quantity FROM books WHERE id = " + bookId));
+                assertEquals(unitsBefore - 2, queryInt(conn, unitsSql));
+                assertFalse(PurchaseService.getInstance().cancelOrder(orderId), "An order is cancelled only once");
+            } finally {
+                PurchaseService.getInstance().deleteOrder(orderId);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "UPDATE users SET order_count = order_count - 1 WHERE id = ?")) {
+                    stmt.setInt(1, userId);
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+    
+    private static int queryInt(Connection conn, String sql) throws SQLException {
+        String value = queryString(conn, sql);
+        return value != null ? Integer.parseInt(value) : 0;
+    }
+    
+    private static String queryString(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
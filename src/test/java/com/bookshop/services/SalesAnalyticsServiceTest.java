@@ -0,0 +1,30 @@
+package com.bookshop.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.models.DailySales;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public class SalesAnalyticsServiceTest {
+    
+    @Test
+    @DisplayName("Test days without sales are filled with zero totals across the whole range")
+    void testWithEmptyDays() {
+        LocalDate from = LocalDate.of(2026, 2, 27);
+        DailySales saturday = new DailySales(LocalDate.of(2026, 2, 28), 2, 5, new BigDecimal("49.95"));
+        
+        List<DailySales> days = SalesAnalyticsService.withEmptyDays(List.of(saturday), from, from.plusDays(2));
+        
+        assertEquals(3, days.size());
+        assertEquals(from, days.get(0).getDay());
+        assertEquals(0, days.get(0).getOrders());
+        assertEquals(BigDecimal.ZERO, days.get(0).getRevenue());
+        assertSame(saturday, days.get(1));
+        assertEquals(LocalDate.of(2026, 3, 1), days.get(2).getDay());
+        assertTrue(SalesAnalyticsService.withEmptyDays(List.of(), from, from.minusDays(1)).isEmpty());
+    }
+}
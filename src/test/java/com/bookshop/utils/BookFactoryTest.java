@@ -0,0 +1,61 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import com.bookshop.models.Book;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public class BookFactoryTest {
+    
+    @Test
+    @DisplayName("Test a summary row maps by position and leaves unselected columns at their defaults")
+    void testBookMapperOnSummaryColumns() throws SQLException {
+        String[] labels = {"id", "TITLE", "author", "publisher", "price", "category", "isbn", "stock_quantity", "review_count"};
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(rs.getInt(1)).thenReturn(7);
+        when(rs.getString(2)).thenReturn("Dune");
+        when(rs.getBigDecimal(5)).thenReturn(new BigDecimal("9.99"));
+        when(rs.getInt(8)).thenReturn(3);
+        when(rs.getInt(9)).thenReturn(12);
+        
+        RowMapper<Book> mapper = BookFactory.bookMapper(rs);
+        Book book = mapper.map(rs);
+        
+        assertEquals(7, book.getId());
+        assertEquals("Dune", book.getTitle());
+        assertEquals(new BigDecimal("9.99"), book.getPrice());
+        assertEquals(3, book.getStockQuantity());
+        assertEquals(12, book.getReviewCount());
+        assertNull(book.getDescription());
+        assertEquals(0.0, book.getAverageRating());
+        verify(rs, never()).getString(anyString());
+        verify(rs, never()).getInt(anyString());
+        verify(metaData, times(1)).getColumnCount();
+    }
+    
+    @Test
+    @DisplayName("Test a missing required column is reported when the mapper is built")
+    void testMissingRequiredColumn() throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(metaData);
+        
+        SQLException error = assertThrows(SQLException.class, () -> BookFactory.bookMapper(rs));
+        assertTrue(error.getMessage().contains("title"));
+    }
+}
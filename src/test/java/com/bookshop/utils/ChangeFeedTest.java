@@ -0,0 +1,23 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+public class ChangeFeedTest {
+    
+    @Test
+    @DisplayName("Test changes are told apart by the process that made them")
+    void testOrigin() {
+        ChangeFeed.Change local = ChangeFeed.Change.parse("cart_items:INSERT:7:3:" + ChangeFeed.ORIGIN);
+        assertTrue(local.isOn("cart_items"));
+        assertEquals(3, local.getRelatedId());
+        assertTrue(local.isLocal());
+        
+        ChangeFeed.Change remote = ChangeFeed.Change.parse("books:UPDATE:5::another-process");
+        assertEquals(0, remote.getRelatedId());
+        assertFalse(remote.isLocal());
+        
+        assertFalse(ChangeFeed.Change.parse("books:IMPORT:0").isLocal());
+    }
+}
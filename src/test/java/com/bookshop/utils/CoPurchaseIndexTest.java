@@ -0,0 +1,68 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CoPurchaseIndexTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    @DisplayName("Test the written index maps back with each book's top neighbours, most shared orders first and ties to the larger id")
+    void testWriteAndOpen() throws IOException {
+        CoPurchaseIndex.Builder builder = new CoPurchaseIndex.Builder();
+        builder.addOrder(1, new int[] {10, 20, 30});
+        builder.addOrder(2, new int[] {10, 20, 20});
+        builder.addOrder(3, new int[] {10, 40});
+        builder.addOrder(4, new int[] {40});
+        builder.addOrder(5, new int[] {20, 10, 40});
+        
+        Path file = tempDir.resolve("copurchase.idx");
+        builder.write(file, 2);
+        CoPurchaseIndex index = CoPurchaseIndex.open(file);
+        
+        assertEquals(5, index.getLastOrderId());
+        assertEquals(4, index.getBooks());
+        assertEquals(List.of(20, 3, 40, 2), neighbours(index, 10));
+        assertEquals(List.of(20, 1, 10, 1), neighbours(index, 30));
+        assertEquals(List.of(), neighbours(index, 99));
+        
+        Files.write(file, new byte[] {1, 2, 3}, java.nio.file.StandardOpenOption.APPEND);
+        assertThrows(IOException.class, () -> CoPurchaseIndex.open(file));
+    }
+    
+    @Test
+    @DisplayName("Test the int map grows past its initial size and ranks keys by value")
+    void testIntIntHashMap() {
+        IntIntHashMap map = new IntIntHashMap(2);
+        for (int key = 1; key <= 1_000; key++) {
+            map.addTo(key, key % 7);
+        }
+        map.addTo(500, 100);
+        
+        assertEquals(1_000, map.size());
+        assertEquals(6, map.get(6));
+        assertEquals(0, map.get(5_000));
+        assertFalse(map.containsKey(5_000));
+        assertArrayEquals(new int[] {500, 1000}, map.topKeys(2));
+        assertThrows(IllegalArgumentException.class, () -> map.addTo(0, 1));
+    }
+    
+    private static List<Integer> neighbours(CoPurchaseIndex index, int bookId) {
+        List<Integer> pairs = new ArrayList<>();
+        index.forEachNeighbour(bookId, (id, count) -> {
+            pairs.add(id);
+            pairs.add(count);
+        });
+        return pairs;
+    }
+}
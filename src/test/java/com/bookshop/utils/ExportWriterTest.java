@@ -0,0 +1,55 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.zip.GZIPInputStream;
+
+public class ExportWriterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    @DisplayName("Test CSV exports quote only where needed and read back as a catalog feed")
+    void testCsv() throws Exception {
+        Path file = tempDir.resolve("books.csv");
+        try (ExportWriter writer = ExportWriter.open(file, "title", "price", "description")) {
+            writer.writeRow("Dune, Part One", new BigDecimal("9.90"), null);
+            writer.writeRow("The \"Hobbit\"", new BigDecimal("12.50"), "Two\nlines");
+            assertEquals(2, writer.getRows());
+        }
+        
+        assertEquals("title,price,description\n\"Dune, Part One\",9.90,\n\"The \"\"Hobbit\"\"\",12.50,\"Two\nlines\"\n",
+            Files.readString(file));
+        try (CatalogFeedReader reader = new CatalogFeedReader(Files.newBufferedReader(file), CatalogFeedReader.Format.CSV)) {
+            assertEquals("Dune, Part One", reader.next().getValues()[0]);
+            assertEquals("Two\nlines", reader.next().getValues()[2]);
+        }
+    }
+    
+    @Test
+    @DisplayName("Test gzipped JSON-lines exports keep numbers unquoted")
+    void testGzipJsonLines() throws Exception {
+        Path file = tempDir.resolve("orders.jsonl.gz");
+        try (ExportWriter writer = ExportWriter.open(file, "order_id", "order_date", "status")) {
+            writer.writeRow(7, Timestamp.valueOf("2026-01-02 03:04:05"), null);
+        }
+        
+        try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)) {
+            char[] text = new char[200];
+            int length = in.read(text);
+            assertEquals("{\"order_id\":7,\"order_date\":\"2026-01-02T03:04:05\",\"status\":null}\n", new String(text, 0, length));
+        }
+        assertThrows(IllegalArgumentException.class, () -> ExportWriter.open(tempDir.resolve("orders.txt"), "id"));
+    }
+}
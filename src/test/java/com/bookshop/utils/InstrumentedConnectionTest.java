@@ -0,0 +1,71 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+public class InstrumentedConnectionTest {
+    
+    @Test
+    @DisplayName("Test rows are counted without proxying the result set")
+    void testResultSetRows() throws Exception {
+        int[] remaining = {3};
+        ResultSet driverRows = fake(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    return remaining[0]-- > 0;
+                case "getString":
+                    return "row";
+                default:
+                    return null;
+            }
+        });
+        PreparedStatement driverStatement = fake(PreparedStatement.class,
+            (method, args) -> method.equals("executeQuery") ? driverRows : null);
+        Connection driverConnection = fake(Connection.class,
+            (method, args) -> method.equals("prepareStatement") ? driverStatement : null);
+        
+        Connection connection = InstrumentedConnection.wrap(driverConnection);
+        int read = 0;
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT title FROM books WHERE id > ?")) {
+            stmt.setInt(1, 0);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertFalse(Proxy.isProxyClass(rs.getClass()));
+                while (rs.next()) {
+                    assertEquals("row", rs.getString(1));
+                    read++;
+                }
+            }
+        }
+        
+        List<QueryTracer.Trace> traces = QueryTracer.getInstance().getRecentStatements();
+        QueryTracer.Trace trace = traces.get(traces.size() - 1);
+        assertEquals(3, read);
+        assertEquals("SELECT title FROM books WHERE id > ?", trace.getSql());
+        assertEquals(3, trace.getRows());
+    }
+    
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+    
+    private static <T> T fake(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> {
+                Object result = answer.answer(method.getName(), args);
+                if (result == null && method.getReturnType() == boolean.class) {
+                    return false;
+                }
+                if (result == null && method.getReturnType() == int.class) {
+                    return 0;
+                }
+                return result;
+            }));
+    }
+}
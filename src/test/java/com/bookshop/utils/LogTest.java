@@ -0,0 +1,52 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogTest {
+    
+    @Test
+    @DisplayName("Test placeholders are filled in order and a trailing exception is kept apart")
+    void testFormat() {
+        SQLException error = new SQLException("connection reset");
+        Object[] args = {7, "Dune", error};
+        
+        assertEquals("Order 7 has Dune", Log.format("Order {} has {}", args));
+        assertSame(error, Log.thrown("Order {} has {}", args));
+        assertNull(Log.thrown("Order {} has {} after {}", args));
+        assertEquals("No arguments {}", Log.format("No arguments {}", null));
+    }
+    
+    @Test
+    @DisplayName("Test each event is one JSON line with escaped text")
+    void testJson() {
+        String line = Log.toJson(0, Log.Level.WARN, "OrderService", "bookshop-service",
+            "Title \"Dune\"\nsecond line", null);
+        
+        assertEquals("{\"ts\":\"1970-01-01T00:00:00Z\",\"level\":\"WARN\",\"logger\":\"OrderService\","
+            + "\"thread\":\"bookshop-service\",\"msg\":\"Title \\\"Dune\\\"\\nsecond line\"}", line);
+        assertFalse(Log.toJson(0, Log.Level.ERROR, "A", "B", "C", new SQLException("boom")).contains("\n"));
+    }
+    
+    @Test
+    @DisplayName("Test the ring buffer refuses elements when full and drains in order")
+    void testRingBuffer() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drain(drained::add));
+        assertEquals(List.of(0, 1, 2, 3), drained);
+        assertTrue(buffer.offer(5));
+        assertEquals(1, buffer.size());
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<Integer>(6));
+    }
+}
@@ -0,0 +1,53 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+public class MetricsRegistryTest {
+    
+    @Test
+    @DisplayName("Test histogram quantiles stay within the bucket precision")
+    void testHistogramQuantiles() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5_000, histogram.valueAtQuantile(0.5), 5_000 * 0.07);
+        assertEquals(9_900, histogram.valueAtQuantile(0.99), 9_900 * 0.07);
+        assertEquals(10_000, histogram.valueAtQuantile(1.0));
+        assertEquals(0, new Histogram().valueAtQuantile(0.5));
+    }
+    
+    @Test
+    @DisplayName("Test bucket bounds cover every value exactly once")
+    void testBucketBounds() {
+        for (long value : new long[] {0, 15, 16, 17, 31, 32, 33, 1_000_003, Long.MAX_VALUE}) {
+            int index = Histogram.indexOf(value);
+            assertTrue(Histogram.highestValueIn(index) >= value, "Bucket of " + value + " ends below it");
+            if (index > 0) {
+                assertTrue(Histogram.highestValueIn(index - 1) < value, "Previous bucket of " + value + " reaches it");
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Test the Prometheus text lists counters and timer quantiles in seconds")
+    void testPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("bookshop_test_total", "Test counter", "operation", "Books.find").add(3);
+        registry.timer("bookshop_test_seconds", "Test timer", "operation", "Books.find").record(2_000_000);
+        registry.gauge("bookshop_test_depth", "Test gauge", () -> 7);
+        
+        String text = registry.toPrometheusText();
+        
+        assertTrue(text.contains("# TYPE bookshop_test_total counter\n"));
+        assertTrue(text.contains("bookshop_test_total{operation=\"Books.find\"} 3\n"));
+        assertTrue(text.contains("bookshop_test_seconds{operation=\"Books.find\",quantile=\"0.5\"} 2\n"));
+        assertTrue(text.contains("bookshop_test_seconds_count{operation=\"Books.find\"} 1\n"));
+        assertTrue(text.contains("bookshop_test_depth 7\n"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class QueryTracerTest {
+    
+    @Test
+    @DisplayName("Test password_hash binds are found in SET, WHERE and INSERT column lists")
+    void testRedactedParameters() {
+        assertEquals(Set.of(2), QueryTracer.redactedParameters(
+            "UPDATE users SET username = ?, password_hash = ?, full_name = ? WHERE id = ?"));
+        assertEquals(Set.of(2), QueryTracer.redactedParameters(
+            "INSERT INTO users (username, password_hash, full_name, role) VALUES (?, ?, ?, 'CUSTOMER')"));
+        assertEquals(Set.of(3), QueryTracer.redactedParameters(
+            "INSERT INTO users (id, username, password_hash) VALUES (COALESCE(?, 0), ?, ?)"));
+        assertEquals(Collections.emptySet(), QueryTracer.redactedParameters("SELECT * FROM users WHERE username = ?"));
+    }
+    
+    @Test
+    @DisplayName("Test redacted binds never reach the trace")
+    void testDescribeBinds() {
+        List<String> binds = QueryTracer.describeBinds(Set.of(2), Arrays.asList("alice", "secret-hash", 42, null));
+        
+        assertEquals(List.of("'alice'", "***", "42", "null"), binds);
+    }
+    
+    @Test
+    @DisplayName("Test only statements over the threshold are kept as slow")
+    void testSlowStatements() {
+        QueryTracer tracer = new QueryTracer();
+        tracer.setSlowThresholdMillis(10);
+        
+        QueryTracer.Trace fast = tracer.begin("BookRepositoryImpl.findById", "SELECT 1", List.of(), 0);
+        fast.setDurationNanos(1_000_000);
+        tracer.finish(fast);
+        QueryTracer.Trace slow = tracer.begin("OrderService.getAllOrders", "SELECT * FROM orders", List.of(), 0);
+        slow.setDurationNanos(50_000_000);
+        tracer.finish(slow);
+        tracer.finish(slow);
+        
+        assertEquals(List.of(fast, slow), tracer.getRecentStatements());
+        assertEquals(List.of(slow), tracer.getSlowStatements());
+    }
+}
@@ -0,0 +1,54 @@
+package com.bookshop.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.List;
+
+public class SpaceSavingSketchTest {
+    
+    @Test
+    @DisplayName("Test counts are exact while every key fits")
+    void testExactUnderCapacity() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(3);
+        sketch.offer("dune", 2);
+        sketch.offer("hobbit", 5);
+        sketch.offer("dune", 4);
+        
+        List<SpaceSavingSketch.Counter<String>> top = sketch.top(5);
+        
+        assertEquals(2, top.size());
+        assertEquals("dune", top.get(0).getKey());
+        assertEquals(6, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(11, sketch.getTotal());
+        assertNull(sketch.offer("emma", 0));
+        assertFalse(sketch.contains("emma"));
+    }
+    
+    @Test
+    @DisplayName("Test heavy hitters survive a long tail of single sales and stay within their error bounds")
+    void testHeavyHittersKept() {
+        SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<>(10);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.offer(100 + i, 1);
+            if (i % 4 == 0) {
+                sketch.offer(1, 1);
+            }
+            if (i % 10 == 0) {
+                sketch.offer(2, 3);
+            }
+        }
+        
+        assertEquals(10, sketch.size());
+        List<SpaceSavingSketch.Counter<Integer>> top = sketch.top(2);
+        long[] trueCounts = {0, 250, 300};
+        for (SpaceSavingSketch.Counter<Integer> counter : top) {
+            assertTrue(counter.getKey() == 1 || counter.getKey() == 2);
+            assertTrue(counter.getCount() >= trueCounts[counter.getKey()]);
+            assertTrue(counter.getCount() - counter.getError() <= trueCounts[counter.getKey()]);
+            assertTrue(counter.getError() <= sketch.getTotal() / 10);
+        }
+    }
+}